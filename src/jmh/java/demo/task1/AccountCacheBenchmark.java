@@ -0,0 +1,73 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.CachingAccountRepository;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getBalance by id through the bank without a cache and through CachingAccountRepository, which holds every account of
+ * the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Declipselink.logging.level=OFF")
+public class AccountCacheBenchmark {
+    @Param({"1000"})
+    public int accounts;
+
+    @Param({"false", "true"})
+    public boolean cached;
+
+    private BankImpl bank;
+    private List<Long> ids;
+
+    @Setup
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, accounts, BigDecimal.TEN);
+
+        if (cached) {
+            accountRepository = new CachingAccountRepository(accountRepository, accounts, Duration.ofMinutes(10));
+        }
+        bank = new BankImpl(accountRepository, new AccountOperationRepositoryImpl());
+    }
+
+    @Benchmark
+    public BigDecimal getBalance() {
+        return bank.getBalance(randomId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal getBalanceContended() {
+        return getBalance();
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
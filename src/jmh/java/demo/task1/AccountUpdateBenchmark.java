@@ -0,0 +1,64 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AccountRepository.update of a detached account, a single UPDATE ... WHERE id, against the exists() check followed by
+ * a merge it replaced. AccountUpdateBenchmarkTest counts the statements of both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Declipselink.logging.level=OFF")
+public class AccountUpdateBenchmark {
+    private AccountRepository accountRepository;
+    private Account account;
+    private long balance;
+
+    @Setup
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        BenchmarkData.clear();
+        account = accountRepository.create("x", "y", BigDecimal.ZERO);
+    }
+
+    @Benchmark
+    public void update() {
+        account.setBalance(BigDecimal.valueOf(++balance));
+        accountRepository.update(account);
+    }
+
+    @Benchmark
+    public void existsThenMerge() {
+        account.setBalance(BigDecimal.valueOf(++balance));
+        if (!accountRepository.exists(account.getId())) {
+            throw new IllegalStateException();
+        }
+
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            Account merged = em.merge(account);
+            em.getTransaction().commit();
+            account.setVersion(merged.getVersion());
+        }
+    }
+}
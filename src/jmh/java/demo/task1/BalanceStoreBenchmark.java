@@ -0,0 +1,88 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BalanceStore;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deposits and balance reads of BankImpl with every posting a conditional UPDATE (ATOMIC) and with the balances held
+ * by a BalanceStore (IN_MEMORY). Run with -prof gc for the bytes allocated per operation: gc.alloc.rate.norm counts
+ * every thread, so for IN_MEMORY it includes what the store's writer allocates persisting the postings. The in-memory
+ * H2 database executes the writer's statements on the writer thread, and its copy-on-write pages are most of that.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 4, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF",
+        "-Djava.util.logging.config.file=/dev/null"})
+public class BalanceStoreBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    @Param({"ATOMIC", "IN_MEMORY"})
+    public BankImpl.ConcurrencyMode mode;
+
+    private BankImpl bank;
+    private BalanceStore store;
+    private List<Long> ids;
+
+    @Setup
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        bank = new BankImpl(accountRepository, new AccountOperationRepositoryImpl());
+        bank.setConcurrencyMode(mode);
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, ACCOUNTS, OPENING_BALANCE);
+        if (mode == BankImpl.ConcurrencyMode.IN_MEMORY) {
+            store = new BalanceStore(accountRepository);
+            bank.setBalanceStore(store);
+            ids.forEach(store::getBalance);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        if (store != null) {
+            store.flush(Duration.ofMinutes(5));
+            store.close();
+        }
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public void deposit() {
+        bank.deposit(randomId(), BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public BigDecimal getBalance() {
+        return bank.getBalance(randomId());
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,124 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Throughput of the Bank operations against the H2 persistence unit. The methods without a suffix run on one thread,
+ * the "contended" ones on four threads picking random accounts, so that lock and retry costs show up as the account
+ * count goes down.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Declipselink.logging.level=OFF")
+public class BankBenchmark {
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    @Param({"10", "1000"})
+    public int accounts;
+
+    @Param({"NONE", "PESSIMISTIC", "ATOMIC", "OPTIMISTIC", "STRIPED"})
+    public BankImpl.ConcurrencyMode mode;
+
+    private BankImpl bank;
+    private List<Long> ids;
+    private final AtomicLong created = new AtomicLong();
+
+    @Setup
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        AccountOperationRepository operationRepository = new AccountOperationRepositoryImpl();
+        bank = new BankImpl(accountRepository, operationRepository);
+        bank.setConcurrencyMode(mode);
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, accounts, OPENING_BALANCE);
+    }
+
+    @Benchmark
+    public BigDecimal getBalance() {
+        return bank.getBalance(randomId());
+    }
+
+    @Benchmark
+    public void deposit() {
+        bank.deposit(randomId(), BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public void withdraw() {
+        bank.withdraw(randomId(), BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public void transfer() {
+        transferBetweenRandomAccounts();
+    }
+
+    @Benchmark
+    public Long createAccount() {
+        long n = created.incrementAndGet();
+        return bank.createAccount("new" + n, "address " + n);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public BigDecimal getBalanceContended() {
+        return bank.getBalance(randomId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void depositContended() {
+        try {
+            bank.deposit(randomId(), BigDecimal.ONE);
+        } catch (RuntimeException e) {
+            // lost optimistic race in NONE mode, counted by BankImpl
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferContended() {
+        try {
+            transferBetweenRandomAccounts();
+        } catch (RuntimeException e) {
+            // lost optimistic race in NONE mode, counted by BankImpl
+        }
+    }
+
+    private void transferBetweenRandomAccounts() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ids.size());
+        int to = (from + 1 + random.nextInt(ids.size() - 1)) % ids.size();
+        bank.transfer(ids.get(from), ids.get(to), BigDecimal.ONE, "benchmark");
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,104 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankExecutor;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load generator: every invocation is 10 000 clients calling the bank at once through a BankExecutor, bounded to the
+ * write pool's size, and waiting for all of them. ops/s are calls per second.
+ * <p>
+ * PLATFORM_POOL runs them on as many platform threads as there are permits, THREAD_PER_CALL starts a platform thread
+ * for every call. VirtualThreadBankExecutorBenchmark in src/jmh/java21 compares the pool with virtual threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF",
+        "-Djava.util.logging.config.file=/dev/null"})
+public class BankExecutorBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int CLIENTS = 10_000;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    public enum Executor {
+        PLATFORM_POOL, THREAD_PER_CALL
+    }
+
+    @Param({"PLATFORM_POOL", "THREAD_PER_CALL"})
+    public Executor executor;
+
+    private BankExecutor bankExecutor;
+    private List<Long> ids;
+
+    @Setup
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        BankImpl bank = new BankImpl(accountRepository, new AccountOperationRepositoryImpl());
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, ACCOUNTS, OPENING_BALANCE);
+
+        int connections = JpaFactory.getPoolStatistics().get(0).getMaxSize();
+        bankExecutor = switch (executor) {
+            case PLATFORM_POOL -> BankExecutor.withPlatformThreads(bank, connections);
+            case THREAD_PER_CALL -> new BankExecutor(bank, Executors.newCachedThreadPool(), connections);
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        bankExecutor.close();
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLIENTS)
+    public void deposit() {
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            calls[i] = bankExecutor.depositAsync(randomId(), BigDecimal.ONE);
+        }
+        CompletableFuture.allOf(calls).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLIENTS)
+    public void getBalance() {
+        CompletableFuture<?>[] calls = new CompletableFuture<?>[CLIENTS];
+        for (int i = 0; i < CLIENTS; i++) {
+            calls[i] = bankExecutor.getBalanceAsync(randomId());
+        }
+        CompletableFuture.allOf(calls).join();
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,71 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POSTINGS deposits spread over ACCOUNTS accounts, as one executeBatch call and as a loop of deposit calls, one
+ * transaction each. ops/s are postings per second. BatchPostingBenchmarkTest counts the statements of both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Declipselink.logging.level=OFF")
+public class BatchPostingBenchmark {
+    private static final int ACCOUNTS = 20;
+    private static final int POSTINGS = 1000;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    private BankImpl bank;
+    private List<Long> ids;
+    private List<Posting> postings;
+
+    @Setup
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        bank = new BankImpl(accountRepository, new AccountOperationRepositoryImpl());
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, ACCOUNTS, OPENING_BALANCE);
+        postings = new ArrayList<>(POSTINGS);
+        for (int i = 0; i < POSTINGS; i++) {
+            postings.add(Posting.deposit(ids.get(i % ACCOUNTS), BigDecimal.ONE));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSTINGS)
+    public void depositLoop() {
+        for (int i = 0; i < POSTINGS; i++) {
+            bank.deposit(ids.get(i % ACCOUNTS), BigDecimal.ONE);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSTINGS)
+    public List<PostingResult> executeBatch() {
+        return bank.executeBatch(postings);
+    }
+}
@@ -0,0 +1,89 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fixture shared by the benchmarks: empties the H2 database between trials and creates the accounts they run on.
+ */
+public final class BenchmarkData {
+    private BenchmarkData() {
+    }
+
+    public static void clear() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("DELETE FROM ACCOUNT_OPERATIONS").executeUpdate();
+            em.createNativeQuery("DELETE FROM ACCOUNTS").executeUpdate();
+            em.getTransaction().commit();
+            em.getEntityManagerFactory().getCache().evictAll();
+        }
+    }
+
+    /**
+     * Inserts count accounts named like createAccounts does in one H2 statement, far faster than going through the
+     * repository. Ids start at firstId, so they stay clear of the ids ACCOUNT_SEQ hands out.
+     */
+    public static void insertAccounts(int count, long firstId, BigDecimal balance) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("INSERT INTO ACCOUNTS (ID, NAME, ADDRESS, BALANCE, OPERATION_COUNT, DEPOSIT_COUNT, WITHDRAW_COUNT, " +
+                            "TRANSFER_IN_COUNT, TRANSFER_OUT_COUNT, CREATED_AT, UPDATED_AT, VERSION) " +
+                            "SELECT ?1 + X, 'owner' || X, 'street ' || X, ?2, 0, 0, 0, 0, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 1 " +
+                            "FROM SYSTEM_RANGE(0, ?3 - 1)")
+                    .setParameter(1, firstId)
+                    .setParameter(2, balance)
+                    .setParameter(3, count)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    /**
+     * Inserts perAccount operations of every type, round robin, for each of the count accounts inserted by
+     * insertAccounts from firstAccountId, one a day going back from now. Transfers go to or come from the next account.
+     * Ids start at firstId.
+     */
+    public static void insertOperations(int count, long firstAccountId, int perAccount, long firstId) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("INSERT INTO ACCOUNT_OPERATIONS (ID, DTYPE, ACCOUNT_ID, AMOUNT, TYPE, TITLE, OTHER_ACCOUNT_ID, " +
+                            "CREATED_AT, UPDATED_AT, VERSION) " +
+                            "SELECT ?1 + X, CASEWHEN(MOD(X, 4) < 2, 'AccountOperation', 'TransferOperation'), ?2 + MOD(X, ?3), MOD(X, 1000), " +
+                            "CASEWHEN(MOD(X, 4) = 0, 'DEPOSIT', CASEWHEN(MOD(X, 4) = 1, 'WITHDRAW', " +
+                            "CASEWHEN(MOD(X, 4) = 2, 'TRANSFER_IN', 'TRANSFER_OUT'))), " +
+                            "CASEWHEN(MOD(X, 4) < 2, NULL, 'transfer ' || X), CASEWHEN(MOD(X, 4) < 2, NULL, ?2 + MOD(X + 1, ?3)), " +
+                            "DATEADD(DAY, -X / ?3, CURRENT_TIMESTAMP), CURRENT_TIMESTAMP, 1 " +
+                            "FROM SYSTEM_RANGE(0, ?4 - 1)")
+                    .setParameter(1, firstId)
+                    .setParameter(2, firstAccountId)
+                    .setParameter(3, count)
+                    .setParameter(4, (long) count * perAccount)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    public static void executeDdl(String... statements) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            for (String sql : statements) {
+                em.createNativeQuery(sql).executeUpdate();
+            }
+            em.getTransaction().commit();
+        }
+    }
+
+    public static List<Long> createAccounts(AccountRepository accountRepository, int count, BigDecimal balance) {
+        List<Long> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(accountRepository.create("owner" + i, "street " + i, balance).getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,139 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.AccountBalance;
+import demo.task1.services.Posting;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.TopBalances;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the Task 4 finder queries. Every other account gets OPERATIONS_PER_ACCOUNT deposits, the rest keep an
+ * empty history. findTopRichest answers from the in-memory ranking, for comparison with findByTheRichest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Declipselink.logging.level=OFF")
+public class FinderBenchmark {
+    private static final int OPERATIONS_PER_ACCOUNT = 5;
+
+    @Param({"100", "1000"})
+    public int accounts;
+
+    private AccountRepository accountRepository;
+    private AccountOperationRepository operationRepository;
+    private BankImpl bank;
+    private List<Long> ids;
+
+    @Setup
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        operationRepository = new AccountOperationRepositoryImpl();
+        bank = new BankImpl(accountRepository, operationRepository);
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, accounts, BigDecimal.ZERO);
+
+        List<Posting> postings = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += 2) {
+            for (int j = 1; j <= OPERATIONS_PER_ACCOUNT; j++) {
+                postings.add(Posting.deposit(ids.get(i), BigDecimal.valueOf(i * j)));
+            }
+        }
+        bank.executeBatch(postings);
+
+        TopBalances topBalances = new TopBalances(accountRepository);
+        topBalances.rebuild();
+        bank.setTopBalances(topBalances);
+    }
+
+    @Benchmark
+    public Optional<Account> findByNameAndAddress() {
+        int i = ThreadLocalRandom.current().nextInt(accounts);
+        return accountRepository.findByNameAndAddress("owner" + i, "street " + i);
+    }
+
+    @Benchmark
+    public List<Account> findByNameStartWith() {
+        return accountRepository.findByNameStartWith("owner" + ThreadLocalRandom.current().nextInt(10));
+    }
+
+    @Benchmark
+    public List<Account> findByBalanceBetween() {
+        return accountRepository.findByBalanceBetween(BigDecimal.valueOf(100), BigDecimal.valueOf(200));
+    }
+
+    @Benchmark
+    public List<Account> findByTheRichest() {
+        return accountRepository.findByTheRichest();
+    }
+
+    @Benchmark
+    public List<AccountBalance> findTopRichest() {
+        return bank.findTopRichest(1);
+    }
+
+    @Benchmark
+    public List<Account> findByEmptyHistory() {
+        return accountRepository.findByEmptyHistory();
+    }
+
+    @Benchmark
+    public List<Account> findByMostOperations() {
+        return accountRepository.findByMostOperations();
+    }
+
+    @Benchmark
+    public List<AccountOperation> findByDateRange() {
+        return operationRepository.findByDateRange(randomId(), LocalDateTime.now().minusDays(1), LocalDateTime.now());
+    }
+
+    @Benchmark
+    public OperationType findByMostFrequentType() {
+        return operationRepository.findByMostFrequentType(randomId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Account> findByNameAndAddressContended() {
+        return findByNameAndAddress();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Account> findByTheRichestContended() {
+        return findByTheRichest();
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
@@ -0,0 +1,83 @@
+package demo.task1;
+
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.Page;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operation history of one account, half deposits and withdrawals and half transfers: the whole history through
+ * findByDateRange and its newest page through findOperations. With JOINED inheritance each read also ran a DTYPE
+ * discovery query and one query per subtype, with SINGLE_TABLE it is one query whatever the history size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+// H2 would otherwise answer the repeated, unchanged query from the result of the previous call
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF",
+        "-Djakarta.persistence.jdbc.url=jdbc:h2:mem:demo;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class HistoryBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final int PAGE_SIZE = 20;
+    private static final long FIRST_ACCOUNT_ID = 100_000_000L;
+    private static final long FIRST_OPERATION_ID = 1_000_000_000L;
+
+    @Param({"10", "100", "1000"})
+    public int operationsPerAccount;
+
+    private BankImpl bank;
+    private Date from;
+    private Date to;
+
+    @Setup
+    public void setup() {
+        bank = new BankImpl(new AccountRepositoryImpl(), new AccountOperationRepositoryImpl());
+
+        BenchmarkData.clear();
+        BenchmarkData.insertAccounts(ACCOUNTS, FIRST_ACCOUNT_ID, BigDecimal.ZERO);
+        BenchmarkData.insertOperations(ACCOUNTS, FIRST_ACCOUNT_ID, operationsPerAccount, FIRST_OPERATION_ID);
+        // one operation a day, the range covers the whole history
+        from = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(operationsPerAccount + 1));
+        to = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public List<AccountOperation> findByDateRange() {
+        return bank.findByDateRange(randomAccount(), from, to);
+    }
+
+    @Benchmark
+    public Page<AccountOperation> findOperations() {
+        return bank.findOperations(randomAccount(), null, PAGE_SIZE);
+    }
+
+    private static Long randomAccount() {
+        return FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+}
@@ -0,0 +1,66 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.BankSessionCustomizer;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers, two operation rows each, with the ids of OPERATION_SEQ fetched one per sequence call (allocationSize 1)
+ * and in blocks of the configured size. IdAllocationBenchmarkTest counts the sequence calls of both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Declipselink.logging.level=OFF")
+public class IdAllocationBenchmark {
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    @Param({"1", "500"})
+    public int allocationSize;
+
+    private BankImpl bank;
+    private List<Long> ids;
+
+    @Setup
+    public void setup() {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        bank = new BankImpl(accountRepository, new AccountOperationRepositoryImpl());
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, 2, OPENING_BALANCE);
+
+        // drops the ids already reserved so that the size takes effect on the next insert
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            ServerSession session = em.unwrap(ServerSession.class);
+            session.getLogin().getSequence(BankSessionCustomizer.OPERATION_SEQUENCE).setPreallocationSize(allocationSize);
+            session.getSequencingControl().initializePreallocated(BankSessionCustomizer.OPERATION_SEQUENCE);
+        }
+    }
+
+    @Benchmark
+    public void transfer() {
+        bank.transfer(ids.get(0), ids.get(1), BigDecimal.ONE, "benchmark");
+    }
+}
@@ -0,0 +1,79 @@
+package demo.task1;
+
+import demo.task1.models.NewAccount;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Opening rows accounts, a tenth of whose owners already have one, through importAccounts and through a createAccount
+ * loop. The rows carry no opening balance, so both end with the same accounts. Every shot starts from a database
+ * holding only the existing tenth.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF"})
+public class ImportBenchmark {
+    private static final long FIRST_ACCOUNT_ID = 100_000_000L;
+
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    private BankImpl bank;
+    private List<NewAccount> accounts;
+
+    @Setup
+    public void setup() {
+        bank = new BankImpl(new AccountRepositoryImpl(), new AccountOperationRepositoryImpl());
+        // named like BenchmarkData.insertAccounts names them
+        accounts = IntStream.range(0, rows)
+                .mapToObj(i -> NewAccount.of("owner" + i, "street " + i, null))
+                .toList();
+    }
+
+    @Setup(Level.Invocation)
+    public void insertExisting() {
+        BenchmarkData.clear();
+        BenchmarkData.insertAccounts(rows / 10, FIRST_ACCOUNT_ID, BigDecimal.ZERO);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public List<Long> importAccounts() {
+        return bank.importAccounts(accounts.stream());
+    }
+
+    @Benchmark
+    public long createAccountLoop() {
+        long sum = 0;
+        for (NewAccount account : accounts) {
+            sum += bank.createAccount(account.getName(), account.getAddress());
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,131 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.OperationCountBackfill;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the Task 4 finders over ACCOUNTS and millions of ACCOUNT_OPERATIONS rows, with the indexes declared on
+ * the entities (index = true) and without them (index = false, only the index H2 creates for the account_id foreign
+ * key, as before the indexes were declared).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF"})
+public class IndexBenchmark {
+    private static final long FIRST_ACCOUNT_ID = 100_000_000L;
+    private static final long FIRST_OPERATION_ID = 1_000_000_000L;
+    private static final String FOREIGN_KEY = "FK_ACCOUNT_OPERATIONS_account_id";
+    private static final String[] INDEXES = {
+            "CREATE UNIQUE INDEX UX_ACCOUNTS_NAME_ADDRESS ON ACCOUNTS (NAME, ADDRESS)",
+            "CREATE INDEX IX_ACCOUNTS_BALANCE ON ACCOUNTS (BALANCE)",
+            "CREATE INDEX IX_ACCOUNT_OPERATIONS_ACCOUNT_CREATED ON ACCOUNT_OPERATIONS (ACCOUNT_ID, CREATED_AT)",
+            "CREATE INDEX IX_ACCOUNT_OPERATIONS_ACCOUNT_TYPE ON ACCOUNT_OPERATIONS (ACCOUNT_ID, TYPE)"
+    };
+
+    @Param({"100000"})
+    public int accounts;
+
+    @Param({"20"})
+    public int operationsPerAccount;
+
+    @Param({"true", "false"})
+    public boolean index;
+
+    private AccountRepository accountRepository;
+    private AccountOperationRepository operationRepository;
+
+    @Setup
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        operationRepository = new AccountOperationRepositoryImpl();
+
+        BenchmarkData.clear();
+        BenchmarkData.insertAccounts(accounts, FIRST_ACCOUNT_ID, BigDecimal.ZERO);
+        BenchmarkData.executeDdl("UPDATE ACCOUNTS SET BALANCE = MOD(ID * 7919, 1000000)");
+        BenchmarkData.insertOperations(accounts, FIRST_ACCOUNT_ID, operationsPerAccount, FIRST_OPERATION_ID);
+        OperationCountBackfill.run(OperationCountBackfill.DEFAULT_CHUNK_SIZE);
+        if (!index) {
+            // H2 backs the foreign key with one of the declared indexes, it gets an index of its own once re-added
+            BenchmarkData.executeDdl("ALTER TABLE ACCOUNT_OPERATIONS DROP CONSTRAINT " + FOREIGN_KEY,
+                    "DROP INDEX UX_ACCOUNTS_NAME_ADDRESS",
+                    "DROP INDEX IX_ACCOUNTS_BALANCE",
+                    "DROP INDEX IX_ACCOUNT_OPERATIONS_ACCOUNT_CREATED",
+                    "DROP INDEX IX_ACCOUNT_OPERATIONS_ACCOUNT_TYPE",
+                    addForeignKey());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.clear();
+        if (!index) {
+            BenchmarkData.executeDdl("ALTER TABLE ACCOUNT_OPERATIONS DROP CONSTRAINT " + FOREIGN_KEY);
+            BenchmarkData.executeDdl(INDEXES);
+            BenchmarkData.executeDdl(addForeignKey());
+        }
+    }
+
+    @Benchmark
+    public List<AccountOperation> findByDateRange() {
+        // the last week of an account, 7 of its operations
+        LocalDateTime to = LocalDateTime.now();
+        return operationRepository.findByDateRange(randomAccount(), to.minusWeeks(1), to);
+    }
+
+    @Benchmark
+    public OperationType findByMostFrequentType() {
+        return operationRepository.findByMostFrequentType(randomAccount());
+    }
+
+    @Benchmark
+    public List<Account> findByNameStartWith() {
+        // e.g. owner1234, which matches owner1234 and owner12340 to owner12349
+        return accountRepository.findByNameStartWith("owner" + (1_000 + ThreadLocalRandom.current().nextInt(accounts / 10 - 1_000)));
+    }
+
+    @Benchmark
+    public List<Account> findByBalanceBetween() {
+        long min = ThreadLocalRandom.current().nextLong(1_000_000 - 100);
+        return accountRepository.findByBalanceBetween(BigDecimal.valueOf(min), BigDecimal.valueOf(min + 100));
+    }
+
+    @Benchmark
+    public List<Account> findByTheRichest() {
+        return accountRepository.findByTheRichest();
+    }
+
+    private Long randomAccount() {
+        return FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts);
+    }
+
+    private static String addForeignKey() {
+        return "ALTER TABLE ACCOUNT_OPERATIONS ADD CONSTRAINT " + FOREIGN_KEY + " FOREIGN KEY (ACCOUNT_ID) REFERENCES ACCOUNTS (ID)";
+    }
+}
@@ -0,0 +1,93 @@
+package demo.task1;
+
+import demo.task1.services.impl.LedgerBank;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Postings per second of a LedgerBank on 10 000 accounts, from one thread and from four threads sharing its lock, and
+ * of transfers back and forth between the same two accounts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Djava.util.logging.config.file=/dev/null"})
+public class LedgerBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+    private static final BigDecimal AMOUNT = new BigDecimal("1.25");
+
+    private Path directory;
+    private LedgerBank bank;
+    private boolean back;
+
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("ledger");
+        bank = new LedgerBank(directory);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.deposit(bank.createAccount("owner" + i, "street " + i), OPENING_BALANCE);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        bank.close();
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public void deposit() {
+        bank.deposit(randomId(), AMOUNT);
+    }
+
+    @Benchmark
+    public void transfer() {
+        bank.transfer(randomId(), randomId(), AMOUNT, null);
+    }
+
+    @Benchmark
+    public void transferBetweenTwoAccounts() {
+        back = !back;
+        bank.transfer(back ? 2L : 1L, back ? 1L : 2L, AMOUNT, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void transferFromFourThreads() {
+        bank.transfer(randomId(), randomId(), AMOUNT, null);
+    }
+
+    @Benchmark
+    public BigDecimal getBalance() {
+        return bank.getBalance(randomId());
+    }
+
+    private static Long randomId() {
+        return (long) ThreadLocalRandom.current().nextInt(1, ACCOUNTS + 1);
+    }
+}
@@ -0,0 +1,106 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.CachingAccountRepository;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * createAccount/findAccount by (name, address) over a large ACCOUNTS table, the way logins call them: mostly the same
+ * HOT_OWNERS owners again, sometimes an owner that does not exist. Compares the bank without a cache against the one
+ * with CachingAccountRepository, and with index = false the same lookups without UX_ACCOUNTS_NAME_ADDRESS.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF"})
+public class NaturalKeyBenchmark {
+    private static final int HOT_OWNERS = 10_000;
+    // ids of the bulk inserted accounts start here, above anything ACCOUNT_SEQ hands out during the run
+    private static final long FIRST_ID = 100_000_000L;
+
+    @Param({"1000000"})
+    public int accounts;
+
+    @Param({"true", "false"})
+    public boolean index;
+
+    private BankImpl bank;
+    private BankImpl cachedBank;
+
+    @Setup
+    public void setup() {
+        AccountOperationRepository operationRepository = new AccountOperationRepositoryImpl();
+        bank = new BankImpl(new AccountRepositoryImpl(), operationRepository);
+        // room for every hot owner and for the same number of missing ones
+        cachedBank = new BankImpl(new CachingAccountRepository(new AccountRepositoryImpl(), 2 * HOT_OWNERS, Duration.ofMinutes(10)),
+                operationRepository);
+
+        BenchmarkData.clear();
+        BenchmarkData.insertAccounts(accounts, FIRST_ID, BigDecimal.ZERO);
+        // the logins have been going on for a while, every hot owner and every miss is cached already
+        for (int i = 0; i < HOT_OWNERS; i++) {
+            int owner = i * (accounts / HOT_OWNERS);
+            cachedBank.createAccount("owner" + owner, "street " + owner);
+            cachedBank.findAccount("nobody" + owner, "nowhere");
+        }
+        if (!index) {
+            BenchmarkData.executeDdl("DROP INDEX UX_ACCOUNTS_NAME_ADDRESS");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (!index) {
+            BenchmarkData.executeDdl("CREATE UNIQUE INDEX UX_ACCOUNTS_NAME_ADDRESS ON ACCOUNTS (NAME, ADDRESS)");
+        }
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public Long createAccount() {
+        int i = hotOwner();
+        return bank.createAccount("owner" + i, "street " + i);
+    }
+
+    @Benchmark
+    public Long createAccount_cached() {
+        int i = hotOwner();
+        return cachedBank.createAccount("owner" + i, "street " + i);
+    }
+
+    @Benchmark
+    public Long findAccount_missing() {
+        return bank.findAccount("nobody" + hotOwner(), "nowhere");
+    }
+
+    @Benchmark
+    public Long findAccount_missing_cached() {
+        return cachedBank.findAccount("nobody" + hotOwner(), "nowhere");
+    }
+
+    private int hotOwner() {
+        // spread over the whole table, so the uncached lookups do not all hit the first rows of a scan
+        return ThreadLocalRandom.current().nextInt(HOT_OWNERS) * (accounts / HOT_OWNERS);
+    }
+}
@@ -0,0 +1,105 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.OperationCountBackfill;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * findByEmptyHistory and findByMostOperations over a large history: every account but EMPTY_ACCOUNTS has
+ * operationsPerAccount operations, the first one has one more. Both return only a few accounts, so the time is spent
+ * finding them rather than loading them. findByMostFrequentType is measured against the GROUP BY over an account's
+ * history it ran before the per-type counters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+// H2 would otherwise answer the repeated, unchanged query from the result of the previous call
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF",
+        "-Djakarta.persistence.jdbc.url=jdbc:h2:mem:demo;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class OperationCountBenchmark {
+    private static final int EMPTY_ACCOUNTS = 10;
+    private static final long FIRST_ACCOUNT_ID = 100_000_000L;
+    private static final long FIRST_OPERATION_ID = 1_000_000_000L;
+
+    @Param({"100000"})
+    public int accounts;
+
+    @Param({"20"})
+    public int operationsPerAccount;
+
+    private AccountRepository accountRepository;
+    private AccountOperationRepository operationRepository;
+
+    @Setup
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        operationRepository = new AccountOperationRepositoryImpl();
+
+        BenchmarkData.clear();
+        BenchmarkData.insertAccounts(accounts, FIRST_ACCOUNT_ID, BigDecimal.ZERO);
+        BenchmarkData.insertOperations(accounts - EMPTY_ACCOUNTS, FIRST_ACCOUNT_ID, operationsPerAccount, FIRST_OPERATION_ID);
+        BenchmarkData.insertOperations(1, FIRST_ACCOUNT_ID, 1, FIRST_OPERATION_ID - 1);
+        // the bulk inserts bypass the repositories, the counts are filled in as for an existing database
+        OperationCountBackfill.run(OperationCountBackfill.DEFAULT_CHUNK_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public List<Account> findByEmptyHistory() {
+        return accountRepository.findByEmptyHistory();
+    }
+
+    @Benchmark
+    public List<Account> findByMostOperations() {
+        return accountRepository.findByMostOperations();
+    }
+
+    @Benchmark
+    public OperationType findByMostFrequentType() {
+        return operationRepository.findByMostFrequentType(randomAccount());
+    }
+
+    @Benchmark
+    public OperationType findByMostFrequentType_aggregate() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            return em.createQuery("SELECT ao.type FROM AccountOperation ao WHERE ao.account.id = :accountId " +
+                            "GROUP BY ao.type ORDER BY COUNT(ao) DESC", OperationType.class)
+                    .setParameter("accountId", randomAccount())
+                    .setMaxResults(1)
+                    .getSingleResult();
+        }
+    }
+
+    private long randomAccount() {
+        return FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts - EMPTY_ACCOUNTS);
+    }
+}
@@ -0,0 +1,107 @@
+package demo.task1;
+
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationView;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.Page;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entities against projections for the reads of one account: its balance, its whole history and the newest page of
+ * it. The *Entity benchmarks are the reads as they were, the balance through findById, the history as AccountOperation
+ * entities. Run with -prof gc, gc.alloc.rate.norm is the allocation per read. With 1000 accounts the shared cache holds
+ * every account the entity reads need, with 100000 most of them have to be read from the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+// H2 would otherwise answer the repeated, unchanged query from the result of the previous call
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF",
+        "-Djakarta.persistence.jdbc.url=jdbc:h2:mem:demo;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;OPTIMIZE_REUSE_RESULTS=FALSE"})
+public class ProjectionBenchmark {
+    private static final int OPERATIONS_PER_ACCOUNT = 10;
+    private static final int PAGE_SIZE = 20;
+    private static final long FIRST_ACCOUNT_ID = 100_000_000L;
+    private static final long FIRST_OPERATION_ID = 1_000_000_000L;
+
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    private AccountRepository accountRepository;
+    private BankImpl bank;
+    private Date from;
+    private Date to;
+
+    @Setup
+    public void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        bank = new BankImpl(accountRepository, new AccountOperationRepositoryImpl());
+
+        BenchmarkData.clear();
+        BenchmarkData.insertAccounts(accounts, FIRST_ACCOUNT_ID, BigDecimal.TEN);
+        BenchmarkData.insertOperations(accounts, FIRST_ACCOUNT_ID, OPERATIONS_PER_ACCOUNT, FIRST_OPERATION_ID);
+        from = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(OPERATIONS_PER_ACCOUNT + 1));
+        to = new Date(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public BigDecimal balanceEntity() {
+        return accountRepository.findById(randomAccount()).orElseThrow().getBalance();
+    }
+
+    @Benchmark
+    public BigDecimal balanceProjection() {
+        return bank.getBalance(randomAccount());
+    }
+
+    @Benchmark
+    public List<AccountOperation> historyEntity() {
+        return bank.findByDateRange(randomAccount(), from, to);
+    }
+
+    @Benchmark
+    public List<OperationView> historyProjection() {
+        return bank.findHistory(randomAccount(), from, to);
+    }
+
+    @Benchmark
+    public Page<AccountOperation> pageEntity() {
+        return bank.findOperations(randomAccount(), null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public Page<OperationView> pageProjection() {
+        return bank.findHistory(randomAccount(), null, PAGE_SIZE);
+    }
+
+    private Long randomAccount() {
+        return FIRST_ACCOUNT_ID + ThreadLocalRandom.current().nextInt(accounts);
+    }
+}
@@ -0,0 +1,105 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.OperationJournal;
+import demo.task1.repositories.impl.WriteBehindOperationRepository;
+import demo.task1.services.impl.BankImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution of deposits and transfers, four threads in STRIPED mode, with the operation rows written in the
+ * posting's transaction and written behind through an OperationJournal. SampleTime reports the percentiles, p0.99 is
+ * the one the journal is for. The in-memory H2 commits without an fsync, so the journal's fsync is the only one and
+ * p0.50 rises by what it costs, with the force left out write-behind beats the synchronous p0.50 as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx3g", "-Declipselink.logging.level=OFF"})
+public class WriteBehindBenchmark {
+    private static final int ACCOUNTS = 1000;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1_000_000_000L);
+
+    @Param({"false", "true"})
+    public boolean writeBehind;
+
+    private BankImpl bank;
+    private List<Long> ids;
+    private Path directory;
+    private OperationJournal journal;
+
+    @Setup
+    public void setup() throws IOException {
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        AccountOperationRepository operationRepository = new AccountOperationRepositoryImpl();
+        if (writeBehind) {
+            directory = Files.createTempDirectory("journal");
+            journal = new OperationJournal(directory.resolve("operations.journal"));
+            operationRepository = new WriteBehindOperationRepository(new AccountOperationRepositoryImpl(), journal);
+        }
+        bank = new BankImpl(accountRepository, operationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.STRIPED);
+
+        BenchmarkData.clear();
+        ids = BenchmarkData.createAccounts(accountRepository, ACCOUNTS, OPENING_BALANCE);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        if (journal != null) {
+            journal.flush(Duration.ofMinutes(1));
+            journal.close();
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+        BenchmarkData.clear();
+    }
+
+    @Benchmark
+    public void deposit() {
+        bank.deposit(randomId(), BigDecimal.ONE);
+    }
+
+    @Benchmark
+    public void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int from = random.nextInt(ids.size());
+        int to = (from + 1 + random.nextInt(ids.size() - 1)) % ids.size();
+        bank.transfer(ids.get(from), ids.get(to), BigDecimal.ONE, "benchmark");
+    }
+
+    private Long randomId() {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
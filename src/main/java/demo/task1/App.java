@@ -7,8 +7,11 @@ import demo.task1.repositories.AccountOperationRepository;
 import demo.task1.repositories.AccountRepository;
 import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
 import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.CachingAccountRepository;
+import demo.task1.services.AccountBalance;
 import demo.task1.services.Bank;
 import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.TopBalances;
 
 import javax.sound.midi.SysexMessage;
 import java.io.IOException;
@@ -26,9 +29,10 @@ import java.util.logging.Logger;
 public class App {
     private static final Logger logger = Logger.getLogger(App.class.getName());
     private static final Scanner scanner = new Scanner(System.in);
-    private static final AccountRepository accountRepository = new AccountRepositoryImpl();
+    private static final AccountRepository accountRepository = new CachingAccountRepository(new AccountRepositoryImpl());
     private static final AccountOperationRepository accountOperationRepository = new AccountOperationRepositoryImpl();
-    private static final Bank bank = new BankImpl(accountRepository, accountOperationRepository);
+    private static final TopBalances topBalances = new TopBalances(accountRepository);
+    private static final Bank bank = createBank();
 
     static {
         try {
@@ -48,7 +52,14 @@ public class App {
         }
     }
 
+    private static Bank createBank() {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setTopBalances(topBalances);
+        return bank;
+    }
+
     public static void main(String[] args) {
+        topBalances.rebuild();
         Long clientID = bank.createAccount("Krzysztof", "PB");
         Optional<Account> currentClient = accountRepository.findById(clientID);
 
@@ -105,6 +116,9 @@ public class App {
                 case 13:
                     findByMostFrequentType();
                     break;
+                case 14:
+                    findTopRichest();
+                    break;
                 case 0:
                     System.out.println("Thank you for using our bank. Goodbye!");
                     return;
@@ -131,6 +145,7 @@ public class App {
         System.out.println("9. That are the most wealthy");
         System.out.println("10. With empty history");
         System.out.println("11. With the most operations");
+        System.out.println("14. Top (...) richest");
 
         System.out.println("\n===== Find Operations =====");
         System.out.println("12. From (date) to (date)");
@@ -266,6 +281,19 @@ public class App {
         printAccounts(list);
     }
 
+    private static void findTopRichest(){
+        System.out.println("Enter the number of accounts: ");
+        int n = scanner.nextInt();
+        scanner.nextLine();
+
+        List<AccountBalance> list = bank.findTopRichest(n);
+        for(AccountBalance a: list){
+            System.out.println("\n" + a.getId());
+            System.out.println(a.getName());
+            System.out.println("   " + a.getBalance());
+        }
+    }
+
     private static void findByEmptyHistory(){
         List<Account> list = bank.findByEmptyHistory();
         printAccounts(list);
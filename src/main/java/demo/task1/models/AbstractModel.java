@@ -7,6 +7,7 @@ import lombok.Setter;
 import lombok.experimental.SuperBuilder;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Objects;
 
 @MappedSuperclass
@@ -16,6 +17,7 @@ import java.util.Objects;
 @Getter
 @Setter
 public class AbstractModel {
+    // the sequence and allocation size per entity are set up by BankSessionCustomizer
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE)
     private Long id;
@@ -26,15 +28,24 @@ public class AbstractModel {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    @Version
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
-        createdAt = LocalDateTime.now();
-        updatedAt = LocalDateTime.now();
+        createdAt = now();
+        updatedAt = now();
     }
 
     @PreUpdate
     protected void onUpdate() {
-        updatedAt = LocalDateTime.now();
+        updatedAt = now();
+    }
+
+    // the columns keep microseconds, a cached entity has to carry the value of its row or keyset cursors built from it
+    // compare wrong. Rows written around JPA take their timestamps from here too.
+    public static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     @Override
@@ -17,12 +17,26 @@ import java.util.List;
 @Getter
 
 @Entity
-@Table(name = "ACCOUNTS")
+// UX_ACCOUNTS_NAME_ADDRESS is the natural key of an account, createAccount/findAccount probe it and it keeps concurrent
+// createAccount calls idempotent. Its leading name column also serves findByNameStartWith on H2, PostgreSQL needs the
+// text_pattern_ops index from META-INF/schema-postgresql.sql for LIKE 'prefix%'.
+// IX_ACCOUNTS_BALANCE serves findByBalanceBetween and the MAX(balance) of findByTheRichest,
+// IX_ACCOUNTS_OPERATION_COUNT findByEmptyHistory and findByMostOperations.
+@Table(name = "ACCOUNTS", indexes = {
+        @Index(name = "UX_ACCOUNTS_NAME_ADDRESS", columnList = "name, address", unique = true),
+        @Index(name = "IX_ACCOUNTS_BALANCE", columnList = "balance"),
+        @Index(name = "IX_ACCOUNTS_OPERATION_COUNT", columnList = "operation_count")
+})
 
 @NamedQuery(
         name = "Account.findByNameAndAddress",
         query = "SELECT a FROM Account a WHERE a.name = :name AND a.address = :address"
 )
+// the balance alone, getBalance builds no Account for it
+@NamedQuery(
+        name = "Account.findBalance",
+        query = "SELECT a.balance FROM Account a WHERE a.id = :id"
+)
 @NamedQuery(
         name = "Account.findByNameStartWith",
         query = "SELECT a FROM Account a WHERE a.name LIKE :prefix"
@@ -31,17 +45,65 @@ import java.util.List;
         name = "Account.findByBalanceBetween",
         query = "SELECT a FROM Account a WHERE a.balance BETWEEN :min AND :max"
 )
+// keyset pages of the two finders above, in id order after :afterId
+@NamedQuery(
+        name = "Account.findByNameStartWithAfter",
+        query = "SELECT a FROM Account a WHERE a.name LIKE :prefix AND a.id > :afterId ORDER BY a.id"
+)
+@NamedQuery(
+        name = "Account.findByBalanceBetweenAfter",
+        query = "SELECT a FROM Account a WHERE a.balance BETWEEN :min AND :max AND a.id > :afterId ORDER BY a.id"
+)
 @NamedQuery(
         name = "Account.findByTheRichest",
         query = "SELECT a FROM Account a WHERE a.balance = (SELECT MAX(a2.balance) FROM Account a2)"
 )
+@NamedQuery(
+        name = "Account.findTopByBalance",
+        query = "SELECT a FROM Account a ORDER BY a.balance DESC, a.id"
+)
 @NamedQuery(
         name = "Account.findByEmptyHistory",
-        query = "SELECT a FROM Account a WHERE a.operations IS EMPTY"
+        query = "SELECT a FROM Account a WHERE a.operationCount = 0"
+)
+@NamedQuery(
+        name = "Account.findAllById",
+        query = "SELECT a FROM Account a WHERE a.id IN :ids ORDER BY a.id"
+)
+@NamedQuery(
+        name = "Account.updateById",
+        query = "UPDATE Account a SET a.name = :name, a.address = :address, a.balance = :balance, a.updatedAt = :updatedAt, " +
+                "a.version = a.version + 1 WHERE a.id = :id"
+)
+@NamedQuery(
+        name = "Account.updateByIdAndVersion",
+        query = "UPDATE Account a SET a.name = :name, a.address = :address, a.balance = :balance, a.updatedAt = :updatedAt, " +
+                "a.version = a.version + 1 WHERE a.id = :id AND a.version = :version"
+)
+@NamedQuery(
+        name = "Account.applyDelta",
+        query = "UPDATE Account a SET a.balance = a.balance + :delta, a.operationCount = a.operationCount + 1, " +
+                "a.depositCount = a.depositCount + :deposits, a.withdrawCount = a.withdrawCount + :withdrawals, " +
+                "a.transferInCount = a.transferInCount + :transfersIn, a.transferOutCount = a.transferOutCount + :transfersOut, a.updatedAt = :updatedAt, a.version = a.version + 1 WHERE a.id = :id"
+)
+@NamedQuery(
+        name = "Account.applyDeltaNonNegative",
+        query = "UPDATE Account a SET a.balance = a.balance + :delta, a.operationCount = a.operationCount + 1, " +
+                "a.depositCount = a.depositCount + :deposits, a.withdrawCount = a.withdrawCount + :withdrawals, " +
+                "a.transferInCount = a.transferInCount + :transfersIn, a.transferOutCount = a.transferOutCount + :transfersOut, a.updatedAt = :updatedAt, a.version = a.version + 1 " +
+                "WHERE a.id = :id AND a.balance + :delta >= 0"
+)
+// for accounts that are not managed by the unit of work recording the operation. The per-type parameters of this and
+// the applyDelta queries are count for the type of the operation and 0 for the others, see AccountRepositoryImpl.
+@NamedQuery(
+        name = "Account.incrementOperationCount",
+        query = "UPDATE Account a SET a.operationCount = a.operationCount + :count, " +
+                "a.depositCount = a.depositCount + :deposits, a.withdrawCount = a.withdrawCount + :withdrawals, " +
+                "a.transferInCount = a.transferInCount + :transfersIn, a.transferOutCount = a.transferOutCount + :transfersOut WHERE a.id = :id"
 )
 @NamedQuery(
         name = "Account.findByMostOperations",
-        query = "SELECT a FROM Account a WHERE SIZE(a.operations) = (SELECT MAX(SIZE(a2.operations)) FROM Account a2)"
+        query = "SELECT a FROM Account a WHERE a.operationCount = (SELECT MAX(a2.operationCount) FROM Account a2)"
 )
 
 public class Account extends AbstractModel{
@@ -49,9 +111,30 @@ public class Account extends AbstractModel{
     private String address;
     private BigDecimal balance = new BigDecimal(0);
 
-    @OneToMany(mappedBy = "account", cascade = CascadeType.ALL, orphanRemoval = true)
+    // number of operations of the account, kept up to date with every operation AccountOperationRepository records
+    @Column(name = "operation_count", nullable = false)
+    private long operationCount;
+
+    // the same count per OperationType, so findByMostFrequentType does not have to aggregate the history
+    @Column(name = "deposit_count", nullable = false)
+    private long depositCount;
+    @Column(name = "withdraw_count", nullable = false)
+    private long withdrawCount;
+    @Column(name = "transfer_in_count", nullable = false)
+    private long transferInCount;
+    @Column(name = "transfer_out_count", nullable = false)
+    private long transferOutCount;
+
+    // never read with the account, the history is read through AccountOperationRepository. Not merged and without
+    // orphan removal, so writing an account back never walks it, operations are removed with
+    // AccountOperationRepository.delete, which also keeps the counters above. Removing the account removes its history.
+    @OneToMany(mappedBy = "account", fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.REMOVE})
     private List<AccountOperation> operations = new ArrayList<>();
 
+    // newest operations read by AccountRepository.findById with FetchPlan.withLastOperations, null with other reads
+    @Transient
+    private List<AccountOperation> lastOperations;
+
     public Account(String name, String address, BigDecimal balance) {
         this.name = name;
         this.address = address;
@@ -63,4 +146,41 @@ public class Account extends AbstractModel{
         this.address = account.getAddress();
         this.balance = account.getBalance();
     }
+
+    public long getOperationCount(OperationType type) {
+        return switch (type) {
+            case DEPOSIT -> depositCount;
+            case WITHDRAW -> withdrawCount;
+            case TRANSFER_IN -> transferInCount;
+            case TRANSFER_OUT -> transferOutCount;
+        };
+    }
+
+    /**
+     * Adds count operations of the type to operationCount and to the counter of the type, a negative count removes them.
+     */
+    public void addOperations(OperationType type, long count) {
+        operationCount += count;
+        switch (type) {
+            case DEPOSIT -> depositCount += count;
+            case WITHDRAW -> withdrawCount += count;
+            case TRANSFER_IN -> transferInCount += count;
+            case TRANSFER_OUT -> transferOutCount += count;
+        }
+    }
+
+    /**
+     * @return the type of most of the account's operations, on a tie the one declared first in OperationType,
+     * null when the account has none
+     */
+    public OperationType getMostFrequentType() {
+        OperationType mostFrequent = null;
+        for (OperationType type : OperationType.values()) {
+            long count = getOperationCount(type);
+            if (count > 0 && (mostFrequent == null || count > getOperationCount(mostFrequent))) {
+                mostFrequent = type;
+            }
+        }
+        return mostFrequent;
+    }
 }
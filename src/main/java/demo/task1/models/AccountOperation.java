@@ -18,21 +18,69 @@ import java.time.LocalDateTime;
 @Getter
 
 @Entity
-@Table(name = "ACCOUNT_OPERATIONS")
-@Inheritance(strategy = InheritanceType.JOINED)
+// history of an account by date for findByDateRange, by type for OperationCountReconciliation, both also serve
+// account_id lookups
+@Table(name = "ACCOUNT_OPERATIONS", indexes = {
+        @Index(name = "IX_ACCOUNT_OPERATIONS_ACCOUNT_CREATED", columnList = "account_id, created_at"),
+        @Index(name = "IX_ACCOUNT_OPERATIONS_ACCOUNT_TYPE", columnList = "account_id, type")
+})
+// one table for every subtype, DTYPE tells them apart, so operation reads are a single query without joins
+@Inheritance(strategy = InheritanceType.SINGLE_TABLE)
 
 @NamedQuery(
         name = "Operation.findByDateRange",
-        query = "SELECT ao FROM AccountOperation ao WHERE ao.account.id = :accountId AND ao.createdAt BETWEEN :startDate AND :endDate"
+        query = "SELECT ao FROM AccountOperation ao WHERE ao.account.id = :accountId AND ao.createdAt BETWEEN :startDate AND :endDate " +
+                "ORDER BY ao.createdAt"
 )
+// keyset page of findByDateRange in (createdAt, id) order, after the operation at (:afterCreatedAt, :afterId).
+// The first condition on createdAt is implied by the OR, it is there so the range scan of the index starts at the cursor.
 @NamedQuery(
-        name = "Operation.findByMostFrequentType",
-        query = "SELECT ao.type FROM AccountOperation ao WHERE ao.account.id = :accountId GROUP BY ao.type ORDER BY COUNT(ao) DESC"
+        name = "Operation.findByDateRangeAfter",
+        query = "SELECT ao FROM AccountOperation ao WHERE ao.account.id = :accountId " +
+                "AND ao.createdAt >= :afterCreatedAt AND ao.createdAt <= :endDate " +
+                "AND (ao.createdAt > :afterCreatedAt OR ao.id > :afterId) ORDER BY ao.createdAt, ao.id"
+)
+
+// newest first, for the last operations of FetchPlan.withLastOperations
+@NamedQuery(
+        name = "Operation.findLastByAccount",
+        query = "SELECT ao FROM AccountOperation ao WHERE ao.account.id = :accountId ORDER BY ao.createdAt DESC, ao.id DESC"
+)
+
+// History as OperationView rows, read from the columns alone. Native because JPQL cannot select the transfer columns of
+// every operation: TREAT in the select list narrows the query to transfers, and ao.account.id joins ACCOUNTS.
+@SqlResultSetMapping(name = "OperationView", classes = @ConstructorResult(targetClass = OperationView.class, columns = {
+        @ColumnResult(name = "ID", type = Long.class),
+        @ColumnResult(name = "account_id", type = Long.class),
+        @ColumnResult(name = "TYPE", type = String.class),
+        @ColumnResult(name = "AMOUNT", type = BigDecimal.class),
+        @ColumnResult(name = "created_at", type = LocalDateTime.class),
+        @ColumnResult(name = "TITLE", type = String.class),
+        @ColumnResult(name = "other_account_id", type = Long.class)
+}))
+@NamedNativeQuery(
+        name = "Operation.viewByDateRange",
+        query = "SELECT ID, account_id, TYPE, AMOUNT, created_at, TITLE, other_account_id FROM ACCOUNT_OPERATIONS " +
+                "WHERE account_id = ?1 AND created_at BETWEEN ?2 AND ?3 ORDER BY created_at, ID",
+        resultSetMapping = "OperationView"
+)
+// newest first, the second one before the operation at (?2, ?3) like the keyset page of findByAccount
+@NamedNativeQuery(
+        name = "Operation.viewByAccount",
+        query = "SELECT ID, account_id, TYPE, AMOUNT, created_at, TITLE, other_account_id FROM ACCOUNT_OPERATIONS " +
+                "WHERE account_id = ?1 ORDER BY created_at DESC, ID DESC",
+        resultSetMapping = "OperationView"
+)
+@NamedNativeQuery(
+        name = "Operation.viewByAccountBefore",
+        query = "SELECT ID, account_id, TYPE, AMOUNT, created_at, TITLE, other_account_id FROM ACCOUNT_OPERATIONS " +
+                "WHERE account_id = ?1 AND created_at <= ?2 AND (created_at < ?2 OR ID < ?3) ORDER BY created_at DESC, ID DESC",
+        resultSetMapping = "OperationView"
 )
 
 public class AccountOperation extends AbstractModel {
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "account_id", nullable = false)
     private Account account;
     private BigDecimal amount;
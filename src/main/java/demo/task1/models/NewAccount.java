@@ -0,0 +1,33 @@
+package demo.task1.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * One row of a bulk account import, see AccountRepository.importAccounts.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class NewAccount {
+    private final String name;
+    private final String address;
+    private final BigDecimal openingBalance;
+
+    /**
+     * @param openingBalance balance of the account if it is created, null for zero
+     */
+    public static NewAccount of(String name, String address, BigDecimal openingBalance) {
+        if (name == null || address == null) {
+            throw new IllegalArgumentException("Name and address cannot be null");
+        }
+        return new NewAccount(name, address, openingBalance == null ? BigDecimal.ZERO : openingBalance);
+    }
+
+    @Override
+    public String toString() {
+        return name + ", " + address + ": " + openingBalance;
+    }
+}
@@ -0,0 +1,68 @@
+package demo.task1.models;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * One operation of a bulk write, see AccountRepository.applyOperations. The amount is stored as posted, the type tells
+ * whether it adds to the balance or takes from it.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class NewOperation {
+    private final Long accountId;
+    private final OperationType type;
+    private final BigDecimal amount;
+    private final Long otherAccountId;
+    private final String title;
+
+    public static NewOperation deposit(Long accountId, BigDecimal amount) {
+        return of(accountId, OperationType.DEPOSIT, amount, null, null);
+    }
+
+    public static NewOperation withdraw(Long accountId, BigDecimal amount) {
+        return of(accountId, OperationType.WITHDRAW, amount, null, null);
+    }
+
+    /**
+     * @return the TRANSFER_OUT operation of the source and the TRANSFER_IN operation of the destination, in that order
+     */
+    public static List<NewOperation> transfer(Long sourceId, Long destinationId, BigDecimal amount, String title) {
+        if (destinationId == null) {
+            throw new IllegalArgumentException("Account ID cannot be null");
+        }
+        return List.of(of(sourceId, OperationType.TRANSFER_OUT, amount, destinationId, title),
+                of(destinationId, OperationType.TRANSFER_IN, amount, sourceId, title));
+    }
+
+    private static NewOperation of(Long accountId, OperationType type, BigDecimal amount, Long otherAccountId,
+                                   String title) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("Account ID cannot be null");
+        }
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount cannot be null");
+        }
+        return new NewOperation(accountId, type, amount, otherAccountId, title);
+    }
+
+    public boolean isTransfer() {
+        return otherAccountId != null;
+    }
+
+    /**
+     * @return the change the operation makes to the balance of its account
+     */
+    public BigDecimal getDelta() {
+        return type == OperationType.DEPOSIT || type == OperationType.TRANSFER_IN ? amount : amount.negate();
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + amount + " on " + accountId + (isTransfer() ? " with " + otherAccountId : "");
+    }
+}
@@ -0,0 +1,35 @@
+package demo.task1.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Read-only copy of one row of ACCOUNT_OPERATIONS, built straight from the columns by the OperationView result set
+ * mapping of {@link AccountOperation}, without loading the operation or its accounts. title and otherAccountId are set
+ * for transfers only.
+ */
+@Getter
+@AllArgsConstructor
+public class OperationView {
+    private final Long id;
+    private final Long accountId;
+    private final OperationType type;
+    private final BigDecimal amount;
+    private final LocalDateTime createdAt;
+    private final String title;
+    private final Long otherAccountId;
+
+    // the constructor the result set mapping calls, TYPE comes as the name of the enum constant
+    public OperationView(Long id, Long accountId, String type, BigDecimal amount, LocalDateTime createdAt,
+                         String title, Long otherAccountId) {
+        this(id, accountId, OperationType.valueOf(type), amount, createdAt, title, otherAccountId);
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + type + " " + amount + " at " + createdAt + (title == null ? "" : " \"" + title + "\"");
+    }
+}
@@ -14,11 +14,11 @@ import lombok.experimental.SuperBuilder;
 @Getter
 
 @Entity
-@Table(name = "TRANSFER_OPERATIONS")
+// stored in ACCOUNT_OPERATIONS, the columns below are null for the other operations
 public class TransferOperation extends AccountOperation {
     private String title;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "other_account_id")
     private Account otherAccount;
 }
@@ -3,11 +3,13 @@ package demo.task1.repositories;
 import demo.task1.models.Account;
 import demo.task1.models.AccountOperation;
 import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface AccountOperationRepository extends GenericDao<AccountOperation, Long> {
 
@@ -18,5 +20,28 @@ public interface AccountOperationRepository extends GenericDao<AccountOperation,
 
     List<AccountOperation> findByAccount(Account account);
     List<AccountOperation> findByDateRange(Long id, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Page variants of the finders above: findByAccount newest first, findByDateRange oldest first, both keyed on
+     * createdAt and id. The stream variants return the operations in the same order of createdAt and have to be
+     * closed, see {@link GenericDao#streamAll()}.
+     */
+    Page<AccountOperation> findByAccount(Account account, Cursor after, int pageSize);
+    Page<AccountOperation> findByDateRange(Long id, LocalDateTime from, LocalDateTime to, Cursor after, int pageSize);
+    Stream<AccountOperation> streamByAccount(Account account);
+    Stream<AccountOperation> streamByDateRange(Long id, LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Read-only variants of findByDateRange and of the findByAccount page: the rows of the operations in the same order,
+     * read in one query without loading operations or accounts. An account without operations and an account that
+     * does not exist both give an empty result.
+     */
+    List<OperationView> findViewsByDateRange(Long id, LocalDateTime from, LocalDateTime to);
+    Page<OperationView> findViewsByAccount(Long id, Cursor after, int pageSize);
+
+    /**
+     * @return the type of most of the account's operations, on a tie the one declared first in OperationType,
+     * null when the account has no operations or does not exist
+     */
     OperationType findByMostFrequentType(Long id);
 }
\ No newline at end of file
@@ -1,18 +1,99 @@
 package demo.task1.repositories;
 
 import demo.task1.models.Account;
+import demo.task1.models.NewAccount;
+import demo.task1.models.NewOperation;
+import demo.task1.models.OperationType;
 
 import javax.swing.text.html.Option;
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface AccountRepository extends GenericDao<Account, Long> {
     Account create(String name, String address, BigDecimal balance);
     Optional<Account> findByNameAndAddress(String name, String address);
+
+    /**
+     * Creates the accounts of the rows whose (name, address) has no account yet, in one transaction and around the
+     * persistence context: the accounts are written with set-based JDBC, no AccountOperation is recorded for the opening
+     * balance and existing accounts keep their balance. Of rows repeating an owner the first one decides the balance.
+     *
+     * @return id of the account of every row, in order of the rows
+     */
+    List<Long> importAccounts(List<NewAccount> accounts);
+
+    /**
+     * findById reading what the plan names. With {@link FetchPlan#withLastOperations(int)} lastOperations of the
+     * account holds its newest operations, newest first, read with one more query. The operations collection of the
+     * account is not read with either plan.
+     */
+    Optional<Account> findById(Long id, FetchPlan plan);
+
+    /**
+     * @return the balance of the account, read without loading the account, empty when it does not exist
+     */
+    Optional<BigDecimal> findBalance(Long id);
     List<Account> findByNameStartWith(String prefix);
     List<Account> findByBalanceBetween(BigDecimal min, BigDecimal max);
+
+    /**
+     * Page variants of the finders above, in ascending id order. The stream variants return the same accounts in no
+     * particular order and have to be closed, see {@link GenericDao#streamAll()}.
+     */
+    Page<Account> findByNameStartWith(String prefix, Cursor after, int pageSize);
+    Page<Account> findByBalanceBetween(BigDecimal min, BigDecimal max, Cursor after, int pageSize);
+    Stream<Account> streamByNameStartWith(String prefix);
+    Stream<Account> streamByBalanceBetween(BigDecimal min, BigDecimal max);
+
     List<Account> findByTheRichest();
+
+    /**
+     * @return the limit accounts with the highest balance, richest first, equal balances in ascending id order
+     */
+    List<Account> findTopByBalance(int limit);
+
     List<Account> findByEmptyHistory();
     List<Account> findByMostOperations(); //findABaller would be a fire method name
+
+    /**
+     * Moves funds between two accounts in a single transaction. Both account rows are locked
+     * (SELECT ... FOR UPDATE) in ascending id order, so opposite transfers cannot deadlock,
+     * and both TransferOperation rows are written in the same commit.
+     *
+     * @throws IllegalArgumentException when an id is null or the account does not exist
+     * @throws IllegalStateException when the source account has insufficient funds
+     */
+    void transfer(Long sourceId, Long destinationId, BigDecimal amount, String title);
+
+    /**
+     * Adds delta to the balance with a single conditional UPDATE and records the AccountOperation
+     * in the same transaction. The operation stores the amount as posted, i.e. delta for a DEPOSIT
+     * and its negation for a WITHDRAW.
+     *
+     * @param requireNonNegative when true the update only applies if the resulting balance is not negative
+     * @return the account as updated
+     * @throws IllegalArgumentException when the id is null or the account does not exist
+     * @throws IllegalStateException when requireNonNegative is set and the balance is insufficient
+     */
+    Account applyDelta(Long id, BigDecimal delta, boolean requireNonNegative, OperationType type);
+
+    /**
+     * Records the operations and adds them to the balances and counters of their accounts in one transaction, around
+     * the persistence context: every account is updated once with the sum of its operations, in ascending id order, and
+     * the operation rows are inserted as one JDBC batch. Balances are not checked, the caller decides what may be
+     * withdrawn. The accounts are dropped from the shared cache once the transaction commits, an account the joined
+     * unit of work already manages keeps its old state.
+     *
+     * @throws IllegalArgumentException when an account does not exist, nothing is written then
+     */
+    void applyOperations(List<NewOperation> operations);
+
+    /**
+     * Loads and locks (SELECT ... FOR UPDATE) the given accounts in ascending id order. Only useful inside
+     * a UnitOfWork, the locks are released when its transaction ends. Ids that do not exist are skipped.
+     */
+    List<Account> findAllByIdForUpdate(Collection<Long> ids);
 }
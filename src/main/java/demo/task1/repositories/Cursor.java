@@ -0,0 +1,32 @@
+package demo.task1.repositories;
+
+import demo.task1.models.AbstractModel;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Position of a keyset paginated finder: the key of the last item of a {@link Page}. Finders ordered by id only use
+ * id, finders ordered by creation time use createdAt and id. Pass null for the first page.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Cursor {
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    public static Cursor after(AbstractModel last) {
+        return new Cursor(last.getCreatedAt(), last.getId());
+    }
+
+    public static Cursor at(LocalDateTime createdAt, Long id) {
+        return new Cursor(createdAt, id);
+    }
+
+    @Override
+    public String toString() {
+        return "after " + id + (createdAt == null ? "" : " created " + createdAt);
+    }
+}
@@ -0,0 +1,32 @@
+package demo.task1.repositories;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * What {@link AccountRepository#findById(Long, FetchPlan)} reads along with an account. Operations and the accounts
+ * of operations are fetched lazily, so without a plan an account is read alone.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class FetchPlan {
+    public static final FetchPlan ACCOUNT_ONLY = new FetchPlan(0);
+
+    private final int lastOperations;
+
+    /**
+     * @param count number of the newest operations read into Account.lastOperations
+     */
+    public static FetchPlan withLastOperations(int count) {
+        if (count < 1) {
+            throw new IllegalArgumentException("Operation count must be at least 1");
+        }
+        return new FetchPlan(count);
+    }
+
+    @Override
+    public String toString() {
+        return lastOperations == 0 ? "account only" : "account with last " + lastOperations + " operations";
+    }
+}
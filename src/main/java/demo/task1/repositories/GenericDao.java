@@ -2,6 +2,7 @@ package demo.task1.repositories;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface GenericDao<T,K> {
     void save(T t);
@@ -10,4 +11,17 @@ public interface GenericDao<T,K> {
     Optional<T> findById(K id);
     List<T> findAll();
     boolean exists(K id);
+
+    /**
+     * @param after cursor of the previous page, null for the first one
+     * @return up to pageSize entities in ascending id order
+     */
+    Page<T> findAll(Cursor after, int pageSize);
+
+    /**
+     * Every entity, read with a bounded JDBC fetch size on an EntityManager of its own that is released when the
+     * stream is closed, so close it, e.g. with try-with-resources. The entities are read-only copies that are not kept in
+     * any cache, changes made to them are never saved, and the stream does not see the changes of an active UnitOfWork.
+     */
+    Stream<T> streamAll();
 }
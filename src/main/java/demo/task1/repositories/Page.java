@@ -0,0 +1,42 @@
+package demo.task1.repositories;
+
+import demo.task1.models.AbstractModel;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset paginated finder. next is the cursor of the following page, null when this page is the last.
+ * Items added or removed behind the cursor do not shift later pages, unlike an OFFSET.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Page<T> {
+    private final List<T> items;
+    private final Cursor next;
+
+    /**
+     * @param rows up to pageSize + 1 rows read by the finder, the extra one only tells that another page follows
+     */
+    public static <T extends AbstractModel> Page<T> of(List<T> rows, int pageSize) {
+        return of(rows, pageSize, Cursor::after);
+    }
+
+    /**
+     * @param cursor key of a row, for rows that are not entities
+     */
+    public static <T> Page<T> of(List<T> rows, int pageSize, Function<T, Cursor> cursor) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<T> items = List.copyOf(rows.subList(0, pageSize));
+        return new Page<>(items, cursor.apply(items.get(pageSize - 1)));
+    }
+
+    public boolean isLast() {
+        return next == null;
+    }
+}
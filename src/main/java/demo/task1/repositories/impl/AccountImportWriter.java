@@ -0,0 +1,212 @@
+package demo.task1.repositories.impl;
+
+import demo.task1.models.AbstractModel;
+import demo.task1.models.NewAccount;
+import demo.task1.utils.BankSessionCustomizer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.persistence.sessions.Session;
+import org.postgresql.PGConnection;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * JDBC side of {@link AccountRepositoryImpl#importAccounts(List)}, working on the connection of the transaction of the
+ * given EntityManager.
+ * <p>
+ * The owners of the rows that already have an account are found with one query joining ACCOUNTS with the names and
+ * addresses passed as arrays. The missing accounts are written with COPY on PostgreSQL and with one INSERT ... SELECT
+ * from arrays on other databases. Their ids are reserved from ACCOUNT_SEQ the way EclipseLink reserves them, every value of the
+ * sequence stands for the allocationSize ids up to and including it, so they never meet the ids EclipseLink hands out.
+ * All values a chunk needs are drawn with one statement.
+ */
+final class AccountImportWriter {
+    private static final String COLUMNS = "ID, NAME, ADDRESS, BALANCE, OPERATION_COUNT, DEPOSIT_COUNT, WITHDRAW_COUNT, " +
+            "TRANSFER_IN_COUNT, TRANSFER_OUT_COUNT, CREATED_AT, UPDATED_AT, VERSION";
+
+    private static final String FIND_EXISTING = "SELECT a.ID, a.NAME, a.ADDRESS FROM ACCOUNTS a " +
+            "JOIN UNNEST(?, ?) AS k(NAME, ADDRESS) ON a.NAME = k.NAME AND a.ADDRESS = k.ADDRESS";
+
+    private static final String INSERT = "INSERT INTO ACCOUNTS (" + COLUMNS + ") " +
+            "SELECT k.ID, k.NAME, k.ADDRESS, k.BALANCE, 0, 0, 0, 0, 0, ?, ?, 1 " +
+            "FROM UNNEST(?, ?, ?, ?) AS k(ID, NAME, ADDRESS, BALANCE)";
+
+    private static final Logger logger = Logger.getLogger(AccountImportWriter.class.getName());
+
+    private record Owner(String name, String address) {
+    }
+
+    private final Connection connection;
+    private final boolean postgres;
+    private final int allocationSize;
+
+    AccountImportWriter(EntityManager em) {
+        // the connection of the transaction is only bound once EclipseLink is told to begin it
+        em.unwrap(org.eclipse.persistence.sessions.UnitOfWork.class).beginEarlyTransaction();
+        Session session = em.unwrap(Session.class);
+        this.connection = em.unwrap(Connection.class);
+        this.postgres = session.getDatasourcePlatform().isPostgreSQL();
+        this.allocationSize = session.getLogin().getSequence(BankSessionCustomizer.ACCOUNT_SEQUENCE).getPreallocationSize();
+    }
+
+    /**
+     * @return id of the account of every row, in order of the rows
+     */
+    List<Long> importAccounts(List<NewAccount> rows) {
+        try {
+            // the first row of an owner decides the opening balance
+            Map<Owner, NewAccount> owners = new LinkedHashMap<>();
+            for (NewAccount row : rows) {
+                owners.putIfAbsent(new Owner(row.getName(), row.getAddress()), row);
+            }
+
+            Map<Owner, Long> ids = findExisting(owners.keySet());
+            List<NewAccount> missing = new ArrayList<>();
+            owners.forEach((owner, row) -> {
+                if (!ids.containsKey(owner)) {
+                    missing.add(row);
+                }
+            });
+
+            List<Long> newIds = reserveIds(missing.size());
+            for (int i = 0; i < missing.size(); i++) {
+                NewAccount row = missing.get(i);
+                ids.put(new Owner(row.getName(), row.getAddress()), newIds.get(i));
+            }
+            if (postgres) {
+                copy(missing, newIds);
+            } else {
+                insert(missing, newIds);
+            }
+            logger.fine("Accounts imported: " + rows.size() + " rows, " + missing.size() + " created");
+
+            List<Long> result = new ArrayList<>(rows.size());
+            for (NewAccount row : rows) {
+                result.add(ids.get(new Owner(row.getName(), row.getAddress())));
+            }
+            return result;
+        } catch (SQLException | IOException e) {
+            throw new PersistenceException("Account import failed", e);
+        }
+    }
+
+    private Map<Owner, Long> findExisting(Iterable<Owner> owners) throws SQLException {
+        List<String> names = new ArrayList<>();
+        List<String> addresses = new ArrayList<>();
+        owners.forEach(owner -> {
+            names.add(owner.name());
+            addresses.add(owner.address());
+        });
+
+        Map<Owner, Long> ids = new HashMap<>();
+        Array nameArray = connection.createArrayOf("varchar", names.toArray());
+        Array addressArray = connection.createArrayOf("varchar", addresses.toArray());
+        try (PreparedStatement statement = connection.prepareStatement(FIND_EXISTING)) {
+            statement.setArray(1, nameArray);
+            statement.setArray(2, addressArray);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    ids.put(new Owner(rs.getString(2), rs.getString(3)), rs.getLong(1));
+                }
+            }
+        } finally {
+            nameArray.free();
+            addressArray.free();
+        }
+        return ids;
+    }
+
+    private List<Long> reserveIds(int count) throws SQLException {
+        List<Long> ids = new ArrayList<>(count);
+        if (count == 0) {
+            return ids;
+        }
+
+        String sql = postgres
+                ? "SELECT nextval('" + BankSessionCustomizer.ACCOUNT_SEQUENCE + "') FROM generate_series(1, ?)"
+                : "SELECT NEXT VALUE FOR " + BankSessionCustomizer.ACCOUNT_SEQUENCE + " FROM SYSTEM_RANGE(1, ?)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, (count + allocationSize - 1) / allocationSize);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    long last = rs.getLong(1);
+                    for (long id = last - allocationSize + 1; id <= last && ids.size() < count; id++) {
+                        ids.add(id);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    private void insert(List<NewAccount> rows, List<Long> ids) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        Object[] names = new Object[rows.size()];
+        Object[] addresses = new Object[rows.size()];
+        Object[] balances = new Object[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            names[i] = rows.get(i).getName();
+            addresses[i] = rows.get(i).getAddress();
+            balances[i] = rows.get(i).getOpeningBalance();
+        }
+        Timestamp now = Timestamp.valueOf(AbstractModel.now());
+        Array idArray = connection.createArrayOf("bigint", ids.toArray());
+        Array nameArray = connection.createArrayOf("varchar", names);
+        Array addressArray = connection.createArrayOf("varchar", addresses);
+        Array balanceArray = connection.createArrayOf("numeric", balances);
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            statement.setTimestamp(1, now);
+            statement.setTimestamp(2, now);
+            statement.setArray(3, idArray);
+            statement.setArray(4, nameArray);
+            statement.setArray(5, addressArray);
+            statement.setArray(6, balanceArray);
+            statement.executeUpdate();
+        } finally {
+            idArray.free();
+            nameArray.free();
+            addressArray.free();
+            balanceArray.free();
+        }
+    }
+
+    private void copy(List<NewAccount> rows, List<Long> ids) throws SQLException, IOException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = AbstractModel.now();
+        StringBuilder csv = new StringBuilder(rows.size() * 64);
+        for (int i = 0; i < rows.size(); i++) {
+            NewAccount row = rows.get(i);
+            csv.append(ids.get(i)).append(',');
+            quote(csv, row.getName()).append(',');
+            quote(csv, row.getAddress()).append(',');
+            csv.append(row.getOpeningBalance().toPlainString()).append(",0,0,0,0,0,")
+                    .append(now).append(',').append(now).append(",1\n");
+        }
+        connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY ACCOUNTS (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+    }
+
+    private static StringBuilder quote(StringBuilder csv, String value) {
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
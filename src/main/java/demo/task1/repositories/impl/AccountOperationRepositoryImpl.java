@@ -2,18 +2,29 @@ package demo.task1.repositories.impl;
 
 import demo.task1.models.TransferOperation;
 import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
 import demo.task1.models.Account;
 import demo.task1.models.AccountOperation;
 import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class AccountOperationRepositoryImpl extends GenericDaoImpl<AccountOperation, Long> implements AccountOperationRepository {
 
@@ -25,7 +36,7 @@ public class AccountOperationRepositoryImpl extends GenericDaoImpl<AccountOperat
                 .type(type)
                 .build();
 
-        save(operation);
+        record(operation);
         return operation;
     }
 
@@ -39,42 +50,149 @@ public class AccountOperationRepositoryImpl extends GenericDaoImpl<AccountOperat
                 .title(title)
                 .build();
 
-        save(operation);
+        record(operation);
         return operation;
     }
 
+    @Override
+    public void delete(AccountOperation operation) {
+        Account account = operation.getAccount();
+        inTransaction(em -> {
+            em.remove(em.merge(operation));
+            countOperations(em, account, operation.getType(), -1);
+        });
+    }
+
+    // persists the operation and counts it on its account in the same transaction
+    private void record(AccountOperation operation) {
+        Account account = operation.getAccount();
+        inTransaction(em -> {
+            em.persist(operation);
+            countOperations(em, account, operation.getType(), 1);
+        });
+    }
+
+    // counts an operation recorded elsewhere, see WriteBehindOperationRepository
+    void countOperation(Account account, OperationType type) {
+        inTransaction(em -> countOperations(em, account, type, 1));
+    }
+
+    private static void countOperations(EntityManager em, Account account, OperationType type, long count) {
+        if (em.contains(account)) {
+            // written with the rest of the account's changes on commit
+            account.addOperations(type, count);
+            return;
+        }
+
+        Query query = em.createNamedQuery("Account.incrementOperationCount")
+                .setParameter("count", count)
+                .setParameter("id", account.getId());
+        AccountRepositoryImpl.setOperationTypeCounts(query, type, count).executeUpdate();
+        // EclipseLink bumps the version with every bulk update, mirrored so the caller can still write back its account
+        account.addOperations(type, count);
+        if (account.getVersion() != null) {
+            account.setVersion(account.getVersion() + 1);
+        }
+    }
+
     @Override
     public List<AccountOperation> findByAccount(Account account) {
-        try (EntityManager em = getEntityManager()) {
-            CriteriaBuilder cb = em.getCriteriaBuilder();
-            CriteriaQuery<AccountOperation> cq = cb.createQuery(AccountOperation.class);
-            Root<AccountOperation> root = cq.from(AccountOperation.class);
+        return withEntityManager(em -> byAccount(em, account, null).getResultList());
+    }
+
+    @Override
+    public Page<AccountOperation> findByAccount(Account account, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return withEntityManager(em -> Page.of(byAccount(em, account, after)
+                .setMaxResults(pageSize + 1)
+                .getResultList(), pageSize));
+    }
+
+    @Override
+    public Stream<AccountOperation> streamByAccount(Account account) {
+        return stream(em -> byAccount(em, account, null));
+    }
 
-            cq.where(cb.equal(root.get("account"), account));
-            cq.orderBy(cb.desc(root.get("timestamp")));
+    // newest first, before the cursor when there is one
+    private static TypedQuery<AccountOperation> byAccount(EntityManager em, Account account, Cursor before) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<AccountOperation> cq = cb.createQuery(AccountOperation.class);
+        Root<AccountOperation> root = cq.from(AccountOperation.class);
 
-            return em.createQuery(cq).getResultList();
+        Predicate predicate = cb.equal(root.get("account"), account);
+        if (before != null) {
+            Path<LocalDateTime> createdAt = root.get("createdAt");
+            predicate = cb.and(predicate, cb.lessThanOrEqualTo(createdAt, before.getCreatedAt()),
+                    cb.or(cb.lessThan(createdAt, before.getCreatedAt()), cb.lessThan(root.get("id"), before.getId())));
         }
+        cq.where(predicate);
+        cq.orderBy(cb.desc(root.get("createdAt")), cb.desc(root.get("id")));
+
+        return em.createQuery(cq);
     }
 
     @Override
     public List<AccountOperation> findByDateRange(Long id, LocalDateTime from, LocalDateTime to) {
-        try(EntityManager em = getEntityManager()) {
-            return em.createNamedQuery("Operation.findByDateRange", AccountOperation.class)
-                    .setParameter("accountId", id)
-                    .setParameter("startDate", from)
-                    .setParameter("endDate", to)
-                    .getResultList();
-        }
+        return withEntityManager(em -> em.createNamedQuery("Operation.findByDateRange", AccountOperation.class)
+                .setParameter("accountId", id)
+                .setParameter("startDate", from)
+                .setParameter("endDate", to)
+                .getResultList());
     }
 
+    @Override
+    public Page<AccountOperation> findByDateRange(Long id, LocalDateTime from, LocalDateTime to, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return withEntityManager(em -> Page.of(em.createNamedQuery("Operation.findByDateRangeAfter", AccountOperation.class)
+                .setParameter("accountId", id)
+                .setParameter("afterCreatedAt", after == null ? from : after.getCreatedAt())
+                .setParameter("afterId", after == null ? Long.MIN_VALUE : after.getId())
+                .setParameter("endDate", to)
+                .setMaxResults(pageSize + 1)
+                .getResultList(), pageSize));
+    }
+
+    @Override
+    public Stream<AccountOperation> streamByDateRange(Long id, LocalDateTime from, LocalDateTime to) {
+        return stream(em -> em.createNamedQuery("Operation.findByDateRange", AccountOperation.class)
+                .setParameter("accountId", id)
+                .setParameter("startDate", from)
+                .setParameter("endDate", to));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<OperationView> findViewsByDateRange(Long id, LocalDateTime from, LocalDateTime to) {
+        return withEntityManager(em -> em.createNamedQuery("Operation.viewByDateRange")
+                .setParameter(1, id)
+                .setParameter(2, from)
+                .setParameter(3, to)
+                .getResultList());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Page<OperationView> findViewsByAccount(Long id, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return withEntityManager(em -> {
+            Query query = after == null
+                    ? em.createNamedQuery("Operation.viewByAccount").setParameter(1, id)
+                    : em.createNamedQuery("Operation.viewByAccountBefore")
+                            .setParameter(1, id)
+                            .setParameter(2, after.getCreatedAt())
+                            .setParameter(3, after.getId());
+            List<OperationView> rows = query.setMaxResults(pageSize + 1).getResultList();
+            return Page.of(rows, pageSize, view -> Cursor.at(view.getCreatedAt(), view.getId()));
+        });
+    }
+
+    // read from the per-type counters of the account, a primary key lookup the shared cache usually answers. The
+    // account does not leave this method, so it is read-only: the cached instance itself, no copy for the context.
     @Override
     public OperationType findByMostFrequentType(Long id) {
-        try(EntityManager em = getEntityManager()) {
-            return em.createNamedQuery("Operation.findByMostFrequentType", OperationType.class)
-                    .setParameter("accountId", id)
-                    .setMaxResults(1)
-                    .getSingleResult();
-        }
+        return withEntityManager(em -> {
+            Account account = em.find(Account.class, id, Map.of(QueryHints.READ_ONLY, HintValues.TRUE));
+            return account == null ? null : account.getMostFrequentType();
+        });
     }
 }
\ No newline at end of file
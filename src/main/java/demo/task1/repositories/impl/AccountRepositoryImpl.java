@@ -1,18 +1,37 @@
 package demo.task1.repositories.impl;
 
+import demo.task1.models.AbstractModel;
 import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.NewAccount;
+import demo.task1.models.NewOperation;
+import demo.task1.models.OperationType;
+import demo.task1.models.TransferOperation;
 import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.FetchPlan;
+import demo.task1.repositories.Page;
+import demo.task1.utils.UnitOfWork;
+import jakarta.persistence.Cache;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.NoResultException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.Query;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import org.eclipse.persistence.jpa.JpaCache;
 import org.eclipse.persistence.internal.libraries.asm.tree.TryCatchBlockNode;
+import org.eclipse.persistence.internal.sessions.UnitOfWorkImpl;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class AccountRepositoryImpl extends GenericDaoImpl<Account, Long> implements AccountRepository {
 
@@ -29,20 +48,41 @@ public class AccountRepositoryImpl extends GenericDaoImpl<Account, Long> impleme
             throw new IllegalArgumentException("Account cannot be null");
         }
 
-        if (!exists(account.getId())) {
-            throw new IllegalArgumentException("Account with ID " + account.getId() + " not found");
-        }
+        inTransaction(em -> {
+            // already managed by the current unit of work, its changes are written on commit
+            if (em.contains(account)) {
+                return;
+            }
 
-        try(EntityManager em = getEntityManager()) {
-            em.getTransaction().begin();
-            em.merge(account);
-            em.getTransaction().commit();
-        }
+            // existence check and write in one statement instead of exists() + merge,
+            // a detached account that carries a version is only written if nobody changed it since it was read
+            LocalDateTime now = AbstractModel.now();
+            Query query = em.createNamedQuery(account.getVersion() == null ? "Account.updateById" : "Account.updateByIdAndVersion")
+                    .setParameter("name", account.getName())
+                    .setParameter("address", account.getAddress())
+                    .setParameter("balance", account.getBalance())
+                    .setParameter("updatedAt", now)
+                    .setParameter("id", account.getId());
+            if (account.getVersion() != null) {
+                query.setParameter("version", account.getVersion());
+            }
+
+            if (query.executeUpdate() == 0) {
+                if (account.getVersion() != null && account.getId() != null && em.find(Account.class, account.getId()) != null) {
+                    throw new OptimisticLockException("Account with ID " + account.getId() + " was changed concurrently", null, account);
+                }
+                throw new IllegalArgumentException("Account with ID " + account.getId() + " not found");
+            }
+            account.setUpdatedAt(now);
+            if (account.getVersion() != null) {
+                account.setVersion(account.getVersion() + 1);
+            }
+        });
     }
 
     @Override
     public Optional<Account> findByNameAndAddress(String name, String address) {
-        try (EntityManager em = getEntityManager()) {
+        return withEntityManager(em -> {
             try {
                 return Optional.of(
                         em.createNamedQuery("Account.findByNameAndAddress", Account.class)
@@ -53,49 +93,265 @@ public class AccountRepositoryImpl extends GenericDaoImpl<Account, Long> impleme
             } catch (NoResultException e) {
                 return Optional.empty();
             }
+        });
+    }
+
+    @Override
+    public List<Long> importAccounts(List<NewAccount> accounts) {
+        if (accounts.isEmpty()) {
+            return List.of();
         }
+        return callInTransaction(em -> new AccountImportWriter(em).importAccounts(accounts));
     }
 
+    @Override
+    public Optional<Account> findById(Long id, FetchPlan plan) {
+        if (plan.getLastOperations() == 0) {
+            return findById(id);
+        }
 
-    public List<Account> findByNameStartWith(String prefix){
-        try(EntityManager em = getEntityManager()){
-            return em.createNamedQuery("Account.findByNameStartWith", Account.class)
-                    .setParameter("prefix", prefix + "%")
-                    .getResultList();
+        return withEntityManager(em -> {
+            Account account = em.find(Account.class, id);
+            if (account != null) {
+                account.setLastOperations(em.createNamedQuery("Operation.findLastByAccount", AccountOperation.class)
+                        .setParameter("accountId", id)
+                        .setMaxResults(plan.getLastOperations())
+                        .getResultList());
+            }
+            return Optional.ofNullable(account);
+        });
+    }
+
+    @Override
+    public Optional<BigDecimal> findBalance(Long id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Account ID cannot be null");
         }
+
+        return withEntityManager(em -> {
+            // outside a unit of work an account in the shared cache answers as em.find would, without copying it into
+            // the context. Evictions and bulk updates only invalidate the cached account, getObject would still return
+            // it. A unit of work may hold unflushed changes of the account, the query flushes them first.
+            if (!UnitOfWork.isActive()) {
+                JpaCache cache = em.getEntityManagerFactory().getCache().unwrap(JpaCache.class);
+                Account cached = (Account) cache.getObject(Account.class, id);
+                if (cached != null && cache.isValid(Account.class, id)) {
+                    return Optional.of(cached.getBalance());
+                }
+            }
+            return em.createNamedQuery("Account.findBalance", BigDecimal.class)
+                    .setParameter("id", id)
+                    .getResultList()
+                    .stream()
+                    .findFirst();
+        });
+    }
+
+    public List<Account> findByNameStartWith(String prefix){
+        return withEntityManager(em -> em.createNamedQuery("Account.findByNameStartWith", Account.class)
+                .setParameter("prefix", prefix + "%")
+                .getResultList());
     }
 
     @Override
     public List<Account> findByBalanceBetween(BigDecimal min, BigDecimal max) {
-        try(EntityManager em = getEntityManager()){
-            return em.createNamedQuery("Account.findByBalanceBetween", Account.class)
-                    .setParameter("min", min)
-                    .setParameter("max", max)
-                    .getResultList();
-        }
+        return withEntityManager(em -> em.createNamedQuery("Account.findByBalanceBetween", Account.class)
+                .setParameter("min", min)
+                .setParameter("max", max)
+                .getResultList());
+    }
+
+    @Override
+    public Page<Account> findByNameStartWith(String prefix, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return withEntityManager(em -> Page.of(em.createNamedQuery("Account.findByNameStartWithAfter", Account.class)
+                .setParameter("prefix", prefix + "%")
+                .setParameter("afterId", after == null ? Long.MIN_VALUE : after.getId())
+                .setMaxResults(pageSize + 1)
+                .getResultList(), pageSize));
+    }
+
+    @Override
+    public Page<Account> findByBalanceBetween(BigDecimal min, BigDecimal max, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return withEntityManager(em -> Page.of(em.createNamedQuery("Account.findByBalanceBetweenAfter", Account.class)
+                .setParameter("min", min)
+                .setParameter("max", max)
+                .setParameter("afterId", after == null ? Long.MIN_VALUE : after.getId())
+                .setMaxResults(pageSize + 1)
+                .getResultList(), pageSize));
+    }
+
+    @Override
+    public Stream<Account> streamByNameStartWith(String prefix) {
+        return stream(em -> em.createNamedQuery("Account.findByNameStartWith", Account.class)
+                .setParameter("prefix", prefix + "%"));
+    }
+
+    @Override
+    public Stream<Account> streamByBalanceBetween(BigDecimal min, BigDecimal max) {
+        return stream(em -> em.createNamedQuery("Account.findByBalanceBetween", Account.class)
+                .setParameter("min", min)
+                .setParameter("max", max));
     }
 
     @Override
     public List<Account> findByTheRichest() {
-        try(EntityManager em = getEntityManager()){
-            return em.createNamedQuery("Account.findByTheRichest", Account.class)
-                    .getResultList();
-        }
+        return withEntityManager(em -> em.createNamedQuery("Account.findByTheRichest", Account.class)
+                .getResultList());
+    }
+
+    @Override
+    public List<Account> findTopByBalance(int limit) {
+        return withEntityManager(em -> em.createNamedQuery("Account.findTopByBalance", Account.class)
+                .setMaxResults(limit)
+                .getResultList());
     }
 
     @Override
     public List<Account> findByEmptyHistory() {
-        try(EntityManager em = getEntityManager()){
-            return em.createNamedQuery("Account.findByEmptyHistory", Account.class)
-                    .getResultList();
-        }
+        return withEntityManager(em -> em.createNamedQuery("Account.findByEmptyHistory", Account.class)
+                .getResultList());
     }
 
     @Override
     public List<Account> findByMostOperations() {
-        try(EntityManager em = getEntityManager()){
-            return em.createNamedQuery("Account.findByMostOperations", Account.class)
-                    .getResultList();
+        return withEntityManager(em -> em.createNamedQuery("Account.findByMostOperations", Account.class)
+                .getResultList());
+    }
+
+    @Override
+    public void transfer(Long sourceId, Long destinationId, BigDecimal amount, String title) {
+        if (sourceId == null || destinationId == null) {
+            throw new IllegalArgumentException("Account ID cannot be null");
+        }
+
+        inTransaction(em -> {
+            // always lock the lower id first, two opposite transfers would deadlock otherwise
+            Account first = lockAccount(em, Math.min(sourceId, destinationId));
+            Account second = lockAccount(em, Math.max(sourceId, destinationId));
+            Account source = first.getId().equals(sourceId) ? first : second;
+            Account destination = first.getId().equals(sourceId) ? second : first;
+
+            if (source.getBalance().compareTo(amount) < 0) {
+                throw new IllegalStateException("Insufficient funds on account " + sourceId);
+            }
+
+            source.setBalance(source.getBalance().subtract(amount));
+            destination.setBalance(destination.getBalance().add(amount));
+            source.addOperations(OperationType.TRANSFER_OUT, 1);
+            destination.addOperations(OperationType.TRANSFER_IN, 1);
+
+            em.persist(TransferOperation.builder()
+                    .account(source)
+                    .otherAccount(destination)
+                    .amount(amount)
+                    .type(OperationType.TRANSFER_OUT)
+                    .title(title)
+                    .build());
+            em.persist(TransferOperation.builder()
+                    .account(destination)
+                    .otherAccount(source)
+                    .amount(amount)
+                    .type(OperationType.TRANSFER_IN)
+                    .title(title)
+                    .build());
+        });
+    }
+
+    @Override
+    public Account applyDelta(Long id, BigDecimal delta, boolean requireNonNegative, OperationType type) {
+        if (id == null) {
+            throw new IllegalArgumentException("Account ID cannot be null");
         }
+
+        return callInTransaction(em -> {
+            boolean managed = isManaged(em, id);
+            Query query = em.createNamedQuery(requireNonNegative ? "Account.applyDeltaNonNegative" : "Account.applyDelta")
+                    .setParameter("delta", delta)
+                    .setParameter("updatedAt", AbstractModel.now())
+                    .setParameter("id", id);
+            int rows = setOperationTypeCounts(query, type, 1).executeUpdate();
+
+            // the row is locked by the update above, so this read sees our own write. The update only invalidates the
+            // shared cache on commit, so the cached account is invalidated here and find reads the row. An account the
+            // unit of work already managed before the update still has its old balance and is refreshed instead, with
+            // one read either way. Not with the REFRESH hint, a refreshing find also reads the account's whole history.
+            if (!managed) {
+                em.getEntityManagerFactory().getCache().evict(Account.class, id);
+            }
+            Account account = em.find(Account.class, id);
+            if (account == null) {
+                throw new IllegalArgumentException("Account with ID " + id + " not found");
+            }
+            if (managed) {
+                em.refresh(account);
+            }
+            if (rows == 0) {
+                throw new IllegalStateException("Insufficient funds on account " + id);
+            }
+
+            em.persist(AccountOperation.builder()
+                    .account(account)
+                    .amount(type == OperationType.WITHDRAW ? delta.negate() : delta)
+                    .type(type)
+                    .build());
+            return account;
+        });
+    }
+
+    @Override
+    public void applyOperations(List<NewOperation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        Cache cache = callInTransaction(em -> {
+            new OperationBatchWriter(em).applyOperations(operations);
+            return em.getEntityManagerFactory().getCache();
+        });
+        // JDBC updates bypass the shared cache. Evicted once the new rows are committed, a read in between would cache
+        // the old row again.
+        UnitOfWork.afterCommit(() -> operations.forEach(o -> cache.evict(Account.class, o.getAccountId())));
+    }
+
+    @Override
+    public List<Account> findAllByIdForUpdate(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        return withEntityManager(em -> em.createNamedQuery("Account.findAllById", Account.class)
+                .setParameter("ids", ids)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .getResultList());
+    }
+
+    /**
+     * Sets the per-type parameters of Account.incrementOperationCount and the applyDelta queries: count for the type of
+     * the operation, 0 for the other types.
+     */
+    static Query setOperationTypeCounts(Query query, OperationType type, long count) {
+        return query.setParameter("deposits", type == OperationType.DEPOSIT ? count : 0L)
+                .setParameter("withdrawals", type == OperationType.WITHDRAW ? count : 0L)
+                .setParameter("transfersIn", type == OperationType.TRANSFER_IN ? count : 0L)
+                .setParameter("transfersOut", type == OperationType.TRANSFER_OUT ? count : 0L);
+    }
+
+    /**
+     * @return true when the persistence context of em already holds the account, without reading it
+     */
+    private static boolean isManaged(EntityManager em, Long id) {
+        UnitOfWorkImpl unitOfWork = em.unwrap(UnitOfWorkImpl.class);
+        return unitOfWork.getIdentityMapAccessorInstance().getIdentityMapManager()
+                .containsKey(id, Account.class, unitOfWork.getDescriptor(Account.class));
+    }
+
+    private Account lockAccount(EntityManager em, Long id) {
+        Account account = em.find(Account.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (account == null) {
+            throw new IllegalArgumentException("Account with ID " + id + " not found");
+        }
+        return account;
     }
 }
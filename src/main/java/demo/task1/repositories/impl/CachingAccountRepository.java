@@ -0,0 +1,370 @@
+package demo.task1.repositories.impl;
+
+import demo.task1.models.Account;
+import demo.task1.models.NewAccount;
+import demo.task1.models.NewOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.FetchPlan;
+import demo.task1.repositories.Page;
+import demo.task1.utils.BoundedCache;
+import demo.task1.utils.CacheStatistics;
+import demo.task1.utils.UnitOfWork;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of accounts by id, and of account ids by (name, address), in front of another AccountRepository.
+ * <p>
+ * findById answers from the cache and hands out a copy of the cached account, so callers may modify it and write it
+ * back with update as before. Copies carry no operations, read those through AccountOperationRepository.
+ * Inside a UnitOfWork every read goes to the delegate, so the transaction works on managed accounts, sees its own
+ * changes and holds its locks.
+ * <p>
+ * Writes drop the entry right away and store the written account once the transaction has committed, the newer
+ * version wins. A failed or rolled back write leaves the entry dropped. A stale entry can therefore only come from a
+ * change made around this repository: it lives at most ttl and cannot be written back, because updates check the
+ * version and a conflicting update evicts it.
+ * <p>
+ * findByNameAndAddress also remembers that no account exists for a (name, address), so repeated lookups of unknown
+ * owners do not reach the database either. Creating or renaming an account drops that negative entry. A cached id is
+ * checked against the account it points to before it is returned, so renamed or deleted accounts are looked up again.
+ * Both caches share the size and ttl below.
+ * <ul>
+ *     <li>bank.cache.accounts.maxSize - accounts kept, default 10000</li>
+ *     <li>bank.cache.accounts.ttlMillis - time an account is kept after it was loaded or written, default 30000</li>
+ * </ul>
+ */
+public class CachingAccountRepository implements AccountRepository {
+    private final AccountRepository delegate;
+    // cached in place of an id when there is no account with the (name, address)
+    private static final Long NO_ACCOUNT = -1L;
+
+    private final BoundedCache<Long, Account> cache;
+    private final BoundedCache<NaturalKey, Long> idsByNaturalKey;
+
+    private record NaturalKey(String name, String address) {
+        static NaturalKey of(Account account) {
+            return new NaturalKey(account.getName(), account.getAddress());
+        }
+
+        boolean matches(Account account) {
+            return name.equals(account.getName()) && address.equals(account.getAddress());
+        }
+    }
+
+    public CachingAccountRepository(AccountRepository delegate) {
+        this(delegate, Integer.getInteger("bank.cache.accounts.maxSize", 10_000),
+                Duration.ofMillis(Long.getLong("bank.cache.accounts.ttlMillis", 30_000)));
+    }
+
+    public CachingAccountRepository(AccountRepository delegate, int maxSize, Duration ttl) {
+        this.delegate = delegate;
+        this.cache = new BoundedCache<>(maxSize, ttl);
+        this.idsByNaturalKey = new BoundedCache<>(maxSize, ttl);
+    }
+
+    public CacheStatistics getStatistics() {
+        return cache.getStatistics();
+    }
+
+    public CacheStatistics getNaturalKeyStatistics() {
+        return idsByNaturalKey.getStatistics();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        idsByNaturalKey.invalidateAll();
+    }
+
+    @Override
+    public Optional<Account> findById(Long id) {
+        if (id == null || UnitOfWork.isActive()) {
+            return delegate.findById(id);
+        }
+
+        Account cached = cache.getOrLoad(id, key -> delegate.findById(key).map(CachingAccountRepository::copyOf).orElse(null));
+        return Optional.ofNullable(cached).map(CachingAccountRepository::copyOf);
+    }
+
+    // the last operations are not cached, only an account read alone comes from the cache
+    @Override
+    public Optional<Account> findById(Long id, FetchPlan plan) {
+        if (plan.getLastOperations() == 0) {
+            return findById(id);
+        }
+        return delegate.findById(id, plan);
+    }
+
+    // a cached account answers, a miss reads the balance alone and leaves the cache as it is
+    @Override
+    public Optional<BigDecimal> findBalance(Long id) {
+        if (id != null && !UnitOfWork.isActive()) {
+            Account cached = cache.get(id);
+            if (cached != null) {
+                return Optional.of(cached.getBalance());
+            }
+        }
+        return delegate.findBalance(id);
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        if (id != null && !UnitOfWork.isActive() && cache.get(id) != null) {
+            return true;
+        }
+        return delegate.exists(id);
+    }
+
+    @Override
+    public Account create(String name, String address, BigDecimal balance) {
+        Account account = delegate.create(name, address, balance);
+        written(account);
+        return account;
+    }
+
+    @Override
+    public void save(Account account) {
+        delegate.save(account);
+        written(account);
+    }
+
+    @Override
+    public void update(Account account) {
+        try {
+            delegate.update(account);
+        } catch (RuntimeException e) {
+            // most likely a stale version, the next read has to go to the database
+            if (account != null) {
+                evict(account.getId());
+            }
+            throw e;
+        }
+        written(account);
+    }
+
+    @Override
+    public void delete(Account account) {
+        try {
+            delegate.delete(account);
+        } finally {
+            if (account != null) {
+                evict(account.getId());
+            }
+        }
+    }
+
+    @Override
+    public void transfer(Long sourceId, Long destinationId, BigDecimal amount, String title) {
+        try {
+            delegate.transfer(sourceId, destinationId, amount, title);
+        } finally {
+            evict(sourceId);
+            evict(destinationId);
+        }
+    }
+
+    @Override
+    public Account applyDelta(Long id, BigDecimal delta, boolean requireNonNegative, OperationType type) {
+        Account account;
+        try {
+            account = delegate.applyDelta(id, delta, requireNonNegative, type);
+        } catch (RuntimeException e) {
+            evict(id);
+            throw e;
+        }
+        written(account);
+        return account;
+    }
+
+    @Override
+    public void applyOperations(List<NewOperation> operations) {
+        try {
+            delegate.applyOperations(operations);
+        } finally {
+            operations.stream().map(NewOperation::getAccountId).distinct().forEach(this::evict);
+        }
+    }
+
+    @Override
+    public List<Account> findAllByIdForUpdate(Collection<Long> ids) {
+        // the caller is about to change these accounts in its unit of work
+        ids.forEach(this::evict);
+        return delegate.findAllByIdForUpdate(ids);
+    }
+
+    @Override
+    public List<Account> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Optional<Account> findByNameAndAddress(String name, String address) {
+        if (name == null || address == null) {
+            return delegate.findByNameAndAddress(name, address);
+        }
+
+        NaturalKey key = new NaturalKey(name, address);
+        Long id;
+        if (UnitOfWork.isActive()) {
+            // what a unit of work reads may not be committed, so it only uses what is cached. A negative entry may
+            // predate an account committed a moment ago, a unit of work about to create one has to ask the database.
+            id = idsByNaturalKey.get(key);
+            if (id == null || NO_ACCOUNT.equals(id)) {
+                return delegate.findByNameAndAddress(name, address);
+            }
+        } else {
+            Account[] loaded = new Account[1];
+            id = idsByNaturalKey.getOrLoad(key, k -> {
+                loaded[0] = delegate.findByNameAndAddress(name, address).orElse(null);
+                return loaded[0] == null ? NO_ACCOUNT : loaded[0].getId();
+            });
+            if (loaded[0] != null) {
+                return Optional.of(loaded[0]);
+            }
+        }
+
+        if (NO_ACCOUNT.equals(id)) {
+            return Optional.empty();
+        }
+        Optional<Account> account = findById(id);
+        if (account.isPresent() && key.matches(account.get())) {
+            return account;
+        }
+        // renamed or deleted since the id was cached
+        idsByNaturalKey.invalidate(key);
+        return delegate.findByNameAndAddress(name, address);
+    }
+
+    @Override
+    public List<Long> importAccounts(List<NewAccount> accounts) {
+        List<Long> ids = delegate.importAccounts(accounts);
+        // the import writes past this cache, a negative entry of an imported owner would hide its new account.
+        // The ids are not cached, an import would push every hot entry out.
+        List<NaturalKey> keys = accounts.stream().map(a -> new NaturalKey(a.getName(), a.getAddress())).toList();
+        keys.forEach(idsByNaturalKey::invalidate);
+        // a concurrent read may cache NO_ACCOUNT again until our transaction commits
+        UnitOfWork.afterCommit(() -> keys.forEach(idsByNaturalKey::invalidate));
+        return ids;
+    }
+
+    @Override
+    public List<Account> findByNameStartWith(String prefix) {
+        return delegate.findByNameStartWith(prefix);
+    }
+
+    @Override
+    public List<Account> findByBalanceBetween(BigDecimal min, BigDecimal max) {
+        return delegate.findByBalanceBetween(min, max);
+    }
+
+    @Override
+    public Page<Account> findAll(Cursor after, int pageSize) {
+        return delegate.findAll(after, pageSize);
+    }
+
+    @Override
+    public Stream<Account> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public Page<Account> findByNameStartWith(String prefix, Cursor after, int pageSize) {
+        return delegate.findByNameStartWith(prefix, after, pageSize);
+    }
+
+    @Override
+    public Page<Account> findByBalanceBetween(BigDecimal min, BigDecimal max, Cursor after, int pageSize) {
+        return delegate.findByBalanceBetween(min, max, after, pageSize);
+    }
+
+    @Override
+    public Stream<Account> streamByNameStartWith(String prefix) {
+        return delegate.streamByNameStartWith(prefix);
+    }
+
+    @Override
+    public Stream<Account> streamByBalanceBetween(BigDecimal min, BigDecimal max) {
+        return delegate.streamByBalanceBetween(min, max);
+    }
+
+    @Override
+    public List<Account> findByTheRichest() {
+        return delegate.findByTheRichest();
+    }
+
+    @Override
+    public List<Account> findTopByBalance(int limit) {
+        return delegate.findTopByBalance(limit);
+    }
+
+    @Override
+    public List<Account> findByEmptyHistory() {
+        return delegate.findByEmptyHistory();
+    }
+
+    @Override
+    public List<Account> findByMostOperations() {
+        return delegate.findByMostOperations();
+    }
+
+    private void written(Account account) {
+        Long id = account.getId();
+        if (id == null) {
+            return;
+        }
+
+        cache.invalidate(id);
+        // drops a negative entry for the new (name, address) before the account becomes visible
+        NaturalKey key = NaturalKey.of(account);
+        if (key.name() != null && key.address() != null) {
+            idsByNaturalKey.invalidate(key);
+        }
+        // copied at commit, a unit of work may still change the account and its version is only set by then.
+        // A concurrent read may have cached the old row meanwhile, it has the older version and loses the merge.
+        UnitOfWork.afterCommit(() -> {
+            if (account.getVersion() != null) {
+                cache.merge(id, copyOf(account), CachingAccountRepository::newer);
+            }
+            if (key.name() != null && key.address() != null) {
+                idsByNaturalKey.put(key, id);
+            }
+        });
+    }
+
+    private void evict(Long id) {
+        if (id == null) {
+            return;
+        }
+
+        cache.invalidate(id);
+        // a concurrent read may cache the old row until our transaction ends
+        if (UnitOfWork.isActive()) {
+            UnitOfWork.afterCompletion(() -> cache.invalidate(id));
+        }
+    }
+
+    private static Account newer(Account cached, Account written) {
+        return cached.getVersion() != null && cached.getVersion() > written.getVersion() ? cached : written;
+    }
+
+    private static Account copyOf(Account account) {
+        Account copy = new Account(account);
+        copy.setId(account.getId());
+        copy.setVersion(account.getVersion());
+        copy.setOperationCount(account.getOperationCount());
+        copy.setDepositCount(account.getDepositCount());
+        copy.setWithdrawCount(account.getWithdrawCount());
+        copy.setTransferInCount(account.getTransferInCount());
+        copy.setTransferOutCount(account.getTransferOutCount());
+        copy.setCreatedAt(account.getCreatedAt());
+        copy.setUpdatedAt(account.getUpdatedAt());
+        return copy;
+    }
+}
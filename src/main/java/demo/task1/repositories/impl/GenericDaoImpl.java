@@ -1,26 +1,144 @@
 package demo.task1.repositories.impl;
 
+import demo.task1.models.AbstractModel;
+import demo.task1.repositories.Cursor;
 import demo.task1.repositories.GenericDao;
+import demo.task1.repositories.Page;
 import demo.task1.utils.JpaFactory;
+import demo.task1.utils.UnitOfWork;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import org.eclipse.persistence.config.HintValues;
+import org.eclipse.persistence.config.QueryHints;
+import org.eclipse.persistence.config.ResultSetConcurrency;
+import org.eclipse.persistence.config.ResultSetType;
+import org.eclipse.persistence.queries.ScrollableCursor;
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class GenericDaoImpl<T extends AbstractModel, K> implements GenericDao<T,K> {
+    // rows per JDBC round trip of the stream finders
+    private static final int FETCH_SIZE = Integer.getInteger("bank.stream.fetchSize", 1000);
 
-public class GenericDaoImpl<T,K> implements GenericDao<T,K> {
     private final Class<T> type;
 
     protected EntityManager getEntityManager() {
         return JpaFactory.getEntityManager();
     }
 
+    /**
+     * Runs read work on the EntityManager of the active {@link UnitOfWork}, or on a short-lived one when there is none.
+     */
+    protected <R> R withEntityManager(Function<EntityManager, R> work) {
+        EntityManager shared = UnitOfWork.currentEntityManager();
+        if (shared != null) {
+            return work.apply(shared);
+        }
+
+        try(EntityManager em = getEntityManager()) {
+            return work.apply(em);
+        }
+    }
+
+    /**
+     * Runs write work inside the transaction of the active {@link UnitOfWork}, or in its own EntityManager
+     * and transaction when there is none.
+     */
+    protected void inTransaction(Consumer<EntityManager> work) {
+        callInTransaction(em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
+    protected <R> R callInTransaction(Function<EntityManager, R> work) {
+        EntityManager shared = UnitOfWork.currentEntityManager();
+        if (shared != null) {
+            return work.apply(shared);
+        }
+
+        try(EntityManager em = getEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                R result = work.apply(em);
+                em.getTransaction().commit();
+                return result;
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs the query built by the given function on an EntityManager of its own and streams its results through a
+     * forward-only cursor, FETCH_SIZE rows at a time. The entities are read-only and neither registered in the
+     * EntityManager nor put into the shared cache, so nothing keeps the rows already handed out reachable however many
+     * are read. Closing the stream releases the cursor, the connection and the EntityManager.
+     */
+    @SuppressWarnings("unchecked")
+    protected <R> Stream<R> stream(Function<EntityManager, Query> query) {
+        EntityManager em = getEntityManager();
+        try {
+            // PostgreSQL only fetches in batches with autocommit off, so the cursor runs in a transaction on its connection
+            em.getTransaction().begin();
+            em.unwrap(org.eclipse.persistence.sessions.UnitOfWork.class).beginEarlyTransaction();
+            ScrollableCursor cursor = (ScrollableCursor) query.apply(em)
+                    .setHint(QueryHints.SCROLLABLE_CURSOR, HintValues.TRUE)
+                    .setHint(QueryHints.RESULT_SET_TYPE, ResultSetType.ForwardOnly)
+                    .setHint(QueryHints.RESULT_SET_CONCURRENCY, ResultSetConcurrency.ReadOnly)
+                    .setHint(QueryHints.JDBC_FETCH_SIZE, FETCH_SIZE)
+                    .setHint(QueryHints.READ_ONLY, HintValues.TRUE)
+                    .setHint(QueryHints.MAINTAIN_CACHE, HintValues.FALSE)
+                    .getSingleResult();
+
+            Iterator<R> rows = (Iterator<R>) (Iterator<?>) cursor;
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        try {
+                            cursor.close();
+                        } finally {
+                            close(em);
+                        }
+                    });
+        } catch (RuntimeException e) {
+            close(em);
+            throw e;
+        }
+    }
+
+    private static void close(EntityManager em) {
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+
+    protected static void checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+    }
+
     public GenericDaoImpl() {
         Type t = getClass().getGenericSuperclass();
         ParameterizedType pt = (ParameterizedType) t;
@@ -29,21 +147,12 @@ public class GenericDaoImpl<T,K> implements GenericDao<T,K> {
 
     @Override
     public void save(T entity) {
-        try(EntityManager em = getEntityManager()) {
-            em.getTransaction().begin();
-            em.persist(entity);
-            em.getTransaction().commit();
-        }
+        inTransaction(em -> em.persist(entity));
     }
 
     @Override
     public void delete(T entity) {
-        try(EntityManager em = getEntityManager()) {
-            em.getTransaction().begin();
-            entity = em.merge(entity);
-            em.remove(entity);
-            em.getTransaction().commit();
-        }
+        inTransaction(em -> em.remove(em.merge(entity)));
     }
 
     @Override
@@ -55,15 +164,12 @@ public class GenericDaoImpl<T,K> implements GenericDao<T,K> {
 
     @Override
     public Optional<T> findById(K id) {
-        try(EntityManager em = getEntityManager()) {
-            T dto = em.find(type, id);
-            return Optional.ofNullable(dto);
-        }
+        return withEntityManager(em -> Optional.ofNullable(em.find(type, id)));
     }
 
     @Override
     public List<T> findAll() {
-        try (EntityManager em = getEntityManager()) {
+        return withEntityManager(em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<T> cq = cb.createQuery(type);
             Root<T> rootEntry = cq.from(type);
@@ -71,11 +177,36 @@ public class GenericDaoImpl<T,K> implements GenericDao<T,K> {
             CriteriaQuery<T> all = cq.select(rootEntry);
             TypedQuery<T> allQuery = em.createQuery(all);
             return allQuery.getResultList();
-        }
+        });
+    }
+
+    @Override
+    public Page<T> findAll(Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return withEntityManager(em -> {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<T> cq = cb.createQuery(type);
+            Root<T> rootEntry = cq.from(type);
+
+            cq.select(rootEntry).orderBy(cb.asc(rootEntry.get("id")));
+            if (after != null) {
+                cq.where(cb.greaterThan(rootEntry.get("id"), after.getId()));
+            }
+            return Page.of(em.createQuery(cq).setMaxResults(pageSize + 1).getResultList(), pageSize);
+        });
+    }
+
+    @Override
+    public Stream<T> streamAll() {
+        return stream(em -> {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<T> cq = cb.createQuery(type);
+            return em.createQuery(cq.select(cq.from(type)));
+        });
     }
 
     public boolean exists(K id) {
-        try (EntityManager em = getEntityManager()) { // auto closes the EntityManager, insane
+        return withEntityManager(em -> {
             CriteriaBuilder cb = em.getCriteriaBuilder();
             CriteriaQuery<Long> cq = cb.createQuery(Long.class);
             Root<T> rootEntry = cq.from(type);
@@ -85,7 +216,7 @@ public class GenericDaoImpl<T,K> implements GenericDao<T,K> {
 
             Long count = em.createQuery(cq).getSingleResult();
             return count > 0;
-        }
+        });
     }
 }
 
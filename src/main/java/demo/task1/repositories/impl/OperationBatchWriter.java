@@ -0,0 +1,125 @@
+package demo.task1.repositories.impl;
+
+import demo.task1.models.AbstractModel;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.NewOperation;
+import demo.task1.models.OperationType;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.persistence.sessions.Session;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * JDBC side of {@link AccountRepositoryImpl#applyOperations(List)}, working on the connection of the transaction of the
+ * given EntityManager.
+ * <p>
+ * The operations are summed up per account first, so an account takes one UPDATE of its balance and counters however
+ * many operations it has. The updates go in ascending id order, like the locks of transfer, and are sent as one JDBC
+ * batch, the operation rows as another. Operation ids come from the session's preallocated AccountOperation sequence,
+ * the same ids EclipseLink hands out.
+ */
+final class OperationBatchWriter {
+    private static final String UPDATE = "UPDATE ACCOUNTS SET BALANCE = BALANCE + ?, " +
+            "OPERATION_COUNT = OPERATION_COUNT + ?, DEPOSIT_COUNT = DEPOSIT_COUNT + ?, WITHDRAW_COUNT = WITHDRAW_COUNT + ?, " +
+            "TRANSFER_IN_COUNT = TRANSFER_IN_COUNT + ?, TRANSFER_OUT_COUNT = TRANSFER_OUT_COUNT + ?, UPDATED_AT = ?, " +
+            "VERSION = VERSION + 1 WHERE ID = ?";
+
+    private static final String INSERT = "INSERT INTO ACCOUNT_OPERATIONS (ID, DTYPE, ACCOUNT_ID, AMOUNT, TYPE, TITLE, " +
+            "OTHER_ACCOUNT_ID, CREATED_AT, UPDATED_AT, VERSION) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1)";
+
+    // what the operations of one account add up to, counts indexed by OperationType ordinal
+    private static final class Change {
+        private BigDecimal delta = BigDecimal.ZERO;
+        private final long[] counts = new long[OperationType.values().length];
+    }
+
+    private final Connection connection;
+    private final Session session;
+
+    OperationBatchWriter(EntityManager em) {
+        // the connection of the transaction is only bound once EclipseLink is told to begin it
+        em.unwrap(org.eclipse.persistence.sessions.UnitOfWork.class).beginEarlyTransaction();
+        this.session = em.unwrap(Session.class);
+        this.connection = em.unwrap(Connection.class);
+    }
+
+    /**
+     * @throws IllegalArgumentException when an account does not exist, the caller's transaction has to roll back
+     */
+    void applyOperations(List<NewOperation> operations) {
+        Map<Long, Change> changes = new TreeMap<>();
+        for (NewOperation operation : operations) {
+            Change change = changes.computeIfAbsent(operation.getAccountId(), id -> new Change());
+            change.delta = change.delta.add(operation.getDelta());
+            change.counts[operation.getType().ordinal()]++;
+        }
+
+        Timestamp now = Timestamp.valueOf(AbstractModel.now());
+        try {
+            update(changes, now);
+            insert(operations, now);
+        } catch (SQLException e) {
+            throw new PersistenceException("Operations cannot be written", e);
+        }
+    }
+
+    private void update(Map<Long, Change> changes, Timestamp now) throws SQLException {
+        Long[] ids = changes.keySet().toArray(new Long[0]);
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE)) {
+            for (Long id : ids) {
+                Change change = changes.get(id);
+                long total = 0;
+                for (long count : change.counts) {
+                    total += count;
+                }
+                statement.setBigDecimal(1, change.delta);
+                statement.setLong(2, total);
+                statement.setLong(3, change.counts[OperationType.DEPOSIT.ordinal()]);
+                statement.setLong(4, change.counts[OperationType.WITHDRAW.ordinal()]);
+                statement.setLong(5, change.counts[OperationType.TRANSFER_IN.ordinal()]);
+                statement.setLong(6, change.counts[OperationType.TRANSFER_OUT.ordinal()]);
+                statement.setTimestamp(7, now);
+                statement.setLong(8, id);
+                statement.addBatch();
+            }
+
+            int[] rows = statement.executeBatch();
+            for (int i = 0; i < rows.length; i++) {
+                if (rows[i] == 0) {
+                    throw new IllegalArgumentException("Account with ID " + ids[i] + " not found");
+                }
+            }
+        }
+    }
+
+    private void insert(List<NewOperation> operations, Timestamp now) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+            for (NewOperation operation : operations) {
+                statement.setLong(1, ((Number) session.getNextSequenceNumberValue(AccountOperation.class)).longValue());
+                statement.setString(2, operation.isTransfer() ? "TransferOperation" : "AccountOperation");
+                statement.setLong(3, operation.getAccountId());
+                statement.setBigDecimal(4, operation.getAmount());
+                statement.setString(5, operation.getType().name());
+                statement.setString(6, operation.getTitle());
+                if (operation.isTransfer()) {
+                    statement.setLong(7, operation.getOtherAccountId());
+                } else {
+                    statement.setNull(7, Types.BIGINT);
+                }
+                statement.setTimestamp(8, now);
+                statement.setTimestamp(9, now);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,793 @@
+package demo.task1.repositories.impl;
+
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.eclipse.persistence.jpa.JpaEntityManager;
+import org.eclipse.persistence.sessions.Session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Local append-only file the operations of {@link WriteBehindOperationRepository} are made durable in before a background
+ * thread writes them to ACCOUNT_OPERATIONS in batches.
+ * <p>
+ * The operations of a posting are appended by {@link #prepare} before the posting commits. Appends are group committed:
+ * every appending thread writes its records and waits until they are forced to disk, one thread forces the file for
+ * everything written so far while the others wait for it, so concurrent postings share one fsync. Once the posting has
+ * committed {@link #commit} marks them committed and hands them to the writer, {@link #abort} marks those of a posting
+ * that rolled back. The marks are not forced themselves, the next fsync takes them along.
+ * <p>
+ * Every record carries a CRC, on opening the journal the records it holds are replayed and a torn record at its end,
+ * never acknowledged to anyone, is cut off. Committed operations are written again, those of rolled back postings are
+ * skipped. A posting whose mark did not reach the disk, the process died between its fsync and its mark, is decided
+ * by the operation counters of its accounts, which its transaction changed: it committed when its accounts count more
+ * operations of its types than ACCOUNT_OPERATIONS and the committed operations of the journal hold. Only when several
+ * postings of one account were in flight and not all of them committed can the counters not tell which did, the first
+ * ones in the journal are taken then and a warning names the accounts. The operations carry their id, taken from the
+ * operation sequence when they are recorded, and a row is only inserted if its id is not there yet, so replaying
+ * records that were already written is harmless. Once everything is written the file is truncated when it has grown
+ * past TRUNCATE_BYTES.
+ * <p>
+ * When more than maxPending operations wait to be written, committing blocks until the writer catches up
+ * ({@link Backpressure#BLOCK}) or the repository writes new operations itself ({@link Backpressure#WRITE_THROUGH}).
+ */
+public class OperationJournal implements AutoCloseable {
+
+    public enum Backpressure {
+        /** committing waits for the writer, after the posting committed, so no locks are held meanwhile */
+        BLOCK,
+        /** new operations are persisted in the transaction of their posting, as without the journal */
+        WRITE_THROUGH
+    }
+
+    /**
+     * One operation as journaled, otherAccountId and title are set for transfers only.
+     */
+    record Entry(long id, long accountId, OperationType type, BigDecimal amount, LocalDateTime createdAt,
+                 boolean transfer, Long otherAccountId, String title) {
+    }
+
+    /**
+     * The operations of one posting as returned by {@link #prepare}, for {@link #commit} or {@link #abort}.
+     */
+    static final class Prepared {
+        private final long posting;
+        private final List<Entry> entries;
+        // false when the journal could not be written, commit inserts the operations directly then
+        private final boolean journaled;
+        private boolean completed;
+
+        private Prepared(long posting, List<Entry> entries, boolean journaled) {
+            this.posting = posting;
+            this.entries = entries;
+            this.journaled = journaled;
+        }
+    }
+
+    // operations per account and type
+    private record Counter(long accountId, OperationType type) {
+    }
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_MAX_PENDING = 100_000;
+    static final long TRUNCATE_BYTES = 64L * 1024 * 1024;
+    // a longer length can only be a torn header, titles are VARCHAR(255)
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+    // wait before writing again after the database refused a batch
+    private static final long RETRY_MILLIS = 1000;
+    // record kinds, an operation of a posting or the mark of its outcome, the posting is the id of its first operation
+    private static final byte OPERATION = 0;
+    private static final byte COMMITTED = 1;
+    private static final byte ROLLED_BACK = 2;
+
+    // parameters in a SELECT list have no column to take their type from, PostgreSQL would read the strings and
+    // timestamps as text and refuse them, so every one is cast
+    private static final String INSERT = "INSERT INTO ACCOUNT_OPERATIONS (ID, DTYPE, ACCOUNT_ID, AMOUNT, TYPE, TITLE, " +
+            "OTHER_ACCOUNT_ID, CREATED_AT, UPDATED_AT, VERSION) SELECT CAST(? AS BIGINT), CAST(? AS VARCHAR(31)), " +
+            "CAST(? AS BIGINT), CAST(? AS NUMERIC), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), " +
+            "CAST(? AS TIMESTAMP), CAST(? AS TIMESTAMP), 1 WHERE NOT EXISTS (SELECT 1 FROM ACCOUNT_OPERATIONS WHERE ID = ?)";
+
+    private static final Logger logger = Logger.getLogger(OperationJournal.class.getName());
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int batchSize;
+    private final int maxPending;
+    private final Backpressure backpressure;
+    private final Session session;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private final Condition drainable = lock.newCondition();
+    private final Condition capacity = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+    // guarded by lock
+    private final ArrayDeque<Entry> pending = new ArrayDeque<>();
+    private long writePosition;
+    private long syncedPosition;
+    private boolean syncing;
+    private int inFlight;
+    private volatile boolean closed;
+    private long appended;
+    private long written;
+    private long fsyncs;
+    private long dropped;
+
+    public OperationJournal(Path file) {
+        this(file, DEFAULT_BATCH_SIZE, DEFAULT_MAX_PENDING, Backpressure.BLOCK);
+    }
+
+    /**
+     * Opens the journal, replays the operations it still holds and starts writing them.
+     *
+     * @param batchSize  most operations written to the database in one transaction
+     * @param maxPending operations journaled but not written yet from which backpressure applies
+     */
+    public OperationJournal(Path file, int batchSize, int maxPending, Backpressure backpressure) {
+        if (batchSize < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("batchSize and maxPending must be at least 1");
+        }
+        this.file = file;
+        this.batchSize = batchSize;
+        this.maxPending = maxPending;
+        this.backpressure = backpressure;
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            this.session = em.unwrap(JpaEntityManager.class).getServerSession();
+        }
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            resolve(replay());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open operation journal " + file, e);
+        }
+
+        this.writer = new Thread(this::drain, "operation-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public Backpressure getBackpressure() {
+        return backpressure;
+    }
+
+    /**
+     * @return operations journaled and not written to the database yet
+     */
+    public int getPending() {
+        lock.lock();
+        try {
+            return pending.size() + inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isFull() {
+        return getPending() >= maxPending;
+    }
+
+    /**
+     * @return operations of committed postings appended since the journal was opened, not counting the replayed ones
+     */
+    public long getAppended() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return operations written to the database since the journal was opened, replayed ones included
+     */
+    public long getWritten() {
+        lock.lock();
+        try {
+            return written;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getFsyncs() {
+        lock.lock();
+        try {
+            return fsyncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return operations given up on because their account was deleted before they were written
+     */
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long nextId() {
+        return ((Number) session.getNextSequenceNumberValue(AccountOperation.class)).longValue();
+    }
+
+    /**
+     * Appends the operations of a posting that has not committed yet and returns once they are on disk. They are only
+     * written to the database after {@link #commit}. When the journal cannot be written, commit writes them to the
+     * database directly instead.
+     */
+    Prepared prepare(List<Entry> entries) {
+        long posting = entries.get(0).id();
+        ByteBuffer records = encode(posting, entries);
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Operation journal " + file + " is closed");
+            }
+
+            // counted until the posting is decided, so the file is not truncated under them
+            inFlight += entries.size();
+            try {
+                long end = write(records);
+                sync(end);
+            } catch (IOException e) {
+                logger.severe("Operation journal " + file + " cannot be written, writing " + entries.size() +
+                        " operations directly once their posting committed: " + e.getMessage());
+                inFlight -= entries.size();
+                return new Prepared(posting, entries, false);
+            }
+            return new Prepared(posting, entries, true);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the operations of a posting that committed and hands them to the writer. With {@link Backpressure#BLOCK}
+     * this waits while maxPending operations wait to be written, after the commit, so no locks are held meanwhile.
+     */
+    void commit(Prepared prepared) {
+        if (prepared.completed) {
+            return;
+        }
+        prepared.completed = true;
+        if (!prepared.journaled) {
+            insert(prepared.entries);
+            return;
+        }
+
+        int count = prepared.entries.size();
+        lock.lock();
+        try {
+            mark(COMMITTED, prepared.posting);
+            while (backpressure == Backpressure.BLOCK && pending.size() >= maxPending && !closed) {
+                capacity.awaitUninterruptibly();
+            }
+            inFlight -= count;
+            if (closed) {
+                logger.warning("Operation journal " + file + " closed, " + count +
+                        " committed operations are written when it is opened again");
+                drained.signalAll();
+                return;
+            }
+            pending.addAll(prepared.entries);
+            appended += count;
+            drainable.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Marks the operations of a posting that rolled back, they are never written. Does nothing once the posting was
+     * committed.
+     */
+    void abort(Prepared prepared) {
+        if (prepared.completed) {
+            return;
+        }
+        prepared.completed = true;
+        if (!prepared.journaled) {
+            return;
+        }
+
+        lock.lock();
+        try {
+            mark(ROLLED_BACK, prepared.posting);
+            inFlight -= prepared.entries.size();
+            if (pending.isEmpty() && inFlight == 0) {
+                drained.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with lock held, a mark that cannot be written leaves the posting to be decided on replay
+    private void mark(byte outcome, long posting) {
+        try {
+            write(encodeMark(outcome, posting));
+        } catch (IOException e) {
+            logger.warning("Operation journal " + file + " cannot mark posting " + posting +
+                    ", it is decided when the journal is replayed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Waits until every operation appended so far is written to the database.
+     *
+     * @return false when the timeout elapsed first
+     */
+    public boolean flush(Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (!pending.isEmpty() || inFlight > 0) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = drained.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the writer once it has written what was appended. Operations it could not write stay in the file and are
+     * replayed when the journal is opened again.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            drainable.signalAll();
+            capacity.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+            channel.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // called with lock held, returns the position after the records
+    private long write(ByteBuffer records) throws IOException {
+        long position = writePosition;
+        while (records.hasRemaining()) {
+            position += channel.write(records, position);
+        }
+        writePosition = position;
+        return position;
+    }
+
+    // called with lock held, forces the file or waits for the thread already forcing it
+    private void sync(long end) throws IOException {
+        while (syncedPosition < end) {
+            if (syncing) {
+                synced.awaitUninterruptibly();
+                continue;
+            }
+
+            syncing = true;
+            long target = writePosition;
+            lock.unlock();
+            try {
+                channel.force(false);
+            } finally {
+                lock.lock();
+                syncing = false;
+                synced.signalAll();
+            }
+            syncedPosition = Math.max(syncedPosition, target);
+            fsyncs++;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    drainable.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                for (Entry entry : pending) {
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                insert(batch);
+            } catch (RuntimeException e) {
+                if (!writeWithoutOrphans(batch, e)) {
+                    if (closed) {
+                        logger.severe("Operation journal " + file + " closed with " + getPending() +
+                                " operations not written, they are replayed when it is opened again");
+                        return;
+                    }
+                    sleep();
+                    continue;
+                }
+            }
+
+            lock.lock();
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    pending.pollFirst();
+                }
+                capacity.signalAll();
+                if (pending.isEmpty() && inFlight == 0) {
+                    truncate();
+                    drained.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // the operations of accounts deleted meanwhile are dropped and the rest written, anything else is retried later
+    private boolean writeWithoutOrphans(List<Entry> batch, RuntimeException failure) {
+        Set<Long> ids = new HashSet<>();
+        batch.forEach(entry -> {
+            ids.add(entry.accountId());
+            if (entry.otherAccountId() != null) {
+                ids.add(entry.otherAccountId());
+            }
+        });
+
+        try {
+            Set<Long> existing;
+            try (EntityManager em = JpaFactory.getEntityManager()) {
+                existing = new HashSet<>(em.createQuery("SELECT a.id FROM Account a WHERE a.id IN :ids", Long.class)
+                        .setParameter("ids", ids)
+                        .getResultList());
+            }
+            List<Entry> valid = batch.stream().filter(entry -> references(entry, existing)).toList();
+            if (valid.size() == batch.size()) {
+                logger.warning("Journaled operations cannot be written, retrying: " + failure.getMessage());
+                return false;
+            }
+
+            insert(valid);
+            logger.warning("Dropped " + (batch.size() - valid.size()) + " journaled operations of deleted accounts");
+            lock.lock();
+            try {
+                dropped += batch.size() - valid.size();
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        } catch (RuntimeException e) {
+            logger.warning("Journaled operations cannot be written, retrying: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean references(Entry entry, Set<Long> existing) {
+        return existing.contains(entry.accountId())
+                && (entry.otherAccountId() == null || existing.contains(entry.otherAccountId()));
+    }
+
+    private void insert(List<Entry> entries) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                em.unwrap(org.eclipse.persistence.sessions.UnitOfWork.class).beginEarlyTransaction();
+                Connection connection = em.unwrap(Connection.class);
+                try (PreparedStatement statement = connection.prepareStatement(INSERT)) {
+                    for (Entry entry : entries) {
+                        Timestamp createdAt = Timestamp.valueOf(entry.createdAt());
+                        statement.setLong(1, entry.id());
+                        statement.setString(2, entry.transfer() ? "TransferOperation" : "AccountOperation");
+                        statement.setLong(3, entry.accountId());
+                        statement.setBigDecimal(4, entry.amount());
+                        statement.setString(5, entry.type().name());
+                        statement.setString(6, entry.title());
+                        if (entry.otherAccountId() == null) {
+                            statement.setNull(7, Types.BIGINT);
+                        } else {
+                            statement.setLong(7, entry.otherAccountId());
+                        }
+                        statement.setTimestamp(8, createdAt);
+                        statement.setTimestamp(9, createdAt);
+                        statement.setLong(10, entry.id());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                em.getTransaction().commit();
+            } catch (SQLException e) {
+                throw new PersistenceException("Journaled operations cannot be written", e);
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+        }
+
+        lock.lock();
+        try {
+            written += entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called with lock held once everything is written
+    private void truncate() {
+        if (syncing || writePosition < TRUNCATE_BYTES) {
+            return;
+        }
+        try {
+            channel.truncate(0);
+            writePosition = 0;
+            syncedPosition = 0;
+        } catch (IOException e) {
+            logger.warning("Operation journal " + file + " cannot be truncated: " + e.getMessage());
+        }
+    }
+
+    // reads the journal, the operations of committed postings become pending, returns those of undecided postings
+    private Map<Long, List<Entry>> replay() throws IOException {
+        Map<Long, List<Entry>> undecided = new LinkedHashMap<>();
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(8);
+        while (position + header.capacity() <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int crc = header.getInt();
+            if (length <= 0 || length > MAX_RECORD_BYTES || position + header.capacity() + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + header.capacity());
+            if (crc != checksum(payload.array())) {
+                break;
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload.array()));
+            byte kind = in.readByte();
+            long posting = in.readLong();
+            switch (kind) {
+                case OPERATION -> undecided.computeIfAbsent(posting, key -> new ArrayList<>()).add(decode(in));
+                case COMMITTED -> {
+                    List<Entry> entries = undecided.remove(posting);
+                    if (entries != null) {
+                        pending.addAll(entries);
+                    }
+                }
+                default -> undecided.remove(posting);
+            }
+            position += header.capacity() + length;
+        }
+
+        if (position < size) {
+            logger.warning("Operation journal " + file + " ends with " + (size - position) +
+                    " bytes of an unfinished record, cut off");
+            channel.truncate(position);
+        }
+        writePosition = position;
+        syncedPosition = position;
+        if (!pending.isEmpty()) {
+            logger.info("Operation journal " + file + " replays " + pending.size() + " operations");
+        }
+        return undecided;
+    }
+
+    // decides the postings without a mark by the operation counters of their accounts and marks them
+    private void resolve(Map<Long, List<Entry>> undecided) throws IOException {
+        if (undecided.isEmpty()) {
+            return;
+        }
+
+        Set<Long> accountIds = new HashSet<>();
+        undecided.values().forEach(entries -> entries.forEach(entry -> accountIds.add(entry.accountId())));
+        // operations counted on the accounts and not in ACCOUNT_OPERATIONS or pending yet, an account deleted
+        // meanwhile has none and its postings are dropped as they would be when written
+        Map<Counter, Long> unwritten = new HashMap<>();
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.createQuery("SELECT a.id, a.depositCount, a.withdrawCount, a.transferInCount, a.transferOutCount " +
+                            "FROM Account a WHERE a.id IN :ids", Object[].class)
+                    .setParameter("ids", accountIds)
+                    .getResultList()
+                    .forEach(row -> {
+                        long id = (Long) row[0];
+                        unwritten.put(new Counter(id, OperationType.DEPOSIT), (Long) row[1]);
+                        unwritten.put(new Counter(id, OperationType.WITHDRAW), (Long) row[2]);
+                        unwritten.put(new Counter(id, OperationType.TRANSFER_IN), (Long) row[3]);
+                        unwritten.put(new Counter(id, OperationType.TRANSFER_OUT), (Long) row[4]);
+                    });
+            em.createQuery("SELECT o.account.id, o.type, COUNT(o) FROM AccountOperation o " +
+                            "WHERE o.account.id IN :ids GROUP BY o.account.id, o.type", Object[].class)
+                    .setParameter("ids", accountIds)
+                    .getResultList()
+                    .forEach(row -> unwritten.merge(new Counter((Long) row[0], (OperationType) row[1]),
+                            -((Number) row[2]).longValue(), Long::sum));
+
+            List<Entry> committed = pending.stream().filter(entry -> accountIds.contains(entry.accountId())).toList();
+            Set<Long> written = committed.isEmpty() ? Set.of() : new HashSet<>(em.createQuery(
+                            "SELECT o.id FROM AccountOperation o WHERE o.id IN :ids", Long.class)
+                    .setParameter("ids", committed.stream().map(Entry::id).toList())
+                    .getResultList());
+            committed.stream()
+                    .filter(entry -> !written.contains(entry.id()))
+                    .forEach(entry -> unwritten.merge(counter(entry), -1L, Long::sum));
+        }
+
+        ByteArrayOutputStream marks = new ByteArrayOutputStream();
+        int committedPostings = 0;
+        for (Map.Entry<Long, List<Entry>> posting : undecided.entrySet()) {
+            Map<Counter, Long> needed = new HashMap<>();
+            posting.getValue().forEach(entry -> needed.merge(counter(entry), 1L, Long::sum));
+            boolean committed = needed.entrySet().stream()
+                    .allMatch(need -> unwritten.getOrDefault(need.getKey(), 0L) >= need.getValue());
+            if (committed) {
+                needed.forEach((counter, count) -> unwritten.merge(counter, -count, Long::sum));
+                pending.addAll(posting.getValue());
+                committedPostings++;
+            }
+            marks.write(encodeMark(committed ? COMMITTED : ROLLED_BACK, posting.getKey()).array());
+        }
+        write(ByteBuffer.wrap(marks.toByteArray()));
+        channel.force(false);
+        syncedPosition = writePosition;
+
+        logger.warning("Operation journal " + file + " decided " + undecided.size() + " postings without a mark, " +
+                committedPostings + " committed");
+        Set<Long> unclear = new TreeSet<>();
+        unwritten.forEach((counter, count) -> {
+            if (count != 0) {
+                unclear.add(counter.accountId());
+            }
+        });
+        if (!unclear.isEmpty()) {
+            logger.warning("Operation counters of accounts " + unclear + " do not match their history, " +
+                    "the postings decided for them may be wrong");
+        }
+    }
+
+    private static Counter counter(Entry entry) {
+        return new Counter(entry.accountId(), entry.type());
+    }
+
+    // every entry as length, CRC32 and payload
+    private static ByteBuffer encode(long posting, List<Entry> entries) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 96);
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (Entry entry : entries) {
+                frame(out, payload(posting, entry));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer encodeMark(byte outcome, long posting) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(17);
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(9);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(outcome);
+            out.writeLong(posting);
+            frame(new DataOutputStream(bytes), payload.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void frame(DataOutputStream out, byte[] payload) throws IOException {
+        out.writeInt(payload.length);
+        out.writeInt(checksum(payload));
+        out.write(payload);
+    }
+
+    private static byte[] payload(long posting, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OPERATION);
+        out.writeLong(posting);
+        out.writeLong(entry.id());
+        out.writeLong(entry.accountId());
+        out.writeUTF(entry.type().name());
+        out.writeUTF(entry.amount().toPlainString());
+        out.writeUTF(entry.createdAt().toString());
+        out.writeBoolean(entry.transfer());
+        out.writeLong(entry.otherAccountId() == null ? -1 : entry.otherAccountId());
+        out.writeBoolean(entry.title() != null);
+        if (entry.title() != null) {
+            out.writeUTF(entry.title());
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Entry decode(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        long accountId = in.readLong();
+        OperationType type = OperationType.valueOf(in.readUTF());
+        BigDecimal amount = new BigDecimal(in.readUTF());
+        LocalDateTime createdAt = LocalDateTime.parse(in.readUTF());
+        boolean transfer = in.readBoolean();
+        long otherAccountId = in.readLong();
+        String title = in.readBoolean() ? in.readUTF() : null;
+        return new Entry(id, accountId, type, amount, createdAt, transfer, otherAccountId < 0 ? null : otherAccountId, title);
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(RETRY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package demo.task1.repositories.impl;
+
+import demo.task1.models.AbstractModel;
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
+import demo.task1.models.TransferOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
+import demo.task1.utils.UnitOfWork;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * AccountOperationRepository that takes the operation rows off the path of the posting: createOperation and
+ * createTransferOperation count the operation on its account in the posting's transaction as before, but the row is
+ * appended to an {@link OperationJournal} and written to ACCOUNT_OPERATIONS by its background writer. The operations of
+ * one unit of work are appended together and forced to disk right before it commits, and handed to the writer once it
+ * has committed, so a posting that committed always has its history on disk. A process dying between the commit and
+ * the mark of the commit in the journal leaves the posting to be decided when the journal is replayed.
+ * <p>
+ * Until written, a new operation is only in the journal: reads see it after {@link OperationJournal#flush}. The id,
+ * createdAt and updatedAt of the returned operation are already those of its row.
+ * <p>
+ * ATOMIC and PESSIMISTIC postings record their operations inside AccountRepository, in the statement that changes the
+ * balance, those stay synchronous.
+ */
+public class WriteBehindOperationRepository implements AccountOperationRepository {
+    private final AccountOperationRepositoryImpl delegate;
+    private final OperationJournal journal;
+    // operations of the unit of work bound to the thread, appended when it commits
+    private final ThreadLocal<List<OperationJournal.Entry>> unitOfWorkEntries = new ThreadLocal<>();
+    // the same once appended, until the unit of work has completed
+    private final ThreadLocal<OperationJournal.Prepared> unitOfWorkPrepared = new ThreadLocal<>();
+
+    public WriteBehindOperationRepository(AccountOperationRepositoryImpl delegate, OperationJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    public OperationJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public AccountOperation createOperation(Account account, BigDecimal amount, OperationType type) {
+        if (journal.getBackpressure() == OperationJournal.Backpressure.WRITE_THROUGH && journal.isFull()) {
+            return delegate.createOperation(account, amount, type);
+        }
+
+        AccountOperation operation = AccountOperation.builder()
+                .account(account)
+                .amount(amount)
+                .type(type)
+                .build();
+        record(operation, null, null);
+        return operation;
+    }
+
+    @Override
+    public TransferOperation createTransferOperation(Account sourceAccount, Account destinationAccount,
+                                                     BigDecimal amount, OperationType type, String title) {
+        if (journal.getBackpressure() == OperationJournal.Backpressure.WRITE_THROUGH && journal.isFull()) {
+            return delegate.createTransferOperation(sourceAccount, destinationAccount, amount, type, title);
+        }
+
+        TransferOperation operation = TransferOperation.builder()
+                .account(type == OperationType.TRANSFER_OUT ? sourceAccount : destinationAccount)
+                .otherAccount(type == OperationType.TRANSFER_OUT ? destinationAccount : sourceAccount)
+                .amount(amount)
+                .type(type)
+                .title(title)
+                .build();
+        record(operation, operation.getOtherAccount(), title);
+        return operation;
+    }
+
+    private void record(AccountOperation operation, Account otherAccount, String title) {
+        LocalDateTime now = AbstractModel.now();
+        operation.setId(journal.nextId());
+        operation.setCreatedAt(now);
+        operation.setUpdatedAt(now);
+        operation.setVersion(1L);
+        OperationJournal.Entry entry = new OperationJournal.Entry(operation.getId(), operation.getAccount().getId(),
+                operation.getType(), operation.getAmount(), now, otherAccount != null,
+                otherAccount == null ? null : otherAccount.getId(), title);
+
+        if (!UnitOfWork.isActive()) {
+            OperationJournal.Prepared prepared = journal.prepare(List.of(entry));
+            try {
+                delegate.countOperation(operation.getAccount(), operation.getType());
+                journal.commit(prepared);
+            } finally {
+                journal.abort(prepared);
+            }
+            return;
+        }
+
+        delegate.countOperation(operation.getAccount(), operation.getType());
+        List<OperationJournal.Entry> entries = unitOfWorkEntries.get();
+        if (entries == null) {
+            List<OperationJournal.Entry> collected = new ArrayList<>();
+            unitOfWorkEntries.set(collected);
+            UnitOfWork.beforeCommit(() -> unitOfWorkPrepared.set(journal.prepare(collected)));
+            UnitOfWork.afterCommit(() -> journal.commit(release()));
+            UnitOfWork.afterCompletion(() -> {
+                OperationJournal.Prepared prepared = release();
+                if (prepared != null) {
+                    // the unit of work rolled back after its operations were appended
+                    journal.abort(prepared);
+                }
+            });
+            entries = collected;
+        }
+        entries.add(entry);
+    }
+
+    // the operations of the completed unit of work, unbound from the thread
+    private OperationJournal.Prepared release() {
+        OperationJournal.Prepared prepared = unitOfWorkPrepared.get();
+        unitOfWorkEntries.remove();
+        unitOfWorkPrepared.remove();
+        return prepared;
+    }
+
+    @Override
+    public void save(AccountOperation operation) {
+        delegate.save(operation);
+    }
+
+    @Override
+    public void delete(AccountOperation operation) {
+        delegate.delete(operation);
+    }
+
+    @Override
+    public void update(AccountOperation operation) {
+        delegate.update(operation);
+    }
+
+    @Override
+    public Optional<AccountOperation> findById(Long id) {
+        return delegate.findById(id);
+    }
+
+    @Override
+    public List<AccountOperation> findAll() {
+        return delegate.findAll();
+    }
+
+    @Override
+    public boolean exists(Long id) {
+        return delegate.exists(id);
+    }
+
+    @Override
+    public Page<AccountOperation> findAll(Cursor after, int pageSize) {
+        return delegate.findAll(after, pageSize);
+    }
+
+    @Override
+    public Stream<AccountOperation> streamAll() {
+        return delegate.streamAll();
+    }
+
+    @Override
+    public List<AccountOperation> findByAccount(Account account) {
+        return delegate.findByAccount(account);
+    }
+
+    @Override
+    public List<AccountOperation> findByDateRange(Long id, LocalDateTime from, LocalDateTime to) {
+        return delegate.findByDateRange(id, from, to);
+    }
+
+    @Override
+    public Page<AccountOperation> findByAccount(Account account, Cursor after, int pageSize) {
+        return delegate.findByAccount(account, after, pageSize);
+    }
+
+    @Override
+    public Page<AccountOperation> findByDateRange(Long id, LocalDateTime from, LocalDateTime to, Cursor after, int pageSize) {
+        return delegate.findByDateRange(id, from, to, after, pageSize);
+    }
+
+    @Override
+    public Stream<AccountOperation> streamByAccount(Account account) {
+        return delegate.streamByAccount(account);
+    }
+
+    @Override
+    public Stream<AccountOperation> streamByDateRange(Long id, LocalDateTime from, LocalDateTime to) {
+        return delegate.streamByDateRange(id, from, to);
+    }
+
+    @Override
+    public List<OperationView> findViewsByDateRange(Long id, LocalDateTime from, LocalDateTime to) {
+        return delegate.findViewsByDateRange(id, from, to);
+    }
+
+    @Override
+    public Page<OperationView> findViewsByAccount(Long id, Cursor after, int pageSize) {
+        return delegate.findViewsByAccount(id, after, pageSize);
+    }
+
+    @Override
+    public OperationType findByMostFrequentType(Long id) {
+        return delegate.findByMostFrequentType(id);
+    }
+}
@@ -0,0 +1,27 @@
+package demo.task1.services;
+
+import demo.task1.models.Account;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance of one account as ranked by {@link Bank#findTopRichest(int)}.
+ */
+@Getter
+@AllArgsConstructor
+public class AccountBalance {
+    private final Long id;
+    private final String name;
+    private final BigDecimal balance;
+
+    public static AccountBalance of(Account account) {
+        return new AccountBalance(account.getId(), account.getName(), account.getBalance());
+    }
+
+    @Override
+    public String toString() {
+        return id + " " + name + ": " + balance;
+    }
+}
@@ -2,11 +2,16 @@ package demo.task1.services;
 
 import demo.task1.models.Account;
 import demo.task1.models.AccountOperation;
+import demo.task1.models.NewAccount;
 import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
 
 import java.math.BigDecimal;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface Bank {
     /**
@@ -18,6 +23,17 @@ public interface Bank {
      */
     Long createAccount(String name, String address);
 
+    /**
+     * Zaklada wiele kont naraz, np. z pliku CSV, w paczkach transakcji.
+     * Konto, ktorego para (nazwa, adres) juz istnieje, nie jest zakladane
+     * ponownie i zachowuje swoje saldo. Saldo poczatkowe nie jest zapisywane
+     * jako operacja. Paczki zatwierdzone przed bledem pozostaja zatwierdzone.
+     *
+     * @param accounts konta do zalozenia z saldem poczatkowym
+     * @return id konta kazdego wiersza, w kolejnosci wierszy
+     */
+    List<Long> importAccounts(Stream<NewAccount> accounts);
+
     /**
      * Znajduje identyfikator konta.
      *
@@ -68,6 +84,15 @@ public interface Bank {
      */
     void transfer(Long idSource, Long idDestination, BigDecimal amount, String title);
 
+    /**
+     * Wykonuje wiele wplat, wyplat i przelewow w paczkach transakcji.
+     * Bledna operacja nie przerywa pozostalych operacji z paczki.
+     *
+     * @param postings operacje do wykonania
+     * @return wynik kazdej operacji, w kolejnosci operacji
+     */
+    List<PostingResult> executeBatch(List<Posting> postings);
+
     List<Account> findByNameStartWith(String prefix);
     List<Account> findByBalanceBetween(BigDecimal min, BigDecimal max);
     List<Account> findByTheRichest();
@@ -76,6 +101,69 @@ public interface Bank {
     List<AccountOperation> findByDateRange(Long id, Date from, Date to);
     OperationType findByMostFrequentType(Long id);
 
+    /**
+     * Stronicowane i strumieniowe odmiany wyszukiwania kont i operacji, dla wynikow zbyt duzych na jedna liste.
+     * Pierwsza strone pobiera sie z kursorem null, kolejne z kursorem next poprzedniej strony (null na ostatniej).
+     * Strumien czyta wiersze porcjami na wlasnym polaczeniu, ktore zwalnia dopiero jego zamkniecie. Obiekty ze
+     * strumienia sa tylko do odczytu, ich zmiany nie sa zapisywane.
+     */
+    Page<Account> findAccounts(Cursor after, int pageSize);
+    Stream<Account> streamAccounts();
+    Page<Account> findByNameStartWith(String prefix, Cursor after, int pageSize);
+    Stream<Account> streamByNameStartWith(String prefix);
+    Page<Account> findByBalanceBetween(BigDecimal min, BigDecimal max, Cursor after, int pageSize);
+    Stream<Account> streamByBalanceBetween(BigDecimal min, BigDecimal max);
+    Page<AccountOperation> findByDateRange(Long id, Date from, Date to, Cursor after, int pageSize);
+    Stream<AccountOperation> streamByDateRange(Long id, Date from, Date to);
+
+    /**
+     * Zwraca operacje konta, od najnowszej.
+     *
+     * @param id id konta
+     * @param after kursor poprzedniej strony lub null
+     * @param pageSize liczba operacji na stronie
+     * @throws AccountIdException gdy id konta jest nieprawidlowe
+     */
+    Page<AccountOperation> findOperations(Long id, Cursor after, int pageSize);
+
+    /**
+     * Zwraca operacje konta jako strumien, od najnowszej. Strumien trzeba zamknac.
+     *
+     * @param id id konta
+     * @throws AccountIdException gdy id konta jest nieprawidlowe
+     */
+    Stream<AccountOperation> streamOperations(Long id);
+
+    /**
+     * Zwraca historie konta w przedziale dat, od najstarszej operacji, jak findByDateRange. Operacje sa kopiami
+     * tylko do odczytu, czytanymi jednym zapytaniem bez wczytywania operacji ani kont.
+     *
+     * @param id id konta
+     * @param from poczatek przedzialu
+     * @param to koniec przedzialu
+     * @throws AccountIdException gdy id konta jest nieprawidlowe
+     */
+    List<OperationView> findHistory(Long id, Date from, Date to);
+
+    /**
+     * Zwraca historie konta, od najnowszej operacji, jak findOperations, jako kopie tylko do odczytu.
+     *
+     * @param id id konta
+     * @param after kursor poprzedniej strony lub null
+     * @param pageSize liczba operacji na stronie
+     * @throws AccountIdException gdy id konta jest nieprawidlowe
+     */
+    Page<OperationView> findHistory(Long id, Cursor after, int pageSize);
+
+    /**
+     * Zwraca najbogatsze konta.
+     *
+     * @param n liczba kont
+     * @return co najwyzej n kont o najwyzszym saldzie, od najbogatszego, przy rownym saldzie wedlug id
+     * @throws IllegalArgumentException gdy n jest mniejsze od 1
+     */
+    List<AccountBalance> findTopRichest(int n);
+
     class InsufficientFundsException extends RuntimeException {
     };
 
@@ -0,0 +1,38 @@
+package demo.task1.services;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+/**
+ * Single deposit, withdrawal or transfer submitted to {@link Bank#executeBatch(java.util.List)}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class Posting {
+    public enum Type {
+        DEPOSIT,
+        WITHDRAW,
+        TRANSFER
+    }
+
+    private final Type type;
+    private final Long accountId;
+    private final Long destinationId;
+    private final BigDecimal amount;
+    private final String title;
+
+    public static Posting deposit(Long accountId, BigDecimal amount) {
+        return new Posting(Type.DEPOSIT, accountId, null, amount, null);
+    }
+
+    public static Posting withdraw(Long accountId, BigDecimal amount) {
+        return new Posting(Type.WITHDRAW, accountId, null, amount, null);
+    }
+
+    public static Posting transfer(Long sourceId, Long destinationId, BigDecimal amount, String title) {
+        return new Posting(Type.TRANSFER, sourceId, destinationId, amount, title);
+    }
+}
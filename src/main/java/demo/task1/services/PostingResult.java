@@ -0,0 +1,45 @@
+package demo.task1.services;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Outcome of one {@link Posting} of a batch, error holds the exception the single-posting call would have thrown.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class PostingResult {
+    public enum Status {
+        OK,
+        INVALID_ACCOUNT,
+        INSUFFICIENT_FUNDS,
+        // an amount the bank cannot hold exactly, only in the modes that keep balances as long counts
+        INVALID_AMOUNT
+    }
+
+    private static final PostingResult OK = new PostingResult(Status.OK, null);
+
+    private final Status status;
+    private final RuntimeException error;
+
+    public static PostingResult ok() {
+        return OK;
+    }
+
+    public static PostingResult failed(Bank.AccountIdException error) {
+        return new PostingResult(Status.INVALID_ACCOUNT, error);
+    }
+
+    public static PostingResult failed(Bank.InsufficientFundsException error) {
+        return new PostingResult(Status.INSUFFICIENT_FUNDS, error);
+    }
+
+    public static PostingResult failed(ArithmeticException error) {
+        return new PostingResult(Status.INVALID_AMOUNT, error);
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+}
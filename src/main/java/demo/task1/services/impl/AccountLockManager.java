@@ -0,0 +1,133 @@
+package demo.task1.services.impl;
+
+import demo.task1.utils.LockStatistics;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * In-process locks on accounts, shared by the BankImpl instances that run in {@link BankImpl.ConcurrencyMode#STRIPED}
+ * mode so their postings on one account do not race between findById and update, without a row lock in the database.
+ * <p>
+ * Accounts are spread by id over a fixed number of ReentrantLocks, so the memory taken does not grow with the number
+ * of accounts, at the price of accounts sharing a stripe waiting for each other. An action on two accounts takes their
+ * stripes in ascending stripe order, so opposite transfers cannot deadlock. The locks are reentrant, an action may call
+ * back into the manager for the same accounts.
+ * <p>
+ * Only this JVM is serialized, postings of another process on the same accounts still race with these.
+ */
+public class AccountLockManager {
+    public static final int DEFAULT_STRIPES = 64;
+
+    private final ReentrantLock[] locks;
+    private final AtomicIntegerArray maxQueueLengths;
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong contended = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public AccountLockManager() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public AccountLockManager(int stripes) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("Stripe count must be at least 1");
+        }
+        this.locks = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        this.maxQueueLengths = new AtomicIntegerArray(stripes);
+    }
+
+    public int getStripes() {
+        return locks.length;
+    }
+
+    /**
+     * @return index of the lock guarding the account
+     */
+    public int stripeOf(Long id) {
+        return Math.floorMod(Long.hashCode(id), locks.length);
+    }
+
+    public void runLocked(Long first, Long second, Runnable action) {
+        callLocked(first, second, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs the action holding the locks of both accounts, of one when they share a stripe. A null id takes no lock,
+     * the action is left to reject it.
+     */
+    public <T> T callLocked(Long first, Long second, Supplier<T> action) {
+        int a = first == null ? -1 : stripeOf(first);
+        int b = second == null ? -1 : stripeOf(second);
+        int low = a == b ? -1 : Math.min(a, b);
+        int high = Math.max(a, b);
+
+        lock(low);
+        try {
+            lock(high);
+            try {
+                return action.get();
+            } finally {
+                unlock(high);
+            }
+        } finally {
+            unlock(low);
+        }
+    }
+
+    public LockStatistics getStatistics() {
+        int[] queueLengths = new int[locks.length];
+        int[] maxLengths = new int[locks.length];
+        for (int i = 0; i < locks.length; i++) {
+            queueLengths[i] = locks[i].getQueueLength();
+            maxLengths[i] = maxQueueLengths.get(i);
+        }
+
+        long waits = contended.get();
+        return LockStatistics.builder()
+                .stripes(locks.length)
+                .acquired(acquired.get())
+                .contended(waits)
+                .averageWaitMicros(waits == 0 ? 0 : waitNanos.get() / waits / 1000)
+                .maxWaitMicros(maxWaitNanos.get() / 1000)
+                .queueLengths(queueLengths)
+                .maxQueueLengths(maxLengths)
+                .build();
+    }
+
+    private void lock(int stripe) {
+        if (stripe < 0) {
+            return;
+        }
+
+        ReentrantLock lock = locks[stripe];
+        acquired.incrementAndGet();
+        if (lock.tryLock()) {
+            return;
+        }
+
+        contended.incrementAndGet();
+        // this thread is about to join the queue
+        maxQueueLengths.accumulateAndGet(stripe, lock.getQueueLength() + 1, Math::max);
+        long start = System.nanoTime();
+        lock.lock();
+        long waited = System.nanoTime() - start;
+        waitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void unlock(int stripe) {
+        if (stripe >= 0) {
+            locks[stripe].unlock();
+        }
+    }
+}
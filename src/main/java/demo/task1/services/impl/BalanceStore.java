@@ -0,0 +1,660 @@
+package demo.task1.services.impl;
+
+import demo.task1.models.NewOperation;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.utils.MinorUnits;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Balances of accounts held in memory as long counts of {@link MinorUnits}, the authority for the postings of a
+ * {@link BankImpl} in {@link BankImpl.ConcurrencyMode#IN_MEMORY} mode. A posting is checked and applied to the balance
+ * here and queued, a background thread writes the queued postings with {@link AccountRepository#applyOperations(List)}
+ * in batches, one transaction each, so the operation history and the balances in the database follow with a lag. A
+ * batch updates every account it touches once, with the sum of its postings.
+ * <p>
+ * Balances sit in an open-addressing table of primitive ids and counts, the queue is a ring of primitive columns, so a
+ * posting neither boxes an id nor allocates a BigDecimal. An account is loaded from the database on its first posting
+ * and held while it is in use, the store has to be the only writer of the balances of the accounts it holds. Beyond
+ * maxAccounts an account is evicted to make room, picked by a CLOCK sweep so the least recently used go first, and
+ * never one whose postings are not written yet. A posting that would overflow the long count is rejected with an
+ * ArithmeticException and changes nothing.
+ * <p>
+ * When capacity postings wait to be written, posting blocks until the writer catches up. A posting the database
+ * rejects, because an account of it was deleted meanwhile, is dropped and counted as lost, any other failure is
+ * retried. Its effect is then taken back from the balances held: deleted accounts are forgotten, the other account of
+ * a transfer gets the amount back or loses it again. Postings applied after it were checked against the balance it
+ * had changed, so a destination account may have spent a transfer that never happened and is left below zero, which
+ * is logged. Postings still queued when the store is closed and cannot be written are lost.
+ */
+public class BalanceStore implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+    // a batch is two JDBC batches whatever its size. 50, 200 and 5000 wrote 30k to 40k postings per second in
+    // BalanceStoreBenchmark, the database's work per row dominates, longer batches only hold more rows locked.
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    // 40 to 80 bytes of table per account, the table is kept at most half full
+    public static final int DEFAULT_MAX_ACCOUNTS = 1 << 20;
+    // wait before writing again after the database refused a batch
+    private static final long RETRY_MILLIS = 1000;
+    private static final long PHI = 0x9E3779B97F4A7C15L;
+
+    private static final byte DEPOSIT = 0;
+    private static final byte WITHDRAW = 1;
+    private static final byte TRANSFER = 2;
+
+    private static final Logger logger = Logger.getLogger(BalanceStore.class.getName());
+
+    private final AccountRepository accountRepository;
+    private final int batchSize;
+    private final int maxAccounts;
+    private final Thread writer;
+
+    // balances, guarded by this. Slots holding id 0 are free, the balance of account 0 is kept aside and never evicted.
+    // queued counts the postings of an account not written yet, used is set by every posting and balance read and
+    // cleared when the clock hand passes.
+    private long[] keys = new long[64];
+    private long[] balances = new long[64];
+    private int[] queued = new int[64];
+    private boolean[] used = new boolean[64];
+    private int size;
+    private int hand;
+    private boolean hasZero;
+    private long zeroBalance;
+
+    // queued postings, guarded by this. Those in [head, tail) wait to be written, head moves once they are.
+    private final int mask;
+    private final byte[] types;
+    private final long[] ids;
+    private final long[] otherIds;
+    private final long[] amounts;
+    private final String[] titles;
+    private long head;
+    private long tail;
+    private boolean writerIdle;
+    private boolean closed;
+    private long persisted;
+    private long lost;
+    private long loads;
+    private long evictions;
+    // accounts evicted or forgotten, a balance read from the database while this changed may be stale
+    private long removals;
+
+    public BalanceStore(AccountRepository accountRepository) {
+        this(accountRepository, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public BalanceStore(AccountRepository accountRepository, int capacity, int batchSize) {
+        this(accountRepository, capacity, batchSize, DEFAULT_MAX_ACCOUNTS);
+    }
+
+    /**
+     * @param capacity    postings queued and not written yet from which posting blocks, a power of two
+     * @param batchSize   most postings written in one transaction
+     * @param maxAccounts accounts held before one is evicted to load another, exceeded only while every held account
+     *                    has postings waiting to be written
+     */
+    public BalanceStore(AccountRepository accountRepository, int capacity, int batchSize, int maxAccounts) {
+        if (Integer.bitCount(capacity) != 1 || batchSize < 1 || maxAccounts < 1) {
+            throw new IllegalArgumentException("capacity must be a power of two, batchSize and maxAccounts at least 1");
+        }
+        this.accountRepository = accountRepository;
+        this.batchSize = batchSize;
+        this.maxAccounts = maxAccounts;
+        this.mask = capacity - 1;
+        this.types = new byte[capacity];
+        this.ids = new long[capacity];
+        this.otherIds = new long[capacity];
+        this.amounts = new long[capacity];
+        this.titles = new String[capacity];
+
+        this.writer = new Thread(this::write, "balance-store-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the account does not exist
+     * @throws ArithmeticException      when the balance would overflow
+     */
+    public void deposit(long id, long amount) {
+        while (true) {
+            synchronized (this) {
+                awaitRoom();
+                int index = indexOf(id);
+                if (index != -1) {
+                    setBalance(index, Math.addExact(balance(index), amount));
+                    posted(index);
+                    enqueue(DEPOSIT, id, 0, amount, null);
+                    return;
+                }
+            }
+            load(id);
+        }
+    }
+
+    /**
+     * @return false, changing nothing, when the balance is lower than the amount
+     * @throws IllegalArgumentException when the account does not exist
+     */
+    public boolean withdraw(long id, long amount) {
+        while (true) {
+            synchronized (this) {
+                awaitRoom();
+                int index = indexOf(id);
+                if (index != -1) {
+                    long balance = balance(index);
+                    if (balance < amount) {
+                        return false;
+                    }
+                    setBalance(index, Math.subtractExact(balance, amount));
+                    posted(index);
+                    enqueue(WITHDRAW, id, 0, amount, null);
+                    return true;
+                }
+            }
+            load(id);
+        }
+    }
+
+    /**
+     * @return false, changing nothing, when the balance of the source is lower than the amount
+     * @throws IllegalArgumentException when either account does not exist
+     * @throws ArithmeticException      when a balance would overflow
+     */
+    public boolean transfer(long sourceId, long destinationId, long amount, String title) {
+        while (true) {
+            synchronized (this) {
+                awaitRoom();
+                int source = indexOf(sourceId);
+                int destination = indexOf(destinationId);
+                if (source != -1 && destination != -1) {
+                    long sourceBalance = balance(source);
+                    if (sourceBalance < amount) {
+                        return false;
+                    }
+                    if (sourceId != destinationId) {
+                        long newSource = Math.subtractExact(sourceBalance, amount);
+                        setBalance(destination, Math.addExact(balance(destination), amount));
+                        setBalance(source, newSource);
+                    }
+                    posted(source);
+                    posted(destination);
+                    enqueue(TRANSFER, sourceId, destinationId, amount, title);
+                    return true;
+                }
+            }
+            load(sourceId);
+            load(destinationId);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException when the account does not exist
+     */
+    public long getBalance(long id) {
+        while (true) {
+            synchronized (this) {
+                int index = indexOf(id);
+                if (index != -1) {
+                    if (index != keys.length) {
+                        used[index] = true;
+                    }
+                    return balance(index);
+                }
+            }
+            load(id);
+        }
+    }
+
+    /**
+     * @return accounts whose balance is held
+     */
+    public synchronized int getAccounts() {
+        return size + (hasZero ? 1 : 0);
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * @return postings applied and not written to the database yet
+     */
+    public synchronized int getPending() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return postings written to the database since the store was created
+     */
+    public synchronized long getPersisted() {
+        return persisted;
+    }
+
+    /**
+     * @return postings dropped because the database rejected them
+     */
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    /**
+     * @return balances loaded from the database
+     */
+    public synchronized long getLoads() {
+        return loads;
+    }
+
+    /**
+     * @return accounts evicted to make room for others
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Waits until every posting applied so far is written to the database.
+     *
+     * @return false when the timeout elapsed first
+     */
+    public synchronized boolean flush(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (head != tail) {
+            long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (millis <= 0) {
+                return false;
+            }
+            wait(millis);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the writer once it has written what was queued, postings after that are rejected.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            writer.join(TimeUnit.MINUTES.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // called holding the monitor, which it gives up while the ring is full
+    private void awaitRoom() {
+        while (!closed && tail - head > mask) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for the balance store writer", e);
+            }
+        }
+        if (closed) {
+            throw new IllegalStateException("Balance store is closed");
+        }
+    }
+
+    private void enqueue(byte type, long id, long otherId, long amount, String title) {
+        int slot = (int) (tail & mask);
+        types[slot] = type;
+        ids[slot] = id;
+        otherIds[slot] = otherId;
+        amounts[slot] = amount;
+        titles[slot] = title;
+        tail++;
+        if (writerIdle) {
+            writerIdle = false;
+            notifyAll();
+        }
+    }
+
+    // the balance is read outside the monitor, an account is not in the table before it is loaded so nothing is queued
+    // for it and the database has its balance. Unless it was loaded, posted to, written and evicted again while the
+    // balance was read, so the balance is only taken when no account left the table meanwhile, the caller retries.
+    private void load(long id) {
+        long seen;
+        synchronized (this) {
+            if (indexOf(id) != -1) {
+                return;
+            }
+            seen = removals;
+        }
+        BigDecimal balance = accountRepository.findBalance(id)
+                .orElseThrow(() -> new IllegalArgumentException("Account " + id + " does not exist"));
+        long minorUnits = MinorUnits.of(balance);
+        synchronized (this) {
+            if (indexOf(id) == -1 && removals == seen) {
+                insert(id, minorUnits);
+                loads++;
+            }
+        }
+    }
+
+    private void posted(int index) {
+        if (index != keys.length) {
+            used[index] = true;
+            queued[index]++;
+        }
+    }
+
+    // once a posting of the account was written or dropped
+    private void written(long id) {
+        int index = indexOf(id);
+        if (index != -1 && index != keys.length) {
+            queued[index]--;
+        }
+    }
+
+    // index of the id's slot, keys.length for account 0, -1 when not held
+    private int indexOf(long id) {
+        if (id == 0) {
+            return hasZero ? keys.length : -1;
+        }
+        for (int i = slot(id, keys.length); ; i = (i + 1) & (keys.length - 1)) {
+            long key = keys[i];
+            if (key == id) {
+                return i;
+            }
+            if (key == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private long balance(int index) {
+        return index == keys.length ? zeroBalance : balances[index];
+    }
+
+    private void setBalance(int index, long balance) {
+        if (index == keys.length) {
+            zeroBalance = balance;
+        } else {
+            balances[index] = balance;
+        }
+    }
+
+    private void insert(long id, long balance) {
+        if (id == 0) {
+            hasZero = true;
+            zeroBalance = balance;
+            return;
+        }
+        if (getAccounts() >= maxAccounts && evict()) {
+            evictions++;
+        }
+        if (2 * (size + 1) > keys.length) {
+            rehash(keys.length * 2);
+        }
+        int i = freeSlot(keys, id);
+        keys[i] = id;
+        balances[i] = balance;
+        size++;
+    }
+
+    // CLOCK: the hand sweeps the table, an account used since the hand last passed it gets a second chance, one with
+    // postings not written yet stays. False when every account has postings queued.
+    private boolean evict() {
+        for (int step = 0; step < 2 * keys.length; step++) {
+            int i = hand;
+            hand = (hand + 1) & (keys.length - 1);
+            if (keys[i] == 0 || queued[i] > 0) {
+                continue;
+            }
+            if (used[i]) {
+                used[i] = false;
+                continue;
+            }
+            remove(i);
+            return true;
+        }
+        return false;
+    }
+
+    private void forget(long id) {
+        int index = indexOf(id);
+        if (index == keys.length) {
+            hasZero = false;
+            removals++;
+        } else if (index != -1) {
+            remove(index);
+        }
+    }
+
+    // backward shift deletion: entries further down the probe run move up into the freed slot when they may sit there,
+    // so lookups find every entry without tombstones
+    private void remove(int index) {
+        int last = keys.length - 1;
+        int free = index;
+        for (int i = (index + 1) & last; keys[i] != 0; i = (i + 1) & last) {
+            int home = slot(keys[i], keys.length);
+            if (((i - home) & last) >= ((i - free) & last)) {
+                keys[free] = keys[i];
+                balances[free] = balances[i];
+                queued[free] = queued[i];
+                used[free] = used[i];
+                free = i;
+            }
+        }
+        keys[free] = 0;
+        balances[free] = 0;
+        queued[free] = 0;
+        used[free] = false;
+        size--;
+        removals++;
+    }
+
+    private void rehash(int length) {
+        long[] newKeys = new long[length];
+        long[] newBalances = new long[length];
+        int[] newQueued = new int[length];
+        boolean[] newUsed = new boolean[length];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                int j = freeSlot(newKeys, keys[i]);
+                newKeys[j] = keys[i];
+                newBalances[j] = balances[i];
+                newQueued[j] = queued[i];
+                newUsed[j] = used[i];
+            }
+        }
+        keys = newKeys;
+        balances = newBalances;
+        queued = newQueued;
+        used = newUsed;
+    }
+
+    private static int freeSlot(long[] keys, long id) {
+        int i = slot(id, keys.length);
+        while (keys[i] != 0) {
+            i = (i + 1) & (keys.length - 1);
+        }
+        return i;
+    }
+
+    // Fibonacci hashing, the top bits of the product spread sequential ids over the table
+    private static int slot(long id, int length) {
+        return (int) ((id * PHI) >>> (64 - Integer.numberOfTrailingZeros(length)));
+    }
+
+    private void write() {
+        byte[] batchTypes = new byte[batchSize];
+        long[] batchIds = new long[batchSize];
+        long[] batchOtherIds = new long[batchSize];
+        long[] batchAmounts = new long[batchSize];
+        String[] batchTitles = new String[batchSize];
+        List<NewOperation> operations = new ArrayList<>(2 * batchSize);
+
+        while (true) {
+            int count;
+            synchronized (this) {
+                while (head == tail && !closed) {
+                    writerIdle = true;
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // nobody but close has a say in when the writer stops
+                    }
+                }
+                if (head == tail) {
+                    return;
+                }
+                count = (int) Math.min(tail - head, batchSize);
+                for (int i = 0; i < count; i++) {
+                    int slot = (int) ((head + i) & mask);
+                    batchTypes[i] = types[slot];
+                    batchIds[i] = ids[slot];
+                    batchOtherIds[i] = otherIds[slot];
+                    batchAmounts[i] = amounts[slot];
+                    batchTitles[i] = titles[slot];
+                }
+            }
+
+            int written = count;
+            int dropped = 0;
+            try {
+                operations.clear();
+                for (int i = 0; i < count; i++) {
+                    addOperations(operations, batchTypes[i], batchIds[i], batchOtherIds[i], batchAmounts[i],
+                            batchTitles[i]);
+                }
+                accountRepository.applyOperations(operations);
+            } catch (RuntimeException e) {
+                // written one by one, so only the postings the database rejects are dropped
+                for (int i = 0; i < count; i++) {
+                    int result = persistAlone(batchTypes[i], batchIds[i], batchOtherIds[i], batchAmounts[i],
+                            batchTitles[i]);
+                    if (result < 0) {
+                        written = i;
+                        break;
+                    }
+                    if (result > 0) {
+                        reconcile(batchTypes[i], batchIds[i], batchOtherIds[i], batchAmounts[i]);
+                        dropped++;
+                    }
+                }
+                if (written < count) {
+                    synchronized (this) {
+                        logger.severe("Balance store closed with " + (tail - head - written) +
+                                " postings not written, they are lost");
+                        persisted += written - dropped;
+                        lost += tail - head - written + dropped;
+                        head = tail;
+                        notifyAll();
+                    }
+                    return;
+                }
+            }
+
+            synchronized (this) {
+                for (int i = 0; i < count; i++) {
+                    titles[(int) ((head + i) & mask)] = null;
+                    written(batchIds[i]);
+                    if (batchTypes[i] == TRANSFER) {
+                        written(batchOtherIds[i]);
+                    }
+                }
+                head += count;
+                persisted += written - dropped;
+                lost += dropped;
+                notifyAll();
+            }
+        }
+    }
+
+    // 0 once written, 1 when the database rejected the posting, -1 when the store was closed before it could be written
+    private int persistAlone(byte type, long id, long otherId, long amount, String title) {
+        while (true) {
+            try {
+                List<NewOperation> operations = new ArrayList<>(2);
+                addOperations(operations, type, id, otherId, amount, title);
+                accountRepository.applyOperations(operations);
+                return 0;
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                logger.severe("Posting on account " + id + " rejected by the database, dropped: " + e.getMessage());
+                return 1;
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (closed) {
+                        return -1;
+                    }
+                }
+                logger.warning("Postings cannot be written, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException interrupted) {
+                    // retried right away
+                }
+            }
+        }
+    }
+
+    // operations in the order the postings were applied, their sums are the balances the store checked
+    private static void addOperations(List<NewOperation> operations, byte type, long id, long otherId, long amount,
+                                      String title) {
+        BigDecimal value = MinorUnits.toAmount(amount);
+        switch (type) {
+            case DEPOSIT -> operations.add(NewOperation.deposit(id, value));
+            case WITHDRAW -> operations.add(NewOperation.withdraw(id, value));
+            default -> operations.addAll(NewOperation.transfer(id, otherId, value, title));
+        }
+    }
+
+    // takes the dropped posting back from the balances held, deleted accounts are forgotten
+    private void reconcile(byte type, long id, long otherId, long amount) {
+        boolean exists = exists(id);
+        boolean otherExists = type == TRANSFER && exists(otherId);
+        synchronized (this) {
+            switch (type) {
+                case DEPOSIT -> undo(id, exists, -amount);
+                case WITHDRAW -> undo(id, exists, amount);
+                default -> {
+                    undo(id, exists, id == otherId ? 0 : amount);
+                    if (id != otherId) {
+                        undo(otherId, otherExists, -amount);
+                    }
+                }
+            }
+        }
+    }
+
+    // an account that cannot be checked is taken to exist and stays held, its next posting the database rejects
+    // is reconciled again
+    private boolean exists(long id) {
+        try {
+            return accountRepository.findBalance(id).isPresent();
+        } catch (RuntimeException e) {
+            logger.warning("Account " + id + " cannot be checked: " + e.getMessage());
+            return true;
+        }
+    }
+
+    // called holding the monitor
+    private void undo(long id, boolean exists, long delta) {
+        int index = indexOf(id);
+        if (index == -1) {
+            return;
+        }
+        if (!exists) {
+            forget(id);
+            return;
+        }
+        long balance = balance(index) + delta;
+        if (balance < 0) {
+            logger.severe("Account " + id + " spent a posting the database rejected, its balance is " +
+                    MinorUnits.toAmount(balance));
+        }
+        setBalance(index, balance);
+    }
+}
@@ -0,0 +1,177 @@
+package demo.task1.services.impl;
+
+import demo.task1.services.Bank;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Front end running the calls of many clients on a Bank concurrently: every call is submitted to an executor and
+ * answered with a CompletableFuture, completed exceptionally with the Bank's exception when the call throws.
+ * <p>
+ * A call holds one of maxConcurrent permits while it runs, so no more calls reach the Bank at once than the connection
+ * pool behind it serves, the others wait for a permit rather than for a connection. With a pool of platform threads the
+ * threads are the bound already, with a thread per call, a cached thread pool for instance, the permits are.
+ * VirtualThreadBankExecutors, built with the java21 profile, runs every call on a virtual thread of its own.
+ */
+public class BankExecutor implements AutoCloseable {
+    private static final Logger logger = Logger.getLogger(BankExecutor.class.getName());
+
+    private final Bank bank;
+    private final ExecutorService executor;
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param executor      runs the calls, shut down by {@link #close()}
+     * @param maxConcurrent most calls running on the bank at once, usually the size of the connection pool
+     */
+    public BankExecutor(Bank bank, ExecutorService executor, int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        }
+        this.bank = bank;
+        this.executor = executor;
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /**
+     * Runs the calls on a fixed pool of platform threads, calls beyond them wait in the pool's queue.
+     */
+    public static BankExecutor withPlatformThreads(Bank bank, int threads) {
+        return new BankExecutor(bank, Executors.newFixedThreadPool(threads, namedThreads("bank-executor-")), threads);
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    /**
+     * @return calls running on the bank now
+     */
+    public int getActive() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    /**
+     * @return calls started by the executor and waiting for a permit
+     */
+    public int getWaiting() {
+        return waiting.get();
+    }
+
+    /**
+     * @return calls that returned, since the executor was created
+     */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /**
+     * @return calls that threw, since the executor was created
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public CompletableFuture<Void> depositAsync(Long id, BigDecimal amount) {
+        return submit(() -> {
+            bank.deposit(id, amount);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> withdrawAsync(Long id, BigDecimal amount) {
+        return submit(() -> {
+            bank.withdraw(id, amount);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> transferAsync(Long idSource, Long idDestination, BigDecimal amount, String title) {
+        return submit(() -> {
+            bank.transfer(idSource, idDestination, amount, title);
+            return null;
+        });
+    }
+
+    public CompletableFuture<BigDecimal> getBalanceAsync(Long id) {
+        return submit(() -> bank.getBalance(id));
+    }
+
+    /**
+     * Runs any other call on the bank under the same bound.
+     */
+    public <T> CompletableFuture<T> callAsync(Function<Bank, T> call) {
+        return submit(() -> call.apply(bank));
+    }
+
+    /**
+     * Stops taking calls and waits up to a minute for the submitted ones to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warning("Bank executor closed with calls still running");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            acquire();
+            try {
+                T result = call.get();
+                completed.incrementAndGet();
+                return result;
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                throw e;
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    private void acquire() {
+        if (permits.tryAcquire()) {
+            return;
+        }
+        waiting.incrementAndGet();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a bank executor permit", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -2,25 +2,86 @@ package demo.task1.services.impl;
 
 import demo.task1.models.Account;
 import demo.task1.models.AccountOperation;
+import demo.task1.models.NewAccount;
 import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
 import demo.task1.repositories.AccountOperationRepository;
 import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
+import demo.task1.services.AccountBalance;
 import demo.task1.services.Bank;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
+import demo.task1.utils.MinorUnits;
+import demo.task1.utils.UnitOfWork;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceException;
 
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 public class BankImpl implements Bank {
 
+    /**
+     * How postings are protected against concurrent modification of the same account.
+     */
+    public enum ConcurrencyMode {
+        /** read-modify-write through findById/update, a concurrent change of the same account fails the posting */
+        NONE,
+        /**
+         * transfers run in one transaction with both account rows locked in ascending id order. Their operations are
+         * inserted by the AccountRepository in that transaction, a WriteBehindOperationRepository is bypassed for them.
+         */
+        PESSIMISTIC,
+        /**
+         * deposits and withdrawals are a single conditional UPDATE in the database, transfers as in PESSIMISTIC. All
+         * their operations are inserted by the AccountRepository, a WriteBehindOperationRepository is bypassed.
+         */
+        ATOMIC,
+        /** read-modify-write checked against the version column, postings that lose a race are re-run per the RetryPolicy */
+        OPTIMISTIC,
+        /**
+         * read-modify-write as in NONE, postings on the same account wait for each other on the AccountLockManager
+         * until the previous one committed. Only serializes the BankImpl instances of this JVM sharing the manager.
+         */
+        STRIPED,
+        /**
+         * deposits, withdrawals, transfers and balances are answered by the BalanceStore and written to the database
+         * behind them. They do not join an outer UnitOfWork, amounts with decimal places are rejected with an
+         * ArithmeticException as the balance column keeps whole amounts, and the finders, the history and the ranking
+         * read the database, so they lag until the store has written the postings. The store has to be the only writer
+         * of the balances of the accounts it holds.
+         */
+        IN_MEMORY
+    }
+
     private final AccountRepository accountRepository;
     private final AccountOperationRepository operationRepository;
+    private ConcurrencyMode concurrencyMode = ConcurrencyMode.NONE;
+    private RetryPolicy retryPolicy = RetryPolicy.defaults();
+    private final AtomicLong optimisticConflicts = new AtomicLong();
+    private final AtomicLong optimisticRetries = new AtomicLong();
+    private int batchChunkSize = 500;
+    private int importChunkSize = 10_000;
+    private TopBalances topBalances;
+    private AccountLockManager lockManager = new AccountLockManager();
+    private BalanceStore balanceStore;
     private static final Logger logger = Logger.getLogger(BankImpl.class.getName());
 
     public BankImpl(AccountRepository accountRepository, AccountOperationRepository operationRepository) {
@@ -31,14 +92,183 @@ public class BankImpl implements Bank {
                 operationRepository.getClass().getName());
     }
 
-    // task 3 methods
+    public ConcurrencyMode getConcurrencyMode() {
+        return concurrencyMode;
+    }
+
+    public void setConcurrencyMode(ConcurrencyMode concurrencyMode) {
+        logger.info("Bank concurrency mode set to: " + concurrencyMode);
+        this.concurrencyMode = concurrencyMode;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public int getBatchChunkSize() {
+        return batchChunkSize;
+    }
+
+    /**
+     * @param batchChunkSize number of postings of {@link #executeBatch(List)} committed in one transaction
+     */
+    public void setBatchChunkSize(int batchChunkSize) {
+        if (batchChunkSize < 1) {
+            throw new IllegalArgumentException("Batch chunk size must be at least 1");
+        }
+        this.batchChunkSize = batchChunkSize;
+    }
+
+    public int getImportChunkSize() {
+        return importChunkSize;
+    }
+
+    /**
+     * @param importChunkSize number of rows of {@link #importAccounts(Stream)} committed in one transaction
+     */
+    public void setImportChunkSize(int importChunkSize) {
+        if (importChunkSize < 1) {
+            throw new IllegalArgumentException("Import chunk size must be at least 1");
+        }
+        this.importChunkSize = importChunkSize;
+    }
+
+    public TopBalances getTopBalances() {
+        return topBalances;
+    }
+
+    /**
+     * @param topBalances ranking answering {@link #findTopRichest(int)}, fed with every account a posting changed.
+     *                    Without one findTopRichest queries the database.
+     */
+    public void setTopBalances(TopBalances topBalances) {
+        this.topBalances = topBalances;
+    }
+
+    public AccountLockManager getLockManager() {
+        return lockManager;
+    }
+
+    /**
+     * @param lockManager locks of {@link ConcurrencyMode#STRIPED}, shared by the BankImpl instances that post to the
+     *                    same accounts. Every instance has its own until one is set.
+     */
+    public void setLockManager(AccountLockManager lockManager) {
+        if (lockManager == null) {
+            throw new IllegalArgumentException("Lock manager cannot be null");
+        }
+        this.lockManager = lockManager;
+    }
+
+    public BalanceStore getBalanceStore() {
+        return balanceStore;
+    }
+
+    /**
+     * @param balanceStore balances of {@link ConcurrencyMode#IN_MEMORY}, shared by the BankImpl instances that post to
+     *                     the same accounts
+     */
+    public void setBalanceStore(BalanceStore balanceStore) {
+        this.balanceStore = balanceStore;
+    }
+
+    /**
+     * @return number of postings that failed on an optimistic lock conflict, retried or not
+     */
+    public long getOptimisticConflicts() {
+        return optimisticConflicts.get();
+    }
+
+    /**
+     * @return number of times a posting was re-run after an optimistic lock conflict
+     */
+    public long getOptimisticRetries() {
+        return optimisticRetries.get();
+    }
+
+    // task 3 methods, every posting runs in a single UnitOfWork so its repository calls share one transaction
     @Override
     public Long createAccount(String name, String address) {
+        if (UnitOfWork.isActive()) {
+            return doCreateAccount(name, address);
+        }
+
+        logger.fine("Creating account for: " + name + " with address: " + address);
+        // logins call this for owners that mostly exist already, they are found without opening a transaction
+        Optional<Account> account = accountRepository.findByNameAndAddress(name, address);
+        if (account.isPresent()) { return account.get().getId(); }
+        try {
+            Long id = UnitOfWork.call(() -> {
+                Account created = accountRepository.create(name, address, BigDecimal.ZERO);
+                balanceChanged(created);
+                return created.getId();
+            });
+            logger.finer("Account created successfully with ID: " + id);
+            return id;
+        } catch (PersistenceException e) {
+            // a concurrent createAccount for the same owner won, the unique (name, address) index rejected our row.
+            // Looked up in a unit of work, so a cache cannot answer with what it knew before the winner committed.
+            Long id = UnitOfWork.call(() -> findAccount(name, address));
+            if (id == null) {
+                throw e;
+            }
+            logger.fine("Account for: " + name + " with address: " + address + " was created concurrently, ID: " + id);
+            return id;
+        }
+    }
+
+    /**
+     * The rows are read from the stream one chunk at a time, every chunk is one set-based write of the repository.
+     * Inside a UnitOfWork all chunks join its transaction.
+     */
+    @Override
+    public List<Long> importAccounts(Stream<NewAccount> accounts) {
+        List<Long> ids = new ArrayList<>();
+        List<NewAccount> chunk = new ArrayList<>(importChunkSize);
+        Iterator<NewAccount> rows = accounts.iterator();
+        while (rows.hasNext()) {
+            chunk.add(rows.next());
+            if (chunk.size() == importChunkSize || !rows.hasNext()) {
+                ids.addAll(importChunk(chunk));
+                chunk.clear();
+            }
+        }
+
+        TopBalances ranking = topBalances;
+        if (ranking != null && !ids.isEmpty()) {
+            // opening balances may reach the ranking, one rebuild instead of an update per account
+            UnitOfWork.afterCommit(ranking::rebuild);
+        }
+        logger.fine("Accounts imported, rows: " + ids.size());
+        return ids;
+    }
+
+    private List<Long> importChunk(List<NewAccount> chunk) {
+        try {
+            return accountRepository.importAccounts(chunk);
+        } catch (PersistenceException e) {
+            // a concurrent createAccount for an owner of the chunk won, the unique (name, address) index rejected the
+            // chunk. Run again it finds that account. A unit of work cannot go on after a failed statement.
+            if (UnitOfWork.isActive()) {
+                throw e;
+            }
+            logger.fine("Import chunk of " + chunk.size() + " rows rejected, retrying: " + e.getMessage());
+            return accountRepository.importAccounts(chunk);
+        }
+    }
+
+    private Long doCreateAccount(String name, String address) {
         logger.fine("Creating account for: " + name + " with address: " + address);
 
         Optional<Account> account = accountRepository.findByNameAndAddress(name, address);
         if (account.isPresent()) { return account.get().getId(); }
-        Long id = accountRepository.create(name,address,BigDecimal.ZERO).getId();
+        Account created = accountRepository.create(name,address,BigDecimal.ZERO);
+        balanceChanged(created);
+        Long id = created.getId();
 
         logger.finer("Account created successfully with ID: " + id);
         return id;
@@ -61,8 +291,25 @@ public class BankImpl implements Bank {
 
     @Override
     public void deposit(Long id, BigDecimal amount) {
+        if (concurrencyMode == ConcurrencyMode.IN_MEMORY) {
+            try {
+                store().deposit(requireId(id), minorUnits(amount));
+            } catch (IllegalArgumentException e) {
+                throw new AccountIdException();
+            }
+            return;
+        }
+        runPosting(id, null, () -> doDeposit(id, amount));
+    }
+
+    private void doDeposit(Long id, BigDecimal amount) {
         try {
             logger.fine("Making a deposit for" + id + " with amount: " + amount);
+            if(concurrencyMode == ConcurrencyMode.ATOMIC) {
+                applyDelta(id, amount == null ? BigDecimal.ZERO : amount, false, OperationType.DEPOSIT);
+                return;
+            }
+
             Optional<Account> account = accountRepository.findById(id);
             if(account.isEmpty()) {
                 logger.severe("Account with id: " + id + " not found for the deposit!");
@@ -81,6 +328,7 @@ public class BankImpl implements Bank {
 
             logger.finer("Deposit successful for account: " + ac.getId());
             accountRepository.update(ac);
+            balanceChanged(ac);
         } catch(IllegalArgumentException e) {
             logger.severe("Account with id: " + id + " not found for the deposit!");
             throw new AccountIdException();
@@ -90,16 +338,18 @@ public class BankImpl implements Bank {
     @Override
     public BigDecimal getBalance(Long id) {
         try {
+            if (concurrencyMode == ConcurrencyMode.IN_MEMORY) {
+                return MinorUnits.toAmount(store().getBalance(requireId(id)));
+            }
             logger.fine("Getting balance for " + id);
-            Optional<Account> account = accountRepository.findById(id);
-            if(account.isEmpty()) {
+            Optional<BigDecimal> balance = accountRepository.findBalance(id);
+            if(balance.isEmpty()) {
                 logger.severe("Account with id: " + id + " not found!");
                 throw new AccountIdException();
             }
 
-            BigDecimal balance = account.get().getBalance();
-            logger.finer("Got balance: " + balance + " for account: " + account.get().getId());
-            return balance;
+            logger.finer("Got balance: " + balance.get() + " for account: " + id);
+            return balance.get();
         } catch (IllegalArgumentException e) {
             logger.severe("Account with id: " + id + " not found!");
             throw new AccountIdException();
@@ -108,8 +358,29 @@ public class BankImpl implements Bank {
 
     @Override
     public void withdraw(Long id, BigDecimal amount) {
+        if (concurrencyMode == ConcurrencyMode.IN_MEMORY) {
+            boolean withdrawn;
+            try {
+                withdrawn = store().withdraw(requireId(id), minorUnits(amount));
+            } catch (IllegalArgumentException e) {
+                throw new AccountIdException();
+            }
+            if (!withdrawn) {
+                throw new InsufficientFundsException();
+            }
+            return;
+        }
+        runPosting(id, null, () -> doWithdraw(id, amount));
+    }
+
+    private void doWithdraw(Long id, BigDecimal amount) {
         try {
             logger.fine("Making a withdrawal for " + id + " with amount: " + amount);
+            if(concurrencyMode == ConcurrencyMode.ATOMIC) {
+                applyDelta(id, amount == null ? BigDecimal.ZERO : amount.negate(), true, OperationType.WITHDRAW);
+                return;
+            }
+
             Optional<Account> account = accountRepository.findById(id);
             if(account.isEmpty()) {
                 logger.severe("Account with id: " + id + " not found for the withdraw!");
@@ -136,6 +407,7 @@ public class BankImpl implements Bank {
             logger.finer("Withdraw successful for account: " + ac.getId());
             logger.finer("Current balance: " + newBalance + " for account: " + ac.getId());
             accountRepository.update(ac);
+            balanceChanged(ac);
         } catch (IllegalArgumentException e) {
             logger.severe("Account with id: " + id + " not found for the withdraw!");
             throw new AccountIdException();
@@ -144,8 +416,33 @@ public class BankImpl implements Bank {
 
     @Override
     public void transfer(Long idSource, Long idDestination, BigDecimal amount, String title) {
+        if (concurrencyMode == ConcurrencyMode.IN_MEMORY) {
+            transferInMemory(idSource, idDestination, amount, title);
+            return;
+        }
+        runPosting(idSource, idDestination, () -> doTransfer(idSource, idDestination, amount, title));
+    }
+
+    private void transferInMemory(Long idSource, Long idDestination, BigDecimal amount, String title) {
+        boolean transferred;
+        try {
+            transferred = store().transfer(requireId(idSource), requireId(idDestination), minorUnits(amount), title);
+        } catch (IllegalArgumentException e) {
+            throw new AccountIdException();
+        }
+        if (!transferred) {
+            throw new InsufficientFundsException();
+        }
+    }
+
+    private void doTransfer(Long idSource, Long idDestination, BigDecimal amount, String title) {
         try {
             logger.fine("Making a transfer from " + idSource + " to " + idDestination);
+            if(concurrencyMode == ConcurrencyMode.PESSIMISTIC || concurrencyMode == ConcurrencyMode.ATOMIC) {
+                transferLocked(idSource, idDestination, amount, title);
+                return;
+            }
+
             Optional<Account> sourceAccount = accountRepository.findById(idSource);
             Optional<Account> destinationAccount = accountRepository.findById(idDestination);
 
@@ -170,6 +467,8 @@ public class BankImpl implements Bank {
 
             accountRepository.update(sourceAc);
             accountRepository.update(destAc);
+            balanceChanged(sourceAc);
+            balanceChanged(destAc);
 
             logger.finer("Transfer successful for account: " + sourceAc.getId());
             logger.finer("Current balance of source: " + sourceAc.getBalance() + " after transfering: " + amount + " to destination: " + destAc.getBalance());
@@ -179,6 +478,225 @@ public class BankImpl implements Bank {
         }
     }
 
+    /**
+     * Every chunk runs in one transaction: the accounts it touches are locked up front in id order, postings are
+     * applied in memory one by one so a rejected posting writes nothing, and the operation rows and balances are
+     * flushed with JDBC batch writing on commit. Chunks committed before a database failure stay committed.
+     */
+    @Override
+    public List<PostingResult> executeBatch(List<Posting> postings) {
+        logger.fine("Executing a batch of " + postings.size() + " postings");
+        List<PostingResult> results = new ArrayList<>(postings.size());
+        if (concurrencyMode == ConcurrencyMode.IN_MEMORY) {
+            // applied one by one, there is no transaction for a chunk to share
+            for (Posting posting : postings) {
+                results.add(executeInMemory(posting));
+            }
+            return results;
+        }
+
+        for (int from = 0; from < postings.size(); from += batchChunkSize) {
+            List<Posting> chunk = postings.subList(from, Math.min(from + batchChunkSize, postings.size()));
+            results.addAll(UnitOfWork.call(() -> executeChunk(chunk)));
+        }
+
+        logger.finer("Batch executed, postings: " + postings.size());
+        return results;
+    }
+
+    private PostingResult executeInMemory(Posting posting) {
+        try {
+            switch (posting.getType()) {
+                case DEPOSIT -> deposit(posting.getAccountId(), posting.getAmount());
+                case WITHDRAW -> withdraw(posting.getAccountId(), posting.getAmount());
+                case TRANSFER -> transferInMemory(posting.getAccountId(), posting.getDestinationId(),
+                        posting.getAmount(), posting.getTitle());
+            }
+            return PostingResult.ok();
+        } catch (AccountIdException e) {
+            return PostingResult.failed(e);
+        } catch (InsufficientFundsException e) {
+            return PostingResult.failed(e);
+        } catch (ArithmeticException e) {
+            // a fractional or overflowing amount, the store changed nothing
+            return PostingResult.failed(e);
+        }
+    }
+
+    private List<PostingResult> executeChunk(List<Posting> chunk) {
+        Set<Long> ids = new HashSet<>();
+        for (Posting posting : chunk) {
+            if (posting.getAccountId() != null) {
+                ids.add(posting.getAccountId());
+            }
+            if (posting.getDestinationId() != null) {
+                ids.add(posting.getDestinationId());
+            }
+        }
+
+        Map<Long, Account> accounts = new HashMap<>();
+        for (Account account : accountRepository.findAllByIdForUpdate(ids)) {
+            accounts.put(account.getId(), account);
+        }
+
+        List<PostingResult> results = new ArrayList<>(chunk.size());
+        for (Posting posting : chunk) {
+            try {
+                applyPosting(posting, accounts);
+                results.add(PostingResult.ok());
+            } catch (AccountIdException e) {
+                results.add(PostingResult.failed(e));
+            } catch (InsufficientFundsException e) {
+                results.add(PostingResult.failed(e));
+            }
+        }
+        accounts.values().forEach(this::balanceChanged);
+        return results;
+    }
+
+    private void applyPosting(Posting posting, Map<Long, Account> accounts) {
+        Account account = accounts.get(posting.getAccountId());
+        if (account == null) {
+            throw new AccountIdException();
+        }
+        BigDecimal amount = posting.getAmount() == null ? BigDecimal.ZERO : posting.getAmount();
+
+        switch (posting.getType()) {
+            case DEPOSIT:
+                account.setBalance(account.getBalance().add(amount));
+                operationRepository.createOperation(account, amount, OperationType.DEPOSIT);
+                break;
+            case WITHDRAW:
+                if (account.getBalance().compareTo(amount) < 0) {
+                    throw new InsufficientFundsException();
+                }
+                account.setBalance(account.getBalance().subtract(amount));
+                operationRepository.createOperation(account, amount, OperationType.WITHDRAW);
+                break;
+            case TRANSFER:
+                Account destination = accounts.get(posting.getDestinationId());
+                if (destination == null) {
+                    throw new AccountIdException();
+                }
+                if (account.getBalance().compareTo(amount) < 0) {
+                    throw new InsufficientFundsException();
+                }
+                account.setBalance(account.getBalance().subtract(amount));
+                destination.setBalance(destination.getBalance().add(amount));
+                operationRepository.createTransferOperation(account, destination, amount, OperationType.TRANSFER_OUT, posting.getTitle());
+                operationRepository.createTransferOperation(account, destination, amount, OperationType.TRANSFER_IN, posting.getTitle());
+                break;
+        }
+    }
+
+    private void runPosting(Long id, Long otherId, Runnable posting) {
+        // a posting joining an outer unit of work cannot be retried on its own, the outer transaction is already lost
+        int maxAttempts = concurrencyMode == ConcurrencyMode.OPTIMISTIC && !UnitOfWork.isActive()
+                ? retryPolicy.getMaxAttempts() : 1;
+        // held until the posting committed. An outer unit of work commits after we return, it has to serialize itself.
+        boolean locked = concurrencyMode == ConcurrencyMode.STRIPED && !UnitOfWork.isActive();
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (locked) {
+                    lockManager.runLocked(id, otherId, () -> UnitOfWork.run(posting));
+                } else {
+                    UnitOfWork.run(posting);
+                }
+                return;
+            } catch (RuntimeException e) {
+                if (!isOptimisticLockFailure(e)) {
+                    throw e;
+                }
+
+                optimisticConflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    logger.severe("Posting failed on a concurrent update after " + attempt + " attempt(s)");
+                    throw e;
+                }
+
+                optimisticRetries.incrementAndGet();
+                logger.fine("Concurrent update detected, retrying posting, attempt: " + (attempt + 1));
+                try {
+                    Thread.sleep(retryPolicy.backoffMillis(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private BalanceStore store() {
+        BalanceStore store = balanceStore;
+        if (store == null) {
+            throw new IllegalStateException("IN_MEMORY concurrency mode needs a BalanceStore");
+        }
+        return store;
+    }
+
+    private static long requireId(Long id) {
+        if (id == null) {
+            throw new AccountIdException();
+        }
+        return id;
+    }
+
+    // ACCOUNTS.BALANCE has scale 0, a fraction held by the store would be lost once the account is read back
+    private static long minorUnits(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        if (amount.scale() > 0 && amount.stripTrailingZeros().scale() > 0) {
+            throw new ArithmeticException("Amount " + amount + " is not a whole amount, the balances keep no decimal places");
+        }
+        return MinorUnits.of(amount);
+    }
+
+    // reported once committed, a rolled back posting must not show up in the ranking
+    private void balanceChanged(Account account) {
+        TopBalances ranking = topBalances;
+        if (ranking != null) {
+            UnitOfWork.afterCommit(() -> ranking.update(account));
+        }
+    }
+
+    private static boolean isOptimisticLockFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException
+                    || cause instanceof org.eclipse.persistence.exceptions.OptimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void applyDelta(Long id, BigDecimal delta, boolean requireNonNegative, OperationType type) {
+        try {
+            Account ac = accountRepository.applyDelta(id, delta, requireNonNegative, type);
+            balanceChanged(ac);
+            logger.finer(type + " successful for account: " + id + ", current balance: " + ac.getBalance());
+        } catch (IllegalStateException e) {
+            logger.severe("Withdraw amount is insufficient for account: " + id);
+            throw new InsufficientFundsException();
+        }
+    }
+
+    private void transferLocked(Long idSource, Long idDestination, BigDecimal amount, String title) {
+        try {
+            accountRepository.transfer(idSource, idDestination, amount, title);
+            if (topBalances != null) {
+                // the accounts the transfer locked, managed by this unit of work, so no further query
+                accountRepository.findById(idSource).ifPresent(this::balanceChanged);
+                accountRepository.findById(idDestination).ifPresent(this::balanceChanged);
+            }
+            logger.finer("Locked transfer successful for account: " + idSource);
+        } catch (IllegalStateException e) {
+            logger.severe("Insufficient funds for account: " + idSource);
+            throw new InsufficientFundsException();
+        }
+    }
+
     // task 4 methods
         // Account realted
     public List<Account> findByNameStartWith(String prefix){
@@ -193,6 +711,17 @@ public class BankImpl implements Bank {
         return accountRepository.findByTheRichest();
     }
 
+    @Override
+    public List<AccountBalance> findTopRichest(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1");
+        }
+        if (topBalances == null) {
+            return accountRepository.findTopByBalance(n).stream().map(AccountBalance::of).toList();
+        }
+        return topBalances.top(n);
+    }
+
     public List<Account> findByEmptyHistory(){
         return accountRepository.findByEmptyHistory();
     }
@@ -203,17 +732,104 @@ public class BankImpl implements Bank {
 
     // Operations related
     public List<AccountOperation> findByDateRange(Long id, Date from, Date to){
-        LocalDateTime fromDateTime = Instant.ofEpochMilli(from.getTime())
-                .atZone(ZoneId.systemDefault())
-                .toLocalDateTime();
-        LocalDateTime toDateTime = Instant.ofEpochMilli(to.getTime())
-                .atZone(ZoneId.systemDefault())
-                .toLocalDateTime();
-
-        return operationRepository.findByDateRange(id, fromDateTime ,toDateTime);
+        return operationRepository.findByDateRange(id, toLocalDateTime(from), toLocalDateTime(to));
     }
 
     public OperationType findByMostFrequentType(Long id){
         return operationRepository.findByMostFrequentType(id);
     }
+
+    // pages and streams of the finders above
+    @Override
+    public Page<Account> findAccounts(Cursor after, int pageSize) {
+        return accountRepository.findAll(after, pageSize);
+    }
+
+    @Override
+    public Stream<Account> streamAccounts() {
+        return accountRepository.streamAll();
+    }
+
+    @Override
+    public Page<Account> findByNameStartWith(String prefix, Cursor after, int pageSize) {
+        return accountRepository.findByNameStartWith(prefix, after, pageSize);
+    }
+
+    @Override
+    public Stream<Account> streamByNameStartWith(String prefix) {
+        return accountRepository.streamByNameStartWith(prefix);
+    }
+
+    @Override
+    public Page<Account> findByBalanceBetween(BigDecimal min, BigDecimal max, Cursor after, int pageSize) {
+        return accountRepository.findByBalanceBetween(min, max, after, pageSize);
+    }
+
+    @Override
+    public Stream<Account> streamByBalanceBetween(BigDecimal min, BigDecimal max) {
+        return accountRepository.streamByBalanceBetween(min, max);
+    }
+
+    @Override
+    public Page<AccountOperation> findByDateRange(Long id, Date from, Date to, Cursor after, int pageSize) {
+        return operationRepository.findByDateRange(id, toLocalDateTime(from), toLocalDateTime(to), after, pageSize);
+    }
+
+    @Override
+    public Stream<AccountOperation> streamByDateRange(Long id, Date from, Date to) {
+        return operationRepository.streamByDateRange(id, toLocalDateTime(from), toLocalDateTime(to));
+    }
+
+    @Override
+    public Page<AccountOperation> findOperations(Long id, Cursor after, int pageSize) {
+        return operationRepository.findByAccount(existingAccount(id), after, pageSize);
+    }
+
+    @Override
+    public Stream<AccountOperation> streamOperations(Long id) {
+        return operationRepository.streamByAccount(existingAccount(id));
+    }
+
+    @Override
+    public List<OperationView> findHistory(Long id, Date from, Date to) {
+        if (id == null) {
+            throw new AccountIdException();
+        }
+        return requireAccount(id, operationRepository.findViewsByDateRange(id, toLocalDateTime(from), toLocalDateTime(to)));
+    }
+
+    @Override
+    public Page<OperationView> findHistory(Long id, Cursor after, int pageSize) {
+        if (id == null) {
+            throw new AccountIdException();
+        }
+        Page<OperationView> page = operationRepository.findViewsByAccount(id, after, pageSize);
+        requireAccount(id, page.getItems());
+        return page;
+    }
+
+    // the views do not load the account, only an empty result can come from an account that does not exist
+    private <T> List<T> requireAccount(Long id, List<T> rows) {
+        if (rows.isEmpty() && !accountRepository.exists(id)) {
+            logger.severe("Account with id: " + id + " not found!");
+            throw new AccountIdException();
+        }
+        return rows;
+    }
+
+    private Account existingAccount(Long id) {
+        if (id == null) {
+            throw new AccountIdException();
+        }
+        return accountRepository.findById(id).orElseThrow(() -> {
+            logger.severe("Account with id: " + id + " not found!");
+            return new AccountIdException();
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return Instant.ofEpochMilli(date.getTime())
+                .atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
+    }
 }
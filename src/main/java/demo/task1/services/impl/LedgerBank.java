@@ -0,0 +1,970 @@
+package demo.task1.services.impl;
+
+import demo.task1.models.AbstractModel;
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.NewAccount;
+import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
+import demo.task1.models.TransferOperation;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
+import demo.task1.services.AccountBalance;
+import demo.task1.services.Bank;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
+import demo.task1.utils.MinorUnits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Bank without a database, for simulations and load tests. Everything lives in three memory-mapped files of its
+ * directory:
+ * <ul>
+ *     <li>accounts.ledger, the account table, one fixed 128 byte record per account at a position computed from its
+ *     id: balance, opening balance, operation counters, owner and the first and last operation of its history</li>
+ *     <li>operations.ledger, the append-only ledger, one fixed 64 byte record per operation. The operations of an
+ *     account are chained to each other, so its history is read without an index and without a scan</li>
+ *     <li>strings.ledger, names, addresses and transfer titles the records point to</li>
+ * </ul>
+ * Amounts are kept as long {@link MinorUnits}: an amount with more than {@link MinorUnits#SCALE} decimal places, or a
+ * posting that would take a balance out of the long range, fails with ArithmeticException and changes nothing.
+ * createAccount and findAccount look the owner up in an open addressing hash index of (name, address), built when the
+ * ledger is opened.
+ * <p>
+ * Postings run one at a time under a single lock, a posting is a handful of writes to mapped memory. The ledger is the
+ * source of truth: a posting appends its operations and publishes them before it applies them to the account table,
+ * and a ledger that was not closed is opened by replaying every operation onto the opening balances. That survives
+ * the process dying at any point. Nothing is forced to the disk per posting, an OS crash or a power loss can lose or
+ * tear what was written after the last {@link #force()} or {@link #close()}.
+ * <p>
+ * Accounts and operations returned by the finders are read-only copies. The account of an operation and the other
+ * account of a transfer carry the id only, the history of an account is read with findOperations or findHistory.
+ */
+public class LedgerBank implements Bank, Closeable {
+    private static final int ACCOUNTS_MAGIC = 0x4c414343;
+    private static final int OPERATIONS_MAGIC = 0x4c4f5053;
+    private static final int STRINGS_MAGIC = 0x4c535452;
+    private static final int ACCOUNT_SEGMENT_BYTES = 1 << 24;
+    private static final int OPERATION_SEGMENT_BYTES = 1 << 26;
+    private static final int STRING_SEGMENT_BYTES = 1 << 24;
+    private static final int MAX_STRING_BYTES = 1 << 16;
+    private static final int MIN_INDEX_CAPACITY = 1024;
+    private static final OperationType[] TYPES = OperationType.values();
+    private static final BigDecimal MIN_MINOR_UNITS = BigDecimal.valueOf(Long.MIN_VALUE);
+    private static final BigDecimal MAX_MINOR_UNITS = BigDecimal.valueOf(Long.MAX_VALUE);
+
+    // account record, the record of account id starts at ACCOUNT_BYTES * id, the first slot holds the file header
+    private static final int ACCOUNT_BYTES = 128;
+    private static final int BALANCE = 0;
+    private static final int OPENING_BALANCE = 8;
+    private static final int OPERATION_COUNT = 16;
+    // one counter per OperationType, in declaration order
+    private static final int TYPE_COUNTS = 24;
+    private static final int FIRST_OPERATION = 56;
+    private static final int LAST_OPERATION = 64;
+    // name and address, one after the other in strings.ledger
+    private static final int OWNER = 72;
+    private static final int ACCOUNT_CREATED_AT = 80;
+    private static final int ACCOUNT_UPDATED_AT = 88;
+    private static final int OWNER_HASH = 96;
+
+    // operation record, the record of operation id starts at OPERATION_BYTES * id
+    private static final int OPERATION_BYTES = 64;
+    private static final int ACCOUNT_ID = 0;
+    // 0 for operations that are not transfers, ids start at 1
+    private static final int OTHER_ACCOUNT_ID = 8;
+    private static final int AMOUNT = 16;
+    private static final int CREATED_AT = 24;
+    // previous and next operation of the same account, 0 at the ends of its history
+    private static final int PREVIOUS = 32;
+    private static final int NEXT = 40;
+    private static final int TITLE = 48;
+    private static final int TYPE = 56;
+
+    private static final long NO_TITLE = -1;
+
+    private static final Logger logger = Logger.getLogger(LedgerBank.class.getName());
+
+    private final Path directory;
+    private final LedgerFile accounts;
+    private final LedgerFile operations;
+    private final LedgerFile strings;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ZoneRules zone = ZoneId.systemDefault().getRules();
+    private long accountCount;
+    private long operationCount;
+    // created at of the newest operation in epoch microseconds of the local time, operations never go back in time,
+    // so their ids are in (createdAt, id) order and a cursor is the position of its operation
+    private long lastCreatedAt = Long.MIN_VALUE;
+    // open addressing (name, address) index, ids of accounts and 0 for a free slot, at most half full
+    private long[] ownerSlots;
+    private boolean closed;
+
+    /**
+     * Opens the ledger in the directory, creating the directory and the files when missing.
+     *
+     * @throws IllegalStateException when a file of the directory is not a file of a ledger
+     */
+    public LedgerBank(Path directory) {
+        this.directory = directory;
+        List<LedgerFile> opened = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            opened.add(new LedgerFile(directory.resolve("accounts.ledger"), ACCOUNTS_MAGIC, ACCOUNT_BYTES,
+                    ACCOUNT_SEGMENT_BYTES));
+            opened.add(new LedgerFile(directory.resolve("operations.ledger"), OPERATIONS_MAGIC, OPERATION_BYTES,
+                    OPERATION_SEGMENT_BYTES));
+            opened.add(new LedgerFile(directory.resolve("strings.ledger"), STRINGS_MAGIC, LedgerFile.HEADER_BYTES,
+                    STRING_SEGMENT_BYTES));
+        } catch (IOException | RuntimeException e) {
+            for (LedgerFile file : opened) {
+                try {
+                    file.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            if (e instanceof IOException io) {
+                throw new UncheckedIOException("Cannot open ledger " + directory, io);
+            }
+            throw (RuntimeException) e;
+        }
+        accounts = opened.get(0);
+        operations = opened.get(1);
+        strings = opened.get(2);
+
+        accountCount = accounts.getLength() / ACCOUNT_BYTES - 1;
+        operationCount = operations.getLength() / OPERATION_BYTES - 1;
+        if (!accounts.isClean()) {
+            logger.warning("Ledger " + directory + " was not closed, replaying " + operationCount + " operations");
+            replay();
+        }
+        if (operationCount > 0) {
+            lastCreatedAt = operations.getLong(operation(operationCount) + CREATED_AT);
+        }
+        buildOwnerIndex();
+        // until close marks it clean again, the next open replays
+        accounts.setClean(false);
+        accounts.forceHeader();
+        logger.info("Ledger " + directory + " opened, accounts: " + accountCount + ", operations: " + operationCount);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getOperationCount() {
+        return read(() -> operationCount);
+    }
+
+    /**
+     * Writes everything posted so far through to the disk.
+     */
+    public void force() {
+        lock();
+        try {
+            accounts.force();
+            operations.force();
+            strings.force();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces the files and marks the ledger clean, so the next open does not replay it. Further calls fail with
+     * IllegalStateException.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            strings.force();
+            operations.force();
+            accounts.force();
+            accounts.setClean(true);
+            accounts.forceHeader();
+            for (LedgerFile file : List.of(accounts, operations, strings)) {
+                file.close();
+            }
+            logger.info("Ledger " + directory + " closed, accounts: " + accountCount + ", operations: " + operationCount);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot close ledger " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Long createAccount(String name, String address) {
+        lock();
+        try {
+            long id = findOwner(name, address);
+            return id != 0 ? id : newAccount(name, address, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Imports row by row, an owner that exists keeps its account and balance. Rows imported before a failing row
+     * stay imported.
+     */
+    @Override
+    public List<Long> importAccounts(Stream<NewAccount> rows) {
+        List<Long> ids = new ArrayList<>();
+        rows.forEach(row -> {
+            long openingBalance = MinorUnits.of(row.getOpeningBalance());
+            lock();
+            try {
+                long id = findOwner(row.getName(), row.getAddress());
+                ids.add(id != 0 ? id : newAccount(row.getName(), row.getAddress(), openingBalance));
+            } finally {
+                lock.unlock();
+            }
+        });
+        logger.fine("Accounts imported, rows: " + ids.size());
+        return ids;
+    }
+
+    @Override
+    public Long findAccount(String name, String address) {
+        lock();
+        try {
+            long id = findOwner(name, address);
+            return id == 0 ? null : id;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // no logging on the posting path, the messages would be built for every posting
+    @Override
+    public void deposit(Long id, BigDecimal amount) {
+        long minorUnits = amount == null ? 0 : MinorUnits.of(amount);
+        lock();
+        try {
+            long account = existingAccount(id);
+            add(id, accounts.getLong(account + BALANCE), minorUnits);
+            long operationId = operationCount + 1;
+            writeOperation(operationId, id, OperationType.DEPOSIT, minorUnits, 0, NO_TITLE, now());
+            publish(operationId);
+            apply(operationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public BigDecimal getBalance(Long id) {
+        lock();
+        try {
+            return MinorUnits.toAmount(accounts.getLong(existingAccount(id) + BALANCE));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void withdraw(Long id, BigDecimal amount) {
+        long minorUnits = amount == null ? 0 : MinorUnits.of(amount);
+        lock();
+        try {
+            long balance = accounts.getLong(existingAccount(id) + BALANCE);
+            if (balance < minorUnits) {
+                throw new InsufficientFundsException();
+            }
+            subtract(id, balance, minorUnits);
+            long operationId = operationCount + 1;
+            writeOperation(operationId, id, OperationType.WITHDRAW, minorUnits, 0, NO_TITLE, now());
+            publish(operationId);
+            apply(operationId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A null amount transfers nothing, like a null deposit or withdrawal.
+     */
+    @Override
+    public void transfer(Long idSource, Long idDestination, BigDecimal amount, String title) {
+        long minorUnits = amount == null ? 0 : MinorUnits.of(amount);
+        byte[] encodedTitle = encode(title);
+        lock();
+        try {
+            long source = existingAccount(idSource);
+            long destination = existingAccount(idDestination);
+            long sourceBalance = accounts.getLong(source + BALANCE);
+            if (sourceBalance < minorUnits) {
+                throw new InsufficientFundsException();
+            }
+            long sourceAfter = subtract(idSource, sourceBalance, minorUnits);
+            add(idDestination, idSource.equals(idDestination)
+                    ? sourceAfter : accounts.getLong(destination + BALANCE), minorUnits);
+
+            long titlePosition = NO_TITLE;
+            if (title != null) {
+                titlePosition = strings.reserve(LedgerFile.stringBytes(encodedTitle));
+                strings.setLength(strings.putString(titlePosition, encodedTitle));
+            }
+            long createdAt = now();
+            long out = operationCount + 1;
+            writeOperation(out, idSource, OperationType.TRANSFER_OUT, minorUnits, idDestination, titlePosition, createdAt);
+            writeOperation(out + 1, idDestination, OperationType.TRANSFER_IN, minorUnits, idSource, titlePosition,
+                    createdAt);
+            // both operations or none of them are in the ledger
+            publish(out + 1);
+            apply(out);
+            apply(out + 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Runs the postings one by one under the lock, no other posting comes between them. A rejected posting changes
+     * nothing, an amount the ledger cannot hold exactly is reported as INVALID_AMOUNT.
+     */
+    @Override
+    public List<PostingResult> executeBatch(List<Posting> postings) {
+        List<PostingResult> results = new ArrayList<>(postings.size());
+        lock();
+        try {
+            for (Posting posting : postings) {
+                try {
+                    switch (posting.getType()) {
+                        case DEPOSIT -> deposit(posting.getAccountId(), posting.getAmount());
+                        case WITHDRAW -> withdraw(posting.getAccountId(), posting.getAmount());
+                        case TRANSFER -> transfer(posting.getAccountId(), posting.getDestinationId(),
+                                posting.getAmount(), posting.getTitle());
+                    }
+                    results.add(PostingResult.ok());
+                } catch (AccountIdException e) {
+                    results.add(PostingResult.failed(e));
+                } catch (InsufficientFundsException e) {
+                    results.add(PostingResult.failed(e));
+                } catch (ArithmeticException e) {
+                    results.add(PostingResult.failed(e));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        logger.fine("Batch executed, postings: " + postings.size());
+        return results;
+    }
+
+    // finders, a scan of the account table where the database would use an index
+    @Override
+    public List<Account> findByNameStartWith(String prefix) {
+        return findAccounts(id -> hasNamePrefix(id, prefix));
+    }
+
+    @Override
+    public List<Account> findByBalanceBetween(BigDecimal min, BigDecimal max) {
+        return findAccounts(balanceBetween(min, max));
+    }
+
+    @Override
+    public List<Account> findByTheRichest() {
+        return read(() -> {
+            long richest = Long.MIN_VALUE;
+            for (long id = 1; id <= accountCount; id++) {
+                richest = Math.max(richest, accounts.getLong(account(id) + BALANCE));
+            }
+            long max = richest;
+            return findAccounts(id -> accounts.getLong(account(id) + BALANCE) == max);
+        });
+    }
+
+    @Override
+    public List<Account> findByEmptyHistory() {
+        return findAccounts(id -> accounts.getLong(account(id) + OPERATION_COUNT) == 0);
+    }
+
+    @Override
+    public List<Account> findByMostOperations() {
+        return read(() -> {
+            long most = Long.MIN_VALUE;
+            for (long id = 1; id <= accountCount; id++) {
+                most = Math.max(most, accounts.getLong(account(id) + OPERATION_COUNT));
+            }
+            long max = most;
+            return findAccounts(id -> accounts.getLong(account(id) + OPERATION_COUNT) == max);
+        });
+    }
+
+    @Override
+    public List<AccountOperation> findByDateRange(Long id, Date from, Date to) {
+        return read(() -> exists(id)
+                ? ascending(id, micros(toLocalDateTime(from)), Long.MIN_VALUE, micros(toLocalDateTime(to)),
+                        Integer.MAX_VALUE, this::operationCopy)
+                : List.of());
+    }
+
+    @Override
+    public OperationType findByMostFrequentType(Long id) {
+        return read(() -> exists(id) ? accountCopy(id).getMostFrequentType() : null);
+    }
+
+    @Override
+    public Page<Account> findAccounts(Cursor after, int pageSize) {
+        return findAccounts(after, pageSize, id -> true);
+    }
+
+    @Override
+    public Stream<Account> streamAccounts() {
+        return streamAccounts(id -> true);
+    }
+
+    @Override
+    public Page<Account> findByNameStartWith(String prefix, Cursor after, int pageSize) {
+        return findAccounts(after, pageSize, id -> hasNamePrefix(id, prefix));
+    }
+
+    @Override
+    public Stream<Account> streamByNameStartWith(String prefix) {
+        return streamAccounts(id -> hasNamePrefix(id, prefix));
+    }
+
+    @Override
+    public Page<Account> findByBalanceBetween(BigDecimal min, BigDecimal max, Cursor after, int pageSize) {
+        return findAccounts(after, pageSize, balanceBetween(min, max));
+    }
+
+    @Override
+    public Stream<Account> streamByBalanceBetween(BigDecimal min, BigDecimal max) {
+        return streamAccounts(balanceBetween(min, max));
+    }
+
+    @Override
+    public Page<AccountOperation> findByDateRange(Long id, Date from, Date to, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return read(() -> {
+            if (!exists(id)) {
+                return Page.of(List.of(), pageSize);
+            }
+            long start = after == null ? micros(toLocalDateTime(from)) : micros(after.getCreatedAt());
+            return Page.of(ascending(id, start, after == null ? Long.MIN_VALUE : after.getId(),
+                    micros(toLocalDateTime(to)), pageSize + 1, this::operationCopy), pageSize);
+        });
+    }
+
+    /**
+     * Oldest first, reads the operations of one account at a time under the lock, operations posted meanwhile after
+     * the last one read are part of the stream.
+     */
+    @Override
+    public Stream<AccountOperation> streamByDateRange(Long id, Date from, Date to) {
+        long fromMicros = micros(toLocalDateTime(from));
+        long toMicros = micros(toLocalDateTime(to));
+        long first = read(() -> exists(id) ? firstAfter(id, fromMicros, Long.MIN_VALUE) : 0);
+        return Stream.iterate(first, operation -> operation != 0 && read(() ->
+                        operations.getLong(operation(operation) + CREATED_AT) <= toMicros),
+                        operation -> read(() -> operations.getLong(operation(operation) + NEXT)))
+                .map(operation -> read(() -> operationCopy(operation)));
+    }
+
+    @Override
+    public Page<AccountOperation> findOperations(Long id, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return read(() -> {
+            existingAccount(id);
+            return Page.of(descending(id, after, pageSize + 1, this::operationCopy), pageSize);
+        });
+    }
+
+    @Override
+    public Stream<AccountOperation> streamOperations(Long id) {
+        long last = read(() -> accounts.getLong(existingAccount(id) + LAST_OPERATION));
+        // the previous operation of an operation never changes, only the walk is under the lock
+        return Stream.iterate(last, operation -> operation != 0,
+                        operation -> read(() -> operations.getLong(operation(operation) + PREVIOUS)))
+                .map(operation -> read(() -> operationCopy(operation)));
+    }
+
+    @Override
+    public List<OperationView> findHistory(Long id, Date from, Date to) {
+        return read(() -> {
+            existingAccount(id);
+            return ascending(id, micros(toLocalDateTime(from)), Long.MIN_VALUE, micros(toLocalDateTime(to)),
+                    Integer.MAX_VALUE, this::view);
+        });
+    }
+
+    @Override
+    public Page<OperationView> findHistory(Long id, Cursor after, int pageSize) {
+        checkPageSize(pageSize);
+        return read(() -> {
+            existingAccount(id);
+            return Page.of(descending(id, after, pageSize + 1, this::view), pageSize,
+                    view -> Cursor.at(view.getCreatedAt(), view.getId()));
+        });
+    }
+
+    @Override
+    public List<AccountBalance> findTopRichest(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1");
+        }
+        return read(() -> {
+            // the n richest seen so far, the poorest of them on top
+            Comparator<Long> byRank = Comparator.<Long>comparingLong(id -> accounts.getLong(account(id) + BALANCE))
+                    .thenComparing(Comparator.reverseOrder());
+            PriorityQueue<Long> top = new PriorityQueue<>(byRank);
+            for (long id = 1; id <= accountCount; id++) {
+                top.add(id);
+                if (top.size() > n) {
+                    top.poll();
+                }
+            }
+            List<AccountBalance> richest = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                long id = top.poll();
+                richest.add(new AccountBalance(id, strings.getString(accounts.getLong(account(id) + OWNER)),
+                        MinorUnits.toAmount(accounts.getLong(account(id) + BALANCE))));
+            }
+            Collections.reverse(richest);
+            return richest;
+        });
+    }
+
+    private long newAccount(String name, String address, long openingBalance) {
+        byte[] encodedName = encode(name);
+        byte[] encodedAddress = encode(address);
+        long owner = strings.reserve(LedgerFile.stringBytes(encodedName) + LedgerFile.stringBytes(encodedAddress));
+        strings.setLength(strings.putString(strings.putString(owner, encodedName), encodedAddress));
+
+        long id = accountCount + 1;
+        long account = account(id);
+        long createdAt = micros(AbstractModel.now());
+        // every field, an account that was written but not published before a crash may have left bytes here
+        accounts.putLong(account + OPENING_BALANCE, openingBalance);
+        accounts.putLong(account + OWNER, owner);
+        accounts.putLong(account + ACCOUNT_CREATED_AT, createdAt);
+        accounts.putInt(account + OWNER_HASH, ownerHash(name, address));
+        reset(account);
+        accounts.setLength(account + ACCOUNT_BYTES);
+        accountCount = id;
+        indexOwner(id);
+        return id;
+    }
+
+    private void writeOperation(long operationId, long accountId, OperationType type, long amount, long otherAccountId,
+                                long title, long createdAt) {
+        long operation = operation(operationId);
+        operations.putLong(operation + ACCOUNT_ID, accountId);
+        operations.putLong(operation + OTHER_ACCOUNT_ID, otherAccountId);
+        operations.putLong(operation + AMOUNT, amount);
+        operations.putLong(operation + CREATED_AT, createdAt);
+        operations.putLong(operation + TITLE, title);
+        operations.put(operation + TYPE, (byte) type.ordinal());
+    }
+
+    // moves the length of the ledger past the operation, from here on it is replayed
+    private void publish(long lastOperationId) {
+        operations.setLength(operation(lastOperationId) + OPERATION_BYTES);
+        operationCount = lastOperationId;
+    }
+
+    // applies a published operation to its account and links it to the account's history, replay runs it too
+    private void apply(long operationId) {
+        long operation = operation(operationId);
+        long account = account(operations.getLong(operation + ACCOUNT_ID));
+        OperationType type = TYPES[operations.get(operation + TYPE)];
+        long amount = operations.getLong(operation + AMOUNT);
+        long balance = accounts.getLong(account + BALANCE);
+
+        accounts.putLong(account + BALANCE,
+                type == OperationType.DEPOSIT || type == OperationType.TRANSFER_IN ? balance + amount : balance - amount);
+        accounts.putLong(account + OPERATION_COUNT, accounts.getLong(account + OPERATION_COUNT) + 1);
+        long typeCount = account + TYPE_COUNTS + (long) Long.BYTES * type.ordinal();
+        accounts.putLong(typeCount, accounts.getLong(typeCount) + 1);
+
+        long previous = accounts.getLong(account + LAST_OPERATION);
+        if (previous == 0) {
+            accounts.putLong(account + FIRST_OPERATION, operationId);
+        } else {
+            operations.putLong(operation(previous) + NEXT, operationId);
+        }
+        operations.putLong(operation + PREVIOUS, previous);
+        operations.putLong(operation + NEXT, 0);
+        accounts.putLong(account + LAST_OPERATION, operationId);
+        accounts.putLong(account + ACCOUNT_UPDATED_AT, operations.getLong(operation + CREATED_AT));
+    }
+
+    // a crash may have left any account between two states, the ledger tells where they all ended
+    private void replay() {
+        for (long id = 1; id <= accountCount; id++) {
+            reset(account(id));
+        }
+        for (long operationId = 1; operationId <= operationCount; operationId++) {
+            apply(operationId);
+        }
+    }
+
+    private void reset(long account) {
+        accounts.putLong(account + BALANCE, accounts.getLong(account + OPENING_BALANCE));
+        accounts.putLong(account + OPERATION_COUNT, 0);
+        for (int type = 0; type < TYPES.length; type++) {
+            accounts.putLong(account + TYPE_COUNTS + (long) Long.BYTES * type, 0);
+        }
+        accounts.putLong(account + FIRST_OPERATION, 0);
+        accounts.putLong(account + LAST_OPERATION, 0);
+        accounts.putLong(account + ACCOUNT_UPDATED_AT, accounts.getLong(account + ACCOUNT_CREATED_AT));
+    }
+
+    // balance after a posting, checked before the posting writes anything
+    private static long add(Long id, long balance, long amount) {
+        try {
+            return Math.addExact(balance, amount);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Balance of account " + id + " would overflow");
+        }
+    }
+
+    private static long subtract(Long id, long balance, long amount) {
+        try {
+            return Math.subtractExact(balance, amount);
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Balance of account " + id + " would overflow");
+        }
+    }
+
+    // created at of a new operation, never before the previous one. AbstractModel.now() in microseconds, without
+    // building the LocalDateTime
+    private long now() {
+        Instant now = Instant.now();
+        long seconds = now.getEpochSecond() + zone.getOffset(now).getTotalSeconds();
+        lastCreatedAt = Math.max(lastCreatedAt, seconds * 1_000_000 + now.getNano() / 1_000);
+        return lastCreatedAt;
+    }
+
+    // first operation of the account after (createdAt, id), 0 when there is none
+    private long firstAfter(long id, long createdAt, long afterId) {
+        if (afterId >= 1 && afterId <= operationCount
+                && operations.getLong(operation(afterId) + ACCOUNT_ID) == id
+                && operations.getLong(operation(afterId) + CREATED_AT) == createdAt) {
+            return operations.getLong(operation(afterId) + NEXT);
+        }
+        long first = 0;
+        for (long operation = accounts.getLong(account(id) + LAST_OPERATION); operation != 0;
+             operation = operations.getLong(operation(operation) + PREVIOUS)) {
+            long operationCreatedAt = operations.getLong(operation(operation) + CREATED_AT);
+            if (operationCreatedAt < createdAt || operationCreatedAt == createdAt && operation <= afterId) {
+                break;
+            }
+            first = operation;
+        }
+        return first;
+    }
+
+    // operations of the account after (createdAt, afterId) and created at or before to, oldest first
+    private <T> List<T> ascending(long id, long createdAt, long afterId, long to, int limit, LongFunction<T> copy) {
+        List<T> rows = new ArrayList<>();
+        for (long operation = firstAfter(id, createdAt, afterId);
+             operation != 0 && rows.size() < limit && operations.getLong(operation(operation) + CREATED_AT) <= to;
+             operation = operations.getLong(operation(operation) + NEXT)) {
+            rows.add(copy.apply(operation));
+        }
+        return rows;
+    }
+
+    // operations of the account before the cursor, newest first
+    private <T> List<T> descending(long id, Cursor before, int limit, LongFunction<T> copy) {
+        long operation = accounts.getLong(account(id) + LAST_OPERATION);
+        if (before != null) {
+            long createdAt = micros(before.getCreatedAt());
+            long beforeId = before.getId();
+            while (operation != 0) {
+                long operationCreatedAt = operations.getLong(operation(operation) + CREATED_AT);
+                if (operationCreatedAt < createdAt || operationCreatedAt == createdAt && operation < beforeId) {
+                    break;
+                }
+                operation = operations.getLong(operation(operation) + PREVIOUS);
+            }
+        }
+        List<T> rows = new ArrayList<>();
+        for (; operation != 0 && rows.size() < limit; operation = operations.getLong(operation(operation) + PREVIOUS)) {
+            rows.add(copy.apply(operation));
+        }
+        return rows;
+    }
+
+    private List<Account> findAccounts(LongPredicate matches) {
+        return read(() -> {
+            List<Account> found = new ArrayList<>();
+            for (long id = 1; id <= accountCount; id++) {
+                if (matches.test(id)) {
+                    found.add(accountCopy(id));
+                }
+            }
+            return found;
+        });
+    }
+
+    private Page<Account> findAccounts(Cursor after, int pageSize, LongPredicate matches) {
+        checkPageSize(pageSize);
+        return read(() -> {
+            List<Account> rows = new ArrayList<>();
+            for (long id = after == null ? 1 : Math.max(1, after.getId() + 1); id <= accountCount && rows.size() <= pageSize; id++) {
+                if (matches.test(id)) {
+                    rows.add(accountCopy(id));
+                }
+            }
+            return Page.of(rows, pageSize);
+        });
+    }
+
+    // in id order, the accounts created before the stream was opened, one at a time under the lock
+    private Stream<Account> streamAccounts(LongPredicate matches) {
+        return LongStream.rangeClosed(1, read(() -> accountCount))
+                .filter(id -> read(() -> matches.test(id)))
+                .mapToObj(id -> read(() -> accountCopy(id)));
+    }
+
+    private boolean hasNamePrefix(long id, String prefix) {
+        String name = strings.getString(accounts.getLong(account(id) + OWNER));
+        return name != null && name.startsWith(prefix);
+    }
+
+    // BETWEEN of the database, nothing is between a null bound
+    private LongPredicate balanceBetween(BigDecimal min, BigDecimal max) {
+        if (min == null || max == null) {
+            return id -> false;
+        }
+        long low = bound(min, RoundingMode.CEILING);
+        long high = bound(max, RoundingMode.FLOOR);
+        return id -> {
+            long balance = accounts.getLong(account(id) + BALANCE);
+            return balance >= low && balance <= high;
+        };
+    }
+
+    private static long bound(BigDecimal amount, RoundingMode rounding) {
+        BigDecimal minorUnits = amount.movePointRight(MinorUnits.SCALE).setScale(0, rounding);
+        return minorUnits.max(MIN_MINOR_UNITS).min(MAX_MINOR_UNITS).longValueExact();
+    }
+
+    private Account accountCopy(long id) {
+        long account = account(id);
+        long owner = accounts.getLong(account + OWNER);
+        String name = strings.getString(owner);
+        return Account.builder()
+                .id(id)
+                .name(name)
+                .address(address(owner))
+                .balance(MinorUnits.toAmount(accounts.getLong(account + BALANCE)))
+                .operationCount(accounts.getLong(account + OPERATION_COUNT))
+                .depositCount(typeCount(account, OperationType.DEPOSIT))
+                .withdrawCount(typeCount(account, OperationType.WITHDRAW))
+                .transferInCount(typeCount(account, OperationType.TRANSFER_IN))
+                .transferOutCount(typeCount(account, OperationType.TRANSFER_OUT))
+                .createdAt(dateTime(accounts.getLong(account + ACCOUNT_CREATED_AT)))
+                .updatedAt(dateTime(accounts.getLong(account + ACCOUNT_UPDATED_AT)))
+                .build();
+    }
+
+    private long typeCount(long account, OperationType type) {
+        return accounts.getLong(account + TYPE_COUNTS + (long) Long.BYTES * type.ordinal());
+    }
+
+    private AccountOperation operationCopy(long operationId) {
+        long operation = operation(operationId);
+        long otherAccountId = operations.getLong(operation + OTHER_ACCOUNT_ID);
+        AccountOperation.AccountOperationBuilder<?, ?> builder = otherAccountId == 0
+                ? AccountOperation.builder()
+                : TransferOperation.builder().otherAccount(reference(otherAccountId)).title(title(operation));
+        LocalDateTime createdAt = dateTime(operations.getLong(operation + CREATED_AT));
+        return builder.id(operationId)
+                .account(reference(operations.getLong(operation + ACCOUNT_ID)))
+                .amount(MinorUnits.toAmount(operations.getLong(operation + AMOUNT)))
+                .type(TYPES[operations.get(operation + TYPE)])
+                .createdAt(createdAt)
+                .updatedAt(createdAt)
+                .version(1L)
+                .build();
+    }
+
+    private OperationView view(long operationId) {
+        long operation = operation(operationId);
+        long otherAccountId = operations.getLong(operation + OTHER_ACCOUNT_ID);
+        return new OperationView(operationId, operations.getLong(operation + ACCOUNT_ID),
+                TYPES[operations.get(operation + TYPE)],
+                MinorUnits.toAmount(operations.getLong(operation + AMOUNT)),
+                dateTime(operations.getLong(operation + CREATED_AT)),
+                title(operation), otherAccountId == 0 ? null : otherAccountId);
+    }
+
+    private String title(long operation) {
+        long title = operations.getLong(operation + TITLE);
+        return title == NO_TITLE ? null : strings.getString(title);
+    }
+
+    // the address follows the name
+    private String address(long owner) {
+        return strings.getString(owner + Integer.BYTES + Math.max(strings.getInt(owner), 0));
+    }
+
+    private static Account reference(long id) {
+        return Account.builder().id(id).build();
+    }
+
+    private long findOwner(String name, String address) {
+        int hash = ownerHash(name, address);
+        for (int slot = slot(hash); ; slot = (slot + 1) & (ownerSlots.length - 1)) {
+            long id = ownerSlots[slot];
+            if (id == 0) {
+                return 0;
+            }
+            long account = account(id);
+            if (accounts.getInt(account + OWNER_HASH) == hash) {
+                long owner = accounts.getLong(account + OWNER);
+                if (Objects.equals(strings.getString(owner), name) && Objects.equals(address(owner), address)) {
+                    return id;
+                }
+            }
+        }
+    }
+
+    private void indexOwner(long id) {
+        if (accountCount * 2 > ownerSlots.length) {
+            ownerSlots = new long[ownerSlots.length * 2];
+            for (long indexed = 1; indexed < id; indexed++) {
+                insertOwner(indexed);
+            }
+        }
+        insertOwner(id);
+    }
+
+    private void buildOwnerIndex() {
+        int capacity = MIN_INDEX_CAPACITY;
+        while (capacity < accountCount * 2) {
+            capacity *= 2;
+        }
+        ownerSlots = new long[capacity];
+        for (long id = 1; id <= accountCount; id++) {
+            insertOwner(id);
+        }
+    }
+
+    private void insertOwner(long id) {
+        int slot = slot(accounts.getInt(account(id) + OWNER_HASH));
+        while (ownerSlots[slot] != 0) {
+            slot = (slot + 1) & (ownerSlots.length - 1);
+        }
+        ownerSlots[slot] = id;
+    }
+
+    private int slot(int hash) {
+        // Fibonacci hashing, spreads the similar hashes of similar names over the table
+        return (int) (((hash * 0x9E3779B97F4A7C15L) >>> 32) & (ownerSlots.length - 1));
+    }
+
+    private static int ownerHash(String name, String address) {
+        return 31 * Objects.hashCode(name) + Objects.hashCode(address);
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        if (encoded.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("Text longer than " + MAX_STRING_BYTES + " bytes: " +
+                    value.substring(0, 20) + "...");
+        }
+        return encoded;
+    }
+
+    private boolean exists(Long id) {
+        return id != null && id >= 1 && id <= accountCount;
+    }
+
+    private long existingAccount(Long id) {
+        if (!exists(id)) {
+            logger.severe("Account with id: " + id + " not found!");
+            throw new AccountIdException();
+        }
+        return account(id);
+    }
+
+    private static long account(long id) {
+        return ACCOUNT_BYTES * id;
+    }
+
+    private static long operation(long id) {
+        return OPERATION_BYTES * id;
+    }
+
+    private void lock() {
+        lock.lock();
+        if (closed) {
+            lock.unlock();
+            throw new IllegalStateException("Ledger " + directory + " is closed");
+        }
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void checkPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+    }
+
+    // the local time in microseconds since the epoch, like the columns of the database
+    private static long micros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime dateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return Instant.ofEpochMilli(date.getTime())
+                .atZone(ZoneId.systemDefault())
+                .toLocalDateTime();
+    }
+}
@@ -0,0 +1,197 @@
+package demo.task1.services.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * One file of a {@link LedgerBank}, memory-mapped in segments of a fixed power of two size as it grows. The header
+ * holds a magic number, the clean flag and the length of the data: bytes written past the length are not there for
+ * the next open, so a record is published by moving the length over it once it is complete. Callers lay out their
+ * records so none crosses a segment. Not thread-safe, LedgerBank calls it under its lock.
+ */
+final class LedgerFile implements Closeable {
+    static final int HEADER_BYTES = 64;
+    private static final int MAGIC = 0;
+    private static final int CLEAN = 4;
+    private static final int LENGTH = 8;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final int segmentShift;
+    private final long segmentMask;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[1];
+    private long length;
+
+    /**
+     * @param dataStart length of a new file, the header and whatever the caller keeps in front of its records
+     */
+    LedgerFile(Path path, int magic, long dataStart, int segmentBytes) throws IOException {
+        if (Integer.bitCount(segmentBytes) != 1 || segmentBytes < HEADER_BYTES) {
+            throw new IllegalArgumentException("Segment size must be a power of two of at least " + HEADER_BYTES);
+        }
+        this.path = path;
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentBytes);
+        this.segmentMask = segmentBytes - 1;
+        this.channel = FileChannel.open(path, CREATE, READ, WRITE);
+
+        if (channel.size() == 0) {
+            segment(0).putInt(MAGIC, magic);
+            setLength(dataStart);
+            setClean(true);
+        } else if (segment(0).getInt(MAGIC) != magic) {
+            channel.close();
+            throw new IllegalStateException(path + " is not a ledger file of the expected kind");
+        }
+        length = segment(0).getLong(LENGTH);
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    long getLength() {
+        return length;
+    }
+
+    void setLength(long length) {
+        this.length = length;
+        segment(0).putLong(LENGTH, length);
+    }
+
+    boolean isClean() {
+        return segment(0).getInt(CLEAN) == 1;
+    }
+
+    void setClean(boolean clean) {
+        segment(0).putInt(CLEAN, clean ? 1 : 0);
+    }
+
+    /**
+     * @return position at the end of the data where bytes fit without crossing a segment, the caller moves the length
+     * past them once written
+     */
+    long reserve(int bytes) {
+        if (bytes > segmentMask + 1) {
+            throw new IllegalArgumentException(bytes + " bytes do not fit in a segment of " + path);
+        }
+        long position = length;
+        long segmentEnd = ((position >>> segmentShift) + 1) << segmentShift;
+        return position + bytes > segmentEnd ? segmentEnd : position;
+    }
+
+    long getLong(long position) {
+        return segment(position).getLong(offset(position));
+    }
+
+    void putLong(long position, long value) {
+        segment(position).putLong(offset(position), value);
+    }
+
+    int getInt(long position) {
+        return segment(position).getInt(offset(position));
+    }
+
+    void putInt(long position, int value) {
+        segment(position).putInt(offset(position), value);
+    }
+
+    byte get(long position) {
+        return segment(position).get(offset(position));
+    }
+
+    void put(long position, byte value) {
+        segment(position).put(offset(position), value);
+    }
+
+    /**
+     * @return the string written at the position by {@link #putString}, null for a null one
+     */
+    String getString(long position) {
+        int bytes = getInt(position);
+        if (bytes < 0) {
+            return null;
+        }
+        byte[] encoded = new byte[bytes];
+        segment(position).get(offset(position) + Integer.BYTES, encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes the length of the bytes and the bytes, a null array as length -1.
+     *
+     * @return position after them
+     */
+    long putString(long position, byte[] encoded) {
+        putInt(position, encoded == null ? -1 : encoded.length);
+        if (encoded == null) {
+            return position + Integer.BYTES;
+        }
+        segment(position).put(offset(position) + Integer.BYTES, encoded);
+        return position + Integer.BYTES + encoded.length;
+    }
+
+    /**
+     * @return bytes putString takes for the encoded string
+     */
+    static int stringBytes(byte[] encoded) {
+        return Integer.BYTES + (encoded == null ? 0 : encoded.length);
+    }
+
+    /**
+     * Writes the header and every mapped segment through to the disk.
+     */
+    void force() {
+        for (MappedByteBuffer segment : segments) {
+            if (segment != null) {
+                segment.force();
+            }
+        }
+    }
+
+    void forceHeader() {
+        segment(0).force(0, HEADER_BYTES);
+    }
+
+    // the mappings stay until their buffers are collected, the JDK has no call to unmap them
+    @Override
+    public void close() throws IOException {
+        force();
+        Arrays.fill(segments, null);
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(long position) {
+        int index = (int) (position >>> segmentShift);
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(index + 1, segments.length * 2));
+        }
+        MappedByteBuffer segment = segments[index];
+        if (segment == null) {
+            long size = segmentMask + 1;
+            try {
+                // mapping past the end grows the file, the new part reads as zeros
+                segment = channel.map(FileChannel.MapMode.READ_WRITE, index * size, size);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map " + path, e);
+            }
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    private int offset(long position) {
+        return (int) (position & segmentMask);
+    }
+}
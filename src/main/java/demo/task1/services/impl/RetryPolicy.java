@@ -0,0 +1,43 @@
+package demo.task1.services.impl;
+
+import lombok.Getter;
+
+/**
+ * How many times a posting that lost an optimistic lock race is attempted, and how long to wait between attempts.
+ * The wait grows exponentially from initialBackoffMillis up to maxBackoffMillis, with random jitter so that
+ * colliding threads do not retry in lockstep.
+ */
+@Getter
+public class RetryPolicy {
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoffMillis + ".." + maxBackoffMillis);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(5, 5, 200);
+    }
+
+    /**
+     * @param attempt number of the attempt that just failed, starting at 1
+     * @return milliseconds to wait before the next attempt
+     */
+    public long backoffMillis(int attempt) {
+        if (initialBackoffMillis == 0) {
+            return 0;
+        }
+        long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        return ceiling / 2 + (long) (Math.random() * (ceiling / 2 + 1));
+    }
+}
@@ -0,0 +1,224 @@
+package demo.task1.services.impl;
+
+import demo.task1.models.Account;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.services.AccountBalance;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+/**
+ * The accounts with the highest balances, kept in memory so {@link BankImpl#findTopRichest(int)} neither scans nor
+ * sorts ACCOUNTS on every call.
+ * <p>
+ * Up to capacity accounts are tracked with their exact balance, ranked by balance and then by id like
+ * AccountRepository.findTopByBalance. Every account that is not tracked ranks at or below bound, so the first n
+ * tracked accounts are the top n as long as the n-th of them ranks above bound. When it does not, e.g. after the
+ * richest accounts withdrew, the ranking is rebuilt from the database. A null bound means every account is tracked.
+ * <p>
+ * BankImpl reports every account a posting changed once its transaction has committed. Concurrent postings may report
+ * out of order, a report older than the version already seen for the account is ignored. Changes made around the
+ * bank, through AccountRepository directly or by deleting accounts, are only picked up by {@link #rebuild()}.
+ * <ul>
+ *     <li>bank.topBalances.capacity - accounts tracked, default 100, larger top(n) calls go to the database</li>
+ * </ul>
+ */
+public class TopBalances {
+    // versions remembered for accounts that are not tracked, so a late report cannot bring back an old balance
+    private static final int RECENT_VERSIONS = 10_000;
+
+    private record Entry(Long id, String name, BigDecimal balance, Long version) {
+        static Entry of(Account account) {
+            return new Entry(account.getId(), account.getName(), account.getBalance(), account.getVersion());
+        }
+    }
+
+    private static final Comparator<Entry> RANKING = Comparator.comparing(Entry::balance).reversed()
+            .thenComparing(Entry::id);
+
+    private final AccountRepository accountRepository;
+    private final int capacity;
+    private final TreeSet<Entry> ranking = new TreeSet<>(RANKING);
+    private final Map<Long, Entry> tracked = new HashMap<>();
+    private final Map<Long, Long> recentVersions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > RECENT_VERSIONS;
+        }
+    };
+    private final Object rebuildLock = new Object();
+    // reports that arrived while a rebuild queried the database, null when none does
+    private List<Entry> reportedWhileLoading;
+    private Entry bound;
+    private boolean built;
+    private long rebuilds;
+    private static final Logger logger = Logger.getLogger(TopBalances.class.getName());
+
+    public TopBalances(AccountRepository accountRepository) {
+        this(accountRepository, Integer.getInteger("bank.topBalances.capacity", 100));
+    }
+
+    public TopBalances(AccountRepository accountRepository, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.accountRepository = accountRepository;
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return number of times the ranking was loaded from the database
+     */
+    public synchronized long getRebuilds() {
+        return rebuilds;
+    }
+
+    /**
+     * Loads the ranking from the database. The query runs outside the monitor, so postings keep reporting meanwhile:
+     * their reports are applied to the old ranking and replayed on the loaded one, where those the loaded rows already
+     * contain are ignored by their version. The versions seen so far are kept, so a late report cannot bring back a
+     * balance older than one seen before the rebuild.
+     */
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                reportedWhileLoading = new ArrayList<>();
+            }
+            List<Account> accounts;
+            try {
+                accounts = accountRepository.findTopByBalance(capacity + 1);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    reportedWhileLoading = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                List<Entry> reported = reportedWhileLoading;
+                reportedWhileLoading = null;
+
+                ranking.clear();
+                tracked.clear();
+                bound = accounts.size() > capacity ? Entry.of(accounts.get(capacity)) : null;
+                for (Account account : accounts) {
+                    Entry entry = Entry.of(account);
+                    if (entry.version() != null) {
+                        recentVersions.merge(entry.id(), entry.version(), Math::max);
+                    }
+                    if (tracked.size() < capacity) {
+                        ranking.add(entry);
+                        tracked.put(entry.id(), entry);
+                    }
+                }
+                built = true;
+                rebuilds++;
+                reported.forEach(this::apply);
+            }
+        }
+    }
+
+    /**
+     * Applies the committed state of an account. Ignored until the first {@link #rebuild()}, which reads it anyway.
+     */
+    public synchronized void update(Account account) {
+        if (account.getId() == null || account.getBalance() == null) {
+            return;
+        }
+
+        Entry entry = Entry.of(account);
+        if (reportedWhileLoading != null) {
+            reportedWhileLoading.add(entry);
+        }
+        if (built) {
+            apply(entry);
+        }
+    }
+
+    private void apply(Entry entry) {
+        Long id = entry.id();
+        Entry old = tracked.get(id);
+        if (entry.version() != null) {
+            // the same version again is let through, a replayed report was already seen by the old ranking
+            Long seen = recentVersions.get(id);
+            if ((seen != null && seen > entry.version())
+                    || (old != null && old.version() != null && old.version() >= entry.version())) {
+                return;
+            }
+            recentVersions.put(id, entry.version());
+        }
+
+        if (old != null) {
+            ranking.remove(old);
+        } else if (bound != null && RANKING.compare(entry, bound) >= 0) {
+            // not tracked and still not among the richest
+            return;
+        }
+        ranking.add(entry);
+        tracked.put(id, entry);
+
+        if (ranking.size() > capacity) {
+            Entry last = ranking.pollLast();
+            tracked.remove(last.id());
+            if (bound == null || RANKING.compare(last, bound) < 0) {
+                bound = last;
+            }
+        }
+    }
+
+    /**
+     * @return at most n accounts with the highest balance, richest first, equal balances in ascending id order
+     */
+    public List<AccountBalance> top(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be at least 1");
+        }
+        if (n > capacity) {
+            return accountRepository.findTopByBalance(n).stream().map(AccountBalance::of).toList();
+        }
+
+        List<AccountBalance> top = collect(n);
+        if (top == null) {
+            logger.fine("Top " + n + " balances not known in memory, rebuilding the ranking");
+            rebuild();
+            top = collect(n);
+        }
+        if (top == null) {
+            // postings moved the ranking again while it was loaded
+            return accountRepository.findTopByBalance(n).stream().map(AccountBalance::of).toList();
+        }
+        return top;
+    }
+
+    // null when an account that is not tracked could rank among the first n
+    private synchronized List<AccountBalance> collect(int n) {
+        if (!built) {
+            return null;
+        }
+
+        List<AccountBalance> top = new ArrayList<>(Math.min(n, ranking.size()));
+        Entry last = null;
+        for (Entry entry : ranking) {
+            if (top.size() == n) {
+                break;
+            }
+            top.add(new AccountBalance(entry.id(), entry.name(), entry.balance()));
+            last = entry;
+        }
+
+        // a rebuild tracks the first capacity rows and bounds the others by the next row, so it always passes this
+        boolean complete = bound == null || (top.size() == n && RANKING.compare(last, bound) < 0);
+        return complete ? top : null;
+    }
+}
@@ -0,0 +1,98 @@
+package demo.task1.utils;
+
+import demo.task1.models.NewAccount;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Opens accounts from a CSV file through {@link BankImpl#importAccounts(Stream)}. Every line is
+ * name,address,openingBalance with no header line. A field may be quoted with ", a quote inside a quoted field is
+ * doubled, an empty openingBalance means zero. Blank lines are skipped.
+ * <p>
+ * The file is read as the import goes, one chunk of chunkSize rows per transaction.
+ * <p>
+ * Usage: java demo.task1.utils.AccountImport file.csv [chunkSize]
+ */
+public class AccountImport {
+    private static final Logger logger = Logger.getLogger(AccountImport.class.getName());
+
+    private AccountImport() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        BankImpl bank = new BankImpl(new AccountRepositoryImpl(), new AccountOperationRepositoryImpl());
+        if (args.length > 1) {
+            bank.setImportChunkSize(Integer.parseInt(args[1]));
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]))) {
+            List<Long> ids = bank.importAccounts(read(reader));
+            logger.info("Accounts imported from " + args[0] + ": " + ids.size() + " rows, " +
+                    ids.stream().distinct().count() + " accounts");
+        }
+    }
+
+    /**
+     * @return the rows of the reader, parsed lazily, the caller closes the reader
+     * @throws IllegalArgumentException from the stream when a line is not a valid row
+     */
+    public static Stream<NewAccount> read(BufferedReader reader) {
+        return reader.lines().filter(line -> !line.isBlank()).map(AccountImport::parse);
+    }
+
+    static NewAccount parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() != 3) {
+            throw new IllegalArgumentException("Expected name,address,openingBalance: " + line);
+        }
+
+        String balance = fields.get(2).trim();
+        try {
+            return NewAccount.of(fields.get(0), fields.get(1), balance.isEmpty() ? null : new BigDecimal(balance));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid openingBalance: " + line, e);
+        }
+    }
+
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote: " + line);
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,73 @@
+package demo.task1.utils;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import org.eclipse.persistence.config.SessionCustomizer;
+import org.eclipse.persistence.sequencing.NativeSequence;
+import org.eclipse.persistence.sessions.Session;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+import java.util.logging.Logger;
+
+/**
+ * EclipseLink session customizer registered in persistence.xml.
+ * <p>
+ * Gives accounts and operations their own database sequence with pooled id allocation: one sequence call reserves
+ * allocationSize ids that are then handed out in memory. The sequence is created with INCREMENT BY allocationSize,
+ * so on an existing database the allocation size may only be raised after running
+ * ALTER SEQUENCE ... INCREMENT BY &lt;new size&gt;. Lowering it is always safe, it only leaves gaps. A database whose
+ * rows got their ids from the old shared SEQ_GEN_SEQUENCE needs {@link SequenceMigration} before the first insert.
+ * <ul>
+ *     <li>bank.id.account.allocationSize - ids reserved per call of ACCOUNT_SEQ, default 50</li>
+ *     <li>bank.id.operation.allocationSize - ids reserved per call of OPERATION_SEQ, default 500</li>
+ * </ul>
+ * It also replaces the internal write and read connection pools with {@link InstrumentedConnectionPool}s of the same
+ * size, so that {@link JpaFactory#getPoolStatistics()} can report waiters and acquire latency.
+ */
+public class BankSessionCustomizer implements SessionCustomizer {
+    public static final String ACCOUNT_SEQUENCE = "ACCOUNT_SEQ";
+    public static final String OPERATION_SEQUENCE = "OPERATION_SEQ";
+
+    private static final Logger logger = Logger.getLogger(BankSessionCustomizer.class.getName());
+
+    @Override
+    public void customize(Session session) {
+        int accountAllocation = getAccountAllocationSize();
+        int operationAllocation = getOperationAllocationSize();
+
+        session.getLogin().addSequence(new NativeSequence(ACCOUNT_SEQUENCE, accountAllocation, false));
+        session.getLogin().addSequence(new NativeSequence(OPERATION_SEQUENCE, operationAllocation, false));
+
+        // TransferOperation shares the id of its AccountOperation root, so it follows the root's sequence
+        session.getDescriptor(Account.class).setSequenceNumberName(ACCOUNT_SEQUENCE);
+        session.getDescriptor(AccountOperation.class).setSequenceNumberName(OPERATION_SEQUENCE);
+
+        logger.info("Id allocation sizes, accounts: " + accountAllocation + ", operations: " + operationAllocation);
+
+        if (session instanceof ServerSession serverSession) {
+            instrumentConnectionPools(serverSession);
+        }
+    }
+
+    public static int getAccountAllocationSize() {
+        return Integer.getInteger("bank.id.account.allocationSize", 50);
+    }
+
+    public static int getOperationAllocationSize() {
+        return Integer.getInteger("bank.id.operation.allocationSize", 500);
+    }
+
+    // swaps the pools EclipseLink built from the eclipselink.connection-pool.* properties before they are started
+    private void instrumentConnectionPools(ServerSession session) {
+        ConnectionPool defaultPool = session.getDefaultConnectionPool();
+        if (defaultPool != null && defaultPool.getClass() == ConnectionPool.class) {
+            session.addConnectionPool(new InstrumentedConnectionPool(defaultPool, session));
+        }
+
+        ConnectionPool readPool = session.getReadConnectionPool();
+        if (readPool != null && readPool.getClass() == ConnectionPool.class) {
+            session.setReadConnectionPool(new InstrumentedConnectionPool(readPool, session));
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package demo.task1.utils;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * Thread-safe LRU cache holding at most maxSize entries, each for at most ttl after it was written.
+ * <p>
+ * {@link #getOrLoad(Object, Function)} runs the loader outside the lock and only stores its result when no
+ * put, merge or invalidate touched the key meanwhile, so a slow load cannot bring back a value that a concurrent
+ * writer has just replaced or dropped. Null values are never cached.
+ */
+public class BoundedCache<K, V> {
+    private static final int STAMP_STRIPES = 256;
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // bumped on every write of a key in the stripe, compared by getOrLoad before it stores what it loaded
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    public BoundedCache(int maxSize, Duration ttl) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached value, or null when the key is missing or expired
+     */
+    public V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = lookup(key);
+        }
+        (value == null ? misses : hits).incrementAndGet();
+        return value;
+    }
+
+    public V getOrLoad(K key, Function<? super K, ? extends V> loader) {
+        V cached = get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long stamp = stamps.get(stripe(key));
+        V loaded = loader.apply(key);
+        if (loaded != null) {
+            synchronized (entries) {
+                if (stamps.get(stripe(key)) == stamp) {
+                    entries.put(key, new Entry<>(loaded, System.nanoTime() + ttlNanos));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    public void put(K key, V value) {
+        merge(key, value, (cached, written) -> written);
+    }
+
+    /**
+     * Stores remapping(cached, value), or value when nothing is cached, in the same way as {@link Map#merge}.
+     */
+    public void merge(K key, V value, BinaryOperator<V> remapping) {
+        synchronized (entries) {
+            stamps.incrementAndGet(stripe(key));
+            V cached = lookup(key);
+            V merged = cached == null ? value : remapping.apply(cached, value);
+            if (merged == null) {
+                entries.remove(key);
+            } else {
+                entries.put(key, new Entry<>(merged, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    public void invalidate(K key) {
+        synchronized (entries) {
+            stamps.incrementAndGet(stripe(key));
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            for (int i = 0; i < STAMP_STRIPES; i++) {
+                stamps.incrementAndGet(i);
+            }
+            entries.clear();
+        }
+    }
+
+    public CacheStatistics getStatistics() {
+        int size;
+        synchronized (entries) {
+            removeExpired();
+            size = entries.size();
+        }
+        return CacheStatistics.builder()
+                .size(size)
+                .maxSize(maxSize)
+                .hits(hits.get())
+                .misses(misses.get())
+                .evictions(evictions.get())
+                .build();
+    }
+
+    private V lookup(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() - System.nanoTime() <= 0) {
+            entries.remove(key);
+            evictions.incrementAndGet();
+            return null;
+        }
+        return entry.value();
+    }
+
+    private void removeExpired() {
+        long now = System.nanoTime();
+        Iterator<Entry<V>> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiresAt() - now <= 0) {
+                it.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static int stripe(Object key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STAMP_STRIPES - 1);
+    }
+}
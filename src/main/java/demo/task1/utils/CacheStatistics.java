@@ -0,0 +1,29 @@
+package demo.task1.utils;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Point-in-time view of a {@link BoundedCache}. Hits, misses and evictions are totals since it was created,
+ * evictions count both entries pushed out by the size limit and entries dropped after their time to live.
+ */
+@Getter
+@Builder
+public class CacheStatistics {
+    private final int size;
+    private final int maxSize;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size + "/" + maxSize + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + String.format(", hit rate=%.2f", getHitRate());
+    }
+}
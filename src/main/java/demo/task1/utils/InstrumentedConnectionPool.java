@@ -0,0 +1,87 @@
+package demo.task1.utils;
+
+import org.eclipse.persistence.exceptions.ConcurrencyException;
+import org.eclipse.persistence.internal.databaseaccess.Accessor;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * EclipseLink internal connection pool that also records how long callers wait for a connection, and gives up with a
+ * ConcurrencyException once the pool's wait timeout (eclipselink.connection-pool.*.wait) has passed.
+ * Installed in place of the default and read pools by BankSessionCustomizer, keeping their configured sizes.
+ */
+public class InstrumentedConnectionPool extends ConnectionPool {
+    private final AtomicInteger waiters = new AtomicInteger();
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong acquireNanos = new AtomicLong();
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+    public InstrumentedConnectionPool(ConnectionPool pool, ServerSession owner) {
+        super(pool.getName(), pool.getLogin(), pool.getInitialNumberOfConnections(),
+                pool.getMinNumberOfConnections(), pool.getMaxNumberOfConnections(), owner);
+        setWaitTimeout(pool.getWaitTimeout());
+        setFailoverConnectionPools(pool.getFailoverConnectionPools());
+    }
+
+    @Override
+    public Accessor acquireConnection() throws ConcurrencyException {
+        // counted before entering the pool monitor, so threads blocked on it show up as waiters too
+        waiters.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            Accessor accessor;
+            synchronized (this) {
+                awaitConnection(start);
+                accessor = super.acquireConnection();
+            }
+            long nanos = System.nanoTime() - start;
+            acquired.incrementAndGet();
+            acquireNanos.addAndGet(nanos);
+            maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+            return accessor;
+        } finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    // the superclass only uses waitTimeout as a polling interval and waits forever, here it bounds the whole wait
+    private void awaitConnection(long start) {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(getWaitTimeout());
+        while (!isDead() && connectionsAvailable.isEmpty()
+                && connectionsUsed.size() >= getMaxNumberOfConnections()) {
+            long remainingNanos = timeoutNanos - (System.nanoTime() - start);
+            if (timeoutNanos > 0 && remainingNanos <= 0) {
+                timeouts.incrementAndGet();
+                throw ConcurrencyException.waitWasInterrupted("No connection available in pool " + getName()
+                        + " after " + getWaitTimeout() + " ms");
+            }
+            try {
+                wait(timeoutNanos > 0 ? Math.max(1, TimeUnit.NANOSECONDS.toMillis(remainingNanos)) : 0);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw ConcurrencyException.waitFailureOnServerSession(e);
+            }
+        }
+    }
+
+    public synchronized PoolStatistics getStatistics() {
+        long count = acquired.get();
+        return PoolStatistics.builder()
+                .name(getName())
+                .active(getConnectionsUsed().size())
+                .idle(getConnectionsAvailable().size())
+                .minSize(getMinNumberOfConnections())
+                .maxSize(getMaxNumberOfConnections())
+                .waiters(waiters.get())
+                .acquired(count)
+                .timeouts(timeouts.get())
+                .averageAcquireMicros(count == 0 ? 0 : acquireNanos.get() / count / 1000)
+                .maxAcquireMicros(maxAcquireNanos.get() / 1000)
+                .build();
+    }
+}
@@ -3,23 +3,86 @@ package demo.task1.utils;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import org.eclipse.persistence.sessions.server.ConnectionPool;
+import org.eclipse.persistence.sessions.server.ServerSession;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Holds the single EntityManagerFactory of the "demo" persistence unit.
+ * <p>
+ * The factory is built once, on first use, by the JVM's class initialization (holder idiom), so concurrent callers
+ * can never build two of them. Properties from jpa.properties on the classpath are passed on top of persistence.xml
+ * and any eclipselink.* or jakarta.persistence.* system property overrides both, e.g.
+ * -Declipselink.connection-pool.default.max=64.
+ */
 public class JpaFactory {
-    private static JpaFactory instance;
-    private EntityManagerFactory emf;
+    public static final String PERSISTENCE_UNIT = "demo";
+    public static final String PROPERTIES_FILE = "jpa.properties";
+
+    private static final Logger logger = Logger.getLogger(JpaFactory.class.getName());
+
+    private final EntityManagerFactory emf;
 
     private JpaFactory(){
-        emf = Persistence.createEntityManagerFactory("demo");
+        emf = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, loadProperties());
+    }
+
+    private static class Holder {
+        private static final JpaFactory INSTANCE = new JpaFactory();
     }
 
     public static JpaFactory getInstance(){
-        if(instance == null){
-            instance = new JpaFactory();
-        }
-        return instance;
+        return Holder.INSTANCE;
     }
 
     public static EntityManager getEntityManager(){
         return getInstance().emf.createEntityManager();
     }
+
+    /**
+     * @return statistics of the write pool and the read pool, in that order
+     */
+    public static List<PoolStatistics> getPoolStatistics() {
+        ServerSession session = getInstance().emf.unwrap(ServerSession.class);
+        List<PoolStatistics> statistics = new ArrayList<>();
+        for (ConnectionPool pool : List.of(session.getDefaultConnectionPool(), session.getReadConnectionPool())) {
+            if (pool instanceof InstrumentedConnectionPool instrumented) {
+                statistics.add(instrumented.getStatistics());
+            }
+        }
+        return statistics;
+    }
+
+    static Map<String, Object> loadProperties() {
+        Properties properties = new Properties();
+        try (InputStream in = JpaFactory.class.getClassLoader().getResourceAsStream(PROPERTIES_FILE)) {
+            if (in != null) {
+                properties.load(in);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + PROPERTIES_FILE, e);
+        }
+
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("eclipselink.") || name.startsWith("jakarta.persistence.")) {
+                properties.setProperty(name, System.getProperty(name));
+            }
+        }
+
+        Map<String, Object> result = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            result.put(name, properties.getProperty(name).trim());
+        }
+        logger.info("Persistence unit overrides: " + result.keySet());
+        return result;
+    }
 }
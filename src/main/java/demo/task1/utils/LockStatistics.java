@@ -0,0 +1,44 @@
+package demo.task1.utils;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Point-in-time view of an AccountLockManager. Acquired, contended and the wait figures are totals since it was
+ * created, contended counts the acquisitions that found the stripe held and the wait figures cover those. queueLengths
+ * holds the threads waiting on every stripe right now, maxQueueLengths the most seen waiting on it.
+ */
+@Getter
+@Builder
+public class LockStatistics {
+    private final int stripes;
+    private final long acquired;
+    private final long contended;
+    private final long averageWaitMicros;
+    private final long maxWaitMicros;
+    private final int[] queueLengths;
+    private final int[] maxQueueLengths;
+
+    public int getWaiters() {
+        int waiters = 0;
+        for (int length : queueLengths) {
+            waiters += length;
+        }
+        return waiters;
+    }
+
+    public int getMaxQueueLength() {
+        int max = 0;
+        for (int length : maxQueueLengths) {
+            max = Math.max(max, length);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "stripes=" + stripes + ", acquired=" + acquired + ", contended=" + contended
+                + ", waiters=" + getWaiters() + ", max queue=" + getMaxQueueLength()
+                + ", wait avg/max us=" + averageWaitMicros + "/" + maxWaitMicros;
+    }
+}
@@ -0,0 +1,40 @@
+package demo.task1.utils;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts as a long count of 1/10^{@link #SCALE}, for balance stores that keep no BigDecimal per account. Both
+ * conversions are exact: an amount with more decimal places than SCALE or out of the long range is rejected, never
+ * rounded, and the BigDecimal of a count carries no trailing zeros, so 2.50 comes back as 2.5 and 100 as 100.
+ */
+public final class MinorUnits {
+    public static final int SCALE = 4;
+    private static final long ONE = 10_000;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @throws ArithmeticException when the amount has more than SCALE decimal places or does not fit in a long
+     */
+    public static long of(BigDecimal amount) {
+        try {
+            if (amount.scale() == 0) {
+                // a whole amount is read as is, moving its point would allocate a BigDecimal per call
+                return Math.multiplyExact(amount.longValueExact(), ONE);
+            }
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new ArithmeticException("Amount " + amount + " is not a whole number of 1/10^" + SCALE +
+                    " within the long range");
+        }
+    }
+
+    public static BigDecimal toAmount(long minorUnits) {
+        if (minorUnits % ONE == 0) {
+            // one BigDecimal, none from 0 to 10, where stripping the zeros would build two or three
+            return BigDecimal.valueOf(minorUnits / ONE);
+        }
+        return BigDecimal.valueOf(minorUnits, SCALE).stripTrailingZeros();
+    }
+}
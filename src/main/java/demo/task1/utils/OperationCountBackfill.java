@@ -0,0 +1,89 @@
+package demo.task1.utils;
+
+import demo.task1.models.Account;
+import demo.task1.models.OperationType;
+import jakarta.persistence.EntityManager;
+
+import java.util.Arrays;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * One-off job that fills ACCOUNTS.operation_count and the per-type counters from ACCOUNT_OPERATIONS, for databases that
+ * already held operations when the columns were added (META-INF/schema-postgresql.sql adds them with 0 for every
+ * account). {@link OperationCountReconciliation} checks them later on.
+ * <p>
+ * Accounts are counted in id ranges of chunkSize, each range in its own transaction, so the job does not hold locks
+ * on the whole table. Postings made while a range is counted may be missed, so run it before postings are enabled.
+ * Running it again is harmless, it always writes the counts from scratch.
+ * <p>
+ * Usage: java demo.task1.utils.OperationCountBackfill [chunkSize]
+ */
+public class OperationCountBackfill {
+    public static final int DEFAULT_CHUNK_SIZE = 10_000;
+
+    // every counter of an account written from scratch, restricted by the caller's WHERE clause
+    static final String RECOUNT = "UPDATE ACCOUNTS SET operation_count = " +
+            "(SELECT COUNT(*) FROM ACCOUNT_OPERATIONS o WHERE o.account_id = ACCOUNTS.ID)" +
+            Arrays.stream(OperationType.values())
+                    .map(type -> ", " + counterColumn(type) + " = (SELECT COUNT(*) FROM ACCOUNT_OPERATIONS o " +
+                            "WHERE o.account_id = ACCOUNTS.ID AND o.type = '" + type.name() + "')")
+                    .collect(Collectors.joining());
+
+    private static final Logger logger = Logger.getLogger(OperationCountBackfill.class.getName());
+
+    private OperationCountBackfill() {
+    }
+
+    public static void main(String[] args) {
+        int chunkSize = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_CHUNK_SIZE;
+        long accounts = run(chunkSize);
+        logger.info("Operation counts written for " + accounts + " accounts");
+    }
+
+    /**
+     * @return column of ACCOUNTS that counts the operations of the type, e.g. deposit_count
+     */
+    static String counterColumn(OperationType type) {
+        return type.name().toLowerCase() + "_count";
+    }
+
+    /**
+     * @return number of accounts whose count was written
+     */
+    public static long run(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        long updated = 0;
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            Object[] range = (Object[]) em.createNativeQuery("SELECT MIN(ID), MAX(ID) FROM ACCOUNTS").getSingleResult();
+            if (range[0] == null) {
+                return 0;
+            }
+            long min = ((Number) range[0]).longValue();
+            long max = ((Number) range[1]).longValue();
+
+            for (long from = min; from <= max; from += chunkSize) {
+                long to = Math.min(max, from + chunkSize - 1);
+                em.getTransaction().begin();
+                try {
+                    updated += em.createNativeQuery(RECOUNT + " WHERE ID BETWEEN ?1 AND ?2")
+                            .setParameter(1, from)
+                            .setParameter(2, to)
+                            .executeUpdate();
+                    em.getTransaction().commit();
+                } finally {
+                    if (em.getTransaction().isActive()) {
+                        em.getTransaction().rollback();
+                    }
+                }
+                logger.fine("Operation counts written for accounts " + from + " to " + to);
+            }
+            // native updates bypass the shared cache, cached accounts still carry the old counts
+            em.getEntityManagerFactory().getCache().evict(Account.class);
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,106 @@
+package demo.task1.utils;
+
+import demo.task1.models.Account;
+import demo.task1.models.OperationType;
+import jakarta.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Job that checks ACCOUNTS.operation_count and the per-type counters against ACCOUNT_OPERATIONS, and with repair set
+ * writes the counters of the accounts that disagree from scratch.
+ * <p>
+ * Accounts are checked in id ranges of chunkSize, one statement per range, so a posting committed meanwhile is seen
+ * either with both its operation and its counters or with neither. A repair recounts one account per transaction;
+ * postings on that account made while it runs may be missed, the next check reports them.
+ * <p>
+ * Usage: java demo.task1.utils.OperationCountReconciliation [--repair] [chunkSize]
+ */
+public class OperationCountReconciliation {
+    // accounts of the range whose counters differ from a count of their operations
+    private static final String MISMATCHES = "SELECT a.ID FROM ACCOUNTS a LEFT JOIN " +
+            "(SELECT account_id, COUNT(*) AS operations" +
+            Arrays.stream(OperationType.values())
+                    .map(type -> ", SUM(CASE WHEN type = '" + type.name() + "' THEN 1 ELSE 0 END) AS "
+                            + OperationCountBackfill.counterColumn(type))
+                    .collect(Collectors.joining()) +
+            " FROM ACCOUNT_OPERATIONS WHERE account_id BETWEEN ?1 AND ?2 GROUP BY account_id) o ON o.account_id = a.ID " +
+            "WHERE a.ID BETWEEN ?1 AND ?2 AND (a.operation_count <> COALESCE(o.operations, 0)" +
+            Arrays.stream(OperationType.values())
+                    .map(OperationCountBackfill::counterColumn)
+                    .map(column -> " OR a." + column + " <> COALESCE(o." + column + ", 0)")
+                    .collect(Collectors.joining()) +
+            ") ORDER BY a.ID";
+
+    private static final Logger logger = Logger.getLogger(OperationCountReconciliation.class.getName());
+
+    private OperationCountReconciliation() {
+    }
+
+    public static void main(String[] args) {
+        boolean repair = args.length > 0 && args[0].equals("--repair");
+        int chunkSize = args.length > (repair ? 1 : 0)
+                ? Integer.parseInt(args[repair ? 1 : 0]) : OperationCountBackfill.DEFAULT_CHUNK_SIZE;
+        List<Long> mismatches = run(chunkSize, repair);
+        logger.info("Operation counters checked, accounts that did not match: " + mismatches.size()
+                + (repair ? ", repaired" : ""));
+    }
+
+    /**
+     * @return ids of the accounts whose counters did not match their operations, in ascending order
+     */
+    public static List<Long> run(int chunkSize, boolean repair) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        List<Long> mismatches = new ArrayList<>();
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            Object[] range = (Object[]) em.createNativeQuery("SELECT MIN(ID), MAX(ID) FROM ACCOUNTS").getSingleResult();
+            if (range[0] == null) {
+                return mismatches;
+            }
+            long min = ((Number) range[0]).longValue();
+            long max = ((Number) range[1]).longValue();
+
+            for (long from = min; from <= max; from += chunkSize) {
+                long to = Math.min(max, from + chunkSize - 1);
+                List<?> ids = em.createNativeQuery(MISMATCHES)
+                        .setParameter(1, from)
+                        .setParameter(2, to)
+                        .getResultList();
+                for (Object id : ids) {
+                    mismatches.add(((Number) id).longValue());
+                }
+            }
+
+            for (Long id : mismatches) {
+                logger.warning("Operation counters of account " + id + " do not match its operations");
+                if (repair) {
+                    recount(em, id);
+                }
+            }
+        }
+        return mismatches;
+    }
+
+    private static void recount(EntityManager em, Long id) {
+        em.getTransaction().begin();
+        try {
+            em.createNativeQuery(OperationCountBackfill.RECOUNT + " WHERE ID = ?1")
+                    .setParameter(1, id)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+        // native updates bypass the shared cache
+        em.getEntityManagerFactory().getCache().evict(Account.class, id);
+    }
+}
@@ -0,0 +1,29 @@
+package demo.task1.utils;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Point-in-time view of one connection pool. The acquired, timeouts and latency figures are totals since startup.
+ */
+@Getter
+@Builder
+public class PoolStatistics {
+    private final String name;
+    private final int active;
+    private final int idle;
+    private final int minSize;
+    private final int maxSize;
+    private final int waiters;
+    private final long acquired;
+    private final long timeouts;
+    private final long averageAcquireMicros;
+    private final long maxAcquireMicros;
+
+    @Override
+    public String toString() {
+        return name + ": active=" + active + ", idle=" + idle + ", size=" + minSize + ".." + maxSize
+                + ", waiters=" + waiters + ", acquired=" + acquired + ", timeouts=" + timeouts
+                + ", acquire avg/max us=" + averageAcquireMicros + "/" + maxAcquireMicros;
+    }
+}
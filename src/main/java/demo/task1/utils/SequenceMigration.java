@@ -0,0 +1,55 @@
+package demo.task1.utils;
+
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+import java.util.logging.Logger;
+
+/**
+ * One-off job for databases that already held accounts and operations when they moved from the shared
+ * SEQ_GEN_SEQUENCE to ACCOUNT_SEQ and OPERATION_SEQ. Schema generation creates the new sequences from the start, so the
+ * first ids they hand out belong to rows already there. The job restarts each sequence past the highest id of its
+ * table: EclipseLink takes the value a sequence returns as the last id of an allocationSize block, so the sequence
+ * restarts at MAX(ID) + allocationSize.
+ * <p>
+ * Ids reserved in memory before the restart are dropped, but another running application keeps its own, so run it
+ * before postings are enabled. Running it again is harmless, it only skips ids that were never used.
+ * <p>
+ * Usage: java demo.task1.utils.SequenceMigration
+ */
+public class SequenceMigration {
+    private static final Logger logger = Logger.getLogger(SequenceMigration.class.getName());
+
+    private SequenceMigration() {
+    }
+
+    public static void main(String[] args) {
+        run();
+    }
+
+    public static void run() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                restart(em, BankSessionCustomizer.ACCOUNT_SEQUENCE, "ACCOUNTS",
+                        BankSessionCustomizer.getAccountAllocationSize());
+                restart(em, BankSessionCustomizer.OPERATION_SEQUENCE, "ACCOUNT_OPERATIONS",
+                        BankSessionCustomizer.getOperationAllocationSize());
+                em.getTransaction().commit();
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+            em.unwrap(ServerSession.class).getSequencingControl().initializePreallocated();
+        }
+    }
+
+    private static void restart(EntityManager em, String sequence, String table, int allocationSize) {
+        Number max = (Number) em.createNativeQuery("SELECT MAX(ID) FROM " + table).getSingleResult();
+        long start = (max == null ? 0 : max.longValue()) + allocationSize;
+        // DDL takes no parameters, the value is a long computed above
+        em.createNativeQuery("ALTER SEQUENCE " + sequence + " RESTART WITH " + start).executeUpdate();
+        logger.info(sequence + " restarted at " + start + ", after the ids of " + table);
+    }
+}
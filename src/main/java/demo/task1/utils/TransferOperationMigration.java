@@ -0,0 +1,122 @@
+package demo.task1.utils;
+
+import demo.task1.models.AccountOperation;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+
+import java.util.logging.Logger;
+
+/**
+ * One-off job for databases created while AccountOperation was mapped with JOINED inheritance, when the title and the
+ * other account of a transfer lived in TRANSFER_OPERATIONS. It copies them into the TITLE and other_account_id columns
+ * of ACCOUNT_OPERATIONS (META-INF/schema-postgresql.sql adds them empty), where the single-table mapping reads them.
+ * <p>
+ * Operations are copied in id ranges of chunkSize, each range in its own transaction, only those with a row in
+ * TRANSFER_OPERATIONS are touched. Transfers posted meanwhile by an application still on the JOINED mapping would only
+ * reach TRANSFER_OPERATIONS, so run it before postings are enabled.
+ * Afterwards every copied row is compared with TRANSFER_OPERATIONS. With drop set and nothing differing, the foreign
+ * key of other_account_id is added and TRANSFER_OPERATIONS is dropped. Running it again is harmless, it copies from
+ * scratch as long as the old table exists and does nothing once it is gone.
+ * <p>
+ * Usage: java demo.task1.utils.TransferOperationMigration [--drop] [chunkSize]
+ */
+public class TransferOperationMigration {
+    static final String OLD_TABLE = "TRANSFER_OPERATIONS";
+    static final String FOREIGN_KEY = "FK_ACCOUNT_OPERATIONS_other_account_id";
+
+    private static final String COPY = "UPDATE ACCOUNT_OPERATIONS SET " +
+            "TITLE = (SELECT t.TITLE FROM TRANSFER_OPERATIONS t WHERE t.ID = ACCOUNT_OPERATIONS.ID), " +
+            "other_account_id = (SELECT t.other_account_id FROM TRANSFER_OPERATIONS t WHERE t.ID = ACCOUNT_OPERATIONS.ID) " +
+            "WHERE ID BETWEEN ?1 AND ?2 AND EXISTS (SELECT 1 FROM TRANSFER_OPERATIONS t WHERE t.ID = ACCOUNT_OPERATIONS.ID)";
+
+    // rows of the old table whose copy differs, every one of them has its ACCOUNT_OPERATIONS row through the JOINED key
+    private static final String DIFFERENCES = "SELECT COUNT(*) FROM TRANSFER_OPERATIONS t " +
+            "JOIN ACCOUNT_OPERATIONS ao ON ao.ID = t.ID " +
+            "WHERE ao.TITLE IS DISTINCT FROM t.TITLE OR ao.other_account_id IS DISTINCT FROM t.other_account_id";
+
+    private static final Logger logger = Logger.getLogger(TransferOperationMigration.class.getName());
+
+    private TransferOperationMigration() {
+    }
+
+    public static void main(String[] args) {
+        boolean drop = args.length > 0 && args[0].equals("--drop");
+        int chunkSize = args.length > (drop ? 1 : 0)
+                ? Integer.parseInt(args[drop ? 1 : 0]) : OperationCountBackfill.DEFAULT_CHUNK_SIZE;
+        long copied = run(chunkSize, drop);
+        logger.info("Transfer operations copied into ACCOUNT_OPERATIONS: " + copied
+                + (drop ? ", " + OLD_TABLE + " dropped" : ""));
+    }
+
+    /**
+     * @return number of transfer operations copied, 0 when TRANSFER_OPERATIONS does not exist
+     * @throws IllegalStateException when a copied row differs from TRANSFER_OPERATIONS, which is then kept
+     */
+    public static long run(int chunkSize, boolean drop) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be at least 1");
+        }
+
+        long copied = 0;
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            if (!exists(em, "TABLES", "TABLE_NAME", OLD_TABLE)) {
+                logger.info(OLD_TABLE + " does not exist, nothing to migrate");
+                return 0;
+            }
+
+            Object[] range = (Object[]) em.createNativeQuery("SELECT MIN(ID), MAX(ID) FROM " + OLD_TABLE).getSingleResult();
+            if (range[0] != null) {
+                long min = ((Number) range[0]).longValue();
+                long max = ((Number) range[1]).longValue();
+                for (long from = min; from <= max; from += chunkSize) {
+                    long to = Math.min(max, from + chunkSize - 1);
+                    copied += inTransaction(em, COPY, from, to);
+                    logger.fine("Transfer operations copied for ids " + from + " to " + to);
+                }
+            }
+
+            long differences = ((Number) em.createNativeQuery(DIFFERENCES).getSingleResult()).longValue();
+            if (differences > 0) {
+                throw new IllegalStateException(differences + " transfer operations differ from " + OLD_TABLE
+                        + ", the table is kept");
+            }
+
+            if (drop) {
+                if (!exists(em, "TABLE_CONSTRAINTS", "CONSTRAINT_NAME", FOREIGN_KEY)) {
+                    inTransaction(em, "ALTER TABLE ACCOUNT_OPERATIONS ADD CONSTRAINT " + FOREIGN_KEY
+                            + " FOREIGN KEY (other_account_id) REFERENCES ACCOUNTS (ID)");
+                }
+                inTransaction(em, "DROP TABLE " + OLD_TABLE);
+            }
+            // native updates bypass the shared cache, cached transfers may still miss their title
+            em.getEntityManagerFactory().getCache().evict(AccountOperation.class);
+        }
+        return copied;
+    }
+
+    // H2 keeps unquoted names in upper case, PostgreSQL in lower case
+    private static boolean exists(EntityManager em, String view, String column, String name) {
+        Number count = (Number) em.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA." + view
+                        + " WHERE UPPER(" + column + ") = ?1")
+                .setParameter(1, name.toUpperCase())
+                .getSingleResult();
+        return count.longValue() > 0;
+    }
+
+    private static int inTransaction(EntityManager em, String sql, Object... parameters) {
+        em.getTransaction().begin();
+        try {
+            Query query = em.createNativeQuery(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                query.setParameter(i + 1, parameters[i]);
+            }
+            int updated = query.executeUpdate();
+            em.getTransaction().commit();
+            return updated;
+        } finally {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        }
+    }
+}
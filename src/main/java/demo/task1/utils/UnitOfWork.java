@@ -0,0 +1,154 @@
+package demo.task1.utils;
+
+import jakarta.persistence.EntityManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Binds a single EntityManager and transaction to the current thread for the duration of a piece of work.
+ * Repository calls made inside {@link #run(Runnable)} or {@link #call(Supplier)} join it instead of opening
+ * their own. The EntityManager is only opened on first use, so work that never touches the database costs nothing.
+ * Nested calls join the outermost unit of work, which commits when it returns and rolls back when it throws.
+ */
+public final class UnitOfWork {
+    private static final Logger logger = Logger.getLogger(UnitOfWork.class.getName());
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private EntityManager em;
+    private final List<Runnable> beforeCommit = new ArrayList<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterCompletion = new ArrayList<>();
+    private boolean committed;
+
+    private UnitOfWork() {
+    }
+
+    public static void run(Runnable work) {
+        call(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    public static <T> T call(Supplier<T> work) {
+        if (current.get() != null) {
+            return work.get();
+        }
+
+        UnitOfWork unitOfWork = new UnitOfWork();
+        current.set(unitOfWork);
+        try {
+            T result = work.get();
+            unitOfWork.commit();
+            return result;
+        } finally {
+            current.remove();
+            try {
+                unitOfWork.close();
+            } finally {
+                // the transaction is already over, so a failing action must neither skip the others nor reach the caller
+                if (unitOfWork.committed) {
+                    unitOfWork.afterCommit.forEach(UnitOfWork::runLogged);
+                }
+                unitOfWork.afterCompletion.forEach(UnitOfWork::runLogged);
+            }
+        }
+    }
+
+    /**
+     * Runs the action right before the unit of work bound to this thread commits, still inside its transaction.
+     * When the action throws, the unit of work rolls back. Without a unit of work the action runs right away.
+     */
+    public static void beforeCommit(Runnable action) {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            action.run();
+        } else {
+            unitOfWork.beforeCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs the action once the unit of work bound to this thread has committed, never when it rolls back.
+     * A failure of the action is logged, not thrown. Without a unit of work the action runs right away.
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            action.run();
+        } else {
+            unitOfWork.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs the action once the unit of work bound to this thread has committed or rolled back,
+     * or right away when there is none. A failure of the action is logged, not thrown.
+     */
+    public static void afterCompletion(Runnable action) {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            action.run();
+        } else {
+            unitOfWork.afterCompletion.add(action);
+        }
+    }
+
+    public static boolean isActive() {
+        return current.get() != null;
+    }
+
+    /**
+     * @return EntityManager of the unit of work bound to this thread, with its transaction started,
+     * or null when there is none
+     */
+    public static EntityManager currentEntityManager() {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            return null;
+        }
+
+        if (unitOfWork.em == null) {
+            unitOfWork.em = JpaFactory.getEntityManager();
+            unitOfWork.em.getTransaction().begin();
+        }
+        return unitOfWork.em;
+    }
+
+    private void commit() {
+        // by index, an action may register further ones
+        for (int i = 0; i < beforeCommit.size(); i++) {
+            beforeCommit.get(i).run();
+        }
+        if (em != null) {
+            em.getTransaction().commit();
+        }
+        committed = true;
+    }
+
+    private static void runLogged(Runnable action) {
+        try {
+            action.run();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Unit of work completion action failed", e);
+        }
+    }
+
+    private void close() {
+        if (em == null) {
+            return;
+        }
+
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            em.close();
+        }
+    }
+}
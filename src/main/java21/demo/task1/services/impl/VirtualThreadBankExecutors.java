@@ -0,0 +1,28 @@
+package demo.task1.services.impl;
+
+import demo.task1.services.Bank;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * BankExecutor on virtual threads, only built with the java21 profile. Every call gets a virtual thread of its own, so
+ * 10 000 waiting clients cost 10 000 small stacks instead of platform threads, and the permits are what keeps the calls
+ * on the bank to the size of the connection pool.
+ * <p>
+ * EclipseLink and the JDBC drivers block inside synchronized, which pins a virtual thread to its carrier. With
+ * maxConcurrent above the number of carriers (the cores, unless jdk.virtualThreadScheduler.parallelism says otherwise)
+ * the calls holding a permit can occupy every carrier, keep maxConcurrent at or below it.
+ */
+public final class VirtualThreadBankExecutors {
+    private VirtualThreadBankExecutors() {
+    }
+
+    /**
+     * Runs every call on a new virtual thread, at most maxConcurrent of them on the bank at once.
+     */
+    public static BankExecutor withVirtualThreads(Bank bank, int maxConcurrent) {
+        ThreadFactory factory = Thread.ofVirtual().name("bank-executor-virtual-", 1).factory();
+        return new BankExecutor(bank, Executors.newThreadPerTaskExecutor(factory), maxConcurrent);
+    }
+}
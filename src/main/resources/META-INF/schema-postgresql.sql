@@ -0,0 +1,15 @@
+CREATE UNIQUE INDEX IF NOT EXISTS UX_ACCOUNTS_NAME_ADDRESS ON ACCOUNTS (name, address);
+CREATE INDEX IF NOT EXISTS IX_ACCOUNTS_NAME_PATTERN ON ACCOUNTS (name text_pattern_ops);
+CREATE INDEX IF NOT EXISTS IX_ACCOUNTS_BALANCE ON ACCOUNTS (balance);
+CREATE INDEX IF NOT EXISTS IX_ACCOUNT_OPERATIONS_ACCOUNT_CREATED ON ACCOUNT_OPERATIONS (account_id, created_at);
+CREATE INDEX IF NOT EXISTS IX_ACCOUNT_OPERATIONS_ACCOUNT_TYPE ON ACCOUNT_OPERATIONS (account_id, type);
+ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS operation_count BIGINT NOT NULL DEFAULT 0;
+CREATE INDEX IF NOT EXISTS IX_ACCOUNTS_OPERATION_COUNT ON ACCOUNTS (operation_count);
+ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS deposit_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS withdraw_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS transfer_in_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS transfer_out_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE ACCOUNT_OPERATIONS ADD COLUMN IF NOT EXISTS TITLE VARCHAR(255);
+ALTER TABLE ACCOUNT_OPERATIONS ADD COLUMN IF NOT EXISTS other_account_id BIGINT;
+ALTER TABLE ACCOUNTS ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 1;
+ALTER TABLE ACCOUNT_OPERATIONS ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT 1;
@@ -0,0 +1,164 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.NewAccount;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.CachingAccountRepository;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.TopBalances;
+import demo.task1.utils.AccountImport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountImportTest {
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_import_skips_existing_owners() {
+        Long existing = bank.createAccount("a", "b");
+        bank.deposit(existing, BigDecimal.valueOf(5));
+
+        List<Long> ids = bank.importAccounts(Stream.of(
+                NewAccount.of("x", "y", BigDecimal.TEN),
+                NewAccount.of("a", "b", BigDecimal.valueOf(100)),
+                NewAccount.of("x", "y", BigDecimal.valueOf(20)),
+                NewAccount.of("p", "q", null)));
+
+        assertEquals(4, ids.size());
+        assertEquals(ids.get(0), ids.get(2));
+        assertEquals(existing, ids.get(1));
+        assertEquals(3, new HashSet<>(ids).size());
+        assertEquals(ids.get(0), bank.findAccount("x", "y"));
+        assertEquals(ids.get(3), bank.findAccount("p", "q"));
+        assertEquals(0, BigDecimal.TEN.compareTo(bank.getBalance(ids.get(0))));
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(bank.getBalance(existing)));
+        assertEquals(0, BigDecimal.ZERO.compareTo(bank.getBalance(ids.get(3))));
+
+        // the opening balance is not an operation, the imported account is like one created by createAccount
+        Account imported = accountRepository.findById(ids.get(0)).orElseThrow();
+        assertEquals(0, imported.getOperationCount());
+        assertEquals(1L, imported.getVersion());
+        assertEquals(1, accountOperationRepository.findAll().size());
+        bank.withdraw(ids.get(0), BigDecimal.ONE);
+        assertEquals(0, BigDecimal.valueOf(9).compareTo(bank.getBalance(ids.get(0))));
+
+        // run again it creates nothing
+        assertEquals(ids, bank.importAccounts(Stream.of(
+                NewAccount.of("x", "y", BigDecimal.ONE),
+                NewAccount.of("a", "b", BigDecimal.ONE),
+                NewAccount.of("x", "y", BigDecimal.ONE),
+                NewAccount.of("p", "q", BigDecimal.ONE))));
+        assertEquals(3, accountRepository.findAll().size());
+        assertEquals(0, BigDecimal.valueOf(9).compareTo(bank.getBalance(ids.get(0))));
+    }
+
+    @Test
+    void test_import_ids_do_not_collide_with_created_accounts() {
+        bank.setImportChunkSize(7);
+        Long before = bank.createAccount("before", "b");
+        List<Long> ids = bank.importAccounts(IntStream.range(0, 120)
+                .mapToObj(i -> NewAccount.of("owner" + i, "street " + i, BigDecimal.valueOf(i))));
+        Long after = bank.createAccount("after", "a");
+
+        assertEquals(120, new HashSet<>(ids).size());
+        assertTrue(!ids.contains(before) && !ids.contains(after));
+        assertNotEquals(before, after);
+        assertEquals(122, accountRepository.findAll().size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(ids.get(i), bank.findAccount("owner" + i, "street " + i));
+            assertEquals(0, BigDecimal.valueOf(i).compareTo(bank.getBalance(ids.get(i))));
+        }
+
+        assertTrue(bank.importAccounts(Stream.empty()).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> bank.setImportChunkSize(0));
+        assertThrows(IllegalArgumentException.class, () -> NewAccount.of(null, "y", BigDecimal.ONE));
+        assertThrows(IllegalArgumentException.class, () -> NewAccount.of("x", null, BigDecimal.ONE));
+    }
+
+    @Test
+    void test_import_is_seen_through_caches() {
+        CachingAccountRepository cachingRepository =
+                new CachingAccountRepository(accountRepository, 100, Duration.ofMinutes(1));
+        bank = new BankImpl(cachingRepository, accountOperationRepository);
+        TopBalances topBalances = new TopBalances(cachingRepository, 10);
+        bank.setTopBalances(topBalances);
+        bank.deposit(bank.createAccount("a", "b"), BigDecimal.TEN);
+
+        // cached as missing before the import
+        assertNull(bank.findAccount("x", "y"));
+        List<Long> ids = bank.importAccounts(Stream.of(NewAccount.of("x", "y", BigDecimal.valueOf(1000))));
+
+        assertEquals(ids.get(0), bank.findAccount("x", "y"));
+        assertEquals(ids.get(0), bank.findTopRichest(1).get(0).getId());
+    }
+
+    @Test
+    void test_csv_rows_are_parsed() {
+        String csv = "x,y,10.5\n" +
+                "\n" +
+                "\"Kowalski, Jan\",\"ul. \"\"Dluga\"\" 1\",\n" +
+                "a,b, 3 \n";
+        List<NewAccount> rows = AccountImport.read(new BufferedReader(new StringReader(csv))).toList();
+
+        assertEquals(3, rows.size());
+        assertEquals("x", rows.get(0).getName());
+        assertEquals(0, new BigDecimal("10.5").compareTo(rows.get(0).getOpeningBalance()));
+        assertEquals("Kowalski, Jan", rows.get(1).getName());
+        assertEquals("ul. \"Dluga\" 1", rows.get(1).getAddress());
+        assertEquals(0, BigDecimal.ZERO.compareTo(rows.get(1).getOpeningBalance()));
+        assertEquals(0, BigDecimal.valueOf(3).compareTo(rows.get(2).getOpeningBalance()));
+
+        List<Long> ids = bank.importAccounts(AccountImport.read(new BufferedReader(new StringReader(csv))));
+        assertEquals(ids.get(1), bank.findAccount("Kowalski, Jan", "ul. \"Dluga\" 1"));
+
+        assertThrows(IllegalArgumentException.class, () -> AccountImport.read(new BufferedReader(new StringReader("x,y"))).toList());
+        assertThrows(IllegalArgumentException.class, () -> AccountImport.read(new BufferedReader(new StringReader("x,y,z"))).toList());
+        assertThrows(IllegalArgumentException.class, () -> AccountImport.read(new BufferedReader(new StringReader("\"x,y,1"))).toList());
+    }
+}
@@ -0,0 +1,205 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Bank;
+import demo.task1.services.impl.AccountLockManager;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.LockStatistics;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountLockManagerTest {
+    private static final int THREADS = 8;
+    private static final int BANKS = 3;
+    private static final int ACCOUNTS = 4;
+    private static final int POSTINGS_PER_THREAD = 40;
+    private static final long OPENING_BALANCE = 100;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_opposite_pairs_do_not_deadlock() throws InterruptedException {
+        AccountLockManager lockManager = new AccountLockManager(4);
+        int[] counter = new int[1];
+        int iterations = 20_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            boolean reversed = t % 2 == 1;
+            executor.submit(() -> {
+                for (int i = 0; i < iterations; i++) {
+                    long a = i % 7;
+                    long b = (i + 3) % 7;
+                    // every action holds the stripe of account 0 too, so the counter is guarded
+                    lockManager.runLocked(0L, null, () ->
+                            lockManager.runLocked(reversed ? b : a, reversed ? a : b, () -> counter[0]++));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES), "deadlocked");
+
+        assertEquals(THREADS * iterations, counter[0]);
+        LockStatistics statistics = lockManager.getStatistics();
+        assertEquals(0, statistics.getWaiters());
+        assertTrue(statistics.getAcquired() >= 2L * THREADS * iterations, statistics.toString());
+    }
+
+    @Test
+    void test_contention_is_measured() throws InterruptedException {
+        AccountLockManager lockManager = new AccountLockManager(8);
+        assertEquals(lockManager.stripeOf(1L), lockManager.stripeOf(9L));
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread holder = new Thread(() -> lockManager.runLocked(1L, null, () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        holder.start();
+        held.await();
+
+        // account 9 shares the stripe of account 1
+        Thread waiter = new Thread(() -> lockManager.runLocked(9L, 2L, () -> { }));
+        waiter.start();
+        while (lockManager.getStatistics().getWaiters() == 0) {
+            Thread.sleep(1);
+        }
+        LockStatistics waiting = lockManager.getStatistics();
+        assertEquals(1, waiting.getQueueLengths()[lockManager.stripeOf(1L)]);
+        Thread.sleep(20);
+        release.countDown();
+        holder.join();
+        waiter.join();
+
+        LockStatistics statistics = lockManager.getStatistics();
+        assertEquals(8, statistics.getStripes());
+        assertEquals(3, statistics.getAcquired());
+        assertEquals(1, statistics.getContended());
+        assertEquals(1, statistics.getMaxQueueLengths()[lockManager.stripeOf(1L)]);
+        assertEquals(0, statistics.getWaiters());
+        assertTrue(statistics.getMaxWaitMicros() >= 20_000, statistics.toString());
+
+        // one lock for two accounts of one stripe, none without an account
+        lockManager.runLocked(1L, 9L, () -> { });
+        lockManager.runLocked(null, null, () -> { });
+        assertEquals(4, lockManager.getStatistics().getAcquired());
+        assertThrows(IllegalArgumentException.class, () -> new AccountLockManager(0));
+    }
+
+    @Test
+    void test_striped_postings_lose_no_update() throws InterruptedException {
+        AccountLockManager lockManager = new AccountLockManager(16);
+        List<BankImpl> banks = new ArrayList<>();
+        for (int i = 0; i < BANKS; i++) {
+            BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+            bank.setConcurrencyMode(BankImpl.ConcurrencyMode.STRIPED);
+            bank.setLockManager(lockManager);
+            banks.add(bank);
+        }
+        List<Long> ids = new ArrayList<>();
+        ConcurrentHashMap<Long, AtomicLong> expected = new ConcurrentHashMap<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Long id = banks.get(0).createAccount("owner" + i, "street " + i);
+            banks.get(0).deposit(id, BigDecimal.valueOf(OPENING_BALANCE));
+            ids.add(id);
+            expected.put(id, new AtomicLong(OPENING_BALANCE));
+        }
+
+        AtomicInteger failed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    Bank bank = banks.get(random.nextInt(BANKS));
+                    Long id = ids.get(random.nextInt(ACCOUNTS));
+                    Long other = ids.get(random.nextInt(ACCOUNTS));
+                    long amount = random.nextInt(1, 30);
+                    try {
+                        switch (random.nextInt(3)) {
+                            case 0 -> {
+                                bank.deposit(id, BigDecimal.valueOf(amount));
+                                expected.get(id).addAndGet(amount);
+                            }
+                            case 1 -> {
+                                bank.withdraw(id, BigDecimal.valueOf(amount));
+                                expected.get(id).addAndGet(-amount);
+                            }
+                            default -> {
+                                if (!id.equals(other)) {
+                                    bank.transfer(id, other, BigDecimal.valueOf(amount), "stress");
+                                    expected.get(id).addAndGet(-amount);
+                                    expected.get(other).addAndGet(amount);
+                                }
+                            }
+                        }
+                    } catch (Bank.InsufficientFundsException e) {
+                        // expected now and then, the balance stays as it was
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertEquals(0, failed.get());
+        // read from the database, not from what the banks cached
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getEntityManagerFactory().getCache().evictAll();
+        }
+        for (Long id : ids) {
+            assertEquals(expected.get(id).get(), banks.get(0).getBalance(id).longValue(), "account " + id);
+        }
+        LockStatistics statistics = lockManager.getStatistics();
+        assertTrue(statistics.getContended() > 0, statistics.toString());
+    }
+}
@@ -2,13 +2,20 @@ package demo.task1;
 
 import demo.task1.models.Account;
 import demo.task1.models.AccountOperation;
+import demo.task1.models.NewOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
 import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
 import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.UnitOfWork;
+import jakarta.persistence.OptimisticLockException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,14 +25,20 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 public class AccountRepositoryTest {
 
     private static AccountRepository accountRepository;
+    private static AccountOperationRepository accountOperationRepository;
 
     @BeforeAll
     static void setup() {
         accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
     }
 
     @AfterEach
     public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
         for(Account a : accountRepository.findAll()){
             accountRepository.delete(a);
         }
@@ -75,6 +88,19 @@ public class AccountRepositoryTest {
         assertThrows(IllegalArgumentException.class, () -> accountRepository.update(account));
     }
 
+    @Test
+    void test_saveAccount_when_version_is_stale() {
+        Account account = accountRepository.create("x","y", BigDecimal.ZERO);
+        Account stale = accountRepository.findById(account.getId()).orElseThrow();
+
+        account.setBalance(BigDecimal.ONE);
+        accountRepository.update(account);
+        stale.setBalance(BigDecimal.TEN);
+
+        assertThrows(OptimisticLockException.class, () -> accountRepository.update(stale));
+        assertEquals(BigDecimal.ONE.compareTo(accountRepository.findById(account.getId()).orElseThrow().getBalance()), 0);
+    }
+
     // findById
     @Test
     void test_findById() {
@@ -161,4 +187,57 @@ public class AccountRepositoryTest {
         List<Account> accountList = accountRepository.findAll();
         assertEquals(3, accountList.size());
     }
+
+    // applyOperations
+    @Test
+    void test_applyOperations() {
+        Account a = accountRepository.create("a", "b", BigDecimal.TEN);
+        Account b = accountRepository.create("c", "d", BigDecimal.TEN);
+        // in the shared cache, which the JDBC update has to evict
+        accountRepository.findById(a.getId());
+
+        List<NewOperation> operations = new ArrayList<>();
+        operations.add(NewOperation.deposit(a.getId(), BigDecimal.valueOf(3)));
+        operations.add(NewOperation.withdraw(a.getId(), BigDecimal.ONE));
+        operations.addAll(NewOperation.transfer(a.getId(), b.getId(), BigDecimal.valueOf(4), "rent"));
+        accountRepository.applyOperations(operations);
+
+        Account foundA = accountRepository.findById(a.getId()).orElseThrow();
+        Account foundB = accountRepository.findById(b.getId()).orElseThrow();
+        assertEquals(0, BigDecimal.valueOf(8).compareTo(foundA.getBalance()));
+        assertEquals(0, BigDecimal.valueOf(14).compareTo(foundB.getBalance()));
+        assertEquals(3, foundA.getOperationCount());
+        assertEquals(1, foundA.getOperationCount(OperationType.WITHDRAW));
+        assertEquals(1, foundB.getOperationCount(OperationType.TRANSFER_IN));
+        // one update per account
+        assertEquals(a.getVersion() + 1, foundA.getVersion());
+        assertEquals(4, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_applyOperations_when_account_doesnt_exist() {
+        Account a = accountRepository.create("a", "b", BigDecimal.TEN);
+
+        assertThrows(IllegalArgumentException.class, () -> accountRepository.applyOperations(List.of(
+                NewOperation.deposit(a.getId(), BigDecimal.ONE), NewOperation.deposit(a.getId() + 100, BigDecimal.ONE))));
+
+        assertEquals(0, BigDecimal.TEN.compareTo(accountRepository.findBalance(a.getId()).orElseThrow()));
+        assertEquals(0, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_findBalance_sees_unflushed_changes_of_the_unit_of_work() {
+        Account a = accountRepository.create("a", "b", BigDecimal.TEN);
+        // in the shared cache with the committed balance
+        assertEquals(0, BigDecimal.TEN.compareTo(accountRepository.findBalance(a.getId()).orElseThrow()));
+
+        UnitOfWork.run(() -> {
+            Account account = accountRepository.findById(a.getId()).orElseThrow();
+            account.setBalance(BigDecimal.ONE);
+            accountRepository.update(account);
+            assertEquals(0, BigDecimal.ONE.compareTo(accountRepository.findBalance(a.getId()).orElseThrow()));
+        });
+
+        assertEquals(0, BigDecimal.ONE.compareTo(accountRepository.findBalance(a.getId()).orElseThrow()));
+    }
 }
@@ -0,0 +1,71 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AccountUpdateBenchmarkTest {
+    private static final int UPDATES = 200;
+
+    private static AccountRepository accountRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_update_round_trips() {
+        Account account = accountRepository.create("x", "y", BigDecimal.ZERO);
+        SqlStatementCounter counter = SqlStatementCounter.install();
+
+        for (int i = 0; i < UPDATES; i++) {
+            account.setBalance(BigDecimal.valueOf(i));
+            existsThenMerge(account);
+        }
+        long previousStatements = counter.getStatements();
+
+        counter.reset();
+        for (int i = 0; i < UPDATES; i++) {
+            account.setBalance(BigDecimal.valueOf(i));
+            accountRepository.update(account);
+        }
+
+        // one statement and one commit per update
+        assertEquals(UPDATES, counter.getStatements());
+        assertEquals(UPDATES, counter.getCommits());
+        assertTrue(counter.getStatements() < previousStatements);
+        assertEquals(0, BigDecimal.valueOf(UPDATES - 1).compareTo(accountRepository.findById(account.getId()).orElseThrow().getBalance()));
+    }
+
+    // the update path as it was before, kept here as the baseline
+    private void existsThenMerge(Account account) {
+        if (!accountRepository.exists(account.getId())) {
+            throw new IllegalArgumentException();
+        }
+
+        try(EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            Account merged = em.merge(account);
+            em.getTransaction().commit();
+            account.setVersion(merged.getVersion());
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Bank;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
+import demo.task1.services.impl.BalanceStore;
+import demo.task1.services.impl.BankImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BalanceStoreTest {
+    private static final int ACCOUNTS = 100;
+    private static final int THREADS = 4;
+    private static final int POSTINGS_PER_THREAD = 100;
+    private static final int HOT_POSTINGS = 2_000;
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(60);
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BalanceStore store;
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        store = new BalanceStore(accountRepository);
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setBalanceStore(store);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.IN_MEMORY);
+    }
+
+    @AfterEach
+    public void clearData() {
+        store.close();
+
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_postings_are_answered_in_memory_and_written_behind() throws InterruptedException {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+
+        // whole amounts, BALANCE is a NUMERIC(38) column and the database keeps no fractions
+        bank.deposit(id, BigDecimal.valueOf(100));
+        bank.withdraw(id, BigDecimal.TEN);
+        bank.transfer(id, other, BigDecimal.valueOf(5), "behind");
+        assertEquals(BigDecimal.valueOf(85), bank.getBalance(id));
+        assertEquals(BigDecimal.valueOf(5), bank.getBalance(other));
+
+        assertTrue(store.flush(FLUSH_TIMEOUT));
+        assertEquals(3, store.getPersisted());
+        assertEquals(0, store.getLost());
+        assertEquals(0, BigDecimal.valueOf(85).compareTo(accountRepository.findBalance(id).orElseThrow()));
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(accountRepository.findBalance(other).orElseThrow()));
+        assertEquals(3, accountOperationRepository.findByAccount(accountRepository.findById(id).orElseThrow()).size());
+    }
+
+    @Test
+    void test_balance_is_loaded_once_from_the_database() {
+        Long id = bank.createAccount("x", "y");
+        accountRepository.applyDelta(id, BigDecimal.valueOf(50), false, OperationType.DEPOSIT);
+
+        bank.deposit(id, BigDecimal.ONE);
+        bank.deposit(id, BigDecimal.ONE);
+        assertEquals(BigDecimal.valueOf(52), bank.getBalance(id));
+        assertEquals(1, store.getLoads());
+    }
+
+    @Test
+    void test_rejected_postings_change_nothing() throws InterruptedException {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.TEN);
+
+        assertThrows(Bank.AccountIdException.class, () -> bank.deposit(null, BigDecimal.ONE));
+        assertThrows(Bank.AccountIdException.class, () -> bank.deposit(id + 100, BigDecimal.ONE));
+        assertThrows(Bank.AccountIdException.class, () -> bank.transfer(id, other + 100, BigDecimal.ONE, "test"));
+        assertThrows(Bank.AccountIdException.class, () -> bank.getBalance(id + 100));
+        assertThrows(Bank.InsufficientFundsException.class, () -> bank.withdraw(id, BigDecimal.valueOf(11)));
+        assertThrows(Bank.InsufficientFundsException.class, () -> bank.transfer(id, other, BigDecimal.valueOf(11), "test"));
+        assertThrows(ArithmeticException.class, () -> bank.deposit(id, new BigDecimal("0.00001")));
+        // the balance column keeps no decimal places
+        assertThrows(ArithmeticException.class, () -> bank.deposit(id, new BigDecimal("0.5")));
+        assertThrows(ArithmeticException.class, () -> bank.transfer(id, other, new BigDecimal("1.25"), "test"));
+        bank.withdraw(id, new BigDecimal("0.00"));
+
+        assertEquals(BigDecimal.TEN, bank.getBalance(id));
+        assertEquals(BigDecimal.ZERO, bank.getBalance(other));
+        assertTrue(store.flush(FLUSH_TIMEOUT));
+        assertEquals(2, store.getPersisted());
+    }
+
+    @Test
+    void test_overflow_is_detected() {
+        Long id = bank.createAccount("x", "y");
+        bank.deposit(id, BigDecimal.ONE);
+
+        assertThrows(ArithmeticException.class, () -> store.deposit(id, Long.MAX_VALUE));
+        assertThrows(ArithmeticException.class, () -> store.withdraw(id, Long.MIN_VALUE));
+        assertThrows(ArithmeticException.class, () -> bank.deposit(id, new BigDecimal("1e20")));
+        assertEquals(BigDecimal.ONE, bank.getBalance(id));
+        assertEquals(1, store.getPending() + store.getPersisted());
+    }
+
+    @Test
+    void test_batch_is_applied_in_memory() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+
+        List<PostingResult> results = bank.executeBatch(List.of(
+                Posting.deposit(id, BigDecimal.ONE),
+                Posting.withdraw(id, BigDecimal.TEN),
+                Posting.deposit(id + 100, BigDecimal.ONE),
+                Posting.deposit(id, new BigDecimal("0.5")),
+                Posting.deposit(id, new BigDecimal("1e20")),
+                Posting.transfer(id, other, BigDecimal.ONE, "test")));
+
+        assertEquals(List.of(PostingResult.Status.OK, PostingResult.Status.INSUFFICIENT_FUNDS,
+                        PostingResult.Status.INVALID_ACCOUNT, PostingResult.Status.INVALID_AMOUNT,
+                        PostingResult.Status.INVALID_AMOUNT, PostingResult.Status.OK),
+                results.stream().map(PostingResult::getStatus).toList());
+        assertEquals(BigDecimal.ZERO, bank.getBalance(id));
+        assertEquals(BigDecimal.ONE, bank.getBalance(other));
+    }
+
+    @Test
+    void test_concurrent_postings_end_in_the_database() throws InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(bank.createAccount("owner" + i, "street " + i));
+            bank.deposit(ids.get(i), BigDecimal.valueOf(1000));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    Long source = ids.get(random.nextInt(ACCOUNTS));
+                    Long destination = ids.get(random.nextInt(ACCOUNTS));
+                    try {
+                        bank.transfer(source, destination, BigDecimal.valueOf(random.nextInt(1, 50)), null);
+                    } catch (Bank.InsufficientFundsException e) {
+                        // the total is what is checked
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        assertTrue(store.flush(FLUSH_TIMEOUT));
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long id : ids) {
+            BigDecimal persisted = accountRepository.findBalance(id).orElseThrow();
+            assertEquals(0, bank.getBalance(id).compareTo(persisted));
+            total = total.add(persisted);
+        }
+        assertEquals(0, BigDecimal.valueOf(1000L * ACCOUNTS).compareTo(total));
+        assertEquals(ACCOUNTS, store.getAccounts());
+    }
+
+    @Test
+    void test_postings_allocate_nothing_on_the_calling_thread() {
+        Long id = bank.createAccount("x", "y");
+        BigDecimal amount = BigDecimal.ONE;
+        bank.deposit(id, amount);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < HOT_POSTINGS; i++) {
+            bank.deposit(id, amount);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // the writer persisting them allocates on its own thread, a BigDecimal or a boxed id per posting would be 16+
+        assertTrue(allocated < HOT_POSTINGS, "allocated " + allocated + " bytes for " + HOT_POSTINGS + " postings");
+        assertEquals(BigDecimal.valueOf(HOT_POSTINGS + 1), bank.getBalance(id));
+    }
+
+    @Test
+    void test_accounts_beyond_max_are_evicted() throws InterruptedException {
+        store.close();
+        store = new BalanceStore(accountRepository, BalanceStore.DEFAULT_CAPACITY, BalanceStore.DEFAULT_BATCH_SIZE, 2);
+        bank.setBalanceStore(store);
+        List<Long> ids = List.of(bank.createAccount("a", "b"), bank.createAccount("c", "d"), bank.createAccount("e", "f"));
+
+        for (Long id : ids) {
+            bank.deposit(id, BigDecimal.valueOf(2));
+            assertTrue(store.flush(FLUSH_TIMEOUT));
+        }
+        assertEquals(2, store.getAccounts());
+        assertEquals(1, store.getEvictions());
+
+        // the evicted account is loaded again with what was written for it
+        for (Long id : ids) {
+            assertEquals(BigDecimal.valueOf(2), bank.getBalance(id));
+        }
+        assertEquals(2, store.getAccounts());
+        assertTrue(store.getLoads() > ids.size());
+    }
+
+    @Test
+    void test_dropped_posting_is_taken_back() throws InterruptedException {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.TEN);
+        bank.getBalance(other);
+        assertTrue(store.flush(FLUSH_TIMEOUT));
+
+        // deleted behind the store, which still holds its balance
+        accountRepository.delete(accountRepository.findById(other).orElseThrow());
+        bank.transfer(id, other, BigDecimal.valueOf(4), "gone");
+        assertEquals(BigDecimal.valueOf(6), bank.getBalance(id));
+        assertTrue(store.flush(FLUSH_TIMEOUT));
+
+        assertEquals(1, store.getLost());
+        assertEquals(BigDecimal.TEN, bank.getBalance(id));
+        assertEquals(0, BigDecimal.TEN.compareTo(accountRepository.findBalance(id).orElseThrow()));
+        assertThrows(Bank.AccountIdException.class, () -> bank.getBalance(other));
+        assertEquals(1, store.getAccounts());
+    }
+
+    @Test
+    void test_mode_needs_a_store() {
+        Long id = bank.createAccount("x", "y");
+        bank.setBalanceStore(null);
+
+        assertThrows(IllegalStateException.class, () -> bank.deposit(id, BigDecimal.ONE));
+    }
+}
@@ -0,0 +1,123 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Bank;
+import demo.task1.services.impl.BankExecutor;
+import demo.task1.services.impl.BankImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BankExecutorTest {
+    private static final int CLIENTS = 200;
+    private static final int MAX_CONCURRENT = 4;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BankImpl bank;
+    private BankExecutor executor;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+    }
+
+    @AfterEach
+    public void clearData() {
+        if (executor != null) {
+            executor.close();
+        }
+
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_async_postings_complete() {
+        executor = BankExecutor.withPlatformThreads(bank, MAX_CONCURRENT);
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+
+        executor.depositAsync(id, BigDecimal.TEN)
+                .thenCompose(ignored -> executor.withdrawAsync(id, BigDecimal.ONE))
+                .thenCompose(ignored -> executor.transferAsync(id, other, BigDecimal.valueOf(4), "async"))
+                .join();
+
+        assertEquals(0, BigDecimal.valueOf(5).compareTo(executor.getBalanceAsync(id).join()));
+        assertEquals(0, BigDecimal.valueOf(4).compareTo(executor.getBalanceAsync(other).join()));
+        assertEquals(5, executor.getCompleted());
+    }
+
+    @Test
+    void test_failures_complete_the_future_exceptionally() {
+        executor = BankExecutor.withPlatformThreads(bank, MAX_CONCURRENT);
+        Long id = bank.createAccount("x", "y");
+
+        CompletionException missing = assertThrows(CompletionException.class,
+                () -> executor.depositAsync(id + 100, BigDecimal.ONE).join());
+        assertInstanceOf(Bank.AccountIdException.class, missing.getCause());
+        CompletionException insufficient = assertThrows(CompletionException.class,
+                () -> executor.withdrawAsync(id, BigDecimal.ONE).join());
+        assertInstanceOf(Bank.InsufficientFundsException.class, insufficient.getCause());
+        assertEquals(2, executor.getFailed());
+    }
+
+    @Test
+    void test_concurrent_calls_are_bounded() {
+        // a thread per call, so only the permits keep the calls apart
+        executor = new BankExecutor(bank, Executors.newCachedThreadPool(), MAX_CONCURRENT);
+        Long id = bank.createAccount("x", "y");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            calls.add(executor.callAsync(bank -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    bank.deposit(id, BigDecimal.ONE);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        assertTrue(maxRunning.get() <= MAX_CONCURRENT, "max running: " + maxRunning.get());
+        assertEquals(0, BigDecimal.valueOf(CLIENTS).compareTo(bank.getBalance(id)));
+        assertEquals(0, executor.getActive());
+    }
+}
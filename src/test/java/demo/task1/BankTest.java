@@ -1,9 +1,15 @@
 package demo.task1;
 
 import demo.task1.models.Account;
+import demo.task1.models.OperationType;
 import demo.task1.repositories.AccountOperationRepository;
 import demo.task1.repositories.AccountRepository;
+import demo.task1.services.Bank;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
 import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.RetryPolicy;
+import jakarta.persistence.OptimisticLockException;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -11,10 +17,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -78,24 +86,24 @@ public class BankTest {
 
     @Test
     void test_getBalance() {
-        when(accountRepository.findById(2L)).thenReturn(
-                Optional.of(TestDataUtil.createTestAccountB()));
+        when(accountRepository.findBalance(2L)).thenReturn(
+                Optional.of(TestDataUtil.createTestAccountB().getBalance()));
 
         BigDecimal result = bank.getBalance(2L);
 
         assertEquals(BigDecimal.ONE, result);
-        verify(accountRepository).findById(2L);
+        verify(accountRepository).findBalance(2L);
     }
 
     @Test
     void test_getBalance_with_no_previous_deposits() {
-        when(accountRepository.findById(1L)).thenReturn(
-                Optional.of(TestDataUtil.createTestAccountA()));
+        when(accountRepository.findBalance(1L)).thenReturn(
+                Optional.of(TestDataUtil.createTestAccountA().getBalance()));
 
         BigDecimal balance = bank.getBalance(1L);
 
         assertEquals(BigDecimal.ZERO, balance);
-        verify(accountRepository).findById(1L);
+        verify(accountRepository).findBalance(1L);
     }
 
     @Test
@@ -133,4 +141,112 @@ public class BankTest {
         verify(accountRepository).findById(1L);
         verify(accountRepository, times(2)).update(any(Account.class));
     }
+
+    @Test
+    void test_transfer_pessimistic() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.PESSIMISTIC);
+
+        bank.transfer(2L, 1L, BigDecimal.ONE, "test");
+
+        verify(accountRepository).transfer(2L, 1L, BigDecimal.ONE, "test");
+        verify(accountRepository, never()).update(any(Account.class));
+    }
+
+    @Test
+    void test_transfer_pessimistic_when_not_enough_funds() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.PESSIMISTIC);
+        doThrow(new IllegalStateException()).when(accountRepository).transfer(1L, 2L, BigDecimal.TEN, "test");
+
+        assertThrows(Bank.InsufficientFundsException.class, () -> bank.transfer(1L, 2L, BigDecimal.TEN, "test"));
+    }
+
+    @Test
+    void test_deposit_atomic() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        when(accountRepository.applyDelta(1L, BigDecimal.ONE, false, OperationType.DEPOSIT))
+                .thenReturn(TestDataUtil.createTestAccountA());
+
+        bank.deposit(1L, BigDecimal.ONE);
+
+        verify(accountRepository).applyDelta(1L, BigDecimal.ONE, false, OperationType.DEPOSIT);
+        verify(accountRepository, never()).findById(any());
+        verify(accountRepository, never()).update(any(Account.class));
+    }
+
+    @Test
+    void test_withdraw_atomic() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        when(accountRepository.applyDelta(2L, BigDecimal.ONE.negate(), true, OperationType.WITHDRAW))
+                .thenReturn(TestDataUtil.createTestAccountB());
+
+        bank.withdraw(2L, BigDecimal.ONE);
+
+        verify(accountRepository).applyDelta(2L, BigDecimal.ONE.negate(), true, OperationType.WITHDRAW);
+    }
+
+    @Test
+    void test_withdraw_atomic_when_not_enough_funds() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        when(accountRepository.applyDelta(1L, BigDecimal.TEN.negate(), true, OperationType.WITHDRAW))
+                .thenThrow(new IllegalStateException());
+
+        assertThrows(Bank.InsufficientFundsException.class, () -> bank.withdraw(1L, BigDecimal.TEN));
+    }
+
+    @Test
+    void test_deposit_atomic_when_account_doesnt_exists() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        when(accountRepository.applyDelta(3L, BigDecimal.ONE, false, OperationType.DEPOSIT))
+                .thenThrow(new IllegalArgumentException());
+
+        assertThrows(Bank.AccountIdException.class, () -> bank.deposit(3L, BigDecimal.ONE));
+    }
+
+    @Test
+    void test_deposit_optimistic_retries_on_conflict() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.OPTIMISTIC);
+        bank.setRetryPolicy(new RetryPolicy(3, 0, 0));
+        when(accountRepository.findById(1L)).thenAnswer(invocation -> Optional.of(TestDataUtil.createTestAccountA()));
+        doThrow(new OptimisticLockException()).doNothing().when(accountRepository).update(any(Account.class));
+
+        bank.deposit(1L, BigDecimal.ONE);
+
+        verify(accountRepository, times(2)).findById(1L);
+        verify(accountRepository, times(2)).update(any(Account.class));
+        assertEquals(1, bank.getOptimisticConflicts());
+        assertEquals(1, bank.getOptimisticRetries());
+    }
+
+    @Test
+    void test_deposit_optimistic_gives_up_after_max_attempts() {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.OPTIMISTIC);
+        bank.setRetryPolicy(new RetryPolicy(2, 0, 0));
+        when(accountRepository.findById(1L)).thenAnswer(invocation -> Optional.of(TestDataUtil.createTestAccountA()));
+        doThrow(new OptimisticLockException()).when(accountRepository).update(any(Account.class));
+
+        assertThrows(OptimisticLockException.class, () -> bank.deposit(1L, BigDecimal.ONE));
+        assertEquals(2, bank.getOptimisticConflicts());
+        assertEquals(1, bank.getOptimisticRetries());
+    }
+
+    @Test
+    void test_executeBatch() {
+        when(accountRepository.findAllByIdForUpdate(anyCollection())).thenReturn(
+                List.of(TestDataUtil.createTestAccountA(), TestDataUtil.createTestAccountB()));
+
+        List<PostingResult> results = bank.executeBatch(List.of(
+                Posting.deposit(1L, BigDecimal.ONE),
+                Posting.withdraw(1L, BigDecimal.TEN),
+                Posting.deposit(3L, BigDecimal.ONE),
+                Posting.transfer(2L, 1L, BigDecimal.ONE, "test")));
+
+        assertEquals(PostingResult.Status.OK, results.get(0).getStatus());
+        assertEquals(PostingResult.Status.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        assertEquals(PostingResult.Status.INVALID_ACCOUNT, results.get(2).getStatus());
+        assertEquals(PostingResult.Status.OK, results.get(3).getStatus());
+        verify(accountRepository).findAllByIdForUpdate(anyCollection());
+        verify(accountOperationRepository).createOperation(any(Account.class), any(), eq(OperationType.DEPOSIT));
+        verify(accountOperationRepository, never()).createOperation(any(Account.class), any(), eq(OperationType.WITHDRAW));
+        verify(accountOperationRepository, times(2)).createTransferOperation(any(), any(), any(), any(), eq("test"));
+    }
 }
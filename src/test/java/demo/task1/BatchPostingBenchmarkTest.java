@@ -0,0 +1,100 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
+import demo.task1.services.impl.BankImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchPostingBenchmarkTest {
+    private static final int ACCOUNTS = 20;
+    private static final int POSTINGS = Integer.getInteger("bench.postings", 1000);
+
+    static private BankImpl bank;
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_executeBatch_keeps_going_after_bad_items() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+
+        List<PostingResult> results = bank.executeBatch(List.of(
+                Posting.deposit(id1, BigDecimal.TEN),
+                Posting.withdraw(id2, BigDecimal.ONE),
+                Posting.transfer(id1, id2, BigDecimal.ONE, "test"),
+                Posting.deposit(null, BigDecimal.ONE),
+                Posting.withdraw(id1, BigDecimal.TEN)));
+
+        assertEquals(PostingResult.Status.OK, results.get(0).getStatus());
+        assertEquals(PostingResult.Status.INSUFFICIENT_FUNDS, results.get(1).getStatus());
+        assertEquals(PostingResult.Status.OK, results.get(2).getStatus());
+        assertEquals(PostingResult.Status.INVALID_ACCOUNT, results.get(3).getStatus());
+        assertEquals(PostingResult.Status.INSUFFICIENT_FUNDS, results.get(4).getStatus());
+        assertEquals(0, BigDecimal.valueOf(9).compareTo(bank.getBalance(id1)));
+        assertEquals(0, BigDecimal.ONE.compareTo(bank.getBalance(id2)));
+        assertEquals(3, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_executeBatch_statements_against_deposit_loop() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(bank.createAccount("c" + i, "a" + i));
+        }
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        for (int i = 0; i < POSTINGS; i++) {
+            bank.deposit(ids.get(i % ACCOUNTS), BigDecimal.ONE);
+        }
+        long loopStatements = counter.getStatements();
+        long loopCommits = counter.getCommits();
+
+        List<Posting> postings = new ArrayList<>();
+        for (int i = 0; i < POSTINGS; i++) {
+            postings.add(Posting.deposit(ids.get(i % ACCOUNTS), BigDecimal.ONE));
+        }
+        counter.reset();
+        List<PostingResult> results = bank.executeBatch(postings);
+
+        assertEquals(POSTINGS, results.stream().filter(PostingResult::isOk).count());
+        assertTrue(counter.getStatements() < loopStatements);
+        assertTrue(counter.getCommits() < loopCommits);
+        BigDecimal perAccount = BigDecimal.valueOf(2L * POSTINGS / ACCOUNTS);
+        for (Long id : ids) {
+            assertEquals(0, perAccount.compareTo(bank.getBalance(id)));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.CachingAccountRepository;
+import demo.task1.services.Posting;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.RetryPolicy;
+import demo.task1.utils.CacheStatistics;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CachingAccountRepositoryTest {
+    private static final int READS = 1000;
+    private static final int THREADS = 4;
+    private static final int POSTINGS_PER_THREAD = 20;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private CachingAccountRepository cachingRepository;
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        cachingRepository = new CachingAccountRepository(accountRepository, 100, Duration.ofMinutes(1));
+        bank = new BankImpl(cachingRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_getBalance_is_served_from_cache() {
+        Long id = bank.createAccount("x", "y");
+        bank.deposit(id, BigDecimal.TEN);
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        for (int i = 0; i < READS; i++) {
+            assertEquals(0, BigDecimal.TEN.compareTo(bank.getBalance(id)));
+        }
+
+        CacheStatistics statistics = cachingRepository.getStatistics();
+        assertEquals(0, counter.getStatements());
+        assertTrue(statistics.getHits() >= READS);
+    }
+
+    @Test
+    void test_natural_key_lookups_are_served_from_cache() {
+        Long id = bank.createAccount("x", "y");
+        assertEquals(null, bank.findAccount("a", "b"));
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        for (int i = 0; i < READS; i++) {
+            assertEquals(id, bank.createAccount("x", "y"));
+            assertEquals(id, bank.findAccount("x", "y"));
+            assertEquals(null, bank.findAccount("a", "b"));
+        }
+
+        assertEquals(0, counter.getStatements());
+        assertTrue(cachingRepository.getNaturalKeyStatistics().getHits() >= 3 * READS);
+    }
+
+    @Test
+    void test_negative_natural_key_entry_is_dropped_on_create_and_rename() {
+        assertEquals(null, bank.findAccount("x", "y"));
+        Long id = bank.createAccount("x", "y");
+        assertEquals(id, bank.findAccount("x", "y"));
+
+        assertEquals(null, bank.findAccount("x", "z"));
+        Account account = cachingRepository.findById(id).orElseThrow();
+        account.setAddress("z");
+        cachingRepository.update(account);
+
+        assertEquals(id, bank.findAccount("x", "z"));
+        assertEquals(null, bank.findAccount("x", "y"));
+    }
+
+    @Test
+    void test_concurrent_createAccount_for_same_owner() throws InterruptedException {
+        assertEquals(null, bank.findAccount("x", "y"));
+
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> ids.add(bank.createAccount("x", "y")));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(1, ids.size());
+        assertEquals(ids.iterator().next(), bank.findAccount("x", "y"));
+        assertEquals(1, accountRepository.findAll().size());
+    }
+
+    @Test
+    void test_findById_returns_copies() {
+        Long id = bank.createAccount("x", "y");
+
+        Account first = cachingRepository.findById(id).orElseThrow();
+        first.setBalance(BigDecimal.TEN);
+        Account second = cachingRepository.findById(id).orElseThrow();
+
+        assertNotSame(first, second);
+        assertEquals(0, BigDecimal.ZERO.compareTo(second.getBalance()));
+    }
+
+    @Test
+    void test_cache_follows_every_posting_mode() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        bank.getBalance(id1);
+        bank.getBalance(id2);
+
+        bank.deposit(id1, BigDecimal.valueOf(100));
+        assertEquals(0, BigDecimal.valueOf(100).compareTo(bank.getBalance(id1)));
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        bank.withdraw(id1, BigDecimal.TEN);
+        assertEquals(0, BigDecimal.valueOf(90).compareTo(bank.getBalance(id1)));
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.PESSIMISTIC);
+        bank.transfer(id1, id2, BigDecimal.TEN, "test");
+        assertEquals(0, BigDecimal.valueOf(80).compareTo(bank.getBalance(id1)));
+        assertEquals(0, BigDecimal.TEN.compareTo(bank.getBalance(id2)));
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.NONE);
+        bank.executeBatch(List.of(Posting.deposit(id2, BigDecimal.ONE), Posting.transfer(id1, id2, BigDecimal.ONE, "batch")));
+        assertEquals(0, BigDecimal.valueOf(79).compareTo(bank.getBalance(id1)));
+        assertEquals(0, BigDecimal.valueOf(12).compareTo(bank.getBalance(id2)));
+    }
+
+    @Test
+    void test_posting_replaces_stale_entry() {
+        Long id = bank.createAccount("x", "y");
+        bank.getBalance(id);
+
+        // changed around the cache, the cached copy now has an old version
+        Account account = accountRepository.findById(id).orElseThrow();
+        account.setBalance(BigDecimal.TEN);
+        accountRepository.update(account);
+        assertEquals(0, BigDecimal.ZERO.compareTo(bank.getBalance(id)));
+
+        bank.deposit(id, BigDecimal.ONE);
+
+        assertEquals(0, BigDecimal.valueOf(11).compareTo(bank.getBalance(id)));
+    }
+
+    @Test
+    void test_stale_entry_is_dropped_after_conflict() {
+        Long id = bank.createAccount("x", "y");
+        Account stale = cachingRepository.findById(id).orElseThrow();
+
+        Account account = accountRepository.findById(id).orElseThrow();
+        account.setBalance(BigDecimal.TEN);
+        accountRepository.update(account);
+
+        stale.setBalance(BigDecimal.ONE);
+        assertThrows(OptimisticLockException.class, () -> cachingRepository.update(stale));
+        assertEquals(0, BigDecimal.TEN.compareTo(cachingRepository.findById(id).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void test_concurrent_optimistic_postings_stay_consistent() throws InterruptedException {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.OPTIMISTIC);
+        bank.setRetryPolicy(new RetryPolicy(50, 1, 20));
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        bank.deposit(id1, BigDecimal.valueOf(1000));
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    bank.deposit(id1, BigDecimal.ONE);
+                    bank.transfer(id1, id2, BigDecimal.TEN, "test");
+                    bank.getBalance(id2);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        int postings = THREADS * POSTINGS_PER_THREAD;
+        assertEquals(0, BigDecimal.valueOf(1000 + postings - 10L * postings).compareTo(bank.getBalance(id1)));
+        assertEquals(0, BigDecimal.valueOf(10L * postings).compareTo(bank.getBalance(id2)));
+        assertEquals(0, BigDecimal.valueOf(10L * postings).compareTo(accountRepository.findById(id2).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void test_size_and_ttl_eviction() throws InterruptedException {
+        CachingAccountRepository small = new CachingAccountRepository(accountRepository, 2, Duration.ofMillis(200));
+        Long id1 = accountRepository.create("x", "y", BigDecimal.ONE).getId();
+        Long id2 = accountRepository.create("a", "b", BigDecimal.ONE).getId();
+        Long id3 = accountRepository.create("c", "d", BigDecimal.ONE).getId();
+
+        small.findById(id1);
+        small.findById(id2);
+        small.findById(id3);
+        small.findById(id1);
+        // id1 was pushed out by id3, reading it again pushes out id2
+        assertEquals(2, small.getStatistics().getEvictions());
+        assertEquals(4, small.getStatistics().getMisses());
+
+        small.findById(id1);
+        assertEquals(1, small.getStatistics().getHits());
+
+        Thread.sleep(300);
+        small.findById(id1);
+        assertEquals(1, small.getStatistics().getHits());
+        assertEquals(1, small.getStatistics().getSize());
+    }
+}
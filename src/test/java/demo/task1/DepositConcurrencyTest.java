@@ -0,0 +1,164 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.RetryPolicy;
+import demo.task1.utils.UnitOfWork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DepositConcurrencyTest {
+    private static final int THREADS = 4;
+    private static final int POSTINGS_PER_THREAD = 50;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_atomic_deposits_on_one_account() throws InterruptedException {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        Long id = bank.createAccount("x", "y");
+
+        AtomicInteger failed = new AtomicInteger();
+        run(() -> bank.deposit(id, BigDecimal.ONE), failed);
+
+        assertEquals(0, failed.get());
+        assertEquals(0, BigDecimal.valueOf(THREADS * POSTINGS_PER_THREAD).compareTo(bank.getBalance(id)));
+        assertEquals(THREADS * POSTINGS_PER_THREAD, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_atomic_withdrawals_never_overdraw() throws InterruptedException {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        Long id = bank.createAccount("x", "y");
+        int funds = THREADS * POSTINGS_PER_THREAD / 2;
+        bank.deposit(id, BigDecimal.valueOf(funds));
+
+        AtomicInteger failed = new AtomicInteger();
+        run(() -> bank.withdraw(id, BigDecimal.ONE), failed);
+
+        assertEquals(funds, failed.get());
+        assertEquals(0, BigDecimal.ZERO.compareTo(bank.getBalance(id)));
+    }
+
+    @Test
+    void test_optimistic_deposits_on_one_account() throws InterruptedException {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.OPTIMISTIC);
+        bank.setRetryPolicy(new RetryPolicy(100, 1, 20));
+        Long id = bank.createAccount("x", "y");
+
+        AtomicInteger failed = new AtomicInteger();
+        run(() -> bank.deposit(id, BigDecimal.ONE), failed);
+
+        assertEquals(0, failed.get());
+        assertEquals(0, BigDecimal.valueOf(THREADS * POSTINGS_PER_THREAD).compareTo(bank.getBalance(id)));
+        // every conflict was retried
+        assertEquals(bank.getOptimisticConflicts(), bank.getOptimisticRetries());
+    }
+
+    @Test
+    void test_unlocked_deposits_on_one_account() throws InterruptedException {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        Long id = bank.createAccount("x", "y");
+
+        AtomicInteger failed = new AtomicInteger();
+        run(() -> bank.deposit(id, BigDecimal.ONE), failed);
+
+        // conflicting deposits fail without a retry policy, and write nothing
+        int deposited = THREADS * POSTINGS_PER_THREAD - failed.get();
+        assertEquals(0, BigDecimal.valueOf(deposited).compareTo(bank.getBalance(id)));
+        assertEquals(deposited, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_atomic_deposit_does_not_read_the_history() {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        Long id = bank.createAccount("x", "y");
+        for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+            bank.deposit(id, BigDecimal.ONE);
+        }
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        long fewest = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            counter.reset();
+            bank.deposit(id, BigDecimal.ONE);
+            fewest = Math.min(fewest, counter.getStatements());
+        }
+
+        // the update, the read of the account and the operation insert, none for the history. Some deposits also
+        // fetch a block of ids.
+        assertEquals(3, fewest);
+    }
+
+    @Test
+    void test_atomic_deposit_refreshes_a_managed_account() {
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        Long id = bank.createAccount("x", "y");
+
+        UnitOfWork.run(() -> {
+            Account account = accountRepository.findById(id).orElseThrow();
+            assertSame(account, accountRepository.applyDelta(id, BigDecimal.TEN, false, OperationType.DEPOSIT));
+            assertEquals(0, BigDecimal.TEN.compareTo(account.getBalance()));
+        });
+        assertEquals(0, BigDecimal.TEN.compareTo(bank.getBalance(id)));
+    }
+
+    private void run(Runnable posting, AtomicInteger failed) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    try {
+                        posting.run();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+    }
+}
@@ -0,0 +1,139 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.TransferOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.FetchPlan;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FetchPlanTest {
+    private static final int OPERATIONS = 10;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+    static private PersistenceUnitUtil persistenceUnitUtil;
+
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        }
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_relationships_are_read_lazily() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.TEN);
+        bank.transfer(id, other, BigDecimal.ONE, "lazy");
+
+        Account account = accountRepository.findById(id).orElseThrow();
+        assertFalse(persistenceUnitUtil.isLoaded(account, "operations"));
+
+        List<AccountOperation> history = bank.findByDateRange(id, new Date(System.currentTimeMillis() - 60_000),
+                new Date(System.currentTimeMillis() + 60_000));
+        assertEquals(2, history.size());
+        for (AccountOperation operation : history) {
+            assertFalse(persistenceUnitUtil.isLoaded(operation, "account"));
+        }
+        // still read on access, after the EntityManager of the finder is closed
+        TransferOperation transfer = (TransferOperation) history.get(1);
+        assertEquals(other, transfer.getOtherAccount().getId());
+        assertEquals(id, transfer.getAccount().getId());
+    }
+
+    @Test
+    void test_postings_never_read_operations() {
+        Long id = bank.createAccount("x", "y");
+        for (int i = 0; i < OPERATIONS; i++) {
+            bank.deposit(id, BigDecimal.TEN);
+        }
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        bank.deposit(id, BigDecimal.TEN);
+        bank.withdraw(id, BigDecimal.ONE);
+        assertEquals(0, counter.getStatements("FROM ACCOUNT_OPERATIONS"));
+
+        // writing back an account whose history was read does not walk the history
+        Account account;
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            // the cached account still has the empty list it was created with, postings do not add to it
+            em.getEntityManagerFactory().getCache().evict(Account.class, id);
+            account = em.find(Account.class, id);
+            assertEquals(OPERATIONS + 2, account.getOperations().size());
+        }
+        account.getOperations().get(0).setAmount(BigDecimal.valueOf(1000));
+        counter.reset();
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.merge(account);
+            em.getTransaction().commit();
+        }
+        assertEquals(0, counter.getStatements("ACCOUNT_OPERATIONS"));
+        assertEquals(OPERATIONS + 2, accountOperationRepository.findByAccount(account).size());
+    }
+
+    @Test
+    void test_fetch_plans() {
+        Long id = bank.createAccount("x", "y");
+        for (int i = 0; i < OPERATIONS; i++) {
+            bank.deposit(id, BigDecimal.valueOf(i + 1));
+        }
+        List<Long> newestFirst = accountOperationRepository.findByAccount(accountRepository.findById(id).orElseThrow())
+                .stream().map(AccountOperation::getId).toList();
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        Account alone = accountRepository.findById(id, FetchPlan.ACCOUNT_ONLY).orElseThrow();
+        assertNull(alone.getLastOperations());
+        assertEquals(0, counter.getStatements("FROM ACCOUNT_OPERATIONS"));
+
+        Account withLast = accountRepository.findById(id, FetchPlan.withLastOperations(3)).orElseThrow();
+        assertEquals(newestFirst.subList(0, 3), withLast.getLastOperations().stream().map(AccountOperation::getId).toList());
+        assertEquals(1, counter.getStatements("FROM ACCOUNT_OPERATIONS"));
+        assertFalse(persistenceUnitUtil.isLoaded(withLast, "operations"));
+
+        assertTrue(accountRepository.findById(-1L, FetchPlan.withLastOperations(3)).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> FetchPlan.withLastOperations(0));
+    }
+}
@@ -0,0 +1,90 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.BankSessionCustomizer;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdAllocationBenchmarkTest {
+    private static final int TRANSFERS = Integer.getInteger("bench.transfers", 500);
+
+    static private BankImpl bank;
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        setOperationAllocation(BankSessionCustomizer.getOperationAllocationSize());
+
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_sequence_round_trips_per_insert() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        bank.deposit(id1, BigDecimal.valueOf(TRANSFERS));
+
+        // one id per sequence call is what the default generator did before the ids were pooled
+        double unpooled = sequenceCallsPerInsert(1, id1, id2);
+        double pooled = sequenceCallsPerInsert(BankSessionCustomizer.getOperationAllocationSize(), id1, id2);
+
+        assertEquals(1.0, unpooled);
+        assertTrue(pooled < 0.1);
+
+        List<AccountOperation> operations = accountOperationRepository.findAll();
+        Set<Long> ids = new HashSet<>();
+        operations.forEach(o -> ids.add(o.getId()));
+        assertEquals(operations.size(), ids.size());
+    }
+
+    private double sequenceCallsPerInsert(int allocationSize, Long id1, Long id2) {
+        setOperationAllocation(allocationSize);
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        for (int i = 0; i < TRANSFERS / 2; i++) {
+            bank.transfer(id1, id2, BigDecimal.ONE, "t" + i);
+        }
+        // every transfer persists two operation rows
+        return (double) counter.getSequenceCalls() / TRANSFERS;
+    }
+
+    // drops the ids already reserved so that the new size takes effect on the next insert
+    private static void setOperationAllocation(int allocationSize) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            ServerSession session = em.unwrap(ServerSession.class);
+            session.getLogin().getSequence(BankSessionCustomizer.OPERATION_SEQUENCE).setPreallocationSize(allocationSize);
+            session.getSequencingControl().initializePreallocated(BankSessionCustomizer.OPERATION_SEQUENCE);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package demo.task1;
+
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.OperationJournal;
+import demo.task1.repositories.impl.WriteBehindOperationRepository;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.UnitOfWork;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The process OperationJournalTest kills, run against a database file given with -Djakarta.persistence.jdbc.url.
+ * <p>
+ * "crash" opens three accounts and makes a deposit on the first that is written. Then it dies: a deposit on the
+ * second account is appended to the journal and never commits, a transfer from the first account to the third
+ * commits and the process halts before the commit is marked in the journal.
+ * "recover" opens the journal again and waits until its operations are written.
+ */
+public class JournalCrashProcess {
+    static final int CRASHED = 75;
+
+    public static void main(String[] args) throws InterruptedException {
+        Path file = Path.of(args[1]);
+        OperationJournal journal = new OperationJournal(file);
+        if (args[0].equals("recover")) {
+            boolean flushed = journal.flush(Duration.ofMinutes(1));
+            journal.close();
+            System.exit(flushed ? 0 : 1);
+        }
+
+        AccountRepository accountRepository = new AccountRepositoryImpl();
+        BankImpl bank = new BankImpl(accountRepository,
+                new WriteBehindOperationRepository(new AccountOperationRepositoryImpl(), journal));
+        Long first = bank.createAccount("first", "street 1");
+        Long second = bank.createAccount("second", "street 2");
+        Long third = bank.createAccount("third", "street 3");
+        bank.deposit(first, BigDecimal.TEN);
+        journal.flush(Duration.ofMinutes(1));
+
+        CountDownLatch appended = new CountDownLatch(1);
+        Thread uncommitted = new Thread(() -> UnitOfWork.run(() -> {
+            bank.deposit(second, BigDecimal.ONE);
+            // after the journal's own action, so the deposit is on disk and its transaction still open
+            UnitOfWork.beforeCommit(() -> {
+                appended.countDown();
+                try {
+                    Thread.sleep(Long.MAX_VALUE);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }));
+        uncommitted.setDaemon(true);
+        uncommitted.start();
+        appended.await();
+
+        UnitOfWork.run(() -> {
+            // before the journal's own action, which would mark the transfer committed
+            UnitOfWork.afterCommit(() -> Runtime.getRuntime().halt(CRASHED));
+            bank.transfer(first, third, BigDecimal.ONE, "crash");
+        });
+    }
+}
@@ -0,0 +1,133 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.InstrumentedConnectionPool;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.PoolStatistics;
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.exceptions.ConcurrencyException;
+import org.eclipse.persistence.internal.databaseaccess.Accessor;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JpaFactoryTest {
+    static private AccountRepository accountRepository;
+    static private InstrumentedConnectionPool writePool;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            writePool = assertInstanceOf(InstrumentedConnectionPool.class,
+                    em.unwrap(ServerSession.class).getDefaultConnectionPool());
+        }
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_getInstance_from_many_threads() throws InterruptedException {
+        Set<JpaFactory> instances = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            executor.submit(() -> {
+                start.await();
+                return instances.add(JpaFactory.getInstance());
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+        assertEquals(1, instances.size());
+    }
+
+    @Test
+    void test_pool_settings_come_from_properties_file() {
+        List<PoolStatistics> statistics = JpaFactory.getPoolStatistics();
+
+        assertEquals(2, statistics.size());
+        assertEquals(4, statistics.get(0).getMinSize());
+        assertEquals(32, statistics.get(0).getMaxSize());
+        assertEquals(5000, writePool.getWaitTimeout());
+    }
+
+    @Test
+    void test_statistics_show_waiter_on_exhausted_pool() throws Exception {
+        List<Accessor> held = exhaustWritePool();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Account> created = executor.submit(() -> accountRepository.create("x", "y", BigDecimal.ONE));
+
+            long deadline = System.currentTimeMillis() + 5000;
+            while (JpaFactory.getPoolStatistics().get(0).getWaiters() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            PoolStatistics starved = JpaFactory.getPoolStatistics().get(0);
+            assertEquals(1, starved.getWaiters());
+            assertEquals(starved.getMaxSize(), starved.getActive());
+
+            Thread.sleep(50);
+            writePool.releaseConnection(held.remove(0));
+            created.get(1, TimeUnit.MINUTES);
+        } finally {
+            held.forEach(writePool::releaseConnection);
+            executor.shutdown();
+        }
+
+        PoolStatistics statistics = JpaFactory.getPoolStatistics().get(0);
+        assertEquals(0, statistics.getWaiters());
+        assertEquals(0, statistics.getActive());
+        assertTrue(statistics.getMaxAcquireMicros() >= 50_000);
+    }
+
+    @Test
+    void test_acquire_times_out_on_exhausted_pool() {
+        long timeouts = JpaFactory.getPoolStatistics().get(0).getTimeouts();
+        int waitTimeout = writePool.getWaitTimeout();
+        List<Accessor> held = exhaustWritePool();
+        try {
+            writePool.setWaitTimeout(100);
+            assertThrows(ConcurrencyException.class, writePool::acquireConnection);
+        } finally {
+            writePool.setWaitTimeout(waitTimeout);
+            held.forEach(writePool::releaseConnection);
+        }
+
+        assertEquals(timeouts + 1, JpaFactory.getPoolStatistics().get(0).getTimeouts());
+    }
+
+    private List<Accessor> exhaustWritePool() {
+        List<Accessor> held = new ArrayList<>();
+        while (writePool.getStatistics().getActive() < writePool.getMaxNumberOfConnections()) {
+            held.add(writePool.acquireConnection());
+        }
+        return held;
+    }
+}
@@ -0,0 +1,310 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.NewAccount;
+import demo.task1.models.OperationType;
+import demo.task1.models.OperationView;
+import demo.task1.models.TransferOperation;
+import demo.task1.repositories.Page;
+import demo.task1.services.AccountBalance;
+import demo.task1.services.Bank;
+import demo.task1.services.Posting;
+import demo.task1.services.PostingResult;
+import demo.task1.services.impl.LedgerBank;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LedgerBankTest extends BankContractTest<LedgerBank> {
+    private static final int THREADS = 8;
+    private static final int ACCOUNTS = 16;
+    private static final int POSTINGS_PER_THREAD = 20_000;
+
+    @TempDir
+    Path directory;
+
+    @Override
+    protected LedgerBank newBank() {
+        return new LedgerBank(directory);
+    }
+
+    @AfterEach
+    public void close() {
+        bank.close();
+    }
+
+    // beyond the contract of BankContractTest
+    @Test
+    void test_invalid_account_ids_record_nothing() {
+        Long id = bank.createAccount("x", "y");
+        bank.deposit(id, BigDecimal.ONE);
+
+        assertThrows(Bank.AccountIdException.class, () -> bank.deposit(id + 1, BigDecimal.ONE));
+        assertThrows(Bank.AccountIdException.class, () -> bank.transfer(id, id + 1, BigDecimal.ONE, "test"));
+        assertThrows(Bank.AccountIdException.class, () -> bank.findOperations(id + 1, null, 10));
+        assertThrows(Bank.AccountIdException.class, () -> bank.findHistory(null, null, 10));
+        assertEquals(BigDecimal.ONE, bank.getBalance(id));
+        assertEquals(1, bank.getOperationCount());
+    }
+
+    @Test
+    void test_transfer_history() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        bank.deposit(id1, BigDecimal.ONE);
+        bank.transfer(id1, id2, BigDecimal.ONE, "test");
+
+        assertEquals(BigDecimal.ZERO, bank.getBalance(id1));
+        assertEquals(BigDecimal.ONE, bank.getBalance(id2));
+        TransferOperation in = assertInstanceOf(TransferOperation.class,
+                bank.findOperations(id2, null, 10).getItems().get(0));
+        assertEquals(OperationType.TRANSFER_IN, in.getType());
+        assertEquals("test", in.getTitle());
+        assertEquals(id1, in.getOtherAccount().getId());
+        assertEquals(OperationType.DEPOSIT, bank.findByMostFrequentType(id1));
+    }
+
+    @Test
+    void test_amounts_are_exact() {
+        Long id = bank.createAccount("x", "y");
+        bank.deposit(id, new BigDecimal("0.0001"));
+        bank.deposit(id, new BigDecimal("2.50"));
+
+        assertEquals(new BigDecimal("2.5001"), bank.getBalance(id));
+        assertThrows(ArithmeticException.class, () -> bank.deposit(id, new BigDecimal("0.00001")));
+        bank.deposit(id, new BigDecimal("922337203685470"));
+        assertThrows(ArithmeticException.class, () -> bank.deposit(id, new BigDecimal("922337203685470")));
+        assertEquals(3, bank.getOperationCount());
+    }
+
+    // history and finders
+    @Test
+    void test_history_pages_and_ranges() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        Date from = new Date(System.currentTimeMillis() - 1_000);
+        for (int i = 1; i <= 25; i++) {
+            bank.deposit(id, BigDecimal.valueOf(i));
+            bank.deposit(other, BigDecimal.ONE);
+        }
+        bank.transfer(id, other, BigDecimal.ONE, "paged");
+        Date to = new Date(System.currentTimeMillis() + 1_000);
+
+        List<AccountOperation> newestFirst = new ArrayList<>();
+        Page<AccountOperation> page = bank.findOperations(id, null, 10);
+        while (true) {
+            newestFirst.addAll(page.getItems());
+            if (page.isLast()) {
+                break;
+            }
+            page = bank.findOperations(id, page.getNext(), 10);
+        }
+        assertEquals(26, newestFirst.size());
+        assertEquals(OperationType.TRANSFER_OUT, newestFirst.get(0).getType());
+        assertEquals(BigDecimal.ONE, newestFirst.get(25).getAmount());
+
+        List<AccountOperation> oldestFirst = new ArrayList<>();
+        Page<AccountOperation> range = bank.findByDateRange(id, from, to, null, 7);
+        while (true) {
+            oldestFirst.addAll(range.getItems());
+            if (range.isLast()) {
+                break;
+            }
+            range = bank.findByDateRange(id, from, to, range.getNext(), 7);
+        }
+        List<Long> reversed = new ArrayList<>(newestFirst.stream().map(AccountOperation::getId).toList());
+        Collections.reverse(reversed);
+        assertEquals(reversed, oldestFirst.stream().map(AccountOperation::getId).toList());
+        assertEquals(oldestFirst.stream().map(AccountOperation::getId).toList(),
+                bank.findByDateRange(id, from, to).stream().map(AccountOperation::getId).toList());
+        try (Stream<AccountOperation> stream = bank.streamByDateRange(id, from, to)) {
+            assertEquals(26, stream.count());
+        }
+        try (Stream<AccountOperation> stream = bank.streamOperations(other)) {
+            assertEquals(26, stream.count());
+        }
+        assertTrue(bank.findByDateRange(id, new Date(0), from).isEmpty());
+
+        List<OperationView> history = bank.findHistory(id, from, to);
+        assertEquals("paged", history.get(25).getTitle());
+        assertEquals(other, history.get(25).getOtherAccountId());
+        Page<OperationView> views = bank.findHistory(id, null, 20);
+        assertEquals(6, bank.findHistory(id, views.getNext(), 20).getItems().size());
+        assertEquals(history.get(6).getId(), views.getItems().get(19).getId());
+    }
+
+    @Test
+    void test_account_finders() {
+        Long poor = bank.createAccount("Anna", "x");
+        Long rich = bank.createAccount("Adam", "y");
+        Long richToo = bank.createAccount("Bob", "z");
+        bank.deposit(rich, BigDecimal.valueOf(100));
+        bank.deposit(richToo, BigDecimal.valueOf(100));
+        bank.deposit(poor, BigDecimal.valueOf(5.25));
+        bank.deposit(poor, BigDecimal.ONE);
+
+        assertEquals(List.of(poor, rich), ids(bank.findByNameStartWith("A")));
+        assertEquals(List.of(poor), ids(bank.findByBalanceBetween(new BigDecimal("6.245"), new BigDecimal("6.25"))));
+        assertEquals(List.of(rich, richToo), ids(bank.findByTheRichest()));
+        assertEquals(List.of(poor), ids(bank.findByMostOperations()));
+        assertEquals(List.of(), ids(bank.findByEmptyHistory()));
+        assertEquals(List.of(rich, richToo, poor), bank.findTopRichest(5).stream().map(AccountBalance::getId).toList());
+        assertEquals("Anna", bank.findTopRichest(3).get(2).getName());
+        assertThrows(IllegalArgumentException.class, () -> bank.findTopRichest(0));
+
+        Page<Account> first = bank.findAccounts(null, 2);
+        assertEquals(List.of(poor, rich), ids(first.getItems()));
+        assertEquals(List.of(richToo), ids(bank.findAccounts(first.getNext(), 2).getItems()));
+        assertTrue(bank.findByNameStartWith("A", first.getNext(), 2).getItems().isEmpty());
+        try (Stream<Account> accounts = bank.streamByBalanceBetween(BigDecimal.TEN, BigDecimal.valueOf(100))) {
+            assertEquals(List.of(rich, richToo), accounts.map(Account::getId).toList());
+        }
+        Account account = bank.findByNameStartWith("Anna").get(0);
+        assertEquals("x", account.getAddress());
+        assertEquals(new BigDecimal("6.25"), account.getBalance());
+        assertEquals(2, account.getOperationCount(OperationType.DEPOSIT));
+    }
+
+    @Test
+    void test_import_and_batch() {
+        Long existing = bank.createAccount("x", "y");
+        List<Long> ids = bank.importAccounts(Stream.of(
+                NewAccount.of("x", "y", BigDecimal.TEN),
+                NewAccount.of("a", "b", BigDecimal.TEN),
+                NewAccount.of("a", "b", BigDecimal.ONE)));
+        assertEquals(existing, ids.get(0));
+        assertEquals(ids.get(1), ids.get(2));
+        assertEquals(BigDecimal.ZERO, bank.getBalance(existing));
+        assertEquals(BigDecimal.TEN, bank.getBalance(ids.get(1)));
+
+        List<PostingResult> results = bank.executeBatch(List.of(
+                Posting.deposit(existing, BigDecimal.ONE),
+                Posting.withdraw(existing, BigDecimal.TEN),
+                Posting.deposit(existing + 100, BigDecimal.ONE),
+                Posting.deposit(existing, new BigDecimal("0.00001")),
+                Posting.transfer(ids.get(1), existing, BigDecimal.ONE, "test")));
+
+        assertEquals(List.of(PostingResult.Status.OK, PostingResult.Status.INSUFFICIENT_FUNDS,
+                        PostingResult.Status.INVALID_ACCOUNT, PostingResult.Status.INVALID_AMOUNT,
+                        PostingResult.Status.OK),
+                results.stream().map(PostingResult::getStatus).toList());
+        assertEquals(BigDecimal.valueOf(2), bank.getBalance(existing));
+        assertEquals(BigDecimal.valueOf(9), bank.getBalance(ids.get(1)));
+    }
+
+    // the files
+    @Test
+    void test_ledger_is_kept_across_opens() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.TEN);
+        bank.transfer(id, other, BigDecimal.valueOf(3), "kept");
+        bank.close();
+
+        bank = new LedgerBank(directory);
+        assertEquals(id, bank.findAccount("x", "y"));
+        assertEquals(BigDecimal.valueOf(7), bank.getBalance(id));
+        assertEquals(BigDecimal.valueOf(3), bank.getBalance(other));
+        assertEquals(3, bank.getOperationCount());
+        bank.deposit(other, BigDecimal.ONE);
+        assertEquals(List.of(OperationType.DEPOSIT, OperationType.TRANSFER_IN),
+                bank.findOperations(other, null, 10).getItems().stream().map(AccountOperation::getType).toList());
+    }
+
+    @Test
+    void test_other_files_are_not_opened() throws IOException {
+        Path other = Files.createDirectories(directory.resolve("other"));
+        Files.writeString(other.resolve("operations.ledger"), "not a ledger");
+
+        assertThrows(IllegalStateException.class, () -> new LedgerBank(other));
+    }
+
+    @Test
+    void test_ledger_that_was_not_closed_is_replayed() throws IOException {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.TEN);
+        bank.transfer(id, other, BigDecimal.valueOf(3), "replayed");
+        bank.withdraw(other, BigDecimal.ONE);
+
+        // the process died in the middle of a posting: the ledger has it, the balance of the account not yet
+        try (FileChannel channel = FileChannel.open(directory.resolve("accounts.ledger"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 999_0000), 128 * id);
+        }
+        LedgerBank reopened = new LedgerBank(directory);
+        try {
+            assertEquals(BigDecimal.valueOf(7), reopened.getBalance(id));
+            assertEquals(BigDecimal.valueOf(2), reopened.getBalance(other));
+            assertEquals(List.of(OperationType.WITHDRAW, OperationType.TRANSFER_IN),
+                    reopened.findOperations(other, null, 10).getItems().stream().map(AccountOperation::getType).toList());
+            // one deposit and one transfer out, a tie goes to the type declared first
+            assertEquals(OperationType.DEPOSIT, reopened.findByMostFrequentType(id));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void test_concurrent_postings_lose_no_update() throws InterruptedException {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Long id = bank.createAccount("owner" + i, "street " + i);
+            bank.deposit(id, BigDecimal.valueOf(1_000));
+            ids.add(id);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    Long id = ids.get(random.nextInt(ACCOUNTS));
+                    Long other = ids.get(random.nextInt(ACCOUNTS));
+                    try {
+                        bank.transfer(id, other, BigDecimal.valueOf(random.nextInt(1, 50)), "stress");
+                    } catch (Bank.InsufficientFundsException e) {
+                        // the total stays the same either way
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long id : ids) {
+            total = total.add(bank.getBalance(id));
+        }
+        assertEquals(BigDecimal.valueOf(1_000L * ACCOUNTS), total);
+        assertEquals(bank.getOperationCount(),
+                bank.findByNameStartWith("owner").stream().mapToLong(Account::getOperationCount).sum());
+    }
+
+    private static List<Long> ids(List<Account> accounts) {
+        return accounts.stream().map(Account::getId).toList();
+    }
+}
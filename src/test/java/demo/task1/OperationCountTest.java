@@ -0,0 +1,210 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Posting;
+import demo.task1.services.impl.BalanceStore;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.OperationCountBackfill;
+import demo.task1.utils.OperationCountReconciliation;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OperationCountTest {
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_count_follows_every_concurrency_mode() throws InterruptedException {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+
+        try (BalanceStore store = new BalanceStore(accountRepository)) {
+            bank.setBalanceStore(store);
+            for (BankImpl.ConcurrencyMode mode : BankImpl.ConcurrencyMode.values()) {
+                bank.setConcurrencyMode(mode);
+                bank.deposit(id1, BigDecimal.TEN);
+                bank.withdraw(id1, BigDecimal.ONE);
+                bank.transfer(id1, id2, BigDecimal.ONE, mode.name());
+            }
+            bank.executeBatch(List.of(Posting.deposit(id2, BigDecimal.ONE), Posting.transfer(id2, id1, BigDecimal.ONE, "batch")));
+            assertTrue(store.flush(Duration.ofSeconds(30)));
+        }
+
+        int modes = BankImpl.ConcurrencyMode.values().length;
+        assertEquals(3 * modes + 1, operationCount(id1));
+        assertEquals(modes + 2, operationCount(id2));
+        assertCountsMatchOperations();
+    }
+
+    @Test
+    void test_detached_account_can_be_updated_after_operation() {
+        Account account = accountRepository.create("x", "y", BigDecimal.ZERO);
+
+        accountOperationRepository.createOperation(account, BigDecimal.TEN, OperationType.DEPOSIT);
+        account.setBalance(BigDecimal.TEN);
+        accountRepository.update(account);
+
+        assertEquals(1, account.getOperationCount());
+        assertEquals(1, operationCount(account.getId()));
+        assertEquals(0, BigDecimal.TEN.compareTo(accountRepository.findById(account.getId()).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void test_delete_operation_decrements_count() {
+        Long id = bank.createAccount("x", "y");
+        bank.deposit(id, BigDecimal.TEN);
+        bank.deposit(id, BigDecimal.TEN);
+
+        accountOperationRepository.delete(accountOperationRepository.findAll().get(0));
+
+        assertEquals(1, operationCount(id));
+    }
+
+    @Test
+    void test_findByEmptyHistory_and_findByMostOperations_use_count() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        Long id3 = bank.createAccount("c", "d");
+        bank.deposit(id1, BigDecimal.TEN);
+        bank.deposit(id1, BigDecimal.TEN);
+        bank.deposit(id2, BigDecimal.TEN);
+        bank.deposit(id3, BigDecimal.TEN);
+        bank.deposit(id3, BigDecimal.TEN);
+        Long empty = bank.createAccount("e", "f");
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        List<Account> emptyHistory = bank.findByEmptyHistory();
+        List<Account> mostOperations = bank.findByMostOperations();
+
+        assertEquals(List.of(empty), emptyHistory.stream().map(Account::getId).toList());
+        assertEquals(List.of(id1, id3), mostOperations.stream().map(Account::getId).sorted().toList());
+        assertEquals(2, counter.getStatements());
+    }
+
+    @Test
+    void test_findByMostFrequentType_reads_counters() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        Long empty = bank.createAccount("c", "d");
+        bank.deposit(id1, BigDecimal.TEN);
+        bank.withdraw(id1, BigDecimal.ONE);
+        bank.withdraw(id1, BigDecimal.ONE);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        bank.transfer(id1, id2, BigDecimal.ONE, "test");
+        bank.deposit(id2, BigDecimal.ONE);
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        assertEquals(OperationType.WITHDRAW, bank.findByMostFrequentType(id1));
+        // a tie goes to the type declared first
+        assertEquals(OperationType.DEPOSIT, bank.findByMostFrequentType(id2));
+        assertEquals(null, bank.findByMostFrequentType(empty));
+        assertTrue(counter.getStatements() <= 3);
+
+        Account account = accountRepository.findById(id1).orElseThrow();
+        assertEquals(1, account.getOperationCount(OperationType.DEPOSIT));
+        assertEquals(2, account.getOperationCount(OperationType.WITHDRAW));
+        assertEquals(1, account.getOperationCount(OperationType.TRANSFER_OUT));
+        assertCountsMatchOperations();
+    }
+
+    @Test
+    void test_reconciliation_reports_and_repairs_counters() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        Long id3 = bank.createAccount("c", "d");
+        bank.deposit(id1, BigDecimal.TEN);
+        bank.transfer(id1, id2, BigDecimal.ONE, "test");
+        bank.deposit(id3, BigDecimal.TEN);
+        assertEquals(List.of(), OperationCountReconciliation.run(2, false));
+
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("UPDATE ACCOUNTS SET withdraw_count = 5 WHERE ID = ?1").setParameter(1, id1).executeUpdate();
+            em.createNativeQuery("UPDATE ACCOUNTS SET transfer_in_count = 0 WHERE ID = ?1").setParameter(1, id2).executeUpdate();
+            em.getTransaction().commit();
+        }
+
+        assertEquals(List.of(id1, id2), OperationCountReconciliation.run(2, false));
+        assertEquals(List.of(id1, id2), OperationCountReconciliation.run(2, true));
+
+        assertEquals(List.of(), OperationCountReconciliation.run(2, false));
+        assertEquals(OperationType.DEPOSIT, bank.findByMostFrequentType(id1));
+        assertEquals(OperationType.TRANSFER_IN, bank.findByMostFrequentType(id2));
+    }
+
+    @Test
+    void test_backfill_restores_counts() {
+        Long id1 = bank.createAccount("x", "y");
+        Long id2 = bank.createAccount("a", "b");
+        bank.transfer(id1, id2, BigDecimal.ZERO, "test");
+        bank.deposit(id2, BigDecimal.TEN);
+        Long empty = bank.createAccount("c", "d");
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("UPDATE ACCOUNTS SET operation_count = 7").executeUpdate();
+            em.getTransaction().commit();
+        }
+
+        assertEquals(3, OperationCountBackfill.run(2));
+
+        assertEquals(1, operationCount(id1));
+        assertEquals(2, operationCount(id2));
+        assertEquals(0, operationCount(empty));
+        assertEquals(OperationType.TRANSFER_OUT, bank.findByMostFrequentType(id1));
+        assertCountsMatchOperations();
+    }
+
+    private static long operationCount(Long id) {
+        return accountRepository.findById(id).orElseThrow().getOperationCount();
+    }
+
+    private static void assertCountsMatchOperations() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            List<?> mismatches = em.createNativeQuery("SELECT a.ID FROM ACCOUNTS a WHERE a.operation_count <> " +
+                    "(SELECT COUNT(*) FROM ACCOUNT_OPERATIONS o WHERE o.account_id = a.ID)").getResultList();
+            assertEquals(List.of(), mismatches);
+        }
+        assertEquals(List.of(), OperationCountReconciliation.run(OperationCountBackfill.DEFAULT_CHUNK_SIZE, false));
+    }
+}
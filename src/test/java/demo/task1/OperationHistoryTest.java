@@ -0,0 +1,224 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationView;
+import demo.task1.models.TransferOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Bank;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.TransferOperationMigration;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OperationHistoryTest {
+    private static final int TRANSFERS = 3;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        execute("DROP TABLE IF EXISTS TRANSFER_OPERATIONS");
+
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_history_is_read_in_one_query() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.valueOf(100));
+        for (int i = 0; i < TRANSFERS; i++) {
+            bank.transfer(id, other, BigDecimal.ONE, "transfer " + i);
+        }
+        Account account = accountRepository.findById(id).orElseThrow();
+        Date from = new Date(System.currentTimeMillis() - 60_000);
+        Date to = new Date(System.currentTimeMillis() + 60_000);
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        List<AccountOperation> history = bank.findByDateRange(id, from, to);
+        assertEquals(1, counter.getStatements());
+
+        counter.reset();
+        List<AccountOperation> page = accountOperationRepository.findByAccount(account, null, 2).getItems();
+        assertEquals(1, counter.getStatements());
+
+        assertEquals(1 + TRANSFERS, history.size());
+        assertEquals(2, page.size());
+        TransferOperation transfer = assertInstanceOf(TransferOperation.class, page.get(0));
+        assertEquals("transfer " + (TRANSFERS - 1), transfer.getTitle());
+        assertEquals(other, transfer.getOtherAccount().getId());
+    }
+
+    @Test
+    void test_history_views_match_operations() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.valueOf(100));
+        bank.withdraw(id, BigDecimal.TEN);
+        for (int i = 0; i < TRANSFERS; i++) {
+            bank.transfer(id, other, BigDecimal.ONE, "transfer " + i);
+        }
+        Date from = new Date(System.currentTimeMillis() - 60_000);
+        Date to = new Date(System.currentTimeMillis() + 60_000);
+
+        List<AccountOperation> operations = bank.findByDateRange(id, from, to);
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        List<OperationView> history = bank.findHistory(id, from, to);
+        assertEquals(1, counter.getStatements());
+
+        assertEquals(2 + TRANSFERS, history.size());
+        for (int i = 0; i < operations.size(); i++) {
+            AccountOperation operation = operations.get(i);
+            OperationView view = history.get(i);
+            assertEquals(operation.getId(), view.getId());
+            assertEquals(id, view.getAccountId());
+            assertEquals(operation.getType(), view.getType());
+            assertEquals(0, operation.getAmount().compareTo(view.getAmount()));
+            assertEquals(operation.getCreatedAt(), view.getCreatedAt());
+            if (operation instanceof TransferOperation transfer) {
+                assertEquals(transfer.getTitle(), view.getTitle());
+                assertEquals(other, view.getOtherAccountId());
+            } else {
+                assertNull(view.getTitle());
+                assertNull(view.getOtherAccountId());
+            }
+        }
+
+        counter.reset();
+        List<Long> pages = new ArrayList<>();
+        Cursor after = null;
+        do {
+            Page<OperationView> page = bank.findHistory(id, after, 2);
+            page.getItems().forEach(view -> pages.add(view.getId()));
+            after = page.getNext();
+        } while (after != null);
+        assertEquals(3, counter.getStatements());
+        assertEquals(bank.findOperations(id, null, 100).getItems().stream().map(AccountOperation::getId).toList(), pages);
+
+        assertTrue(bank.findHistory(other, new Date(0), new Date(1)).isEmpty());
+        assertThrows(Bank.AccountIdException.class, () -> bank.findHistory(-1L, from, to));
+        assertThrows(Bank.AccountIdException.class, () -> bank.findHistory(-1L, null, 2));
+        assertThrows(Bank.AccountIdException.class, () -> bank.findHistory(null, null, 2));
+    }
+
+    @Test
+    void test_balance_is_read_without_account() {
+        Long id = bank.createAccount("x", "y");
+        bank.deposit(id, BigDecimal.TEN);
+        sharedCache().evictAll();
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        assertEquals(0, BigDecimal.TEN.compareTo(bank.getBalance(id)));
+        assertEquals(1, counter.getStatements());
+        assertFalse(sharedCache().contains(Account.class, id));
+
+        // a cached account answers without a query
+        accountRepository.findById(id);
+        counter.reset();
+        assertEquals(0, BigDecimal.TEN.compareTo(bank.getBalance(id)));
+        assertEquals(0, counter.getStatements());
+
+        assertThrows(Bank.AccountIdException.class, () -> bank.getBalance(-1L));
+        assertThrows(Bank.AccountIdException.class, () -> bank.getBalance(null));
+    }
+
+    @Test
+    void test_migration_copies_transfers_of_joined_table() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.valueOf(100));
+        for (int i = 0; i < TRANSFERS; i++) {
+            bank.transfer(id, other, BigDecimal.ONE, "transfer " + i);
+        }
+        // the transfers as the JOINED mapping stored them
+        execute("CREATE TABLE TRANSFER_OPERATIONS (ID BIGINT NOT NULL PRIMARY KEY, TITLE VARCHAR(255), other_account_id BIGINT)",
+                "INSERT INTO TRANSFER_OPERATIONS SELECT ID, TITLE, other_account_id FROM ACCOUNT_OPERATIONS WHERE DTYPE = 'TransferOperation'",
+                "UPDATE ACCOUNT_OPERATIONS SET TITLE = NULL, other_account_id = NULL");
+        // a transfer posted on the single table before the migration ran keeps its title
+        bank.transfer(other, id, BigDecimal.ONE, "after upgrade");
+
+        assertEquals(2 * TRANSFERS, TransferOperationMigration.run(2, false));
+        assertTrue(tableExists());
+        assertEquals(2 * TRANSFERS, TransferOperationMigration.run(2, true));
+        assertFalse(tableExists());
+        assertEquals(0, TransferOperationMigration.run(2, true));
+
+        List<AccountOperation> operations = accountOperationRepository.findAll();
+        assertEquals(1 + 2 * TRANSFERS + 2, operations.size());
+        for (AccountOperation operation : operations) {
+            if (operation instanceof TransferOperation transfer) {
+                assertTrue(transfer.getTitle().startsWith("transfer ") || transfer.getTitle().equals("after upgrade"),
+                        transfer.getTitle());
+                assertEquals(transfer.getAccount().getId().equals(id) ? other : id, transfer.getOtherAccount().getId());
+            }
+        }
+    }
+
+    private static Cache sharedCache() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            return em.getEntityManagerFactory().getCache();
+        }
+    }
+
+    private static boolean tableExists() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            Number count = (Number) em.createNativeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_NAME = 'TRANSFER_OPERATIONS'").getSingleResult();
+            return count.longValue() > 0;
+        }
+    }
+
+    private static void execute(String... statements) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            for (String sql : statements) {
+                em.createNativeQuery(sql).executeUpdate();
+            }
+            em.getTransaction().commit();
+            em.getEntityManagerFactory().getCache().evictAll();
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.models.OperationType;
+import demo.task1.models.TransferOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.OperationJournal;
+import demo.task1.repositories.impl.WriteBehindOperationRepository;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.UnitOfWork;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OperationJournalTest {
+    private static final int THREADS = 8;
+    private static final int POSTINGS_PER_THREAD = 25;
+    private static final Duration FLUSH_TIMEOUT = Duration.ofSeconds(30);
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepositoryImpl accountOperationRepository;
+
+    @TempDir
+    Path directory;
+
+    private OperationJournal journal;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @AfterEach
+    public void clearData() {
+        if (journal != null) {
+            journal.close();
+        }
+
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_postings_are_written_behind() throws InterruptedException {
+        journal = new OperationJournal(directory.resolve("operations.journal"));
+        BankImpl bank = writeBehindBank(journal);
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+
+        bank.deposit(id, BigDecimal.valueOf(100));
+        bank.withdraw(id, BigDecimal.TEN);
+        bank.transfer(id, other, BigDecimal.ONE, "behind");
+        // counted with the balance, before the rows are written
+        assertEquals(3, accountRepository.findById(id).orElseThrow().getOperationCount());
+        assertEquals(OperationType.DEPOSIT, bank.findByMostFrequentType(id));
+
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        assertEquals(4, journal.getAppended());
+        assertEquals(4, journal.getWritten());
+        assertEquals(0, journal.getPending());
+        // one append and one fsync per posting
+        assertEquals(3, journal.getFsyncs());
+
+        List<AccountOperation> history = bank.findByDateRange(id, new Date(System.currentTimeMillis() - 60_000),
+                new Date(System.currentTimeMillis() + 60_000));
+        assertEquals(List.of(OperationType.DEPOSIT, OperationType.WITHDRAW, OperationType.TRANSFER_OUT),
+                history.stream().map(AccountOperation::getType).toList());
+        assertEquals(0, BigDecimal.TEN.compareTo(history.get(1).getAmount()));
+        TransferOperation transfer = assertInstanceOf(TransferOperation.class, history.get(2));
+        assertEquals("behind", transfer.getTitle());
+        assertEquals(other, transfer.getOtherAccount().getId());
+        assertEquals(1, bank.findHistory(other, null, 10).getItems().size());
+        assertEquals(0, BigDecimal.valueOf(89).compareTo(bank.getBalance(id)));
+    }
+
+    @Test
+    void test_concurrent_postings_share_fsyncs() throws InterruptedException {
+        journal = new OperationJournal(directory.resolve("operations.journal"), 50, 20,
+                OperationJournal.Backpressure.BLOCK);
+        BankImpl bank = writeBehindBank(journal);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.STRIPED);
+        Long[] ids = new Long[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            ids[t] = bank.createAccount("owner" + t, "street " + t);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            Long id = ids[t];
+            executor.submit(() -> {
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    bank.deposit(id, BigDecimal.ONE);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+
+        assertEquals(THREADS * POSTINGS_PER_THREAD, journal.getAppended());
+        assertTrue(journal.getFsyncs() <= journal.getAppended());
+        assertEquals(THREADS * POSTINGS_PER_THREAD, accountOperationRepository.findAll().size());
+        for (Long id : ids) {
+            assertEquals(POSTINGS_PER_THREAD, accountRepository.findById(id).orElseThrow().getOperationCount());
+        }
+    }
+
+    @Test
+    void test_full_journal_writes_through() throws InterruptedException {
+        journal = new OperationJournal(directory.resolve("operations.journal"), 1, 1,
+                OperationJournal.Backpressure.WRITE_THROUGH);
+        BankImpl bank = writeBehindBank(journal);
+        Long id = bank.createAccount("x", "y");
+        for (int i = 0; i < 20; i++) {
+            bank.deposit(id, BigDecimal.ONE);
+        }
+
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        assertEquals(20, accountOperationRepository.findAll().size());
+        assertEquals(20, accountRepository.findById(id).orElseThrow().getOperationCount());
+        assertEquals(20 - journal.getAppended(), accountOperationRepository.findAll().size() - journal.getWritten());
+    }
+
+    @Test
+    void test_journal_is_replayed_on_open() throws InterruptedException, IOException {
+        Path file = directory.resolve("operations.journal");
+        journal = new OperationJournal(file);
+        BankImpl bank = writeBehindBank(journal);
+        Long id = bank.createAccount("x", "y");
+        Long deleted = bank.createAccount("a", "b");
+        bank.deposit(id, BigDecimal.TEN);
+        bank.transfer(id, deleted, BigDecimal.ONE, "replayed");
+        bank.deposit(deleted, BigDecimal.TEN);
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        journal.close();
+        journal = null;
+
+        // the process died before the writer got to the rows, in the middle of appending another record,
+        // and meanwhile the second account went away
+        Path crashed = directory.resolve("crashed.journal");
+        Files.copy(file, crashed);
+        Files.write(crashed, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        execute("DELETE FROM ACCOUNT_OPERATIONS", "DELETE FROM ACCOUNTS WHERE ID = " + deleted);
+
+        journal = new OperationJournal(crashed);
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        assertEquals(1, journal.getWritten());
+        assertEquals(3, journal.getDropped());
+        assertEquals(Files.size(file), Files.size(crashed));
+        List<AccountOperation> operations = accountOperationRepository.findAll();
+        assertEquals(1, operations.size());
+        assertEquals(OperationType.DEPOSIT, operations.get(0).getType());
+        journal.close();
+
+        // replaying rows already written adds none
+        journal = new OperationJournal(crashed);
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        assertEquals(1, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_rolled_back_posting_is_not_written() throws InterruptedException, IOException {
+        Path file = directory.resolve("operations.journal");
+        journal = new OperationJournal(file);
+        BankImpl bank = writeBehindBank(journal);
+        Long id = bank.createAccount("x", "y");
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            bank.deposit(id, BigDecimal.TEN);
+            throw new IllegalStateException();
+        }));
+        bank.deposit(id, BigDecimal.ONE);
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        assertEquals(1, journal.getAppended());
+        assertEquals(1, accountOperationRepository.findAll().size());
+        journal.close();
+        journal = null;
+
+        // the rolled back deposit is in the file, marked, and stays out on replay
+        execute("DELETE FROM ACCOUNT_OPERATIONS");
+        journal = new OperationJournal(file);
+        assertTrue(journal.flush(FLUSH_TIMEOUT));
+        assertEquals(1, journal.getWritten());
+        List<AccountOperation> operations = accountOperationRepository.findAll();
+        assertEquals(1, operations.size());
+        assertEquals(0, BigDecimal.ONE.compareTo(operations.get(0).getAmount()));
+    }
+
+    @Test
+    void test_process_killed_after_commit_recovers_its_operations() throws Exception {
+        Path file = directory.resolve("operations.journal");
+        String url = "jdbc:h2:file:" + directory.resolve("crash").toAbsolutePath() + ";WRITE_DELAY=0";
+
+        assertEquals(JournalCrashProcess.CRASHED, runProcess(url, "crash", file));
+        try (Connection connection = DriverManager.getConnection(url, "sa", "sa")) {
+            // the deposit written before, the transfer committed without its rows, the open deposit rolled back
+            assertEquals(List.of("first DEPOSIT"), history(connection));
+            assertEquals(List.of(2L, 0L, 1L), operationCounts(connection));
+        }
+
+        assertEquals(0, runProcess(url, "recover", file));
+        try (Connection connection = DriverManager.getConnection(url, "sa", "sa")) {
+            assertEquals(List.of("first DEPOSIT", "first TRANSFER_OUT", "third TRANSFER_IN"), history(connection));
+            assertEquals(List.of(2L, 0L, 1L), operationCounts(connection));
+        }
+
+        // decided once, a second recovery adds nothing
+        assertEquals(0, runProcess(url, "recover", file));
+        try (Connection connection = DriverManager.getConnection(url, "sa", "sa")) {
+            assertEquals(3, history(connection).size());
+        }
+    }
+
+    private int runProcess(String url, String mode, Path file) throws IOException, InterruptedException {
+        Path log = directory.resolve(mode + ".log");
+        Process process = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-XX:TieredStopAtLevel=1", "-cp", System.getProperty("java.class.path"),
+                "-Djakarta.persistence.jdbc.url=" + url,
+                "-Djakarta.persistence.schema-generation.database.action=" + (mode.equals("crash") ? "drop-and-create" : "none"),
+                "-Declipselink.logging.level=WARNING",
+                JournalCrashProcess.class.getName(), mode, file.toString())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+        assertTrue(process.waitFor(2, TimeUnit.MINUTES), () -> mode + " process hangs");
+        String output = Files.readString(log);
+        assertTrue(process.exitValue() == 0 || process.exitValue() == JournalCrashProcess.CRASHED,
+                () -> mode + " process failed:\n" + output);
+        return process.exitValue();
+    }
+
+    // name and type of every operation, by account and id
+    private static List<String> history(Connection connection) throws SQLException {
+        List<String> history = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT a.NAME, o.TYPE FROM ACCOUNT_OPERATIONS o " +
+                     "JOIN ACCOUNTS a ON a.ID = o.ACCOUNT_ID ORDER BY a.NAME, o.ID")) {
+            while (rows.next()) {
+                history.add(rows.getString(1) + " " + rows.getString(2));
+            }
+        }
+        return history;
+    }
+
+    private static List<Long> operationCounts(Connection connection) throws SQLException {
+        List<Long> counts = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT OPERATION_COUNT FROM ACCOUNTS ORDER BY NAME")) {
+            while (rows.next()) {
+                counts.add(rows.getLong(1));
+            }
+        }
+        return counts;
+    }
+
+    private static BankImpl writeBehindBank(OperationJournal journal) {
+        AccountOperationRepository operations = new WriteBehindOperationRepository(accountOperationRepository, journal);
+        return new BankImpl(accountRepository, operations);
+    }
+
+    private static void execute(String... statements) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            for (String sql : statements) {
+                em.createNativeQuery(sql).executeUpdate();
+            }
+            em.getTransaction().commit();
+            em.getEntityManagerFactory().getCache().evictAll();
+        }
+    }
+}
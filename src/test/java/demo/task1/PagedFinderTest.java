@@ -0,0 +1,250 @@
+package demo.task1;
+
+import demo.task1.models.AbstractModel;
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.Cursor;
+import demo.task1.repositories.Page;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Bank;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PagedFinderTest {
+    private static final int ACCOUNTS = 25;
+    private static final int PAGE_SIZE = 10;
+    // accounts scanned by the heap test, kept small for every build. -Dbank.test.scanRows=10000000 with a large heap
+    // for the full size run.
+    private static final int SCAN_ROWS = Integer.getInteger("bank.test.scanRows", 50_000);
+    private static final long SCAN_FIRST_ID = 100_000_000L;
+    // heap a stream may hold on top of what was in use before it was opened, a List of 50 000 accounts takes about 40 MB
+    private static final long SCAN_HEAP_LIMIT = 4L * 1024 * 1024;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_account_pages_match_lists() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Long id = bank.createAccount((i % 2 == 0 ? "even" : "odd") + i, "address" + i);
+            bank.deposit(id, BigDecimal.valueOf(i));
+        }
+
+        assertEquals(sorted(bank.findByNameStartWith("even"), Comparator.comparing(Account::getId)),
+                ids(allPages(after -> bank.findByNameStartWith("even", after, PAGE_SIZE))));
+        assertEquals(sorted(bank.findByBalanceBetween(BigDecimal.valueOf(3), BigDecimal.valueOf(20)), Comparator.comparing(Account::getId)),
+                ids(allPages(after -> bank.findByBalanceBetween(BigDecimal.valueOf(3), BigDecimal.valueOf(20), after, PAGE_SIZE))));
+
+        List<Page<Account>> pages = pages(after -> bank.findAccounts(after, PAGE_SIZE));
+        assertEquals(List.of(PAGE_SIZE, PAGE_SIZE, ACCOUNTS - 2 * PAGE_SIZE), pages.stream().map(p -> p.getItems().size()).toList());
+        assertEquals(sorted(accountRepository.findAll(), Comparator.comparing(Account::getId)), ids(pages.stream().flatMap(p -> p.getItems().stream()).toList()));
+        assertThrows(IllegalArgumentException.class, () -> bank.findAccounts(null, 0));
+    }
+
+    @Test
+    void test_page_is_not_shifted_by_earlier_rows() {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.createAccount("x" + i, "y");
+        }
+        Page<Account> first = bank.findAccounts(null, PAGE_SIZE);
+        Page<Account> second = bank.findAccounts(first.getNext(), PAGE_SIZE);
+
+        // an OFFSET would now skip the account that moved into the first page
+        accountRepository.delete(first.getItems().get(0));
+
+        assertEquals(ids(second.getItems()), ids(bank.findAccounts(first.getNext(), PAGE_SIZE).getItems()));
+    }
+
+    @Test
+    void test_operation_pages_match_lists() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        LocalDateTime from = LocalDateTime.now();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.deposit(id, BigDecimal.TEN);
+            if (i % 3 == 0) {
+                bank.transfer(id, other, BigDecimal.ONE, "transfer " + i);
+            }
+        }
+        Date start = new Date(System.currentTimeMillis() - 60_000);
+        Date end = new Date(System.currentTimeMillis() + 60_000);
+        Account account = accountRepository.findById(id).orElseThrow();
+
+        List<AccountOperation> newestFirst = accountOperationRepository.findByAccount(account);
+        assertTrue(newestFirst.get(0).getCreatedAt().isAfter(from));
+        assertEquals(sorted(newestFirst, Comparator.comparing(AccountOperation::getCreatedAt).thenComparing(AccountOperation::getId).reversed()),
+                ids(newestFirst));
+        assertEquals(ids(newestFirst), ids(allPages(after -> bank.findOperations(id, after, 4))));
+
+        List<AccountOperation> inRange = bank.findByDateRange(id, start, end);
+        assertEquals(sorted(inRange, Comparator.comparing(AccountOperation::getCreatedAt).thenComparing(AccountOperation::getId)),
+                ids(allPages(after -> bank.findByDateRange(id, start, end, after, 4))));
+        assertEquals(ACCOUNTS + (ACCOUNTS + 2) / 3, inRange.size());
+
+        assertThrows(Bank.AccountIdException.class, () -> bank.findOperations(-1L, null, 4));
+    }
+
+    @Test
+    void test_streams_match_lists_and_release_connection() {
+        Long id = bank.createAccount("x", "y");
+        Long other = bank.createAccount("a", "b");
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.createAccount("owner" + i, "address" + i);
+            bank.deposit(id, BigDecimal.TEN);
+            bank.transfer(id, other, BigDecimal.ONE, "transfer " + i);
+        }
+        Date start = new Date(System.currentTimeMillis() - 60_000);
+        Date end = new Date(System.currentTimeMillis() + 60_000);
+
+        try (Stream<Account> accounts = bank.streamAccounts()) {
+            assertEquals(sorted(accountRepository.findAll(), Comparator.comparing(Account::getId)), ids(accounts.sorted(Comparator.comparing(Account::getId)).toList()));
+        }
+        try (Stream<Account> accounts = bank.streamByNameStartWith("owner1")) {
+            assertEquals(sorted(bank.findByNameStartWith("owner1"), Comparator.comparing(Account::getId)),
+                    ids(accounts.sorted(Comparator.comparing(Account::getId)).toList()));
+        }
+        try (Stream<Account> accounts = bank.streamByBalanceBetween(BigDecimal.ONE, BigDecimal.valueOf(1000))) {
+            assertEquals(List.of(id, other), ids(accounts.sorted(Comparator.comparing(Account::getId)).toList()));
+        }
+        try (Stream<AccountOperation> operations = bank.streamOperations(id)) {
+            List<AccountOperation> streamed = operations.toList();
+            assertEquals(2 * ACCOUNTS, streamed.size());
+            assertEquals(sorted(streamed, Comparator.comparing(AccountOperation::getCreatedAt).reversed()),
+                    ids(streamed));
+        }
+        try (Stream<AccountOperation> operations = bank.streamByDateRange(id, start, end)) {
+            assertEquals(ids(bank.findByDateRange(id, start, end)), ids(operations.toList()));
+        }
+
+        assertEquals(0, JpaFactory.getPoolStatistics().get(0).getActive());
+        assertEquals(0, JpaFactory.getPoolStatistics().get(1).getActive());
+    }
+
+    @Test
+    void test_stream_scan_keeps_heap_constant() {
+        insertAccounts(SCAN_ROWS);
+        try {
+            Runtime runtime = Runtime.getRuntime();
+            long before = usedHeap(runtime);
+            long maxGrowth = 0;
+            long read = 0;
+            try (Stream<Account> accounts = bank.streamAccounts()) {
+                for (Account ignored : (Iterable<Account>) accounts::iterator) {
+                    if (++read % (SCAN_ROWS / 10) == 0) {
+                        maxGrowth = Math.max(maxGrowth, usedHeap(runtime) - before);
+                    }
+                }
+            }
+
+            assertEquals(SCAN_ROWS, read);
+            assertTrue(maxGrowth < SCAN_HEAP_LIMIT, "heap grew by " + maxGrowth / 1024 + " KB");
+        } finally {
+            deleteScannedAccounts();
+        }
+    }
+
+    // one System.gc() does not always collect everything, collect until the used heap stops shrinking
+    private static long usedHeap(Runtime runtime) {
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            long now = runtime.totalMemory() - runtime.freeMemory();
+            if (now >= used) {
+                break;
+            }
+            used = now;
+        }
+        return used;
+    }
+
+    private static void insertAccounts(int count) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("INSERT INTO ACCOUNTS (ID, NAME, ADDRESS, BALANCE, OPERATION_COUNT, DEPOSIT_COUNT, WITHDRAW_COUNT, " +
+                            "TRANSFER_IN_COUNT, TRANSFER_OUT_COUNT, CREATED_AT, UPDATED_AT, VERSION) " +
+                            "SELECT ?1 + X, 'scan' || X, 'street ' || X, 0, 0, 0, 0, 0, 0, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 1 " +
+                            "FROM SYSTEM_RANGE(0, ?2 - 1)")
+                    .setParameter(1, SCAN_FIRST_ID)
+                    .setParameter(2, count)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        }
+    }
+
+    private static void deleteScannedAccounts() {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            em.createNativeQuery("DELETE FROM ACCOUNTS WHERE ID >= ?1").setParameter(1, SCAN_FIRST_ID).executeUpdate();
+            em.getTransaction().commit();
+            em.getEntityManagerFactory().getCache().evict(Account.class);
+        }
+    }
+
+    private static <T> List<Page<T>> pages(Function<Cursor, Page<T>> finder) {
+        List<Page<T>> pages = new ArrayList<>();
+        Cursor after = null;
+        do {
+            Page<T> page = finder.apply(after);
+            pages.add(page);
+            after = page.getNext();
+        } while (after != null);
+        return pages;
+    }
+
+    private static <T> List<T> allPages(Function<Cursor, Page<T>> finder) {
+        return pages(finder).stream().flatMap(page -> page.getItems().stream()).toList();
+    }
+
+    private static <T extends AbstractModel> List<Long> sorted(List<T> items, Comparator<T> order) {
+        return items.stream().sorted(order).map(AbstractModel::getId).toList();
+    }
+
+    private static List<Long> ids(List<? extends AbstractModel> items) {
+        return items.stream().map(AbstractModel::getId).toList();
+    }
+}
@@ -0,0 +1,64 @@
+package demo.task1;
+
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks on H2 query plans that the Task 4 finders are answered through the indexes declared on the entities.
+ * The statements are the SQL EclipseLink generates for the named queries.
+ */
+public class SchemaIndexTest {
+
+    @Test
+    void test_findByDateRange_uses_account_created_index() {
+        assertPlanUses("IX_ACCOUNT_OPERATIONS_ACCOUNT_CREATED",
+                "SELECT ID FROM ACCOUNT_OPERATIONS WHERE account_id = 1 AND created_at BETWEEN CURRENT_TIMESTAMP AND CURRENT_TIMESTAMP");
+    }
+
+    @Test
+    void test_operation_count_reconciliation_uses_account_type_index() {
+        assertPlanUses("IX_ACCOUNT_OPERATIONS_ACCOUNT_TYPE",
+                "SELECT account_id, COUNT(*), SUM(CASE WHEN type = 'DEPOSIT' THEN 1 ELSE 0 END) FROM ACCOUNT_OPERATIONS " +
+                        "WHERE account_id BETWEEN 1 AND 2 GROUP BY account_id");
+    }
+
+    @Test
+    void test_findByNameStartWith_uses_name_index() {
+        assertPlanUses("UX_ACCOUNTS_NAME_ADDRESS",
+                "SELECT ID FROM ACCOUNTS WHERE NAME LIKE 'owner1%'");
+    }
+
+    @Test
+    void test_findByBalanceBetween_uses_balance_index() {
+        assertPlanUses("IX_ACCOUNTS_BALANCE",
+                "SELECT ID FROM ACCOUNTS WHERE BALANCE BETWEEN 1 AND 2");
+    }
+
+    @Test
+    void test_findByTheRichest_uses_balance_index() {
+        assertPlanUses("IX_ACCOUNTS_BALANCE",
+                "SELECT ID FROM ACCOUNTS WHERE BALANCE = (SELECT MAX(BALANCE) FROM ACCOUNTS)");
+    }
+
+    @Test
+    void test_findByEmptyHistory_uses_operation_count_index() {
+        assertPlanUses("IX_ACCOUNTS_OPERATION_COUNT",
+                "SELECT ID FROM ACCOUNTS WHERE operation_count = 0");
+    }
+
+    @Test
+    void test_findByMostOperations_uses_operation_count_index() {
+        assertPlanUses("IX_ACCOUNTS_OPERATION_COUNT",
+                "SELECT ID FROM ACCOUNTS WHERE operation_count = (SELECT MAX(operation_count) FROM ACCOUNTS)");
+    }
+
+    private static void assertPlanUses(String index, String sql) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            String plan = (String) em.createNativeQuery("EXPLAIN " + sql).getSingleResult();
+            assertTrue(plan.contains(index), plan);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.utils.BankSessionCustomizer;
+import demo.task1.utils.JpaFactory;
+import demo.task1.utils.SequenceMigration;
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.sessions.server.ServerSession;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SequenceMigrationTest {
+    static private BankImpl bank;
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_sequences_restart_after_existing_rows() {
+        // the rows hold the first ids of new sequences, as ids from SEQ_GEN_SEQUENCE do. The account is moved before it
+        // has an operation referencing it, its id depends on the tests that ran before.
+        bank.createAccount("x", "y");
+        executeUpdate("UPDATE ACCOUNTS SET ID = 1");
+        bank.deposit(1L, BigDecimal.TEN);
+        executeUpdate("UPDATE ACCOUNT_OPERATIONS SET ID = 1");
+        restartNewSequences();
+
+        assertThrows(RuntimeException.class, () -> bank.createAccount("a", "b"));
+
+        SequenceMigration.run();
+        Long created = bank.createAccount("a", "b");
+        bank.deposit(created, BigDecimal.ONE);
+
+        assertTrue(created > 1);
+        assertEquals(2, accountRepository.findAll().size());
+        assertEquals(2, accountOperationRepository.findAll().size());
+    }
+
+    // what schema generation leaves on a database that already has rows: sequences that start from the beginning
+    private static void restartNewSequences() {
+        executeUpdate("ALTER SEQUENCE " + BankSessionCustomizer.ACCOUNT_SEQUENCE + " RESTART WITH "
+                + BankSessionCustomizer.getAccountAllocationSize());
+        executeUpdate("ALTER SEQUENCE " + BankSessionCustomizer.OPERATION_SEQUENCE + " RESTART WITH "
+                + BankSessionCustomizer.getOperationAllocationSize());
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.unwrap(ServerSession.class).getSequencingControl().initializePreallocated();
+        }
+    }
+
+    private static void executeUpdate(String sql) {
+        try (EntityManager em = JpaFactory.getEntityManager()) {
+            em.getTransaction().begin();
+            try {
+                em.createNativeQuery(sql).executeUpdate();
+                em.getTransaction().commit();
+            } finally {
+                if (em.getTransaction().isActive()) {
+                    em.getTransaction().rollback();
+                }
+            }
+            // native updates bypass the shared cache
+            em.getEntityManagerFactory().getCache().evictAll();
+        }
+    }
+}
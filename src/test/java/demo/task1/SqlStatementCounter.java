@@ -0,0 +1,80 @@
+package demo.task1;
+
+import demo.task1.utils.JpaFactory;
+import jakarta.persistence.EntityManager;
+import org.eclipse.persistence.internal.databaseaccess.DatabaseCall;
+import org.eclipse.persistence.sessions.SessionEvent;
+import org.eclipse.persistence.sessions.SessionEventAdapter;
+import org.eclipse.persistence.sessions.server.ServerSession;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts SQL statements and commits issued through the shared persistence unit, used to compare round trips.
+ */
+public class SqlStatementCounter extends SessionEventAdapter {
+    private static SqlStatementCounter instance;
+
+    private final AtomicLong statements = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong sequenceCalls = new AtomicLong();
+    private final Queue<String> sql = new ConcurrentLinkedQueue<>();
+
+    public static synchronized SqlStatementCounter install() {
+        if (instance == null) {
+            instance = new SqlStatementCounter();
+            try (EntityManager em = JpaFactory.getEntityManager()) {
+                em.unwrap(ServerSession.class).getEventManager().addListener(instance);
+            }
+        }
+        instance.reset();
+        return instance;
+    }
+
+    public void reset() {
+        statements.set(0);
+        commits.set(0);
+        sequenceCalls.set(0);
+        sql.clear();
+    }
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public long getCommits() {
+        return commits.get();
+    }
+
+    public long getSequenceCalls() {
+        return sequenceCalls.get();
+    }
+
+    /**
+     * @return number of statements since the last reset whose SQL names the table
+     */
+    public long getStatements(String table) {
+        return sql.stream().filter(statement -> statement.contains(table)).count();
+    }
+
+    @Override
+    public void postExecuteCall(SessionEvent event) {
+        statements.incrementAndGet();
+        if (event.getCall() instanceof DatabaseCall call) {
+            String statement = call.getSQLString();
+            if (statement != null) {
+                sql.add(statement);
+                if (statement.contains("NEXT VALUE FOR") || statement.contains("nextval(")) {
+                    sequenceCalls.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void postCommitTransaction(SessionEvent event) {
+        commits.incrementAndGet();
+    }
+}
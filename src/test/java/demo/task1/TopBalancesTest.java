@@ -0,0 +1,273 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.repositories.impl.CachingAccountRepository;
+import demo.task1.services.AccountBalance;
+import demo.task1.services.Bank;
+import demo.task1.services.Posting;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.RetryPolicy;
+import demo.task1.services.impl.TopBalances;
+import demo.task1.utils.UnitOfWork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TopBalancesTest {
+    private static final int ACCOUNTS = 30;
+    private static final int CAPACITY = 5;
+    private static final int THREADS = 4;
+    private static final int POSTINGS_PER_THREAD = 50;
+    private static final int READS = 10_000;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private TopBalances topBalances;
+    private BankImpl bank;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        CachingAccountRepository cachingRepository = new CachingAccountRepository(accountRepository, 100, Duration.ofMinutes(1));
+        topBalances = new TopBalances(cachingRepository, CAPACITY);
+        bank = new BankImpl(cachingRepository, accountOperationRepository);
+        bank.setTopBalances(topBalances);
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_ranking_follows_every_posting_mode() {
+        List<Long> ids = createAccounts(ACCOUNTS);
+        topBalances.rebuild();
+
+        bank.deposit(ids.get(10), BigDecimal.valueOf(100));
+        assertTop();
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        bank.deposit(ids.get(20), BigDecimal.valueOf(200));
+        bank.withdraw(ids.get(10), BigDecimal.valueOf(50));
+        assertTop();
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.PESSIMISTIC);
+        bank.transfer(ids.get(20), ids.get(5), BigDecimal.valueOf(150), "test");
+        assertTop();
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.OPTIMISTIC);
+        bank.transfer(ids.get(5), ids.get(25), BigDecimal.valueOf(60), "test");
+        assertTop();
+
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.NONE);
+        bank.executeBatch(List.of(Posting.deposit(ids.get(29), BigDecimal.valueOf(500)),
+                Posting.transfer(ids.get(29), ids.get(0), BigDecimal.valueOf(300), "batch")));
+        assertTop();
+        assertEquals(1, topBalances.getRebuilds());
+    }
+
+    @Test
+    void test_rolled_back_posting_is_not_ranked() {
+        List<Long> ids = createAccounts(ACCOUNTS);
+        topBalances.rebuild();
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            bank.deposit(ids.get(7), BigDecimal.valueOf(1000));
+            throw new IllegalStateException("rolled back");
+        }));
+
+        assertTop();
+    }
+
+    @Test
+    void test_rebuilds_when_richest_accounts_fall_below_the_rest() {
+        List<Long> ids = createAccounts(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.deposit(ids.get(i), BigDecimal.valueOf(10 + i));
+        }
+        topBalances.rebuild();
+
+        // the tracked accounts end up poorer than accounts that were never tracked
+        for (int i = ACCOUNTS - CAPACITY; i < ACCOUNTS; i++) {
+            bank.withdraw(ids.get(i), BigDecimal.valueOf(10 + i));
+        }
+
+        assertTop();
+        assertEquals(2, topBalances.getRebuilds());
+    }
+
+    @Test
+    void test_late_report_after_rebuild_is_ignored() {
+        List<Long> ids = createAccounts(ACCOUNTS);
+        topBalances.rebuild();
+        // the last account ranks below the others at the same balance, so it is not tracked at 0
+        Long id = ids.get(ACCOUNTS - 1);
+        bank.deposit(id, BigDecimal.valueOf(1000));
+        Account late = accountRepository.findById(id).orElseThrow();
+        bank.withdraw(id, BigDecimal.valueOf(1000));
+
+        topBalances.rebuild();
+        topBalances.update(late);
+
+        assertTop();
+    }
+
+    @Test
+    void test_postings_report_while_rebuild_queries() throws Exception {
+        List<Long> ids = createAccounts(ACCOUNTS);
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // returns the rows read before the posting below, after it has committed
+        AccountRepository slowRepository = (AccountRepository) Proxy.newProxyInstance(AccountRepository.class.getClassLoader(),
+                new Class<?>[]{AccountRepository.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(accountRepository, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (method.getName().equals("findTopByBalance")) {
+                        loaded.countDown();
+                        release.await();
+                    }
+                    return result;
+                });
+        TopBalances ranking = new TopBalances(slowRepository, CAPACITY);
+        bank.setTopBalances(ranking);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> rebuild = executor.submit(ranking::rebuild);
+            assertTrue(loaded.await(1, TimeUnit.MINUTES));
+            Future<?> deposit = executor.submit(() -> bank.deposit(ids.get(ACCOUNTS - 1), BigDecimal.valueOf(1000)));
+            deposit.get(1, TimeUnit.MINUTES);
+
+            release.countDown();
+            rebuild.get(1, TimeUnit.MINUTES);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+
+        assertTop();
+        assertEquals(ids.get(ACCOUNTS - 1), ranking.top(1).get(0).getId());
+        assertEquals(1, ranking.getRebuilds());
+    }
+
+    @Test
+    void test_more_than_capacity_is_read_from_database() {
+        createAccounts(ACCOUNTS);
+        topBalances.rebuild();
+
+        List<AccountBalance> top = bank.findTopRichest(CAPACITY + 1);
+
+        assertEquals(CAPACITY + 1, top.size());
+        assertEquals(1, topBalances.getRebuilds());
+        assertThrows(IllegalArgumentException.class, () -> bank.findTopRichest(0));
+    }
+
+    @Test
+    void test_concurrent_deposits_and_withdraws_keep_ranking_exact() throws InterruptedException {
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        List<Long> ids = createAccounts(ACCOUNTS);
+        topBalances.rebuild();
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < POSTINGS_PER_THREAD; i++) {
+                    Long id = ids.get(random.nextInt(ACCOUNTS));
+                    BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 100));
+                    try {
+                        if (random.nextBoolean()) {
+                            bank.deposit(id, amount);
+                        } else {
+                            bank.withdraw(id, amount);
+                        }
+                    } catch (Bank.InsufficientFundsException e) {
+                        // expected now and then, the balance stays as it was
+                    }
+                    bank.findTopRichest(CAPACITY);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertTop();
+    }
+
+    @Test
+    void test_reads_are_served_from_memory() {
+        List<Long> ids = createAccounts(ACCOUNTS);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            bank.deposit(ids.get(i), BigDecimal.valueOf(i));
+        }
+        topBalances.rebuild();
+
+        SqlStatementCounter counter = SqlStatementCounter.install();
+        for (int i = 0; i < READS; i++) {
+            bank.findTopRichest(CAPACITY);
+        }
+
+        assertEquals(0, counter.getStatements());
+        assertEquals(ids.get(ACCOUNTS - 1), bank.findTopRichest(1).get(0).getId());
+    }
+
+    private List<Long> createAccounts(int count) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(bank.createAccount("owner" + i, "address" + i));
+        }
+        return ids;
+    }
+
+    // the ranking has to match what the database sorts, balance by balance and in the same order
+    private void assertTop() {
+        List<Account> expected = accountRepository.findTopByBalance(CAPACITY);
+        List<AccountBalance> actual = bank.findTopRichest(CAPACITY);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(0, expected.get(i).getBalance().compareTo(actual.get(i).getBalance()));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.Bank;
+import demo.task1.services.impl.BankImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransferConcurrencyTest {
+    private static final int ACCOUNTS = 10;
+    private static final int THREADS = 4;
+    private static final int TRANSFERS_PER_THREAD = 50;
+    private static final BigDecimal OPENING_BALANCE = BigDecimal.valueOf(1000);
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_pessimistic_transfers_conserve_balances() throws InterruptedException {
+        List<Long> ids = createAccounts();
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.PESSIMISTIC);
+
+        AtomicInteger failed = new AtomicInteger();
+        runTransfers(bank, ids, failed);
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long id : ids) {
+            BigDecimal balance = bank.getBalance(id);
+            assertTrue(balance.signum() >= 0);
+            total = total.add(balance);
+        }
+
+        assertEquals(0, failed.get());
+        assertEquals(0, OPENING_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS)).compareTo(total));
+        assertEquals(THREADS * TRANSFERS_PER_THREAD * 2, accountOperationRepository.findAll().size());
+    }
+
+    @Test
+    void test_unlocked_transfers_conserve_balances() throws InterruptedException {
+        List<Long> ids = createAccounts();
+        BankImpl bank = new BankImpl(accountRepository, accountOperationRepository);
+
+        AtomicInteger failed = new AtomicInteger();
+        runTransfers(bank, ids, failed);
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (Long id : ids) {
+            total = total.add(bank.getBalance(id));
+        }
+
+        // conflicting transfers fail in this mode instead of being retried, and write nothing
+        assertEquals(0, OPENING_BALANCE.multiply(BigDecimal.valueOf(ACCOUNTS)).compareTo(total));
+        assertEquals((THREADS * TRANSFERS_PER_THREAD - failed.get()) * 2, accountOperationRepository.findAll().size());
+    }
+
+    private List<Long> createAccounts() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ids.add(accountRepository.create("c" + i, "a" + i, OPENING_BALANCE).getId());
+        }
+        return ids;
+    }
+
+    private void runTransfers(Bank bank, List<Long> ids, AtomicInteger failed) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int t = 0; t < THREADS; t++) {
+            executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < TRANSFERS_PER_THREAD; i++) {
+                    Long from = ids.get(random.nextInt(ids.size()));
+                    Long to = ids.get(random.nextInt(ids.size()));
+                    while (to.equals(from)) {
+                        to = ids.get(random.nextInt(ids.size()));
+                    }
+                    try {
+                        bank.transfer(from, to, BigDecimal.valueOf(random.nextInt(1, 10)), "stress");
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+    }
+}
@@ -0,0 +1,123 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.utils.UnitOfWork;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UnitOfWorkTest {
+
+    private static AccountRepository accountRepository;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+    }
+
+    @AfterEach
+    public void clearData() {
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_repository_calls_share_entity_manager() {
+        Long id = accountRepository.create("x", "y", BigDecimal.ZERO).getId();
+
+        UnitOfWork.run(() -> {
+            Account first = accountRepository.findById(id).orElseThrow();
+            Account second = accountRepository.findById(id).orElseThrow();
+            assertSame(first, second);
+            assertSame(UnitOfWork.currentEntityManager(), UnitOfWork.currentEntityManager());
+        });
+
+        assertFalse(UnitOfWork.isActive());
+    }
+
+    @Test
+    void test_commit_on_success() {
+        Long id = accountRepository.create("x", "y", BigDecimal.ZERO).getId();
+
+        UnitOfWork.run(() -> {
+            Account account = accountRepository.findById(id).orElseThrow();
+            account.setBalance(BigDecimal.TEN);
+            accountRepository.update(account);
+        });
+
+        assertEquals(0, BigDecimal.TEN.compareTo(accountRepository.findById(id).orElseThrow().getBalance()));
+    }
+
+    @Test
+    void test_rollback_on_exception() {
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            accountRepository.create("x", "y", BigDecimal.ZERO);
+            throw new IllegalStateException();
+        }));
+
+        assertTrue(accountRepository.findByNameAndAddress("x", "y").isEmpty());
+    }
+
+    @Test
+    void test_nested_call_joins_outer() {
+        UnitOfWork.run(() -> {
+            Long id = UnitOfWork.call(() -> accountRepository.create("x", "y", BigDecimal.ZERO).getId());
+            assertTrue(UnitOfWork.isActive());
+            assertTrue(accountRepository.findById(id).isPresent());
+        });
+
+        assertTrue(accountRepository.findByNameAndAddress("x", "y").isPresent());
+    }
+
+    @Test
+    void test_before_commit_runs_in_the_transaction() {
+        List<String> events = new ArrayList<>();
+        UnitOfWork.run(() -> {
+            accountRepository.create("x", "y", BigDecimal.ZERO);
+            UnitOfWork.afterCommit(() -> events.add("after"));
+            UnitOfWork.beforeCommit(() -> {
+                assertTrue(UnitOfWork.isActive());
+                events.add("before");
+            });
+        });
+        assertEquals(List.of("before", "after"), events);
+
+        // a failing action rolls the unit of work back
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            accountRepository.create("a", "b", BigDecimal.ZERO);
+            UnitOfWork.beforeCommit(() -> {
+                throw new IllegalStateException();
+            });
+        }));
+        assertTrue(accountRepository.findByNameAndAddress("a", "b").isEmpty());
+    }
+
+    @Test
+    void test_failing_after_commit_action_runs_the_rest() {
+        List<String> events = new ArrayList<>();
+        UnitOfWork.run(() -> {
+            accountRepository.create("x", "y", BigDecimal.ZERO);
+            UnitOfWork.afterCommit(() -> {
+                throw new IllegalStateException();
+            });
+            UnitOfWork.afterCommit(() -> events.add("after"));
+            UnitOfWork.afterCompletion(() -> events.add("completion"));
+        });
+
+        assertEquals(List.of("after", "completion"), events);
+        assertTrue(accountRepository.findByNameAndAddress("x", "y").isPresent());
+    }
+}
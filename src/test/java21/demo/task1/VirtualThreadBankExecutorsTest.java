@@ -0,0 +1,91 @@
+package demo.task1;
+
+import demo.task1.models.Account;
+import demo.task1.models.AccountOperation;
+import demo.task1.repositories.AccountOperationRepository;
+import demo.task1.repositories.AccountRepository;
+import demo.task1.repositories.impl.AccountOperationRepositoryImpl;
+import demo.task1.repositories.impl.AccountRepositoryImpl;
+import demo.task1.services.impl.BankExecutor;
+import demo.task1.services.impl.BankImpl;
+import demo.task1.services.impl.VirtualThreadBankExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class VirtualThreadBankExecutorsTest {
+    private static final int CLIENTS = 2000;
+    private static final int MAX_CONCURRENT = 4;
+
+    static private AccountRepository accountRepository;
+    static private AccountOperationRepository accountOperationRepository;
+
+    private BankImpl bank;
+    private BankExecutor executor;
+
+    @BeforeAll
+    static void setup() {
+        accountRepository = new AccountRepositoryImpl();
+        accountOperationRepository = new AccountOperationRepositoryImpl();
+    }
+
+    @BeforeEach
+    void createBank() {
+        bank = new BankImpl(accountRepository, accountOperationRepository);
+        bank.setConcurrencyMode(BankImpl.ConcurrencyMode.ATOMIC);
+        executor = VirtualThreadBankExecutors.withVirtualThreads(bank, MAX_CONCURRENT);
+    }
+
+    @AfterEach
+    public void clearData() {
+        executor.close();
+
+        for(AccountOperation ao : accountOperationRepository.findAll()){
+            accountOperationRepository.delete(ao);
+        }
+
+        for(Account a : accountRepository.findAll()){
+            accountRepository.delete(a);
+        }
+    }
+
+    @Test
+    void test_calls_run_on_virtual_threads_within_the_bound() {
+        Long id = bank.createAccount("x", "y");
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger platformThreads = new AtomicInteger();
+
+        List<CompletableFuture<Void>> calls = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            calls.add(executor.callAsync(bank -> {
+                if (!Thread.currentThread().isVirtual()) {
+                    platformThreads.incrementAndGet();
+                }
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    bank.deposit(id, BigDecimal.ONE);
+                } finally {
+                    running.decrementAndGet();
+                }
+                return null;
+            }));
+        }
+        CompletableFuture.allOf(calls.toArray(CompletableFuture[]::new)).join();
+
+        assertEquals(0, platformThreads.get());
+        assertTrue(maxRunning.get() <= MAX_CONCURRENT, "max running: " + maxRunning.get());
+        assertEquals(0, BigDecimal.valueOf(CLIENTS).compareTo(bank.getBalance(id)));
+        assertEquals(CLIENTS, executor.getCompleted());
+    }
+}